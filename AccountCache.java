@@ -0,0 +1,230 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Read-through cache of account rows, keyed by account_id and by account_number, plus the list
+// of account ids per user. Bounded in size with least-recently-used eviction, and every entry
+// expires after a time-to-live so changes made outside this process show up eventually.
+// Writes through DatabaseManager invalidate the touched accounts immediately.
+//
+// A value loaded from the database is only stored if no invalidation happened while it was
+// being read, so a slow read can never put back a balance that a concurrent write replaced.
+// Callers always get their own Account copy. A maximum size or TTL of 0 turns the cache off.
+public class AccountCache {
+    private static class Entry {
+        final int accountId;
+        final int userId;
+        final String accountNumber;
+        final String accountType;
+        final long balance;
+        final long expiresAt;
+
+        Entry(Account account, long expiresAt) {
+            this.accountId = account.getAccountId();
+            this.userId = account.getUserId();
+            this.accountNumber = account.getAccountNumber();
+            this.accountType = account.getAccountType();
+            this.balance = account.getBalance();
+            this.expiresAt = expiresAt;
+        }
+
+        Account toAccount() {
+            Account account = new Account();
+            account.setAccountId(accountId);
+            account.setUserId(userId);
+            account.setAccountNumber(accountNumber);
+            account.setAccountType(accountType);
+            account.setBalance(balance);
+            return account;
+        }
+    }
+
+    private static class UserEntry {
+        final int[] accountIds;
+        final long expiresAt;
+
+        UserEntry(int[] accountIds, long expiresAt) {
+            this.accountIds = accountIds;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final boolean enabled;
+
+    // Guarded by 'this'
+    private final LinkedHashMap<Integer, Entry> byId;
+    private final Map<String, Integer> idByNumber = new HashMap<>();
+    private final LinkedHashMap<Integer, UserEntry> byUser;
+    // Bumped by every invalidation; loads that straddle one are not stored
+    private long generation;
+
+    // Statistics
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    AccountCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.enabled = maxSize > 0 && ttlMillis > 0;
+        this.byId = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                if (size() > AccountCache.this.maxSize) {
+                    idByNumber.remove(eldest.getValue().accountNumber);
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.byUser = new LinkedHashMap<Integer, UserEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, UserEntry> eldest) {
+                return size() > AccountCache.this.maxSize;
+            }
+        };
+    }
+
+    // Generation to pass to put() after loading from the database
+    synchronized long startLoad() {
+        return generation;
+    }
+
+    synchronized Account getById(int accountId) {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry = live(accountId);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.toAccount();
+    }
+
+    synchronized Account getByNumber(String accountNumber) {
+        if (!enabled) {
+            return null;
+        }
+        Integer accountId = idByNumber.get(accountNumber);
+        Entry entry = accountId != null ? live(accountId) : null;
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.toAccount();
+    }
+
+    // A user's accounts, or null unless the list and every account in it are cached
+    synchronized List<Account> getByUser(int userId) {
+        if (!enabled) {
+            return null;
+        }
+        UserEntry userEntry = byUser.get(userId);
+        if (userEntry != null && userEntry.expiresAt - System.nanoTime() > 0) {
+            List<Account> accounts = new ArrayList<>(userEntry.accountIds.length);
+            for (int accountId : userEntry.accountIds) {
+                Entry entry = live(accountId);
+                if (entry == null) {
+                    break;
+                }
+                accounts.add(entry.toAccount());
+            }
+            if (accounts.size() == userEntry.accountIds.length) {
+                hits.incrementAndGet();
+                return accounts;
+            }
+        } else if (userEntry != null) {
+            byUser.remove(userId);
+            expirations.incrementAndGet();
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    synchronized void put(Account account, long loadGeneration) {
+        if (!enabled || loadGeneration != generation) {
+            return;
+        }
+        Entry entry = new Entry(account, System.nanoTime() + ttlNanos);
+        Entry previous = byId.put(entry.accountId, entry);
+        if (previous != null && !previous.accountNumber.equals(entry.accountNumber)) {
+            idByNumber.remove(previous.accountNumber);
+        }
+        idByNumber.put(entry.accountNumber, entry.accountId);
+    }
+
+    synchronized void putUserAccounts(int userId, List<Account> accounts, long loadGeneration) {
+        if (!enabled || loadGeneration != generation) {
+            return;
+        }
+        int[] accountIds = new int[accounts.size()];
+        for (int i = 0; i < accountIds.length; i++) {
+            accountIds[i] = accounts.get(i).getAccountId();
+            put(accounts.get(i), loadGeneration);
+        }
+        byUser.put(userId, new UserEntry(accountIds, System.nanoTime() + ttlNanos));
+    }
+
+    synchronized void invalidate(int accountId) {
+        generation++;
+        invalidations.incrementAndGet();
+        Entry entry = byId.remove(accountId);
+        if (entry != null) {
+            idByNumber.remove(entry.accountNumber);
+        }
+    }
+
+    synchronized void clear() {
+        generation++;
+        byId.clear();
+        idByNumber.clear();
+        byUser.clear();
+    }
+
+    private Entry live(int accountId) {
+        Entry entry = byId.get(accountId);
+        if (entry != null && entry.expiresAt - System.nanoTime() <= 0) {
+            byId.remove(accountId);
+            idByNumber.remove(entry.accountNumber);
+            expirations.incrementAndGet();
+            return null;
+        }
+        return entry;
+    }
+
+    // Statistics
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getEvictions() { return evictions.get(); }
+    public long getExpirations() { return expirations.get(); }
+    public long getInvalidations() { return invalidations.get(); }
+    public synchronized int size() { return byId.size(); }
+
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return "AccountCache{size=" + size() +
+                ", hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", hitRate=" + String.format("%.1f%%", getHitRate() * 100) +
+                ", evictions=" + getEvictions() +
+                ", expirations=" + getExpirations() +
+                ", invalidations=" + getInvalidations() + '}';
+    }
+}
@@ -0,0 +1,83 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Striped per-account locks for transfers.
+// An account_id maps to one of a fixed number of stripes. Two-account operations always take
+// the lower stripe first, so two transfers between the same pair in opposite directions can
+// never wait on each other in a cycle. Time spent waiting for a contended stripe is recorded
+// in a histogram.
+public class AccountLockTable {
+    private final ReentrantLock[] stripes;
+    private final int mask;
+    private final LatencyHistogram contentionWait = new LatencyHistogram();
+    private final AtomicLong uncontendedAcquires = new AtomicLong();
+
+    public AccountLockTable(int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+    }
+
+    public void lock(int accountId) {
+        acquire(stripes[stripeOf(accountId)]);
+    }
+
+    public void unlock(int accountId) {
+        stripes[stripeOf(accountId)].unlock();
+    }
+
+    // Lock both accounts in canonical (stripe) order
+    public void lock(int firstAccountId, int secondAccountId) {
+        int a = stripeOf(firstAccountId);
+        int b = stripeOf(secondAccountId);
+        if (a == b) {
+            acquire(stripes[a]);
+        } else {
+            acquire(stripes[Math.min(a, b)]);
+            acquire(stripes[Math.max(a, b)]);
+        }
+    }
+
+    public void unlock(int firstAccountId, int secondAccountId) {
+        int a = stripeOf(firstAccountId);
+        int b = stripeOf(secondAccountId);
+        if (a == b) {
+            stripes[a].unlock();
+        } else {
+            stripes[Math.max(a, b)].unlock();
+            stripes[Math.min(a, b)].unlock();
+        }
+    }
+
+    private void acquire(ReentrantLock lock) {
+        if (lock.tryLock()) {
+            uncontendedAcquires.incrementAndGet();
+            return;
+        }
+        long start = System.nanoTime();
+        lock.lock();
+        contentionWait.record(System.nanoTime() - start);
+    }
+
+    private int stripeOf(int accountId) {
+        int h = accountId * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    // Statistics
+    public int getStripeCount() { return stripes.length; }
+    public long getUncontendedAcquires() { return uncontendedAcquires.get(); }
+    public long getContendedAcquires() { return contentionWait.getCount(); }
+    public LatencyHistogram getContentionHistogram() { return contentionWait; }
+
+    @Override
+    public String toString() {
+        return "AccountLockTable{stripes=" + stripes.length +
+                ", uncontended=" + getUncontendedAcquires() +
+                ", contended=" + getContendedAcquires() +
+                ", wait: " + contentionWait.summary() + '}';
+    }
+}
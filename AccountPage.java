@@ -28,6 +28,8 @@ public class AccountPage extends JFrame {
     private JTextField recipientAccountField;
     private JButton transferButton;
     
+    private final UiTask.Latest refreshRequests = new UiTask.Latest();
+    
     public AccountPage(User user, Account account) {
         this.user = user;
         this.currentAccount = account;
@@ -106,7 +108,7 @@ public class AccountPage extends JFrame {
         accountTypeLabel = new JLabel("Account Type: " + currentAccount.getAccountType());
         accountTypeLabel.setFont(new Font("Arial", Font.PLAIN, 14));
         
-        balanceLabel = new JLabel("Current Balance: $" + String.format("%.2f", currentAccount.getBalance()));
+        balanceLabel = new JLabel("Current Balance: $" + Money.format(currentAccount.getBalance()));
         balanceLabel.setFont(new Font("Arial", Font.BOLD, 16));
         
         panel.add(accountNumberLabel);
@@ -305,20 +307,21 @@ public class AccountPage extends JFrame {
     }
     
     private void refreshAccountData() {
-        // Reload the account data from the database
-        Account refreshedAccount = DatabaseManager.getAccountById(currentAccount.getAccountId());
-        if (refreshedAccount != null) {
-            currentAccount = refreshedAccount;
-            balanceLabel.setText("Current Balance: $" + String.format("%.2f", currentAccount.getBalance()));
-        } else {
-            JOptionPane.showMessageDialog(this, "Failed to refresh account data", 
-                    "Error", JOptionPane.ERROR_MESSAGE);
-        }
+        // Reload the account data from the database; a newer refresh supersedes this one
+        refreshRequests.run(this, () -> BankService.getAccountById(currentAccount.getAccountId()), refreshedAccount -> {
+            if (refreshedAccount != null) {
+                currentAccount = refreshedAccount;
+                balanceLabel.setText("Current Balance: $" + Money.format(currentAccount.getBalance()));
+            } else {
+                JOptionPane.showMessageDialog(this, "Failed to refresh account data", 
+                        "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        });
     }
     
     private void performDeposit() {
         try {
-            double amount = ((Number) depositAmountField.getValue()).doubleValue();
+            long amount = Money.fromDouble(((Number) depositAmountField.getValue()).doubleValue());
             
             if (amount <= 0) {
                 JOptionPane.showMessageDialog(this, "Please enter a positive amount", 
@@ -326,20 +329,22 @@ public class AccountPage extends JFrame {
                 return;
             }
             
-            if (DatabaseManager.deposit(currentAccount.getAccountId(), amount)) {
-                JOptionPane.showMessageDialog(this, 
-                        "Successfully deposited $" + String.format("%.2f", amount), 
-                        "Success", JOptionPane.INFORMATION_MESSAGE);
-                
-                // Reset the input field
-                depositAmountField.setValue(0.0);
-                
-                // Refresh the account balance
-                refreshAccountData();
-            } else {
-                JOptionPane.showMessageDialog(this, "Failed to deposit funds", 
-                        "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            UiTask.run(this, BankService.deposit(currentAccount.getAccountId(), amount), success -> {
+                if (success) {
+                    JOptionPane.showMessageDialog(this, 
+                            "Successfully deposited $" + Money.format(amount), 
+                            "Success", JOptionPane.INFORMATION_MESSAGE);
+                    
+                    // Reset the input field
+                    depositAmountField.setValue(0.0);
+                    
+                    // Refresh the account balance
+                    refreshAccountData();
+                } else {
+                    JOptionPane.showMessageDialog(this, "Failed to deposit funds", 
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }, depositButton, withdrawButton, transferButton);
             
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this, "Please enter a valid amount", 
@@ -349,7 +354,7 @@ public class AccountPage extends JFrame {
     
     private void performWithdrawal() {
         try {
-            double amount = ((Number) withdrawAmountField.getValue()).doubleValue();
+            long amount = Money.fromDouble(((Number) withdrawAmountField.getValue()).doubleValue());
             
             if (amount <= 0) {
                 JOptionPane.showMessageDialog(this, "Please enter a positive amount", 
@@ -363,20 +368,22 @@ public class AccountPage extends JFrame {
                 return;
             }
             
-            if (DatabaseManager.withdraw(currentAccount.getAccountId(), amount)) {
-                JOptionPane.showMessageDialog(this, 
-                        "Successfully withdrew $" + String.format("%.2f", amount), 
-                        "Success", JOptionPane.INFORMATION_MESSAGE);
-                
-                // Reset the input field
-                withdrawAmountField.setValue(0.0);
-                
-                // Refresh the account balance
-                refreshAccountData();
-            } else {
-                JOptionPane.showMessageDialog(this, "Failed to withdraw funds", 
-                        "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            UiTask.run(this, BankService.withdraw(currentAccount.getAccountId(), amount), success -> {
+                if (success) {
+                    JOptionPane.showMessageDialog(this, 
+                            "Successfully withdrew $" + Money.format(amount), 
+                            "Success", JOptionPane.INFORMATION_MESSAGE);
+                    
+                    // Reset the input field
+                    withdrawAmountField.setValue(0.0);
+                    
+                    // Refresh the account balance
+                    refreshAccountData();
+                } else {
+                    JOptionPane.showMessageDialog(this, "Failed to withdraw funds", 
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }, depositButton, withdrawButton, transferButton);
             
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this, "Please enter a valid amount", 
@@ -386,7 +393,7 @@ public class AccountPage extends JFrame {
     
     private void performTransfer() {
         try {
-            double amount = ((Number) transferAmountField.getValue()).doubleValue();
+            long amount = Money.fromDouble(((Number) transferAmountField.getValue()).doubleValue());
             String recipientAccountNumber = recipientAccountField.getText().trim();
             
             if (amount <= 0) {
@@ -407,38 +414,40 @@ public class AccountPage extends JFrame {
                 return;
             }
             
-            // Find recipient account - in a real app, we would search the database
-            int recipientAccountId = findAccountIdByNumber(recipientAccountNumber);
-            
-            if (recipientAccountId == -1) {
-                JOptionPane.showMessageDialog(this, "Recipient account not found", 
-                        "Transfer Error", JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-            
-            // Can't transfer to the same account
-            if (recipientAccountId == currentAccount.getAccountId()) {
-                JOptionPane.showMessageDialog(this, "Cannot transfer to the same account", 
-                        "Transfer Error", JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-            
-            if (DatabaseManager.transfer(currentAccount.getAccountId(), recipientAccountId, amount)) {
-                JOptionPane.showMessageDialog(this, 
-                        "Successfully transferred $" + String.format("%.2f", amount) + 
-                        " to account " + recipientAccountNumber, 
-                        "Success", JOptionPane.INFORMATION_MESSAGE);
+            // Look up the recipient, then transfer - both in the background
+            UiTask.run(this, BankService.getAccountByNumber(recipientAccountNumber), recipientAccount -> {
+                if (recipientAccount == null) {
+                    JOptionPane.showMessageDialog(this, "Recipient account not found", 
+                            "Transfer Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
                 
-                // Reset the input fields
-                transferAmountField.setValue(0.0);
-                recipientAccountField.setText("");
+                // Can't transfer to the same account
+                if (recipientAccount.getAccountId() == currentAccount.getAccountId()) {
+                    JOptionPane.showMessageDialog(this, "Cannot transfer to the same account", 
+                            "Transfer Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
                 
-                // Refresh the account balance
-                refreshAccountData();
-            } else {
-                JOptionPane.showMessageDialog(this, "Failed to complete transfer", 
-                        "Error", JOptionPane.ERROR_MESSAGE);
-            }
+                UiTask.run(this, BankService.transfer(currentAccount.getAccountId(), recipientAccount.getAccountId(), amount), success -> {
+                    if (success) {
+                        JOptionPane.showMessageDialog(this, 
+                                "Successfully transferred $" + Money.format(amount) + 
+                                " to account " + recipientAccountNumber, 
+                                "Success", JOptionPane.INFORMATION_MESSAGE);
+                        
+                        // Reset the input fields
+                        transferAmountField.setValue(0.0);
+                        recipientAccountField.setText("");
+                        
+                        // Refresh the account balance
+                        refreshAccountData();
+                    } else {
+                        JOptionPane.showMessageDialog(this, "Failed to complete transfer", 
+                                "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                }, depositButton, withdrawButton, transferButton);
+            }, depositButton, withdrawButton, transferButton);
             
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this, "Please enter valid information for the transfer", 
@@ -446,15 +455,6 @@ public class AccountPage extends JFrame {
         }
     }
     
-    private int findAccountIdByNumber(String accountNumber) {
-        // Use the DatabaseManager method to find an account by number
-        Account account = DatabaseManager.getAccountByNumber(accountNumber);
-        if (account != null) {
-            return account.getAccountId();
-        }
-        return -1;
-    }
-    
     public static void main(String[] args) {
         // This is for testing purposes only
         // In a real application, this would be opened from the Dashboard
@@ -470,7 +470,7 @@ public class AccountPage extends JFrame {
         testAccount.setUserId(1);
         testAccount.setAccountNumber("1000001");
         testAccount.setAccountType("SAVINGS");
-        testAccount.setBalance(5000.00);
+        testAccount.setBalance(Money.parse("5000.00"));
         
         SwingUtilities.invokeLater(() -> {
             try {
@@ -0,0 +1,83 @@
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+// Measures AmortizationEngine on a batch of synthetic loans: monthly payments with the memoized
+// annuity factors against the Math.pow formula they replace, then full schedules for every loan,
+// single-threaded and on all cores, each thread refilling one Schedule.
+//
+// Usage: java AmortizationBenchmark [loans] [rounds]
+public class AmortizationBenchmark {
+    private static final int[] TERMS = {12, 24, 36, 48, 60, 120, 180, 240, 360};
+
+    public static void main(String[] args) {
+        int loans = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        // Rates 1.00% to 20.00% in quarter-point steps, as the loan form allows
+        SplittableRandom random = new SplittableRandom(42);
+        long[] principals = new long[loans];
+        double[] rates = new double[loans];
+        int[] terms = new int[loans];
+        for (int i = 0; i < loans; i++) {
+            principals[i] = 100_000 + random.nextLong(100_000_000);
+            rates[i] = 1 + random.nextInt(77) * 0.25;
+            terms[i] = TERMS[random.nextInt(TERMS.length)];
+        }
+
+        for (int round = 1; round <= rounds; round++) {
+            System.out.println("Round " + round);
+
+            long start = System.nanoTime();
+            long powTotal = 0;
+            for (int i = 0; i < loans; i++) {
+                double r = rates[i] / (12 * 100);
+                double principal = Money.toDouble(principals[i]);
+                powTotal += Money.fromDouble((principal * r * Math.pow(1 + r, terms[i])) / (Math.pow(1 + r, terms[i]) - 1));
+            }
+            report("payments (Math.pow)", loans, start);
+
+            start = System.nanoTime();
+            long engineTotal = 0;
+            for (int i = 0; i < loans; i++) {
+                engineTotal += AmortizationEngine.monthlyPayment(principals[i], rates[i], terms[i]);
+            }
+            report("payments (memoized)", loans, start);
+            if (engineTotal != powTotal) {
+                System.out.println("  payment totals differ: " + Money.format(powTotal) + " vs " + Money.format(engineTotal));
+            }
+
+            start = System.nanoTime();
+            AmortizationEngine.Schedule schedule = new AmortizationEngine.Schedule(360);
+            long interest = 0;
+            long months = 0;
+            for (int i = 0; i < loans; i++) {
+                AmortizationEngine.fill(schedule, principals[i], rates[i], terms[i]);
+                interest += schedule.getTotalInterest();
+                months += schedule.getMonths();
+            }
+            report("schedules, 1 thread", loans, start);
+
+            start = System.nanoTime();
+            int threads = Runtime.getRuntime().availableProcessors();
+            long parallelInterest = IntStream.range(0, threads).parallel().mapToLong(t -> {
+                AmortizationEngine.Schedule own = new AmortizationEngine.Schedule(360);
+                long sum = 0;
+                for (int i = t; i < loans; i += threads) {
+                    AmortizationEngine.fill(own, principals[i], rates[i], terms[i]);
+                    sum += own.getTotalInterest();
+                }
+                return sum;
+            }).sum();
+            report("schedules, " + threads + (threads == 1 ? " thread" : " threads"), loans, start);
+            if (parallelInterest != interest) {
+                System.out.println("  interest totals differ: " + Money.format(interest) + " vs " + Money.format(parallelInterest));
+            }
+            System.out.println(String.format("  %,d schedule rows, total interest %s", months, Money.format(interest)));
+        }
+    }
+
+    private static void report(String name, int loans, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.println(String.format("  %-22s %8.3f s  %,14.0f loans/sec", name, seconds, loans / seconds));
+    }
+}
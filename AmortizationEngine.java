@@ -0,0 +1,217 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Level-payment (annuity) loan arithmetic: monthly payments and full repayment schedules.
+//
+// The payment for principal P over n months at monthly rate r is P * r * (1 + r)^n / ((1 + r)^n - 1).
+// Loans only use a few distinct rates (loans.interest_rate has two decimals), so for each rate
+// the growth factors (1 + r)^k and the annuity factors for every term are computed once and
+// memoized; a payment is then one table lookup and one multiplication.
+//
+// Schedules are kept in parallel primitive arrays (Schedule) and worked out in whole cents:
+// each month's interest is the balance times r rounded to the cent, the rest of the payment
+// goes to principal, and the last payment absorbs the rounding so the balance ends at zero.
+// A Schedule can be refilled in place, so batch runs over many loans don't allocate per loan.
+public final class AmortizationEngine {
+    // Longest schedule produced when a payment (rather than a term) is given
+    public static final int MAX_MONTHS = 1200;
+    private static final int MIN_TABLE_TERM = 480;
+
+    // Growth and annuity factors for one monthly rate, indexed by number of months
+    private static final class RateTable {
+        final double[] growth;
+        final double[] annuity;
+
+        RateTable(double monthlyRate, int maxTerm) {
+            growth = new double[maxTerm + 1];
+            annuity = new double[maxTerm + 1];
+            for (int n = 0; n <= maxTerm; n++) {
+                growth[n] = Math.pow(1 + monthlyRate, n);
+                if (n == 0) {
+                    continue;
+                }
+                annuity[n] = monthlyRate == 0 ? 1.0 / n : monthlyRate * growth[n] / (growth[n] - 1);
+            }
+        }
+    }
+
+    // Keyed by the annual rate in hundredths of a percent
+    private static final ConcurrentHashMap<Integer, RateTable> TABLES = new ConcurrentHashMap<>();
+
+    private AmortizationEngine() {
+    }
+
+    // Monthly payment in cents for a loan of principal cents at annualRatePercent (e.g. 5.75)
+    public static long monthlyPayment(long principal, double annualRatePercent, int termMonths) {
+        if (termMonths <= 0) {
+            throw new IllegalArgumentException("Term must be at least one month: " + termMonths);
+        }
+        return Math.round(principal * annuityFactor(annualRatePercent, termMonths));
+    }
+
+    // Payment per unit of principal; memoized for rates with at most two decimals
+    static double annuityFactor(double annualRatePercent, int termMonths) {
+        if (annualRatePercent < 0 || Double.isNaN(annualRatePercent)) {
+            throw new IllegalArgumentException("Interest rate must not be negative: " + annualRatePercent);
+        }
+        double hundredths = annualRatePercent * 100;
+        long key = Math.round(hundredths);
+        if (Math.abs(hundredths - key) > 1e-6 || key > Integer.MAX_VALUE) {
+            // Not a rate the loans table can hold - work it out directly
+            double r = monthlyRate(annualRatePercent);
+            if (r == 0) {
+                return 1.0 / termMonths;
+            }
+            double growth = Math.pow(1 + r, termMonths);
+            return r * growth / (growth - 1);
+        }
+        return table((int) key, termMonths).annuity[termMonths];
+    }
+
+    private static RateTable table(int key, int termMonths) {
+        RateTable table = TABLES.get(key);
+        if (table == null || table.annuity.length <= termMonths) {
+            // Racing threads build identical tables, so whichever is stored last is fine
+            table = new RateTable(monthlyRate(key / 100.0), Math.max(MIN_TABLE_TERM, termMonths));
+            TABLES.put(key, table);
+        }
+        return table;
+    }
+
+    // One month's interest on balance, rounded to the cent, as used for every schedule row
+    public static long monthlyInterest(long balance, double annualRatePercent) {
+        return Math.round(balance * monthlyRate(annualRatePercent));
+    }
+
+    private static double monthlyRate(double annualRatePercent) {
+        return annualRatePercent / (12 * 100);
+    }
+
+    // Full schedule for a new loan
+    public static Schedule schedule(long principal, double annualRatePercent, int termMonths) {
+        Schedule schedule = new Schedule(termMonths);
+        fill(schedule, principal, annualRatePercent, termMonths);
+        return schedule;
+    }
+
+    // Refills schedule with the repayment plan of a new loan
+    public static void fill(Schedule schedule, long principal, double annualRatePercent, int termMonths) {
+        long payment = monthlyPayment(principal, annualRatePercent, termMonths);
+        schedule.months = 0;
+        amortize(schedule, principal, monthlyRate(annualRatePercent), payment, termMonths);
+    }
+
+    // Refills schedule with the plan for paying down balance with a fixed monthly payment
+    // (e.g. what is left of an existing loan), ending when the balance reaches zero
+    public static void fillForPayment(Schedule schedule, long balance, double annualRatePercent, long payment) {
+        double r = monthlyRate(annualRatePercent);
+        if (balance > 0 && payment <= Math.round(balance * r)) {
+            throw new IllegalArgumentException("Payment does not cover the monthly interest");
+        }
+        schedule.months = 0;
+        amortize(schedule, balance, r, payment, MAX_MONTHS);
+    }
+
+    // Pays an extra amount of principal together with payment number month (1-based) and works
+    // out the rest of the schedule again: with keepPayment the loan ends earlier, otherwise the
+    // payment drops and the loan keeps its original end
+    public static void prepay(Schedule schedule, double annualRatePercent, int month, long amount, boolean keepPayment) {
+        if (month < 1 || month > schedule.months) {
+            throw new IllegalArgumentException("No payment number " + month + " in a " + schedule.months + " month schedule");
+        }
+        int index = month - 1;
+        long extra = Math.min(amount, schedule.balance[index]);
+        schedule.payment[index] += extra;
+        schedule.principal[index] += extra;
+        schedule.balance[index] -= extra;
+        recalculate(schedule, annualRatePercent, month, keepPayment);
+    }
+
+    // Works out the schedule after payment number month (1-based) again from that month's
+    // balance, e.g. after a prepayment or a change of rate
+    public static void recalculate(Schedule schedule, double annualRatePercent, int month, boolean keepPayment) {
+        int remainingMonths = schedule.months - month;
+        long balance = schedule.balance[month - 1];
+        long payment = schedule.payment[Math.min(month, schedule.months - 1)];
+        schedule.months = month;
+        if (balance <= 0 || remainingMonths <= 0) {
+            return;
+        }
+        if (keepPayment) {
+            amortize(schedule, balance, monthlyRate(annualRatePercent), payment, MAX_MONTHS - month);
+        } else {
+            amortize(schedule, balance, monthlyRate(annualRatePercent),
+                    monthlyPayment(balance, annualRatePercent, remainingMonths), remainingMonths);
+        }
+    }
+
+    // Appends rows paying balance down at monthly rate r, for at most maxMonths months
+    private static void amortize(Schedule schedule, long balance, double r, long payment, int maxMonths) {
+        int end = schedule.months + maxMonths;
+        for (int i = schedule.months; i < end && balance > 0; i++) {
+            long interest = Math.round(balance * r);
+            long principal = payment - interest;
+            if (principal >= balance || i == end - 1) {
+                principal = balance;
+            }
+            balance -= principal;
+
+            schedule.ensureCapacity(i + 1);
+            schedule.payment[i] = principal + interest;
+            schedule.principal[i] = principal;
+            schedule.interest[i] = interest;
+            schedule.balance[i] = balance;
+            schedule.months = i + 1;
+        }
+    }
+
+    // Month by month repayment plan, in cents. Month indexes are 0-based (index 0 is the first payment).
+    public static final class Schedule {
+        private long[] payment;
+        private long[] principal;
+        private long[] interest;
+        private long[] balance;
+        private int months;
+
+        public Schedule(int expectedMonths) {
+            int capacity = Math.max(1, expectedMonths);
+            payment = new long[capacity];
+            principal = new long[capacity];
+            interest = new long[capacity];
+            balance = new long[capacity];
+        }
+
+        public int getMonths() { return months; }
+        public long getPayment(int month) { return payment[month]; }
+        public long getPrincipal(int month) { return principal[month]; }
+        public long getInterest(int month) { return interest[month]; }
+        // Balance left after the payment
+        public long getBalance(int month) { return balance[month]; }
+
+        public long getTotalInterest() {
+            long total = 0;
+            for (int i = 0; i < months; i++) {
+                total += interest[i];
+            }
+            return total;
+        }
+
+        public long getTotalPaid() {
+            long total = 0;
+            for (int i = 0; i < months; i++) {
+                total += payment[i];
+            }
+            return total;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > payment.length) {
+                int length = Math.max(capacity, payment.length * 2);
+                payment = Arrays.copyOf(payment, length);
+                principal = Arrays.copyOf(principal, length);
+                interest = Arrays.copyOf(interest, length);
+                balance = Arrays.copyOf(balance, length);
+            }
+        }
+    }
+}
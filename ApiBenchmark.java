@@ -0,0 +1,158 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Throughput of the HTTP API: many concurrent clients, each logged in as its own user, calling
+// a mix of account listing, history, deposit and withdraw endpoints for a fixed time.
+// By default it starts BankApiServer in-process on top of a fresh H2 database filled by
+// BenchmarkDataset; with -Dapi.url it targets a running server whose database was filled the
+// same way.
+//
+// Usage: java -cp .:h2.jar ApiBenchmark
+// Optional system properties: -Dapi.url=http://localhost:8080 -Dapi.clients=200 -Dapi.seconds=20
+//   -Dapi.users=1000 -Dapi.poolSize=20 -Dapi.dbUrl=jdbc:h2:mem:bankapi;MODE=MySQL;DATABASE_TO_LOWER=TRUE
+//   -Dbank.password.iterations (default 1,000 for the in-process server, see
+//   BenchmarkDataset.useBenchmarkPasswordCost; a server given by -Dapi.url uses its own setting)
+public class ApiBenchmark {
+    private static final int CLIENTS = Integer.getInteger("api.clients", 200);
+    private static final long SECONDS = Long.getLong("api.seconds", 20L);
+    private static final int USERS = Integer.getInteger("api.users", 1000);
+    private static final int POOL_SIZE = Integer.getInteger("api.poolSize", 20);
+    private static final String DB_URL = System.getProperty("api.dbUrl", "jdbc:h2:mem:bankapi;MODE=MySQL;DATABASE_TO_LOWER=TRUE");
+
+    private static final String[] ENDPOINTS = {"GET accounts", "GET transactions", "POST deposit", "POST withdraw"};
+    private static final LatencyHistogram[] LATENCY = new LatencyHistogram[ENDPOINTS.length];
+    private static final AtomicLong[] FAILED = new AtomicLong[ENDPOINTS.length];
+
+    static {
+        for (int i = 0; i < ENDPOINTS.length; i++) {
+            LATENCY[i] = new LatencyHistogram();
+            FAILED[i] = new AtomicLong();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkDataset.useBenchmarkPasswordCost();
+        BenchmarkDataset data = new BenchmarkDataset(USERS, 2, 20);
+        String baseUrl = System.getProperty("api.url");
+        BankApiServer server = null;
+        Connection keepAlive = null;
+
+        if (baseUrl == null) {
+            try {
+                // Held open for the whole run so the in-memory database is not dropped
+                keepAlive = DriverManager.getConnection(DB_URL, "sa", "");
+                data.create(keepAlive, Paths.get(System.getProperty("bench.schema", "bank_management_system.sql")));
+            } catch (SQLException e) {
+                System.err.println("Benchmark database error: " + e.getMessage());
+                System.err.println("Put an embedded JDBC driver on the class path (java -cp .:h2.jar ApiBenchmark) or set -Dapi.url");
+                return;
+            }
+            DatabaseManager.usePool(new ConnectionPool(DB_URL, "sa", "", POOL_SIZE,
+                    60000, 30 * 60000, 5000, 2, Integer.getInteger("bank.db.pool.statementCacheSize", 64)));
+            server = new BankApiServer(0, 30);
+            server.start();
+            baseUrl = "http://localhost:" + server.getPort();
+        }
+
+        ExecutorService clients = VirtualThreads.newThreadPerTaskExecutor("api-client");
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(clients).build();
+        System.out.println(String.format("%d clients for %d s against %s (%s)", CLIENTS, SECONDS, baseUrl, data));
+
+        CountDownLatch done = new CountDownLatch(CLIENTS);
+        long startNanos = System.nanoTime();
+        long endNanos = startNanos + TimeUnit.SECONDS.toNanos(SECONDS);
+        String base = baseUrl;
+        for (int c = 0; c < CLIENTS; c++) {
+            int userId = 1 + c % data.getUserCount();
+            clients.execute(() -> {
+                try {
+                    runClient(http, base, userId, data, endNanos);
+                } catch (Exception e) {
+                    System.err.println("Client error: " + e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+
+        long total = 0;
+        System.out.println(String.format("%-18s %10s %10s %10s %10s %10s %8s",
+                "endpoint", "requests", "req/sec", "p50(us)", "p99(us)", "p99.9(us)", "failed"));
+        for (int i = 0; i < ENDPOINTS.length; i++) {
+            LatencyHistogram latency = LATENCY[i];
+            total += latency.getCount();
+            System.out.println(String.format("%-18s %,10d %,10.0f %10.1f %10.1f %10.1f %8d",
+                    ENDPOINTS[i], latency.getCount(), latency.getCount() / seconds,
+                    latency.getPercentileNanos(50) / 1000.0, latency.getPercentileNanos(99) / 1000.0,
+                    latency.getPercentileNanos(99.9) / 1000.0, FAILED[i].get()));
+        }
+        System.out.println(String.format("Total: %,.0f requests/sec", total / seconds));
+
+        clients.shutdown();
+        if (server != null) {
+            server.stop(0);
+            DatabaseManager.shutdown();
+        }
+        if (keepAlive != null) {
+            keepAlive.close();
+        }
+    }
+
+    private static void runClient(HttpClient http, String base, int userId, BenchmarkDataset data, long endNanos) throws Exception {
+        HttpResponse<String> login = http.send(HttpRequest.newBuilder(URI.create(base + "/api/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"" + BenchmarkDataset.username(userId) +
+                        "\",\"password\":\"" + BenchmarkDataset.password(userId) + "\"}"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (login.statusCode() != 200) {
+            throw new IllegalStateException("Login failed for user " + userId + ": " + login.body());
+        }
+        String body = login.body();
+        int start = body.indexOf("\"token\":\"") + "\"token\":\"".length();
+        String authorization = "Bearer " + body.substring(start, body.indexOf('"', start));
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int firstAccount = (userId - 1) * data.getAccountsPerUser() + 1;
+        while (System.nanoTime() - endNanos < 0) {
+            int endpoint = random.nextInt(ENDPOINTS.length);
+            int accountId = firstAccount + random.nextInt(data.getAccountsPerUser());
+            HttpRequest.Builder request;
+            switch (endpoint) {
+                case 0:
+                    request = HttpRequest.newBuilder(URI.create(base + "/api/accounts")).GET();
+                    break;
+                case 1:
+                    request = HttpRequest.newBuilder(URI.create(base + "/api/accounts/" + accountId + "/transactions?limit=20")).GET();
+                    break;
+                case 2:
+                    request = HttpRequest.newBuilder(URI.create(base + "/api/accounts/" + accountId + "/deposit"))
+                            .POST(HttpRequest.BodyPublishers.ofString("{\"amount\":\"1.00\"}"));
+                    break;
+                default:
+                    request = HttpRequest.newBuilder(URI.create(base + "/api/accounts/" + accountId + "/withdraw"))
+                            .POST(HttpRequest.BodyPublishers.ofString("{\"amount\":\"1.00\"}"));
+                    break;
+            }
+
+            long begin = System.nanoTime();
+            HttpResponse<String> response = http.send(request.header("Authorization", authorization).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            LATENCY[endpoint].record(System.nanoTime() - begin);
+            if (response.statusCode() != 200) {
+                FAILED[endpoint].incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,459 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Headless JSON API over the JDK's built-in HTTP server, offering what the Swing pages do.
+// Every request runs on its own virtual thread (platform threads before Java 21), so slow
+// database calls only hold up the client that made them.
+//
+// POST /api/login {"username", "password"} returns a token; every other call needs the header
+// "Authorization: Bearer <token>". Amounts are decimal strings such as "12.50".
+//   POST /api/logout
+//   GET  /api/accounts                         GET  /api/accounts/{id}
+//   GET  /api/accounts/{id}/transactions?cursor=&limit=
+//   POST /api/accounts/{id}/deposit {"amount"}  POST /api/accounts/{id}/withdraw {"amount"}
+//   POST /api/transfers {"fromAccountId", "toAccountNumber", "amount"}
+//   GET  /api/accounts/{id}/cards              POST /api/accounts/{id}/cards {"cardType"}
+//   POST /api/cards/{id}/block
+//   GET  /api/accounts/{id}/loans              POST /api/accounts/{id}/loans {"loanType", "amount", "interestRate", "termMonths"}
+//   POST /api/loans/{id}/payments {"amount"}
+// Users only ever see their own accounts; anything else answers 404.
+public class BankApiServer {
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private static class Session {
+        final int userId;
+        volatile long lastUsed = System.nanoTime();
+
+        Session(int userId) {
+            this.userId = userId;
+        }
+    }
+
+    // Turned into an error response by handle()
+    private static class ApiException extends Exception {
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService sessionSweeper;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final long sessionTimeoutNanos;
+    private final SecureRandom random = new SecureRandom();
+
+    public BankApiServer(int port, long sessionTimeoutMinutes) throws IOException {
+        this.sessionTimeoutNanos = TimeUnit.MINUTES.toNanos(sessionTimeoutMinutes);
+        this.server = HttpServer.create(new InetSocketAddress(port), Integer.getInteger("bank.http.backlog", 1024));
+        this.executor = VirtualThreads.newThreadPerTaskExecutor("http");
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handle);
+
+        this.sessionSweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "http-session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sessionSweeper.scheduleWithFixedDelay(() -> {
+            long now = System.nanoTime();
+            sessions.values().removeIf(session -> now - session.lastUsed > sessionTimeoutNanos);
+        }, 1, 1, TimeUnit.MINUTES);
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("HTTP API listening on port " + getPort() +
+                (VirtualThreads.isSupported() ? " (virtual threads)" : " (platform threads)"));
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+        sessionSweeper.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int status = 200;
+        String body;
+        try {
+            body = route(exchange);
+        } catch (ApiException e) {
+            status = e.status;
+            body = error(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            // Malformed JSON, numbers or amounts
+            status = 400;
+            body = error(e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("HTTP API error: " + e);
+            status = 500;
+            body = error("Internal error");
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private String route(HttpExchange exchange) throws ApiException, IOException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().substring("/api/".length()).split("/");
+        String resource = path[0];
+
+        if (resource.equals("login") && path.length == 1) {
+            requireMethod(method, "POST");
+            return login(readBody(exchange));
+        }
+
+        Session session = authenticate(exchange);
+        if (resource.equals("logout") && path.length == 1) {
+            requireMethod(method, "POST");
+            sessions.remove(token(exchange));
+            return "{}";
+        }
+        if (resource.equals("accounts")) {
+            if (path.length == 1) {
+                requireMethod(method, "GET");
+                return accounts(session);
+            }
+            if (path.length > 3) {
+                throw new ApiException(404, "Not found");
+            }
+            Account account = ownAccount(session, parseId(path[1]));
+            String action = path.length > 2 ? path[2] : "";
+            switch (method + " " + action) {
+                case "GET ":
+                    return appendAccount(new StringBuilder(), account).toString();
+                case "GET transactions":
+                    return transactions(account, queryParameters(exchange));
+                case "POST deposit":
+                    return posting(DatabaseManager.deposit(account.getAccountId(), amount(readBody(exchange))), account.getAccountId());
+                case "POST withdraw":
+                    return posting(DatabaseManager.withdraw(account.getAccountId(), amount(readBody(exchange))), account.getAccountId());
+                case "GET cards":
+                    return cards(account);
+                case "POST cards":
+                    return createCard(account, readBody(exchange));
+                case "GET loans":
+                    return loans(account);
+                case "POST loans":
+                    return createLoan(account, readBody(exchange));
+                default:
+                    throw new ApiException(404, "Not found");
+            }
+        }
+        if (resource.equals("transfers") && path.length == 1) {
+            requireMethod(method, "POST");
+            return transfer(session, readBody(exchange));
+        }
+        if (resource.equals("cards") && path.length == 3 && path[2].equals("block")) {
+            requireMethod(method, "POST");
+            return blockCard(session, parseId(path[1]));
+        }
+        if (resource.equals("loans") && path.length == 3 && path[2].equals("payments")) {
+            requireMethod(method, "POST");
+            return loanPayment(session, parseId(path[1]), readBody(exchange));
+        }
+        throw new ApiException(404, "Not found");
+    }
+
+    private String login(Map<String, String> request) throws ApiException {
+        String username = request.get("username");
+        String password = request.get("password");
+        if (username == null || password == null) {
+            throw new ApiException(400, "username and password are required");
+        }
+        switch (DatabaseManager.authenticate(username, password)) {
+            case AUTHENTICATED:
+                break;
+            case BUSY:
+                throw new ApiException(503, "Too many logins in progress, try again");
+            case UNAVAILABLE:
+                throw new ApiException(503, "Database unavailable");
+            default:
+                throw new ApiException(401, "Invalid username or password");
+        }
+        User user = DatabaseManager.getUserDetails(username);
+        if (user == null) {
+            throw new ApiException(503, "Database unavailable");
+        }
+
+        byte[] tokenBytes = new byte[16];
+        random.nextBytes(tokenBytes);
+        StringBuilder token = new StringBuilder(32);
+        for (byte b : tokenBytes) {
+            token.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        sessions.put(token.toString(), new Session(user.getId()));
+
+        StringBuilder sb = new StringBuilder("{\"token\":");
+        Json.quote(sb, token.toString()).append(",\"userId\":").append(user.getId()).append(",\"fullName\":");
+        return Json.quote(sb, user.getFullName()).append('}').toString();
+    }
+
+    private String accounts(Session session) {
+        StringBuilder sb = new StringBuilder("[");
+        for (Account account : DatabaseManager.getUserAccounts(session.userId)) {
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            appendAccount(sb, account);
+        }
+        return sb.append(']').toString();
+    }
+
+    private String transactions(Account account, Map<String, String> query) throws ApiException {
+        int limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : DEFAULT_PAGE_SIZE;
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ApiException(400, "limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        TransactionPage page = DatabaseManager.getTransactionHistoryPage(account.getAccountId(), query.get("cursor"), limit);
+        if (page == null) {
+            throw new ApiException(503, "Database unavailable");
+        }
+
+        StringBuilder sb = new StringBuilder("{\"transactions\":[");
+        List<Transaction> transactions = page.getTransactions();
+        for (int i = 0; i < transactions.size(); i++) {
+            Transaction transaction = transactions.get(i);
+            sb.append(i > 0 ? "," : "").append("{\"id\":").append(transaction.getTransactionId()).append(",\"type\":");
+            Json.quote(sb, transaction.getType()).append(",\"amount\":\"");
+            Money.appendTo(sb, transaction.getAmount());
+            sb.append("\",\"recipientAccountId\":").append(transaction.getRecipientAccountId()).append(",\"date\":");
+            Json.quote(sb, transaction.getDate() != null ? transaction.getDate().toString() : null).append(",\"description\":");
+            Json.quote(sb, transaction.getDescription()).append('}');
+        }
+        sb.append("],\"nextCursor\":");
+        return Json.quote(sb, page.hasMore() ? page.getNextCursor() : null).append('}').toString();
+    }
+
+    private String transfer(Session session, Map<String, String> request) throws ApiException {
+        Account from = ownAccount(session, parseId(required(request, "fromAccountId")));
+        Account to = DatabaseManager.getAccountByNumber(required(request, "toAccountNumber"));
+        if (to == null) {
+            throw new ApiException(404, "Recipient account not found");
+        }
+        if (to.getAccountId() == from.getAccountId()) {
+            throw new ApiException(400, "Cannot transfer to the same account");
+        }
+        return posting(DatabaseManager.transfer(from.getAccountId(), to.getAccountId(), amount(request)), from.getAccountId());
+    }
+
+    private String cards(Account account) {
+        StringBuilder sb = new StringBuilder("[");
+        for (Card card : DatabaseManager.getAccountCards(account.getAccountId())) {
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":").append(card.getCardId()).append(",\"accountId\":").append(card.getAccountId()).append(",\"number\":");
+            Json.quote(sb, card.getMaskedCardNumber()).append(",\"type\":");
+            Json.quote(sb, card.getCardType()).append(",\"expiryDate\":");
+            Json.quote(sb, String.valueOf(card.getExpiryDate())).append(",\"active\":").append(card.isActive()).append('}');
+        }
+        return sb.append(']').toString();
+    }
+
+    private String createCard(Account account, Map<String, String> request) throws ApiException {
+        String cardType = required(request, "cardType");
+        if (!cardType.equals("VISA") && !cardType.equals("MASTERCARD")) {
+            throw new ApiException(400, "cardType must be VISA or MASTERCARD");
+        }
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.YEAR, 4);
+        if (!DatabaseManager.issueCard(account.getAccountId(), cardType, new Timestamp(calendar.getTimeInMillis()))) {
+            throw new ApiException(409, "Card could not be created");
+        }
+        return cards(account);
+    }
+
+    private String blockCard(Session session, int cardId) throws ApiException {
+        for (Account account : DatabaseManager.getUserAccounts(session.userId)) {
+            for (Card card : DatabaseManager.getAccountCards(account.getAccountId())) {
+                if (card.getCardId() == cardId) {
+                    if (!DatabaseManager.blockCard(cardId)) {
+                        throw new ApiException(409, "Card could not be blocked");
+                    }
+                    return "{\"id\":" + cardId + ",\"active\":false}";
+                }
+            }
+        }
+        throw new ApiException(404, "Card not found");
+    }
+
+    private String loans(Account account) {
+        StringBuilder sb = new StringBuilder("[");
+        for (DatabaseManager.Loan loan : DatabaseManager.getLoansByAccountId(account.getAccountId())) {
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":").append(loan.getLoanId()).append(",\"accountId\":").append(loan.getAccountId()).append(",\"type\":");
+            Json.quote(sb, loan.getLoanType()).append(",\"principal\":\"");
+            Money.appendTo(sb, loan.getPrincipalAmount());
+            sb.append("\",\"interestRate\":").append(loan.getInterestRate()).append(",\"termMonths\":").append(loan.getTermMonths());
+            sb.append(",\"monthlyPayment\":\"");
+            Money.appendTo(sb, loan.getMonthlyPayment());
+            sb.append("\",\"remaining\":\"");
+            Money.appendTo(sb, loan.getRemainingAmount());
+            sb.append("\",\"status\":");
+            Json.quote(sb, loan.getStatus()).append('}');
+        }
+        return sb.append(']').toString();
+    }
+
+    private String createLoan(Account account, Map<String, String> request) throws ApiException {
+        String loanType = required(request, "loanType");
+        double interestRate = Double.parseDouble(required(request, "interestRate"));
+        int termMonths = Integer.parseInt(required(request, "termMonths"));
+        if (termMonths <= 0 || interestRate <= 0) {
+            throw new ApiException(400, "interestRate and termMonths must be positive");
+        }
+        if (!DatabaseManager.createLoan(account.getAccountId(), loanType, amount(request), interestRate, termMonths)) {
+            throw new ApiException(409, "Loan could not be created");
+        }
+        return loans(account);
+    }
+
+    private String loanPayment(Session session, int loanId, Map<String, String> request) throws ApiException {
+        long amount = amount(request);
+        for (Account account : DatabaseManager.getUserAccounts(session.userId)) {
+            for (DatabaseManager.Loan loan : DatabaseManager.getLoansByAccountId(account.getAccountId())) {
+                if (loan.getLoanId() == loanId) {
+                    return posting(DatabaseManager.makeLoanPayment(loanId, amount), account.getAccountId());
+                }
+            }
+        }
+        throw new ApiException(404, "Loan not found");
+    }
+
+    // Result of a money movement: the account as it is now, or 409 if it was refused
+    private String posting(boolean succeeded, int accountId) throws ApiException {
+        if (!succeeded) {
+            throw new ApiException(409, "Transaction refused (insufficient funds or inactive account)");
+        }
+        Account account = DatabaseManager.getAccountById(accountId);
+        return account != null ? appendAccount(new StringBuilder(), account).toString() : "{}";
+    }
+
+    private static StringBuilder appendAccount(StringBuilder sb, Account account) {
+        sb.append("{\"id\":").append(account.getAccountId()).append(",\"number\":");
+        Json.quote(sb, account.getAccountNumber()).append(",\"type\":");
+        Json.quote(sb, account.getAccountType()).append(",\"balance\":\"");
+        Money.appendTo(sb, account.getBalance());
+        return sb.append("\"}");
+    }
+
+    private Session authenticate(HttpExchange exchange) throws ApiException {
+        String token = token(exchange);
+        Session session = token != null ? sessions.get(token) : null;
+        long now = System.nanoTime();
+        if (session == null || now - session.lastUsed > sessionTimeoutNanos) {
+            throw new ApiException(401, "Not logged in");
+        }
+        session.lastUsed = now;
+        return session;
+    }
+
+    private static String token(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        return header != null && header.startsWith("Bearer ") ? header.substring("Bearer ".length()).trim() : null;
+    }
+
+    // The account, if it exists and belongs to the session's user
+    private static Account ownAccount(Session session, int accountId) throws ApiException {
+        Account account = DatabaseManager.getAccountById(accountId);
+        if (account == null || account.getUserId() != session.userId) {
+            throw new ApiException(404, "Account not found");
+        }
+        return account;
+    }
+
+    private static long amount(Map<String, String> request) throws ApiException {
+        long amount = Money.parse(required(request, "amount"));
+        if (amount <= 0) {
+            throw new ApiException(400, "amount must be positive");
+        }
+        return amount;
+    }
+
+    private static String required(Map<String, String> request, String name) throws ApiException {
+        String value = request.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new ApiException(400, name + " is required");
+        }
+        return value;
+    }
+
+    private static int parseId(String text) throws ApiException {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new ApiException(404, "Not found");
+        }
+    }
+
+    private static void requireMethod(String method, String expected) throws ApiException {
+        if (!method.equals(expected)) {
+            throw new ApiException(405, "Use " + expected);
+        }
+    }
+
+    private static Map<String, String> readBody(HttpExchange exchange) throws IOException, ApiException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new ApiException(413, "Request body too large");
+            }
+            return body.length == 0 ? Collections.emptyMap() : Json.parseObject(new String(body, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Map<String, String> queryParameters(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    parameters.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                            URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return parameters;
+    }
+
+    private static String error(String message) {
+        return Json.quote(new StringBuilder("{\"error\":"), message).append('}').toString();
+    }
+}
@@ -0,0 +1,166 @@
+import java.awt.AWTEvent;
+import java.awt.event.ActionEvent;
+import java.awt.event.InvocationEvent;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+// Java Flight Recorder events for banking operations, so a recording shows which database call
+// or which piece of UI work was behind a slow frame. All events are enabled by default in any
+// recording (e.g. -XX:StartFlightRecording or jcmd <pid> JFR.start) and can be switched off
+// per name ("bank.Posting", ...) in the recording settings.
+//
+// Callers create the event, begin() it, do the work and finish with complete(...). Fields are
+// only filled in when the event will actually be written, and when recording is off the
+// event object does not escape, so the JIT removes it.
+public final class BankEvents {
+    private BankEvents() {
+    }
+
+    @Name("bank.Posting")
+    @Label("Posting")
+    @Category({"Bank", "Database"})
+    @Description("Deposit, withdrawal, transfer, loan payment or loan approval through DatabaseManager")
+    @StackTrace(false)
+    public static class Posting extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Account Id")
+        @Description("0 for loan postings, which are identified by the loan id")
+        int accountId;
+
+        @Label("Recipient Account Id")
+        int recipientAccountId;
+
+        @Label("Loan Id")
+        int loanId;
+
+        @Label("Amount (cents)")
+        long amount;
+
+        @Label("Succeeded")
+        boolean succeeded;
+
+        void complete(String operation, int accountId, int recipientAccountId, int loanId, long amount, boolean succeeded) {
+            end();
+            if (shouldCommit()) {
+                this.operation = operation;
+                this.accountId = accountId;
+                this.recipientAccountId = recipientAccountId;
+                this.loanId = loanId;
+                this.amount = amount;
+                this.succeeded = succeeded;
+                commit();
+            }
+        }
+    }
+
+    @Name("bank.CardCreation")
+    @Label("Card Creation")
+    @Category({"Bank", "Database"})
+    @StackTrace(false)
+    public static class CardCreation extends Event {
+        @Label("Account Id")
+        int accountId;
+
+        @Label("Card Type")
+        String cardType;
+
+        @Label("Succeeded")
+        boolean succeeded;
+
+        void complete(int accountId, String cardType, boolean succeeded) {
+            end();
+            if (shouldCommit()) {
+                this.accountId = accountId;
+                this.cardType = cardType;
+                this.succeeded = succeeded;
+                commit();
+            }
+        }
+    }
+
+    @Name("bank.HistoryFetch")
+    @Label("Transaction History Fetch")
+    @Category({"Bank", "Database"})
+    @StackTrace(false)
+    public static class HistoryFetch extends Event {
+        @Label("Account Id")
+        int accountId;
+
+        @Label("Page Size")
+        @Description("0 when the whole history was read")
+        int pageSize;
+
+        @Label("Rows")
+        int rows;
+
+        void complete(int accountId, int pageSize, int rows) {
+            end();
+            if (shouldCommit()) {
+                this.accountId = accountId;
+                this.pageSize = pageSize;
+                this.rows = rows;
+                commit();
+            }
+        }
+    }
+
+    @Name("bank.UiRequest")
+    @Label("UI Request")
+    @Category({"Bank", "Swing"})
+    @Description("Background call started by a screen, up to its result having been handled on the EDT")
+    @StackTrace(false)
+    public static class UiRequest extends Event {
+        @Label("Screen")
+        String screen;
+
+        @Label("Outcome")
+        String outcome;
+
+        void complete(String screen, String outcome) {
+            end();
+            if (shouldCommit()) {
+                this.screen = screen;
+                this.outcome = outcome;
+                commit();
+            }
+        }
+    }
+
+    @Name("bank.EdtBlocked")
+    @Label("EDT Blocked")
+    @Category({"Bank", "Swing"})
+    @Description("An event on the event dispatch thread took long enough to delay painting and input")
+    @Threshold("20 ms")
+    @StackTrace(false)
+    public static class EdtBlocked extends Event {
+        @Label("Event Type")
+        String eventType;
+
+        @Label("Source")
+        String source;
+
+        @Label("Detail")
+        String detail;
+
+        void complete(AWTEvent event) {
+            end();
+            if (shouldCommit()) {
+                eventType = event.getClass().getSimpleName();
+                source = event.getSource() != null ? event.getSource().getClass().getName() : null;
+                if (event instanceof ActionEvent) {
+                    detail = ((ActionEvent) event).getActionCommand();
+                } else if (event instanceof InvocationEvent) {
+                    detail = event.paramString();
+                }
+                commit();
+            }
+        }
+    }
+}
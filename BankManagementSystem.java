@@ -1,17 +1,70 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import javax.swing.*;
 
 public class BankManagementSystem {
     public static void main(String[] args) {
+        // --server runs the HTTP API without any windows
+        boolean serverMode = Arrays.asList(args).contains("--server");
+        
         // Set the look and feel to the system default
-        try {
-            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
-        } catch (Exception e) {
-            e.printStackTrace();
+        if (!serverMode) {
+            try {
+                UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        
+        // Optional log of slow statements, set up before the first connection is opened
+        String slowQueryFile = System.getProperty("bank.db.slowQuery.log");
+        if (slowQueryFile != null) {
+            DatabaseManager.enableSlowQueryLog(Paths.get(slowQueryFile), Long.getLong("bank.db.slowQuery.thresholdMs", 200L));
         }
         
         // Initialize database connection
         DatabaseManager.initializeDatabase();
         
+        // Optional in-memory ledger with a local write-ahead log
+        String ledgerDirectory = System.getProperty("bank.ledger.dir");
+        if (ledgerDirectory != null) {
+            try {
+                DatabaseManager.enableLedger(ledgerDirectory);
+            } catch (Exception e) {
+                System.err.println("Could not start ledger: " + e.getMessage());
+            }
+        }
+        
+        // Optional group commit for deposits and withdrawals
+        long groupCommitWindow = Long.getLong("bank.groupCommit.windowMicros", 0L);
+        if (groupCommitWindow > 0) {
+            DatabaseManager.enableGroupCommit(groupCommitWindow, Integer.getInteger("bank.groupCommit.maxBatchSize", 64));
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(DatabaseManager::shutdown));
+        
+        // Optional export of per-operation database metrics
+        String metricsFile = System.getProperty("bank.metrics.file");
+        if (metricsFile != null) {
+            MetricsRegistry.startFileDump(Paths.get(metricsFile), Long.getLong("bank.metrics.intervalSeconds", 60L));
+        }
+        if (Boolean.getBoolean("bank.metrics.jmx")) {
+            MetricsRegistry.registerJmx();
+        }
+        
+        if (serverMode) {
+            try {
+                new BankApiServer(Integer.getInteger("bank.http.port", 8080),
+                        Long.getLong("bank.http.sessionTimeoutMinutes", 30L)).start();
+            } catch (IOException e) {
+                System.err.println("Could not start HTTP API: " + e.getMessage());
+            }
+            return;
+        }
+        
+        // Report slow event dispatch thread work to Java Flight Recorder
+        TimedEventQueue.install();
+        
         // Start with the login page
         SwingUtilities.invokeLater(() -> {
             LoginPage loginPage = new LoginPage();
@@ -0,0 +1,104 @@
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Asynchronous front for DatabaseManager, used by the Swing pages.
+// Every call runs on a small pool of background threads and returns a CompletableFuture, so
+// nothing here ever blocks the event dispatch thread. Use UiTask to get the result back onto
+// the EDT. Cancelling a future before its call has started skips the call entirely.
+public final class BankService {
+    private static final ExecutorService EXECUTOR = createExecutor(Integer.getInteger("bank.service.threads", 4));
+
+    private BankService() {
+    }
+
+    private static ExecutorService createExecutor(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "bank-service-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    // Users
+    public static CompletableFuture<DatabaseManager.AuthResult> authenticate(String username, String password) {
+        return CompletableFuture.supplyAsync(() -> DatabaseManager.authenticate(username, password), EXECUTOR);
+    }
+
+    public static CompletableFuture<User> getUserDetails(String username) {
+        return CompletableFuture.supplyAsync(() -> DatabaseManager.getUserDetails(username), EXECUTOR);
+    }
+
+    public static CompletableFuture<Boolean> usernameExists(String username) {
+        return CompletableFuture.supplyAsync(() -> DatabaseManager.usernameExists(username), EXECUTOR);
+    }
+
+    public static CompletableFuture<Boolean> registerUser(String username, String password, String fullName, String email) {
+        return CompletableFuture.supplyAsync(() -> DatabaseManager.registerUser(username, password, fullName, email), EXECUTOR);
+    }
+
+    // Accounts
+    public static CompletableFuture<List<Account>> getUserAccounts(int userId) {
+        return CompletableFuture.supplyAsync(() -> DatabaseManager.getUserAccounts(userId), EXECUTOR);
+    }
+
+    public static CompletableFuture<Account> getAccountById(int accountId) {
+        return CompletableFuture.supplyAsync(() -> DatabaseManager.getAccountById(accountId), EXECUTOR);
+    }
+
+    public static CompletableFuture<Account> getAccountByNumber(String accountNumber) {
+        return CompletableFuture.supplyAsync(() -> DatabaseManager.getAccountByNumber(accountNumber), EXECUTOR);
+    }
+
+    public static CompletableFuture<Boolean> deposit(int accountId, long amount) {
+        return CompletableFuture.supplyAsync(() -> DatabaseManager.deposit(accountId, amount), EXECUTOR);
+    }
+
+    public static CompletableFuture<Boolean> withdraw(int accountId, long amount) {
+        return CompletableFuture.supplyAsync(() -> DatabaseManager.withdraw(accountId, amount), EXECUTOR);
+    }
+
+    public static CompletableFuture<Boolean> transfer(int fromAccountId, int toAccountId, long amount) {
+        return CompletableFuture.supplyAsync(() -> DatabaseManager.transfer(fromAccountId, toAccountId, amount), EXECUTOR);
+    }
+
+    public static CompletableFuture<TransactionPage> getTransactionHistoryPage(int accountId, String cursor, int pageSize) {
+        return CompletableFuture.supplyAsync(() -> DatabaseManager.getTransactionHistoryPage(accountId, cursor, pageSize), EXECUTOR);
+    }
+
+    // Cards
+    public static CompletableFuture<List<Card>> getAccountCards(int accountId) {
+        return CompletableFuture.supplyAsync(() -> DatabaseManager.getAccountCards(accountId), EXECUTOR);
+    }
+
+    public static CompletableFuture<Boolean> issueCard(int accountId, String cardType, Timestamp expiryDate) {
+        return CompletableFuture.supplyAsync(() -> DatabaseManager.issueCard(accountId, cardType, expiryDate), EXECUTOR);
+    }
+
+    public static CompletableFuture<Boolean> blockCard(int cardId) {
+        return CompletableFuture.supplyAsync(() -> DatabaseManager.blockCard(cardId), EXECUTOR);
+    }
+
+    // Loans
+    public static CompletableFuture<List<DatabaseManager.Loan>> getLoansByAccountId(int accountId) {
+        return CompletableFuture.supplyAsync(() -> DatabaseManager.getLoansByAccountId(accountId), EXECUTOR);
+    }
+
+    public static CompletableFuture<Boolean> createLoan(int accountId, String loanType, long principalAmount,
+                                                        double interestRate, int termMonths) {
+        return CompletableFuture.supplyAsync(() -> DatabaseManager.createLoan(accountId, loanType, principalAmount, interestRate, termMonths), EXECUTOR);
+    }
+
+    public static CompletableFuture<Boolean> makeLoanPayment(int loanId, long paymentAmount) {
+        return CompletableFuture.supplyAsync(() -> DatabaseManager.makeLoanPayment(loanId, paymentAmount), EXECUTOR);
+    }
+}
@@ -0,0 +1,168 @@
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+// Synthetic data set for the benchmark tools: the schema from bank_management_system.sql
+// (without its sample rows) plus a configurable number of users, each with the same number
+// of accounts, a transaction history per account and one approved loan per account.
+// Rows are inserted with JDBC batches in a single transaction per table.
+//
+// Ids are assigned in insertion order starting at 1, so user i (1-based) is "user<i>" with
+// password "password<i>", and owns accounts (i - 1) * accountsPerUser + 1 and onwards.
+public class BenchmarkDataset {
+    private static final int BATCH_SIZE = 1000;
+    // Large enough that benchmark withdrawals and loan payments never run an account dry
+    private static final BigDecimal OPENING_BALANCE = new BigDecimal("100000000.00");
+    private static final BigDecimal LOAN_PRINCIPAL = new BigDecimal("100000000.00");
+    // Password hashing cost for benchmark logins unless -Dbank.password.iterations says otherwise
+    private static final int BENCHMARK_PASSWORD_ITERATIONS = 1000;
+
+    private final int users;
+    private final int accountsPerUser;
+    private final int transactionsPerAccount;
+
+    public BenchmarkDataset(int users, int accountsPerUser, int transactionsPerAccount) {
+        this.users = users;
+        this.accountsPerUser = accountsPerUser;
+        this.transactionsPerAccount = transactionsPerAccount;
+    }
+
+    // Creates the schema and rows in an empty database
+    public void create(Connection conn, Path schemaFile) throws IOException, SQLException {
+        SchemaLoader.load(conn, schemaFile, false);
+        conn.setAutoCommit(false);
+        try {
+            insertUsers(conn);
+            insertAccounts(conn);
+            insertTransactions(conn);
+            insertLoans(conn);
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private void insertUsers(Connection conn) throws SQLException {
+        String query = "INSERT INTO users (username, password, full_name, email) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            for (int i = 1; i <= users; i++) {
+                stmt.setString(1, username(i));
+                stmt.setString(2, password(i));
+                stmt.setString(3, "Benchmark User " + i);
+                stmt.setString(4, username(i) + "@example.com");
+                addToBatch(stmt, i);
+            }
+            stmt.executeBatch();
+        }
+        conn.commit();
+    }
+
+    private void insertAccounts(Connection conn) throws SQLException {
+        String query = "INSERT INTO accounts (user_id, account_number, account_type, balance) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            for (int id = 1; id <= getAccountCount(); id++) {
+                stmt.setInt(1, (id - 1) / accountsPerUser + 1);
+                stmt.setString(2, accountNumber(id));
+                stmt.setString(3, id % 2 == 0 ? "CHECKING" : "SAVINGS");
+                stmt.setBigDecimal(4, OPENING_BALANCE);
+                addToBatch(stmt, id);
+            }
+            stmt.executeBatch();
+        }
+        conn.commit();
+    }
+
+    private void insertTransactions(Connection conn) throws SQLException {
+        String query = "INSERT INTO transactions (account_id, transaction_type, amount, transaction_date, description) VALUES (?, ?, ?, ?, ?)";
+        // One posting per hour, going back from now
+        long now = System.currentTimeMillis();
+        int rows = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            for (int id = 1; id <= getAccountCount(); id++) {
+                for (int t = 0; t < transactionsPerAccount; t++) {
+                    boolean deposit = t % 3 != 0;
+                    stmt.setInt(1, id);
+                    stmt.setString(2, deposit ? "DEPOSIT" : "WITHDRAW");
+                    stmt.setBigDecimal(3, BigDecimal.valueOf(100 + t % 900, 2));
+                    stmt.setTimestamp(4, new Timestamp(now - (transactionsPerAccount - t) * 3_600_000L));
+                    stmt.setString(5, deposit ? "Deposit" : "Withdrawal");
+                    addToBatch(stmt, ++rows);
+                }
+            }
+            stmt.executeBatch();
+        }
+        conn.commit();
+    }
+
+    private void insertLoans(Connection conn) throws SQLException {
+        String query = "INSERT INTO loans (account_id, loan_type, principal_amount, interest_rate, term_months, " +
+                      "monthly_payment, end_date, remaining_amount, status) VALUES (?, 'PERSONAL', ?, 5.00, 360, 10.00, ?, ?, 'APPROVED')";
+        Timestamp endDate = new Timestamp(System.currentTimeMillis() + 30L * 365 * 86_400_000L);
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            for (int id = 1; id <= getAccountCount(); id++) {
+                stmt.setInt(1, id);
+                stmt.setBigDecimal(2, LOAN_PRINCIPAL);
+                stmt.setTimestamp(3, endDate);
+                stmt.setBigDecimal(4, LOAN_PRINCIPAL);
+                addToBatch(stmt, id);
+            }
+            stmt.executeBatch();
+        }
+        conn.commit();
+    }
+
+    private static void addToBatch(PreparedStatement stmt, int rows) throws SQLException {
+        stmt.addBatch();
+        if (rows % BATCH_SIZE == 0) {
+            stmt.executeBatch();
+        }
+    }
+
+    public int getUserCount() {
+        return users;
+    }
+
+    public int getAccountsPerUser() {
+        return accountsPerUser;
+    }
+
+    public int getAccountCount() {
+        return users * accountsPerUser;
+    }
+
+    // Loan ids match account ids: one loan per account, inserted in account order
+    public int getLoanCount() {
+        return getAccountCount();
+    }
+
+    public static String username(int userId) {
+        return "user" + userId;
+    }
+
+    public static String password(int userId) {
+        return "password" + userId;
+    }
+
+    // Benchmark logins measure the database and the server, not PBKDF2 (PasswordBenchmark does):
+    // with the default 600,000 iterations every simulated login would cost a full hash. Lowers
+    // the cost for this process unless -Dbank.password.iterations is given; call it before the
+    // first login.
+    public static void useBenchmarkPasswordCost() {
+        if (System.getProperty("bank.password.iterations") == null) {
+            System.setProperty("bank.password.iterations", String.valueOf(BENCHMARK_PASSWORD_ITERATIONS));
+        }
+    }
+
+    public static String accountNumber(int accountId) {
+        return String.valueOf(10_000_000 + accountId);
+    }
+
+    @Override
+    public String toString() {
+        return users + " users, " + getAccountCount() + " accounts, " +
+                (long) getAccountCount() * transactionsPerAccount + " transactions";
+    }
+}
@@ -0,0 +1,756 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+
+// Posts large deposit / withdrawal / transfer files (payroll runs, batch transfers) straight
+// into the accounts and transactions tables. One line per posting:
+//
+//   TYPE,account_number,recipient_number,amount,description
+//   DEPOSIT,10000001,,2500.00,March salary
+//   TRANSFER,10000001,10000002,125.50,
+//
+// TYPE is DEPOSIT, WITHDRAW or TRANSFER; recipient_number is only used by TRANSFER and the
+// description is optional. Fields are not quoted. A first line starting with "TYPE" is skipped.
+//
+// The file is memory-mapped in windows and parsed in place: account numbers are resolved
+// through an index loaded once from the accounts table, and amounts are read straight into
+// cents, so an accepted line allocates nothing but its description. Lines are posted in
+// batches, each in one database transaction:
+// - the accounts the batch touches are locked in ascending account_id order (FOR UPDATE),
+// - the lines are checked in file order against the locked balances,
+// - each account's net change is applied with one batched UPDATE and the transaction rows
+//   with one batched INSERT,
+// - the import_checkpoint row records the byte offset after the batch, and the batch commits.
+// An interrupted import resumes after the last committed batch when it is started again on
+// the same file. Lines that cannot be posted are appended to <file>.rejects as
+// "line_number,reason,original line"; they are written just before their batch commits, so a
+// crash at that point can repeat the rejects of one batch on resume.
+//
+// The importer writes accounts.balance directly, so it refuses to start while
+// DatabaseManager.isLedgerActive() reports the in-memory ledger (-Dbank.ledger.dir) in use.
+//
+// Usage: java BulkImporter <file.csv>
+// Optional system properties: -Dimport.id (defaults to the file name and size),
+//   -Dimport.batchSize=500, plus the -Dbank.db.* connection settings
+public class BulkImporter {
+    static final int DEPOSIT = 0;
+    static final int WITHDRAW = 1;
+    static final int TRANSFER = 2;
+
+    private static final String[] TRANSACTION_TYPES = {"DEPOSIT", "WITHDRAW", "TRANSFER_OUT"};
+    private static final String[] DEFAULT_DESCRIPTIONS = {"Bulk deposit", "Bulk withdrawal", "Bulk transfer"};
+    private static final int MAX_DESCRIPTION_LENGTH = 255;
+    // Largest amount a DECIMAL(15, 2) column holds, in cents
+    private static final long MAX_AMOUNT = 999_999_999_999_999L;
+    private static final long MAP_WINDOW_BYTES = Long.getLong("import.mapWindowBytes", 256L * 1024 * 1024);
+    private static final byte[] REJECT_SEPARATOR = {','};
+    private static final byte[] NEWLINE = {'\n'};
+
+    private static final OperationMetrics BATCH_METRICS = MetricsRegistry.operation("bulkImportBatch");
+
+    // Running totals for one import, including what earlier runs committed
+    public static class Summary {
+        private long linesRead;
+        private long applied;
+        private long rejected;
+        private long totalApplied;
+        private long totalRejected;
+        private long elapsedNanos;
+
+        public long getLinesRead() { return linesRead; }
+        public long getApplied() { return applied; }
+        public long getRejected() { return rejected; }
+        public long getTotalApplied() { return totalApplied; }
+        public long getTotalRejected() { return totalRejected; }
+        public long getElapsedNanos() { return elapsedNanos; }
+
+        @Override
+        public String toString() {
+            double seconds = elapsedNanos / 1e9;
+            return String.format("%,d lines in %.1f s (%,.0f lines/sec): %,d applied, %,d rejected" +
+                            " (import total %,d applied, %,d rejected)",
+                    linesRead, seconds, seconds > 0 ? linesRead / seconds : 0.0, applied, rejected,
+                    totalApplied, totalRejected);
+        }
+    }
+
+    private final Path file;
+    private final Path rejectsFile;
+    private final String importId;
+    private final int batchSize;
+
+    // The batch being collected; offsets point into the current mapping window
+    private final int[] types;
+    private final int[] accountIds;
+    private final int[] recipientIds;
+    private final long[] amounts;
+    private final long[] lineNumbers;
+    private final int[] lineStarts;
+    private final int[] lineEnds;
+    private final int[] descriptionStarts;
+    private final int[] descriptionEnds;
+    private final String[] rejectReasons;
+    private int count;
+
+    private final IntLongMap balances;
+    private final IntLongMap deltas;
+    private final String[] lockQueries = new String[32];
+    private final ByteArrayOutputStream pendingRejects = new ByteArrayOutputStream();
+
+    private AccountNumberIndex index;
+    private final Summary summary = new Summary();
+
+    public BulkImporter(Path file, String importId, int batchSize) throws IOException {
+        this.file = file;
+        this.rejectsFile = file.resolveSibling(file.getFileName() + ".rejects");
+        this.importId = importId != null ? importId : file.getFileName() + ":" + Files.size(file);
+        this.batchSize = Math.max(1, batchSize);
+
+        types = new int[this.batchSize];
+        accountIds = new int[this.batchSize];
+        recipientIds = new int[this.batchSize];
+        amounts = new long[this.batchSize];
+        lineNumbers = new long[this.batchSize];
+        lineStarts = new int[this.batchSize];
+        lineEnds = new int[this.batchSize];
+        descriptionStarts = new int[this.batchSize];
+        descriptionEnds = new int[this.batchSize];
+        rejectReasons = new String[this.batchSize];
+        balances = new IntLongMap(this.batchSize * 2);
+        deltas = new IntLongMap(this.batchSize * 2);
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: java BulkImporter <file.csv>");
+            System.exit(2);
+        }
+
+        if (DatabaseManager.isLedgerActive()) {
+            System.err.println("Import refused: the in-memory ledger is enabled or has postings left to sync");
+            DatabaseManager.shutdown();
+            System.exit(1);
+        }
+
+        int status = 0;
+        try {
+            BulkImporter importer = new BulkImporter(Paths.get(args[0]), System.getProperty("import.id"),
+                    Integer.getInteger("import.batchSize", 500));
+            Summary summary = importer.run(DatabaseManager.getConnectionPool());
+            System.out.println(summary);
+            if (summary.getRejected() > 0) {
+                System.out.println("Rejected lines: " + importer.rejectsFile);
+            }
+        } catch (IOException | SQLException e) {
+            System.err.println("Import error: " + e.getMessage());
+            status = 1;
+        } finally {
+            DatabaseManager.shutdown();
+        }
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    // Posts the file from its checkpoint to the end
+    public Summary run(ConnectionPool pool) throws IOException, SQLException {
+        long started = System.nanoTime();
+        long size = Files.size(file);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             OutputStream rejects = Files.newOutputStream(rejectsFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+             Connection conn = pool.getConnection()) {
+
+            index = AccountNumberIndex.load(conn);
+            long position = 0;
+            long lineNumber = 0;
+            String checkpointQuery = "SELECT byte_offset, line_number, applied, rejected FROM import_checkpoint WHERE import_id = ?";
+            try (PreparedStatement stmt = conn.prepareStatement(checkpointQuery)) {
+                stmt.setString(1, importId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        position = rs.getLong("byte_offset");
+                        lineNumber = rs.getLong("line_number");
+                        summary.totalApplied = rs.getLong("applied");
+                        summary.totalRejected = rs.getLong("rejected");
+                        System.out.println("Resuming " + importId + " at line " + (lineNumber + 1));
+                    }
+                }
+            }
+            if (position > size) {
+                throw new IOException("Checkpoint for " + importId + " is past the end of " + file + " - was the file replaced?");
+            }
+
+            conn.setAutoCommit(false);
+            try {
+                while (position < size) {
+                    long length = Math.min(MAP_WINDOW_BYTES, size - position);
+                    boolean lastWindow = position + length == size;
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+                    int lineStart = 0;
+                    while (lineStart < length) {
+                        int lineEnd = indexOf(buffer, (byte) '\n', lineStart, (int) length);
+                        int next;
+                        if (lineEnd >= 0) {
+                            next = lineEnd + 1;
+                        } else if (lastWindow) {
+                            lineEnd = (int) length;
+                            next = lineEnd;
+                        } else {
+                            // Line continues past this window - map again starting with it
+                            break;
+                        }
+                        if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+                            lineEnd--;
+                        }
+
+                        lineNumber++;
+                        if (lineEnd > lineStart && !(lineNumber == 1 && startsWithIgnoreCase(buffer, lineStart, lineEnd, "TYPE"))) {
+                            addLine(buffer, lineStart, lineEnd, lineNumber);
+                        }
+                        lineStart = next;
+
+                        if (count == batchSize) {
+                            postBatch(conn, buffer, rejects, position + lineStart, lineNumber);
+                        }
+                    }
+                    if (lineStart == 0) {
+                        throw new IOException("Line " + (lineNumber + 1) + " is longer than the mapping window (" + length + " bytes)");
+                    }
+                    // The batch points into this window, so post it before mapping the next one
+                    if (count > 0) {
+                        postBatch(conn, buffer, rejects, position + lineStart, lineNumber);
+                    }
+                    position += lineStart;
+                }
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+
+        summary.elapsedNanos = System.nanoTime() - started;
+        return summary;
+    }
+
+    // Parses one line into the batch; lines that are invalid on their own are recorded as rejects
+    private void addLine(ByteBuffer buffer, int start, int end, long lineNumber) {
+        int slot = count++;
+        summary.linesRead++;
+        lineNumbers[slot] = lineNumber;
+        lineStarts[slot] = start;
+        lineEnds[slot] = end;
+        accountIds[slot] = 0;
+        recipientIds[slot] = 0;
+        rejectReasons[slot] = null;
+
+        int typeEnd = indexOf(buffer, (byte) ',', start, end);
+        int accountEnd = typeEnd < 0 ? -1 : indexOf(buffer, (byte) ',', typeEnd + 1, end);
+        int recipientEnd = accountEnd < 0 ? -1 : indexOf(buffer, (byte) ',', accountEnd + 1, end);
+        if (recipientEnd < 0) {
+            rejectReasons[slot] = "malformed line";
+            return;
+        }
+        int amountEnd = indexOf(buffer, (byte) ',', recipientEnd + 1, end);
+        if (amountEnd < 0) {
+            amountEnd = end;
+        }
+        descriptionStarts[slot] = Math.min(amountEnd + 1, end);
+        descriptionEnds[slot] = end;
+
+        int type = parseType(buffer, start, typeEnd);
+        if (type < 0) {
+            rejectReasons[slot] = "unknown type";
+            return;
+        }
+        types[slot] = type;
+
+        long amount = parseAmount(buffer, recipientEnd + 1, amountEnd);
+        if (amount == Long.MIN_VALUE) {
+            rejectReasons[slot] = "malformed amount";
+            return;
+        }
+        if (amount <= 0) {
+            rejectReasons[slot] = "non-positive amount";
+            return;
+        }
+        amounts[slot] = amount;
+
+        accountIds[slot] = index.find(buffer, typeEnd + 1, accountEnd);
+        if (accountIds[slot] == 0) {
+            rejectReasons[slot] = "unknown account";
+            return;
+        }
+        if (type == TRANSFER) {
+            recipientIds[slot] = index.find(buffer, accountEnd + 1, recipientEnd);
+            if (recipientIds[slot] == 0) {
+                rejectReasons[slot] = "unknown recipient account";
+            } else if (recipientIds[slot] == accountIds[slot]) {
+                rejectReasons[slot] = "transfer to same account";
+            }
+        }
+    }
+
+    // Checks the batch against locked balances and commits it together with the checkpoint
+    private void postBatch(Connection conn, ByteBuffer buffer, OutputStream rejects,
+                           long endOffset, long lastLineNumber) throws IOException, SQLException {
+        long started = System.nanoTime();
+        int applied = 0;
+        int rejected = 0;
+        int[] lockedIds;
+
+        try {
+            lockedIds = lockAccounts(conn);
+
+            deltas.clear();
+            pendingRejects.reset();
+            for (int i = 0; i < count; i++) {
+                if (rejectReasons[i] == null) {
+                    rejectReasons[i] = post(i);
+                }
+                if (rejectReasons[i] == null) {
+                    applied++;
+                } else {
+                    rejected++;
+                    addReject(buffer, i);
+                }
+            }
+
+            String updateQuery = "UPDATE accounts SET balance = balance + ? WHERE account_id = ?";
+            try (PreparedStatement stmt = conn.prepareStatement(updateQuery)) {
+                for (int accountId : lockedIds) {
+                    long delta = deltas.get(accountId, 0);
+                    if (delta != 0) {
+                        stmt.setBigDecimal(1, Money.toDecimal(delta));
+                        stmt.setInt(2, accountId);
+                        stmt.addBatch();
+                    }
+                }
+                stmt.executeBatch();
+            }
+
+            String transactionQuery = "INSERT INTO transactions (account_id, transaction_type, amount, " +
+                                      "recipient_account_id, description) VALUES (?, ?, ?, ?, ?)";
+            try (PreparedStatement stmt = conn.prepareStatement(transactionQuery)) {
+                for (int i = 0; i < count; i++) {
+                    if (rejectReasons[i] != null) {
+                        continue;
+                    }
+                    String description = description(buffer, i);
+                    addTransactionRow(stmt, accountIds[i], TRANSACTION_TYPES[types[i]], amounts[i],
+                            types[i] == TRANSFER ? recipientIds[i] : 0, description);
+                    if (types[i] == TRANSFER) {
+                        addTransactionRow(stmt, recipientIds[i], "TRANSFER_IN", amounts[i], accountIds[i], description);
+                    }
+                }
+                stmt.executeBatch();
+            }
+
+            String checkpointQuery = "INSERT INTO import_checkpoint (import_id, byte_offset, line_number, applied, rejected) " +
+                                     "VALUES (?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE byte_offset = VALUES(byte_offset), " +
+                                     "line_number = VALUES(line_number), applied = VALUES(applied), rejected = VALUES(rejected)";
+            try (PreparedStatement stmt = conn.prepareStatement(checkpointQuery)) {
+                stmt.setString(1, importId);
+                stmt.setLong(2, endOffset);
+                stmt.setLong(3, lastLineNumber);
+                stmt.setLong(4, summary.totalApplied + applied);
+                stmt.setLong(5, summary.totalRejected + rejected);
+                stmt.executeUpdate();
+            }
+
+            if (pendingRejects.size() > 0) {
+                pendingRejects.writeTo(rejects);
+                rejects.flush();
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            BATCH_METRICS.error();
+            conn.rollback();
+            throw e;
+        }
+
+        summary.applied += applied;
+        summary.rejected += rejected;
+        summary.totalApplied += applied;
+        summary.totalRejected += rejected;
+        count = 0;
+
+        AccountCache cache = DatabaseManager.getAccountCache();
+        for (int accountId : lockedIds) {
+            if (deltas.containsKey(accountId)) {
+                cache.invalidate(accountId);
+            }
+        }
+        BATCH_METRICS.record(started, applied);
+    }
+
+    // Applies line i to the locked balances, or returns why it can't be posted
+    private String post(int i) {
+        int accountId = accountIds[i];
+        long amount = amounts[i];
+        if (!balances.containsKey(accountId)) {
+            return "unknown account";
+        }
+        long balance = balances.get(accountId, 0);
+        switch (types[i]) {
+            case DEPOSIT:
+                balances.put(accountId, balance + amount);
+                deltas.addTo(accountId, amount);
+                return null;
+            case WITHDRAW:
+                if (balance < amount) {
+                    return "insufficient funds";
+                }
+                balances.put(accountId, balance - amount);
+                deltas.addTo(accountId, -amount);
+                return null;
+            default:
+                int recipientId = recipientIds[i];
+                if (!balances.containsKey(recipientId)) {
+                    return "unknown recipient account";
+                }
+                if (balance < amount) {
+                    return "insufficient funds";
+                }
+                balances.put(accountId, balance - amount);
+                balances.addTo(recipientId, amount);
+                deltas.addTo(accountId, -amount);
+                deltas.addTo(recipientId, amount);
+                return null;
+        }
+    }
+
+    // Locks every account the batch's valid lines touch and loads their balances.
+    // Returns the locked ids in ascending order.
+    private int[] lockAccounts(Connection conn) throws SQLException {
+        deltas.clear();
+        for (int i = 0; i < count; i++) {
+            if (rejectReasons[i] == null) {
+                deltas.put(accountIds[i], 0);
+                if (types[i] == TRANSFER) {
+                    deltas.put(recipientIds[i], 0);
+                }
+            }
+        }
+        int[] ids = new int[deltas.size()];
+        int[] filled = {0};
+        deltas.forEach((accountId, ignored) -> ids[filled[0]++] = accountId);
+        Arrays.sort(ids);
+
+        balances.clear();
+        if (ids.length == 0) {
+            return ids;
+        }
+
+        // The IN list is padded to a power of two (repeating the last id) so only a handful of
+        // distinct statements are ever prepared
+        int slots = Integer.highestOneBit(ids.length * 2 - 1);
+        try (PreparedStatement stmt = conn.prepareStatement(lockQuery(slots))) {
+            for (int i = 0; i < slots; i++) {
+                stmt.setInt(i + 1, ids[Math.min(i, ids.length - 1)]);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    balances.put(rs.getInt("account_id"), Money.fromDecimal(rs.getBigDecimal("balance")));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private String lockQuery(int slots) {
+        int bucket = Integer.numberOfTrailingZeros(slots);
+        if (lockQueries[bucket] == null) {
+            StringBuilder sb = new StringBuilder("SELECT account_id, balance FROM accounts WHERE account_id IN (");
+            for (int i = 0; i < slots; i++) {
+                sb.append(i == 0 ? "?" : ", ?");
+            }
+            lockQueries[bucket] = sb.append(") ORDER BY account_id FOR UPDATE").toString();
+        }
+        return lockQueries[bucket];
+    }
+
+    private static void addTransactionRow(PreparedStatement stmt, int accountId, String type, long amount,
+                                          int recipientAccountId, String description) throws SQLException {
+        stmt.setInt(1, accountId);
+        stmt.setString(2, type);
+        stmt.setBigDecimal(3, Money.toDecimal(amount));
+        if (recipientAccountId != 0) {
+            stmt.setInt(4, recipientAccountId);
+        } else {
+            stmt.setNull(4, Types.INTEGER);
+        }
+        stmt.setString(5, description);
+        stmt.addBatch();
+    }
+
+    private String description(ByteBuffer buffer, int i) {
+        int start = descriptionStarts[i];
+        int end = descriptionEnds[i];
+        while (start < end && buffer.get(start) == ' ') {
+            start++;
+        }
+        while (end > start && buffer.get(end - 1) == ' ') {
+            end--;
+        }
+        if (start == end) {
+            return DEFAULT_DESCRIPTIONS[types[i]];
+        }
+        String description = new String(copy(buffer, start, end), StandardCharsets.UTF_8);
+        return description.length() > MAX_DESCRIPTION_LENGTH ? description.substring(0, MAX_DESCRIPTION_LENGTH) : description;
+    }
+
+    private void addReject(ByteBuffer buffer, int i) {
+        byte[] prefix = (lineNumbers[i] + "," + rejectReasons[i]).getBytes(StandardCharsets.UTF_8);
+        byte[] line = copy(buffer, lineStarts[i], lineEnds[i]);
+        pendingRejects.write(prefix, 0, prefix.length);
+        pendingRejects.write(REJECT_SEPARATOR, 0, 1);
+        pendingRejects.write(line, 0, line.length);
+        pendingRejects.write(NEWLINE, 0, 1);
+    }
+
+    private static byte[] copy(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = start; i < end; i++) {
+            bytes[i - start] = buffer.get(i);
+        }
+        return bytes;
+    }
+
+    private static int indexOf(ByteBuffer buffer, byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWithIgnoreCase(ByteBuffer buffer, int start, int end, String prefix) {
+        if (end - start < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.toUpperCase((char) buffer.get(start + i)) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // DEPOSIT, WITHDRAW or TRANSFER (any case, surrounding blanks ignored), or -1
+    static int parseType(ByteBuffer buffer, int start, int end) {
+        while (start < end && buffer.get(start) == ' ') {
+            start++;
+        }
+        while (end > start && buffer.get(end - 1) == ' ') {
+            end--;
+        }
+        String[] names = {"DEPOSIT", "WITHDRAW", "TRANSFER"};
+        for (int type = 0; type < names.length; type++) {
+            String name = names[type];
+            if (end - start != name.length()) {
+                continue;
+            }
+            int i = 0;
+            while (i < name.length() && Character.toUpperCase((char) buffer.get(start + i)) == name.charAt(i)) {
+                i++;
+            }
+            if (i == name.length()) {
+                return type;
+            }
+        }
+        return -1;
+    }
+
+    // "125", "125.5" or "-125.50" as cents; Long.MIN_VALUE if it isn't a plain amount with at
+    // most two decimals that fits a DECIMAL(15, 2) column
+    static long parseAmount(ByteBuffer buffer, int start, int end) {
+        while (start < end && buffer.get(start) == ' ') {
+            start++;
+        }
+        while (end > start && buffer.get(end - 1) == ' ') {
+            end--;
+        }
+        boolean negative = start < end && buffer.get(start) == '-';
+        if (negative) {
+            start++;
+        }
+        long cents = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (b >= '0' && b <= '9' && decimals < 2) {
+                cents = cents * 10 + (b - '0');
+                digits++;
+                if (decimals >= 0) {
+                    decimals++;
+                }
+                if (cents > MAX_AMOUNT) {
+                    return Long.MIN_VALUE;
+                }
+            } else {
+                return Long.MIN_VALUE;
+            }
+        }
+        if (digits == 0) {
+            return Long.MIN_VALUE;
+        }
+        for (int i = Math.max(decimals, 0); i < 2; i++) {
+            cents *= 10;
+        }
+        if (cents > MAX_AMOUNT) {
+            return Long.MIN_VALUE;
+        }
+        return negative ? -cents : cents;
+    }
+
+    // account_number -> account_id for every account, keyed on the raw ASCII bytes so lookups
+    // straight from the mapped file need no String. Open addressing over parallel arrays; the
+    // key bytes of all accounts are packed into one array.
+    static final class AccountNumberIndex {
+        private int[] ids;
+        private int[] keyOffsets;
+        private int[] keyLengths;
+        private int[] hashes;
+        private byte[] keys = new byte[1024];
+        private int keyBytes;
+        private int size;
+        private int mask;
+
+        AccountNumberIndex(int expectedSize) {
+            int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2) - 1) << 1;
+            allocate(capacity);
+        }
+
+        static AccountNumberIndex load(Connection conn) throws SQLException {
+            AccountNumberIndex index = new AccountNumberIndex(1024);
+            String query = "SELECT account_id, account_number FROM accounts";
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                stmt.setFetchSize(1000);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        index.put(rs.getString("account_number").getBytes(StandardCharsets.US_ASCII), rs.getInt("account_id"));
+                    }
+                }
+            }
+            return index;
+        }
+
+        void put(byte[] key, int accountId) {
+            int hash = hash(key, 0, key.length);
+            int slot = hash & mask;
+            while (ids[slot] != 0) {
+                if (hashes[slot] == hash && equalsKey(slot, key, 0, key.length)) {
+                    ids[slot] = accountId;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (keyBytes + key.length > keys.length) {
+                keys = Arrays.copyOf(keys, Math.max(keys.length * 2, keyBytes + key.length));
+            }
+            System.arraycopy(key, 0, keys, keyBytes, key.length);
+            ids[slot] = accountId;
+            hashes[slot] = hash;
+            keyOffsets[slot] = keyBytes;
+            keyLengths[slot] = key.length;
+            keyBytes += key.length;
+            if (++size * 2 > ids.length) {
+                grow();
+            }
+        }
+
+        // account_id for the account number in buffer[start, end) (blanks trimmed), or 0
+        int find(ByteBuffer buffer, int start, int end) {
+            while (start < end && buffer.get(start) == ' ') {
+                start++;
+            }
+            while (end > start && buffer.get(end - 1) == ' ') {
+                end--;
+            }
+            int hash = 0x811c9dc5;
+            for (int i = start; i < end; i++) {
+                hash = (hash ^ (buffer.get(i) & 0xff)) * 0x01000193;
+            }
+            int slot = hash & mask;
+            while (ids[slot] != 0) {
+                if (hashes[slot] == hash && keyLengths[slot] == end - start) {
+                    int offset = keyOffsets[slot];
+                    int i = 0;
+                    while (i < end - start && keys[offset + i] == buffer.get(start + i)) {
+                        i++;
+                    }
+                    if (i == end - start) {
+                        return ids[slot];
+                    }
+                }
+                slot = (slot + 1) & mask;
+            }
+            return 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private boolean equalsKey(int slot, byte[] key, int start, int end) {
+            return Arrays.equals(keys, keyOffsets[slot], keyOffsets[slot] + keyLengths[slot], key, start, end);
+        }
+
+        // FNV-1a
+        private static int hash(byte[] key, int start, int end) {
+            int hash = 0x811c9dc5;
+            for (int i = start; i < end; i++) {
+                hash = (hash ^ (key[i] & 0xff)) * 0x01000193;
+            }
+            return hash;
+        }
+
+        private void allocate(int capacity) {
+            ids = new int[capacity];
+            keyOffsets = new int[capacity];
+            keyLengths = new int[capacity];
+            hashes = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        private void grow() {
+            int[] oldIds = ids;
+            int[] oldOffsets = keyOffsets;
+            int[] oldLengths = keyLengths;
+            int[] oldHashes = hashes;
+            allocate(oldIds.length * 2);
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldIds[i] == 0) {
+                    continue;
+                }
+                int slot = oldHashes[i] & mask;
+                while (ids[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                ids[slot] = oldIds[i];
+                hashes[slot] = oldHashes[i];
+                keyOffsets[slot] = oldOffsets[i];
+                keyLengths[slot] = oldLengths[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+// Measures CardAuthorizationIndex lookups on a synthetic set of cards, without a database:
+// authorizations on one thread and on all cores, with a writer changing balances and blocking
+// cards the whole time the way the background refresh does.
+//
+// Usage: java CardAuthorizationBenchmark [cards] [authorizations] [rounds]
+public class CardAuthorizationBenchmark {
+    public static void main(String[] args) throws InterruptedException {
+        int cards = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int authorizations = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        // Two cards per account; one in ten swipes uses a number that was never issued
+        SplittableRandom random = new SplittableRandom(42);
+        CardAuthorizationIndex index = new CardAuthorizationIndex(cards);
+        long expiresAt = System.currentTimeMillis() + 365L * 24 * 60 * 60 * 1000;
+        long[] numbers = new long[cards];
+        for (int i = 0; i < cards; i++) {
+            long payload = 427533_000_000_000L + random.nextLong(1_000_000_000L);
+            numbers[i] = payload * 10 + CardNumberAllocator.checkDigit(payload);
+            index.putCard(i + 1, i / 2 + 1, numbers[i], i % 50 != 0, expiresAt);
+        }
+        for (int account = 1; account <= (cards + 1) / 2; account++) {
+            index.putBalance(account, random.nextLong(500_000));
+        }
+        long[] swipes = new long[authorizations];
+        long[] amounts = new long[authorizations];
+        for (int i = 0; i < authorizations; i++) {
+            swipes[i] = random.nextInt(10) == 0 ? 5_000_000_000_000_000L + i : numbers[random.nextInt(cards)];
+            amounts[i] = 100 + random.nextLong(20_000);
+        }
+        System.out.println(String.format("%,d cards indexed", index.getCardCount()));
+
+        for (int round = 1; round <= rounds; round++) {
+            System.out.println("Round " + round);
+
+            long start = System.nanoTime();
+            int[] decisions = new int[CardAuthorizationIndex.Decision.values().length];
+            for (int i = 0; i < authorizations; i++) {
+                decisions[index.authorize(swipes[i], amounts[i]).ordinal()]++;
+            }
+            report("1 thread", authorizations, start);
+
+            AtomicBoolean running = new AtomicBoolean(true);
+            Thread writer = new Thread(() -> {
+                SplittableRandom writes = new SplittableRandom(7);
+                // About 100,000 balance changes and 100 blocked cards a second
+                while (running.get()) {
+                    for (int i = 0; i < 100; i++) {
+                        index.putBalance(1 + writes.nextInt((cards + 1) / 2), writes.nextLong(500_000));
+                    }
+                    if (writes.nextInt(10) == 0) {
+                        index.deactivate(1 + writes.nextInt(cards));
+                    }
+                    LockSupport.parkNanos(1_000_000);
+                }
+            }, "refresh-simulator");
+            writer.start();
+            start = System.nanoTime();
+            int threads = Runtime.getRuntime().availableProcessors();
+            long approved = IntStream.range(0, threads).parallel().mapToLong(t -> {
+                long sum = 0;
+                for (int i = t; i < authorizations; i += threads) {
+                    if (index.authorize(swipes[i], amounts[i]) == CardAuthorizationIndex.Decision.APPROVED) {
+                        sum++;
+                    }
+                }
+                return sum;
+            }).sum();
+            report(threads + (threads == 1 ? " thread" : " threads") + " + writer", authorizations, start);
+            running.set(false);
+            writer.join();
+
+            StringBuilder sb = new StringBuilder("  ");
+            for (CardAuthorizationIndex.Decision decision : CardAuthorizationIndex.Decision.values()) {
+                sb.append(String.format("%s %,d  ", decision, decisions[decision.ordinal()]));
+            }
+            System.out.println(sb.toString().trim() + String.format("  (approved with writer: %,d)", approved));
+        }
+    }
+
+    private static void report(String name, int authorizations, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.println(String.format("  %-22s %8.3f s  %,14.0f auth/sec  %6.0f ns/auth", name, seconds,
+                authorizations / seconds, seconds * 1e9 / authorizations));
+    }
+}
@@ -0,0 +1,487 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+// In-memory index for point-of-sale card authorization: card number -> (card_id, account_id,
+// active, expiry) plus the balance of every account that has a card, so a swipe is answered
+// without a database round trip.
+//
+// Everything lives in one Table of two open-addressing long arrays: card rows (number, ids,
+// expiry, active) and account balances, each row packed next to its key so a swipe costs one
+// or two cache misses. Card numbers are numeric, so they are stored as longs. Lookups take an optimistic StampedLock read and only
+// fall back to the read lock if a refresh wrote to the table meanwhile; refreshes change rows in
+// place under the write lock and swap in a new Table when one has to grow, so a reader always
+// sees arrays of matching length.
+//
+// After the first full load the index is refreshed every -Dbank.cards.auth.refreshMs (default
+// 1000) with only the cards and accounts whose updated_at moved since the last refresh, and
+// reloaded from scratch every -Dbank.cards.auth.reloadMs (default 10 minutes) to drop deleted
+// rows. Blocking a card through DatabaseManager takes effect immediately; other changes, and
+// balances, can lag by one refresh. While the ledger is enabled balances come from the ledger.
+public final class CardAuthorizationIndex {
+    public enum Decision {
+        APPROVED, UNKNOWN_CARD, INACTIVE_CARD, EXPIRED_CARD, INSUFFICIENT_FUNDS
+    }
+
+    // Rows committed late can carry an updated_at slightly older than the last one seen
+    private static final long REFRESH_OVERLAP_MS = 5000;
+    private static final long NO_BALANCE = Long.MIN_VALUE;
+    private static final long EMPTY = 0;
+    private static final int FETCH_SIZE = 1000;
+    // Card row layout in Table.rows: number, card_id << 32 | account_id, expiry (epoch millis), active
+    private static final int ROW_LONGS = 4;
+    private static final int IDS = 1;
+    private static final int EXPIRES_AT = 2;
+    private static final int ACTIVE = 3;
+
+    private static volatile CardAuthorizationIndex shared;
+
+    private final StampedLock lock = new StampedLock();
+    private volatile Table table;
+    // Card number by card_id, for blocking by id; only used by writers
+    private IntLongMap numberByCardId;
+    // Largest updated_at seen so far, as epoch millis; only used by the refresh thread
+    private long cardsUpdatedAt = Long.MIN_VALUE;
+    private long accountsUpdatedAt = Long.MIN_VALUE;
+    private ScheduledExecutorService refresher;
+
+    CardAuthorizationIndex(int expectedCards) {
+        table = new Table(expectedCards);
+        numberByCardId = new IntLongMap(expectedCards);
+    }
+
+    // The index for this process, loaded and refreshing in the background from first use
+    public static CardAuthorizationIndex shared() {
+        CardAuthorizationIndex current = shared;
+        if (current == null) {
+            synchronized (CardAuthorizationIndex.class) {
+                current = shared;
+                if (current == null) {
+                    current = new CardAuthorizationIndex(1024);
+                    current.reload();
+                    current.start(Long.getLong("bank.cards.auth.refreshMs", 1000L),
+                            Long.getLong("bank.cards.auth.reloadMs", 10 * 60 * 1000L));
+                    shared = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    // Stop the background refresh of the shared index, if there is one
+    static synchronized void shutdownShared() {
+        CardAuthorizationIndex current = shared;
+        if (current != null) {
+            current.stop();
+            shared = null;
+        }
+    }
+
+    // Called by DatabaseManager after a card was blocked
+    static void cardBlocked(int cardId) {
+        CardAuthorizationIndex current = shared;
+        if (current != null) {
+            current.deactivate(cardId);
+        }
+    }
+
+    public Decision authorize(String cardNumber, long amount) {
+        return authorize(parseNumber(cardNumber), amount);
+    }
+
+    // Decision for charging amount cents to the card; nothing is posted or held
+    public Decision authorize(long cardNumber, long amount) {
+        if (cardNumber <= 0) {
+            return Decision.UNKNOWN_CARD;
+        }
+        long stamp = lock.tryOptimisticRead();
+        Table current = table;
+        long[] rows = current.rows;
+        int row = current.cardRow(cardNumber);
+        boolean found = rows[row] == cardNumber;
+        int accountId = (int) rows[row + IDS];
+        long expiresAt = rows[row + EXPIRES_AT];
+        boolean active = rows[row + ACTIVE] != 0;
+        long balance = found ? current.balance(accountId) : NO_BALANCE;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                current = table;
+                rows = current.rows;
+                row = current.cardRow(cardNumber);
+                found = rows[row] == cardNumber;
+                accountId = (int) rows[row + IDS];
+                expiresAt = rows[row + EXPIRES_AT];
+                active = rows[row + ACTIVE] != 0;
+                balance = found ? current.balance(accountId) : NO_BALANCE;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        if (!found) {
+            return Decision.UNKNOWN_CARD;
+        }
+        if (!active) {
+            return Decision.INACTIVE_CARD;
+        }
+        if (expiresAt <= System.currentTimeMillis()) {
+            return Decision.EXPIRED_CARD;
+        }
+        long ledgerBalance = DatabaseManager.ledgerBalanceOf(accountId);
+        if (ledgerBalance != LedgerEngine.UNKNOWN_ACCOUNT) {
+            balance = ledgerBalance;
+        }
+        return balance != NO_BALANCE && balance >= amount ? Decision.APPROVED : Decision.INSUFFICIENT_FUNDS;
+    }
+
+    // Card numbers as stored in the index, or -1 if the text isn't a card number
+    static long parseNumber(String cardNumber) {
+        if (cardNumber == null || cardNumber.isEmpty() || cardNumber.length() > 18) {
+            return -1;
+        }
+        long number = 0;
+        for (int i = 0; i < cardNumber.length(); i++) {
+            char c = cardNumber.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+
+    public int getCardCount() {
+        return table.cards;
+    }
+
+    // Adds or replaces a card
+    void putCard(int cardId, int accountId, long cardNumber, boolean active, long expiresAt) {
+        if (cardNumber <= 0) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            Table current = table;
+            if (!current.hasRoomFor(1)) {
+                current = current.grow();
+                table = current;
+            }
+            current.putCard(cardNumber, cardId, accountId, active, expiresAt);
+            numberByCardId.put(cardId, cardNumber);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Sets the balance (cents) of an account
+    void putBalance(int accountId, long balance) {
+        long stamp = lock.writeLock();
+        try {
+            Table current = table;
+            if (!current.hasRoomFor(1)) {
+                current = current.grow();
+                table = current;
+            }
+            current.putBalance(accountId, balance);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void deactivate(int cardId) {
+        long stamp = lock.writeLock();
+        try {
+            long number = numberByCardId.get(cardId, EMPTY);
+            if (number != EMPTY) {
+                Table current = table;
+                int row = current.cardRow(number);
+                if (current.rows[row] == number) {
+                    current.rows[row + ACTIVE] = 0;
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Loads every card and account balance into a new table and swaps it in
+    public boolean reload() {
+        try (Connection conn = DatabaseManager.getConnectionPool().getConnection()) {
+            int cardCount = 0;
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) FROM cards");
+                 ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    cardCount = rs.getInt(1);
+                }
+            }
+
+            Table fresh = new Table(Math.max(1024, cardCount + cardCount / 4));
+            IntLongMap numbers = new IntLongMap(Math.max(1024, cardCount));
+            long[] cardsSeen = {Long.MIN_VALUE};
+            long[] accountsSeen = {Long.MIN_VALUE};
+            readCards(conn, null, (cardId, accountId, number, active, expiresAt) -> {
+                if (number <= 0) {
+                    return;
+                }
+                if (!fresh.hasRoomFor(1)) {
+                    throw new IllegalStateException("More cards than counted");
+                }
+                fresh.putCard(number, cardId, accountId, active, expiresAt);
+                numbers.put(cardId, number);
+            }, cardsSeen);
+            readBalances(conn, null, fresh, accountsSeen);
+
+            long stamp = lock.writeLock();
+            try {
+                table = fresh;
+                numberByCardId = numbers;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            cardsUpdatedAt = cardsSeen[0];
+            accountsUpdatedAt = accountsSeen[0];
+            return true;
+        } catch (SQLException | IllegalStateException e) {
+            System.err.println("Error loading card authorization index: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Applies the cards and balances changed since the last refresh; returns the rows read, or -1
+    public int refresh() {
+        try (Connection conn = DatabaseManager.getConnectionPool().getConnection()) {
+            long[] cardsSeen = {cardsUpdatedAt};
+            long[] accountsSeen = {accountsUpdatedAt};
+            IntLongMap withoutBalance = new IntLongMap(16);
+            int rows = readCards(conn, since(cardsUpdatedAt), (cardId, accountId, number, active, expiresAt) -> {
+                putCard(cardId, accountId, number, active, expiresAt);
+                if (table.balance(accountId) == NO_BALANCE) {
+                    withoutBalance.put(accountId, 1);
+                }
+            }, cardsSeen);
+            rows += readBalances(conn, since(accountsUpdatedAt), null, accountsSeen);
+            // An account that just got its first card may not have changed for a long time
+            if (withoutBalance.size() > 0) {
+                rows += readBalances(conn, withoutBalance);
+            }
+            cardsUpdatedAt = cardsSeen[0];
+            accountsUpdatedAt = accountsSeen[0];
+            return rows;
+        } catch (SQLException e) {
+            System.err.println("Error refreshing card authorization index: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private static Timestamp since(long updatedAt) {
+        return new Timestamp(updatedAt == Long.MIN_VALUE ? 0 : updatedAt - REFRESH_OVERLAP_MS);
+    }
+
+    private interface CardSink {
+        void accept(int cardId, int accountId, long number, boolean active, long expiresAt);
+    }
+
+    private static int readCards(Connection conn, Timestamp since, CardSink sink, long[] maxUpdatedAt) throws SQLException {
+        String query = "SELECT card_id, account_id, card_number, is_active, expiry_date, updated_at FROM cards" +
+                       (since != null ? " WHERE updated_at >= ?" : "");
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            if (since != null) {
+                stmt.setTimestamp(1, since);
+            }
+            stmt.setFetchSize(FETCH_SIZE);
+            int rows = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    long number = parseNumber(rs.getString(3));
+                    Timestamp expiry = rs.getTimestamp(5);
+                    sink.accept(rs.getInt(1), rs.getInt(2), number, rs.getBoolean(4),
+                            expiry != null ? expiry.getTime() : Long.MIN_VALUE);
+                    maxUpdatedAt[0] = Math.max(maxUpdatedAt[0], millis(rs.getTimestamp(6)));
+                    rows++;
+                }
+            }
+            return rows;
+        }
+    }
+
+    // Balances of accounts with at least one card; into target, or into the live table if null
+    private int readBalances(Connection conn, Timestamp since, Table target, long[] maxUpdatedAt) throws SQLException {
+        String query = "SELECT a.account_id, a.balance, a.updated_at FROM accounts a " +
+                       "WHERE EXISTS (SELECT 1 FROM cards c WHERE c.account_id = a.account_id)" +
+                       (since != null ? " AND a.updated_at >= ?" : "");
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            if (since != null) {
+                stmt.setTimestamp(1, since);
+            }
+            stmt.setFetchSize(FETCH_SIZE);
+            int rows = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int accountId = rs.getInt(1);
+                    long balance = Money.fromDecimal(rs.getBigDecimal(2));
+                    if (target != null) {
+                        if (!target.hasRoomFor(1)) {
+                            throw new IllegalStateException("More accounts than cards");
+                        }
+                        target.putBalance(accountId, balance);
+                    } else {
+                        putBalance(accountId, balance);
+                    }
+                    maxUpdatedAt[0] = Math.max(maxUpdatedAt[0], millis(rs.getTimestamp(3)));
+                    rows++;
+                }
+            }
+            return rows;
+        }
+    }
+
+    private int readBalances(Connection conn, IntLongMap accountIds) throws SQLException {
+        int[] rows = {0};
+        SQLException[] failure = {null};
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT balance FROM accounts WHERE account_id = ?")) {
+            accountIds.forEach((accountId, ignored) -> {
+                if (failure[0] != null) {
+                    return;
+                }
+                try {
+                    stmt.setInt(1, accountId);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (rs.next()) {
+                            putBalance(accountId, Money.fromDecimal(rs.getBigDecimal(1)));
+                            rows[0]++;
+                        }
+                    }
+                } catch (SQLException e) {
+                    failure[0] = e;
+                }
+            });
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return rows[0];
+    }
+
+    private static long millis(Timestamp timestamp) {
+        return timestamp != null ? timestamp.getTime() : Long.MIN_VALUE;
+    }
+
+    private synchronized void start(long refreshMillis, long reloadMillis) {
+        if (refresher != null || refreshMillis <= 0) {
+            return;
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "card-auth-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // One thread runs both, so a refresh and a reload never overlap
+        refresher.scheduleWithFixedDelay(this::refresh, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+        if (reloadMillis > 0) {
+            refresher.scheduleWithFixedDelay(this::reload, reloadMillis, reloadMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void stop() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+    }
+
+    // Card rows keyed by card number and (account_id, balance) pairs keyed by account_id, both
+    // at most half full. Rows are changed in place; growing builds a new Table.
+    private static final class Table {
+        final long[] rows;
+        final int cardMask;
+        final long[] balances;
+        final int balanceMask;
+
+        int cards;
+        int accounts;
+
+        Table(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(4, expected * 2) - 1) << 1;
+            rows = new long[capacity * ROW_LONGS];
+            cardMask = capacity - 1;
+            balances = new long[capacity * 2];
+            balanceMask = capacity - 1;
+        }
+
+        boolean hasRoomFor(int count) {
+            return (cards + count) * 2 <= cardMask + 1 && (accounts + count) * 2 <= balanceMask + 1;
+        }
+
+        // Start of the row holding number, or of the empty row where it would go
+        int cardRow(long number) {
+            int slot = mix(number) & cardMask;
+            while (rows[slot * ROW_LONGS] != number && rows[slot * ROW_LONGS] != EMPTY) {
+                slot = (slot + 1) & cardMask;
+            }
+            return slot * ROW_LONGS;
+        }
+
+        // Start of the (account_id, balance) pair for accountId, or of the empty pair where it would go
+        int balancePair(int accountId) {
+            int slot = mix(accountId) & balanceMask;
+            while (balances[slot * 2] != accountId && balances[slot * 2] != EMPTY) {
+                slot = (slot + 1) & balanceMask;
+            }
+            return slot * 2;
+        }
+
+        long balance(int accountId) {
+            int pair = balancePair(accountId);
+            return balances[pair] == accountId ? balances[pair + 1] : NO_BALANCE;
+        }
+
+        void putCard(long number, int cardId, int accountId, boolean active, long expiresAt) {
+            int row = cardRow(number);
+            // Fill in the row before the key, so an optimistic reader never matches a half-written row
+            rows[row + IDS] = (long) cardId << 32 | (accountId & 0xFFFFFFFFL);
+            rows[row + EXPIRES_AT] = expiresAt;
+            rows[row + ACTIVE] = active ? 1 : 0;
+            if (rows[row] != number) {
+                rows[row] = number;
+                cards++;
+            }
+        }
+
+        void putBalance(int accountId, long balance) {
+            int pair = balancePair(accountId);
+            balances[pair + 1] = balance;
+            if (balances[pair] != accountId) {
+                balances[pair] = accountId;
+                accounts++;
+            }
+        }
+
+        Table grow() {
+            Table bigger = new Table(Math.max(cardMask, balanceMask) + 1);
+            for (int row = 0; row < rows.length; row += ROW_LONGS) {
+                if (rows[row] != EMPTY) {
+                    long ids = rows[row + IDS];
+                    bigger.putCard(rows[row], (int) (ids >>> 32), (int) ids, rows[row + ACTIVE] != 0, rows[row + EXPIRES_AT]);
+                }
+            }
+            for (int pair = 0; pair < balances.length; pair += 2) {
+                if (balances[pair] != EMPTY) {
+                    bigger.putBalance((int) balances[pair], balances[pair + 1]);
+                }
+            }
+            return bigger;
+        }
+
+        private static int mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,317 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Calendar;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Deactivates cards whose expiry_date has passed (or falls within windowDays from now) and,
+// optionally, issues each account a replacement card of the same type.
+//
+// Active cards are walked in (expiry_date, card_id) order over idx_cards_active_expiry, in
+// chunks of chunkSize. The chunk is read without locks; the cards that are still active are
+// then locked by primary key (SELECT ... FOR UPDATE, in card_id order) and switched off with
+// primary-key UPDATEs, and the replacements go in with the same batched INSERT as
+// DatabaseManager.createCards. The locked rows are exactly the ones retired, whatever row
+// counts the driver reports for the batch. Everything for a chunk commits together, so only
+// the chunk's own rows are ever locked and only for a moment, and a card can never lose its
+// replacement. A card is only ever picked up once: running the sweep again (or after a
+// failure) finds just the cards that are still active. With reissue on, the window must be
+// shorter than the validity of a replacement, or the sweep would retire its own replacements.
+//
+// Usage: java CardExpirySweeper
+// Optional system properties: -Dcards.sweep.windowDays=0 (retire cards this many days before
+//   they expire), -Dcards.sweep.chunkSize=500, -Dcards.sweep.reissue=false,
+//   -Dcards.sweep.reissueYears=4 (validity of replacement cards),
+//   -Dcards.sweep.runAt=03:00 to keep running and sweep every day at that time,
+//   plus the -Dbank.db.* connection settings
+public class CardExpirySweeper {
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final OperationMetrics CHUNK_METRICS = MetricsRegistry.operation("cardExpiryChunk");
+
+    private final ConnectionPool pool;
+    private final Timestamp cutoff;
+    private final int chunkSize;
+    private final boolean reissue;
+    private final int reissueYears;
+
+    private final LongAdder scanned = new LongAdder();
+    private final LongAdder deactivated = new LongAdder();
+    private final LongAdder reissued = new LongAdder();
+    private final LongAdder chunks = new LongAdder();
+    private final LongAdder failedChunks = new LongAdder();
+    private long elapsedNanos;
+
+    // Sweeps the cards that expire before cutoff
+    public CardExpirySweeper(ConnectionPool pool, Timestamp cutoff, int chunkSize, boolean reissue, int reissueYears) {
+        if (reissue && !cutoff.toLocalDateTime().isBefore(LocalDateTime.now().plusYears(Math.max(1, reissueYears)))) {
+            throw new IllegalArgumentException("Sweep cutoff " + cutoff + " is not before the expiry of a card reissued now ("
+                    + reissueYears + " years)");
+        }
+        this.pool = pool;
+        this.cutoff = cutoff;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.reissue = reissue;
+        this.reissueYears = Math.max(1, reissueYears);
+    }
+
+    public static void main(String[] args) {
+        ConnectionPool pool = DatabaseManager.getConnectionPool();
+        int windowDays = Integer.getInteger("cards.sweep.windowDays", 0);
+        int chunkSize = Integer.getInteger("cards.sweep.chunkSize", 500);
+        boolean reissue = Boolean.getBoolean("cards.sweep.reissue");
+        int reissueYears = Integer.getInteger("cards.sweep.reissueYears", 4);
+        String runAt = System.getProperty("cards.sweep.runAt");
+        if (reissue && windowDays >= ChronoUnit.DAYS.between(LocalDate.now(), LocalDate.now().plusYears(Math.max(1, reissueYears)))) {
+            System.err.println("cards.sweep.windowDays (" + windowDays + ") must be shorter than the validity of a reissued card ("
+                    + reissueYears + " years)");
+            DatabaseManager.shutdown();
+            System.exit(2);
+        }
+
+        if (runAt == null) {
+            boolean succeeded = runOnce(new CardExpirySweeper(pool, cutoff(windowDays), chunkSize, reissue, reissueYears));
+            DatabaseManager.shutdown();
+            if (!succeeded) {
+                System.exit(1);
+            }
+            return;
+        }
+
+        // Stay up and sweep once a day
+        LocalTime time = LocalTime.parse(runAt);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime first = now.toLocalDate().atTime(time);
+        if (!first.isAfter(now)) {
+            first = first.plusDays(1);
+        }
+        scheduler.scheduleAtFixedRate(
+                () -> runOnce(new CardExpirySweeper(pool, cutoff(windowDays), chunkSize, reissue, reissueYears)),
+                Duration.between(now, first).toMillis(), TimeUnit.DAYS.toMillis(1), TimeUnit.MILLISECONDS);
+        System.out.println("Card expiry sweep scheduled daily at " + time + ", first run " + first);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            scheduler.shutdownNow();
+            DatabaseManager.shutdown();
+        }));
+    }
+
+    private static Timestamp cutoff(int windowDays) {
+        return Timestamp.valueOf(LocalDateTime.now().plusDays(Math.max(0, windowDays)));
+    }
+
+    private static boolean runOnce(CardExpirySweeper sweeper) {
+        sweeper.run();
+        System.out.println(sweeper);
+        return sweeper.getFailedChunks() == 0;
+    }
+
+    // Sweeps every active card expiring before the cutoff; stops at the first chunk that fails
+    public void run() {
+        long runStart = System.nanoTime();
+        Timestamp afterExpiry = new Timestamp(0);
+        int afterCardId = 0;
+        try {
+            while (true) {
+                int attempt = 1;
+                Chunk chunk;
+                while (true) {
+                    long start = System.nanoTime();
+                    try {
+                        chunk = sweepChunk(afterExpiry, afterCardId);
+                        CHUNK_METRICS.record(start, chunk.deactivated);
+                        break;
+                    } catch (SQLException e) {
+                        CHUNK_METRICS.error();
+                        // Deadlocks, serialization failures (class 40) and card number collisions
+                        // with another process (class 23) are retried
+                        String state = e.getSQLState();
+                        if (attempt++ < MAX_ATTEMPTS && state != null && (state.startsWith("40") || state.startsWith("23"))) {
+                            continue;
+                        }
+                        failedChunks.increment();
+                        System.err.println("Card expiry sweep error after card " + afterCardId + ": " + e.getMessage());
+                        return; // The rest is picked up by the next run
+                    }
+                }
+                if (chunk.cards == 0) {
+                    return;
+                }
+                afterExpiry = chunk.lastExpiry;
+                afterCardId = chunk.lastCardId;
+            }
+        } finally {
+            elapsedNanos = System.nanoTime() - runStart;
+        }
+    }
+
+    // Outcome of one chunk and where the next one starts
+    private static final class Chunk {
+        int cards;
+        int deactivated;
+        Timestamp lastExpiry;
+        int lastCardId;
+    }
+
+    private Chunk sweepChunk(Timestamp afterExpiry, int afterCardId) throws SQLException {
+        String chunkQuery = "SELECT card_id, account_id, card_type, expiry_date FROM cards " +
+                            "WHERE is_active = TRUE AND expiry_date < ? " +
+                            "AND (expiry_date > ? OR (expiry_date = ? AND card_id > ?)) " +
+                            "ORDER BY expiry_date, card_id LIMIT ?";
+        String deactivateQuery = "UPDATE cards SET is_active = FALSE WHERE card_id = ?";
+
+        Chunk chunk = new Chunk();
+        int[] cardIds = new int[chunkSize];
+        int[] accountIds = new int[chunkSize];
+        String[] cardTypes = new String[chunkSize];
+        int[] retired = new int[chunkSize];
+        int retiredCount = 0;
+
+        try (Connection conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement chunkStmt = conn.prepareStatement(chunkQuery);
+                 PreparedStatement deactivateStmt = conn.prepareStatement(deactivateQuery)) {
+
+                chunkStmt.setTimestamp(1, cutoff);
+                chunkStmt.setTimestamp(2, afterExpiry);
+                chunkStmt.setTimestamp(3, afterExpiry);
+                chunkStmt.setInt(4, afterCardId);
+                chunkStmt.setInt(5, chunkSize);
+
+                try (ResultSet rs = chunkStmt.executeQuery()) {
+                    while (rs.next()) {
+                        cardIds[chunk.cards] = rs.getInt("card_id");
+                        accountIds[chunk.cards] = rs.getInt("account_id");
+                        cardTypes[chunk.cards] = rs.getString("card_type");
+                        chunk.lastExpiry = rs.getTimestamp("expiry_date");
+                        chunk.lastCardId = cardIds[chunk.cards];
+                        chunk.cards++;
+                    }
+                }
+
+                if (chunk.cards == 0) {
+                    conn.rollback();
+                    return chunk;
+                }
+
+                // Lock the cards that are still active; cards blocked since the read get no replacement
+                retiredCount = lockActive(conn, cardIds, chunk.cards, retired);
+                for (int i = 0; i < retiredCount; i++) {
+                    deactivateStmt.setInt(1, cardIds[retired[i]]);
+                    deactivateStmt.addBatch();
+                }
+                if (retiredCount > 0) {
+                    deactivateStmt.executeBatch();
+                }
+                chunk.deactivated = retiredCount;
+
+                if (reissue && retiredCount > 0) {
+                    reissue(conn, retired, retiredCount, accountIds, cardTypes);
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+
+        for (int i = 0; i < retiredCount; i++) {
+            CardAuthorizationIndex.cardBlocked(cardIds[retired[i]]);
+        }
+        scanned.add(chunk.cards);
+        deactivated.add(retiredCount);
+        if (reissue) {
+            reissued.add(retiredCount);
+        }
+        chunks.increment();
+        return chunk;
+    }
+
+    // Locks the cards of the chunk that are still active, in card_id order, and stores their
+    // positions in the chunk in retired. Returns how many there are.
+    private static int lockActive(Connection conn, int[] cardIds, int count, int[] retired) throws SQLException {
+        StringBuilder query = new StringBuilder("SELECT card_id FROM cards WHERE is_active = TRUE AND card_id IN (");
+        for (int i = 0; i < count; i++) {
+            query.append(i == 0 ? "?" : ", ?");
+        }
+        query.append(") ORDER BY card_id FOR UPDATE");
+
+        IntLongMap positions = new IntLongMap(count * 2);
+        for (int i = 0; i < count; i++) {
+            positions.put(cardIds[i], i);
+        }
+
+        int locked = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(query.toString())) {
+            for (int i = 0; i < count; i++) {
+                stmt.setInt(i + 1, cardIds[i]);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    retired[locked++] = (int) positions.get(rs.getInt("card_id"), 0);
+                }
+            }
+        }
+        return locked;
+    }
+
+    // One replacement per retired card, grouped into one batched INSERT per card type
+    private void reissue(Connection conn, int[] retired, int retiredCount, int[] accountIds, String[] cardTypes) throws SQLException {
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.YEAR, reissueYears);
+        Timestamp expiryDate = new Timestamp(calendar.getTimeInMillis());
+
+        int[] typeAccounts = new int[retiredCount];
+        boolean[] done = new boolean[retiredCount];
+        for (int i = 0; i < retiredCount; i++) {
+            if (done[i]) {
+                continue;
+            }
+            String cardType = cardTypes[retired[i]];
+            int count = 0;
+            for (int j = i; j < retiredCount; j++) {
+                if (!done[j] && cardTypes[retired[j]].equals(cardType)) {
+                    typeAccounts[count++] = accountIds[retired[j]];
+                    done[j] = true;
+                }
+            }
+            DatabaseManager.insertCards(conn, typeAccounts, count, cardType, expiryDate);
+        }
+    }
+
+    // Statistics
+    public Timestamp getCutoff() { return cutoff; }
+    public long getScanned() { return scanned.sum(); }
+    public long getDeactivated() { return deactivated.sum(); }
+    public long getReissued() { return reissued.sum(); }
+    public long getChunks() { return chunks.sum(); }
+    public long getFailedChunks() { return failedChunks.sum(); }
+
+    // Cards deactivated per second over the last run
+    public double getCardsPerSecond() {
+        return elapsedNanos > 0 ? getDeactivated() / (elapsedNanos / 1e9) : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "CardExpirySweeper{cutoff=" + cutoff +
+                ", scanned=" + getScanned() +
+                ", deactivated=" + getDeactivated() +
+                ", reissued=" + getReissued() +
+                ", chunks=" + getChunks() +
+                ", failedChunks=" + getFailedChunks() +
+                String.format(", seconds=%.1f, cardsPerSecond=%.0f", elapsedNanos / 1e9, getCardsPerSecond()) + '}';
+    }
+}
@@ -0,0 +1,101 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import javax.swing.AbstractListModel;
+
+// List model for the Cards page, newest card first (the order of DatabaseManager.getAccountCards).
+//
+// Cards are stored oldest first, so a newly issued card is an append and the card_id -> position
+// map stays valid; the list index is the position counted from the end. A reload is merged into
+// what is shown: changed cards fire a contents change for their row, new ones an insertion, and
+// only cards that disappeared cause removals, so the JList keeps its selection and scroll
+// position and only repaints the rows that changed. Used on the event dispatch thread only.
+public class CardListModel extends AbstractListModel<Card> {
+    private final List<Card> cards = new ArrayList<>();
+    private final Map<Integer, Integer> positions = new HashMap<>();
+
+    @Override
+    public int getSize() {
+        return cards.size();
+    }
+
+    @Override
+    public Card getElementAt(int index) {
+        return cards.get(cards.size() - 1 - index);
+    }
+
+    public void clear() {
+        int size = cards.size();
+        if (size > 0) {
+            cards.clear();
+            positions.clear();
+            fireIntervalRemoved(this, 0, size - 1);
+        }
+    }
+
+    // Merges a fresh list of the account's cards (newest first) into the model
+    public void update(List<Card> latest) {
+        Map<Integer, Card> byId = new HashMap<>();
+        for (Card card : latest) {
+            byId.put(card.getCardId(), card);
+        }
+
+        // Cards that are gone
+        boolean removed = false;
+        for (int position = cards.size() - 1; position >= 0; position--) {
+            if (!byId.containsKey(cards.get(position).getCardId())) {
+                int index = cards.size() - 1 - position;
+                cards.remove(position);
+                fireIntervalRemoved(this, index, index);
+                removed = true;
+            }
+        }
+        if (removed) {
+            positions.clear();
+            for (int position = 0; position < cards.size(); position++) {
+                positions.put(cards.get(position).getCardId(), position);
+            }
+        }
+
+        for (Card card : latest) {
+            Integer position = positions.get(card.getCardId());
+            if (position != null && changed(cards.get(position), card)) {
+                cards.set(position, card);
+                int index = cards.size() - 1 - position;
+                fireContentsChanged(this, index, index);
+            }
+        }
+
+        // New cards are the newest, at the top of the list
+        int first = cards.size();
+        for (int i = latest.size() - 1; i >= 0; i--) {
+            Card card = latest.get(i);
+            if (!positions.containsKey(card.getCardId())) {
+                positions.put(card.getCardId(), cards.size());
+                cards.add(card);
+            }
+        }
+        if (cards.size() > first) {
+            fireIntervalAdded(this, 0, cards.size() - first - 1);
+        }
+    }
+
+    // Marks a card blocked (or active) in place, e.g. after blocking it succeeded
+    public void setActive(int cardId, boolean active) {
+        Integer position = positions.get(cardId);
+        if (position != null && cards.get(position).isActive() != active) {
+            cards.get(position).setActive(active);
+            int index = cards.size() - 1 - position;
+            fireContentsChanged(this, index, index);
+        }
+    }
+
+    private static boolean changed(Card shown, Card latest) {
+        return shown.isActive() != latest.isActive()
+                || !Objects.equals(shown.getExpiryDate(), latest.getExpiryDate())
+                || !Objects.equals(shown.getCardType(), latest.getCardType())
+                || !Objects.equals(shown.getCardNumber(), latest.getCardNumber());
+    }
+}
@@ -0,0 +1,238 @@
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// Hands out card numbers that pass the Luhn check and are not already in the cards table.
+//
+// A number is the card type's BIN (issuer prefix of 6 to 8 digits, configurable with
+// -Dbank.cards.bin.<TYPE>), a random account part filling the type's length and a Luhn check
+// digit. Every number issued so far is recorded in a
+// Bloom filter, loaded from the cards table on first use: when the filter says a fresh random
+// number might exist another one is drawn, and when it says no the number is certainly unused
+// - no database round trip either way. A false positive only costs a redraw. The UNIQUE
+// constraint on card_number remains the backstop against numbers issued by other processes
+// since the filter was loaded.
+public final class CardNumberAllocator {
+    private static final int MAX_DRAWS = 1000;
+    private static final String[] TYPES = {"VISA", "MASTERCARD", "DISCOVER", "AMEX"};
+    private static final String[] DEFAULT_BINS = {"427533", "532611", "601100", "371449"};
+    private static final int[] LENGTHS = {16, 16, 16, 15};
+    // Fewest random digits a number may have after its BIN
+    private static final int MIN_BODY_DIGITS = 6;
+
+    private static volatile CardNumberAllocator shared;
+
+    private final long[] bins = new long[TYPES.length];
+    private final int[] bodyDigits = new int[TYPES.length];
+    private final SecureRandom random = new SecureRandom();
+    private final BloomFilter issued;
+
+    CardNumberAllocator(int expectedCards) {
+        for (int i = 0; i < TYPES.length; i++) {
+            String bin = System.getProperty("bank.cards.bin." + TYPES[i], DEFAULT_BINS[i]).trim();
+            if (!bin.matches("[1-9][0-9]{5,7}")) {
+                throw new IllegalArgumentException("bank.cards.bin." + TYPES[i] + " must be 6 to 8 digits: " + bin);
+            }
+            // BIN + body + check digit make up the card type's length (at most 16, the card_number column)
+            bodyDigits[i] = LENGTHS[i] - bin.length() - 1;
+            if (bodyDigits[i] < MIN_BODY_DIGITS) {
+                throw new IllegalArgumentException("bank.cards.bin." + TYPES[i] + " leaves fewer than " + MIN_BODY_DIGITS
+                        + " account digits in a " + LENGTHS[i] + "-digit number: " + bin);
+            }
+            bins[i] = Long.parseLong(bin);
+        }
+        issued = new BloomFilter(Math.max(1024, expectedCards), 0.01);
+    }
+
+    // The allocator for this process, seeded with the numbers already in the database
+    public static CardNumberAllocator shared() {
+        CardNumberAllocator current = shared;
+        if (current == null) {
+            synchronized (CardNumberAllocator.class) {
+                current = shared;
+                if (current == null) {
+                    current = load();
+                    shared = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static CardNumberAllocator load() {
+        int expected = Integer.getInteger("bank.cards.expected", 1_000_000);
+        try (Connection conn = DatabaseManager.getConnectionPool().getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) FROM cards");
+                 ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    expected = (int) Math.min(Integer.MAX_VALUE / 2, Math.max(expected, 2L * rs.getLong(1)));
+                }
+            }
+            CardNumberAllocator allocator = new CardNumberAllocator(expected);
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT card_number FROM cards")) {
+                stmt.setFetchSize(1000);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        allocator.markIssued(rs.getString(1));
+                    }
+                }
+            }
+            return allocator;
+        } catch (SQLException e) {
+            // Still usable: collisions are then only caught by the UNIQUE constraint
+            System.err.println("Error loading card numbers: " + e.getMessage());
+            return new CardNumberAllocator(expected);
+        }
+    }
+
+    // A new, Luhn-valid number for the card type that is not in use
+    public String allocate(String cardType) {
+        int type = typeIndex(cardType);
+        long bodyRange = pow10(bodyDigits[type]);
+        long prefix = bins[type] * bodyRange;
+
+        for (int draw = 0; draw < MAX_DRAWS; draw++) {
+            long payload = prefix + (long) (random.nextDouble() * bodyRange);
+            long number = payload * 10 + checkDigit(payload);
+            synchronized (issued) {
+                if (!issued.mightContain(number)) {
+                    issued.add(number);
+                    return String.valueOf(number);
+                }
+            }
+        }
+        throw new IllegalStateException("No unused " + cardType + " number found in " + MAX_DRAWS + " draws");
+    }
+
+    // Records a number issued elsewhere (e.g. one loaded from the database)
+    public void markIssued(String cardNumber) {
+        if (cardNumber == null || cardNumber.isEmpty() || cardNumber.length() > 18) {
+            return;
+        }
+        try {
+            long number = Long.parseLong(cardNumber);
+            synchronized (issued) {
+                issued.add(number);
+            }
+        } catch (NumberFormatException e) {
+            // Not a numeric card number - it can't collide with one we generate
+        }
+    }
+
+    public String generateCvv(String cardType) {
+        int digits = typeIndex(cardType) == 3 ? 4 : 3;
+        long value = (long) (random.nextDouble() * pow10(digits));
+        StringBuilder cvv = new StringBuilder(digits).append(value);
+        while (cvv.length() < digits) {
+            cvv.insert(0, '0');
+        }
+        return cvv.toString();
+    }
+
+    // Luhn check digit for the digits of payload (the number without its last digit)
+    static int checkDigit(long payload) {
+        int sum = 0;
+        boolean doubled = true;
+        while (payload > 0) {
+            int digit = (int) (payload % 10);
+            payload /= 10;
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    // True if number is all digits and its last digit is the Luhn check digit
+    public static boolean isValid(String number) {
+        if (number == null || number.length() < 2) {
+            return false;
+        }
+        int sum = 0;
+        boolean doubled = false;
+        for (int i = number.length() - 1; i >= 0; i--) {
+            char c = number.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+            int digit = c - '0';
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return sum % 10 == 0;
+    }
+
+    private static int typeIndex(String cardType) {
+        for (int i = 0; i < TYPES.length; i++) {
+            if (TYPES[i].equals(cardType)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown card type: " + cardType);
+    }
+
+    private static long pow10(int exponent) {
+        long value = 1;
+        for (int i = 0; i < exponent; i++) {
+            value *= 10;
+        }
+        return value;
+    }
+
+    // Bit set with k probes per number (double hashing), sized for expected entries at the
+    // given false positive rate. Not thread-safe - the allocator synchronizes on it.
+    static final class BloomFilter {
+        private final long[] bits;
+        private final long bitCount;
+        private final int probes;
+
+        BloomFilter(int expected, double falsePositiveRate) {
+            long size = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            bits = new long[(int) ((size + 63) / 64)];
+            bitCount = bits.length * 64L;
+            probes = Math.max(1, (int) Math.round((double) bitCount / expected * Math.log(2)));
+        }
+
+        void add(long value) {
+            long hash = mix(value);
+            long step = mix(hash) | 1;
+            for (int i = 0; i < probes; i++) {
+                long bit = Math.floorMod(hash + i * step, bitCount);
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+
+        boolean mightContain(long value) {
+            long hash = mix(value);
+            long step = mix(hash) | 1;
+            for (int i = 0; i < probes; i++) {
+                long bit = Math.floorMod(hash + i * step, bitCount);
+                if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // SplitMix64 finalizer
+        private static long mix(long value) {
+            long z = value + 0x9E3779B97F4A7C15L;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+    }
+}
@@ -1,12 +1,13 @@
 import javax.swing.*;
+import javax.swing.border.Border;
 import javax.swing.border.TitledBorder;
 import java.awt.*;
 import java.awt.event.*;
 import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
-import java.util.Random;
 
 public class Cards extends JFrame {
     private User user;
@@ -14,9 +15,12 @@ public class Cards extends JFrame {
     private Account selectedAccount;
     private JComboBox<String> accountSelector;
     private JPanel cardDisplayPanel;
+    private JList<Card> cardList;
+    private final CardListModel cardModel = new CardListModel();
     private JButton generateCardButton;
     private JButton blockCardButton;
     private JButton backButton;
+    private final UiTask.Latest cardRequests = new UiTask.Latest();
     
     public Cards(User user) {
         this.user = user;
@@ -25,17 +29,8 @@ public class Cards extends JFrame {
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         setLocationRelativeTo(null);
         
-        // Load user accounts
-        accounts = DatabaseManager.getUserAccounts(user.getId());
-        if (accounts.isEmpty()) {
-            JOptionPane.showMessageDialog(this, "No accounts found for this user", 
-                    "Error", JOptionPane.ERROR_MESSAGE);
-            dispose();
-            return;
-        }
-        
-        // Set the first account as selected by default
-        selectedAccount = accounts.get(0);
+        // Accounts are loaded in the background once the window is built
+        accounts = new ArrayList<>();
         
         // Create main panel
         JPanel mainPanel = new JPanel(new BorderLayout(10, 10));
@@ -58,14 +53,12 @@ public class Cards extends JFrame {
         selectorPanel.add(new JLabel("Select Account: "));
         
         accountSelector = new JComboBox<>();
-        for (Account account : accounts) {
-            accountSelector.addItem(account.getAccountNumber() + " (" + account.getAccountType() + ")");
-        }
         accountSelector.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
                 int selectedIndex = accountSelector.getSelectedIndex();
                 if (selectedIndex >= 0 && selectedIndex < accounts.size()) {
                     selectedAccount = accounts.get(selectedIndex);
+                    cardModel.clear();
                     refreshCardDisplay();
                 }
             }
@@ -76,16 +69,29 @@ public class Cards extends JFrame {
         
         mainPanel.add(topPanel, BorderLayout.NORTH);
         
-        // Center panel with card display
-        cardDisplayPanel = new JPanel();
-        cardDisplayPanel.setLayout(new BoxLayout(cardDisplayPanel, BoxLayout.Y_AXIS));
-        cardDisplayPanel.setBackground(new Color(240, 248, 255));
-        cardDisplayPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
-        
-        JScrollPane scrollPane = new JScrollPane(cardDisplayPanel);
+        // Center panel with card display: a list that only paints the visible cards, all with
+        // one reused renderer, or a hint when the account has no cards
+        cardList = new JList<>(cardModel);
+        cardList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        cardList.setCellRenderer(new CardRenderer());
+        cardList.setFixedCellHeight(CardRenderer.CELL_HEIGHT);
+        cardList.setFixedCellWidth(CardRenderer.CELL_WIDTH);
+        cardList.setBackground(new Color(240, 248, 255));
+        cardList.setBorder(BorderFactory.createEmptyBorder(10, 20, 10, 20));
+        
+        JScrollPane scrollPane = new JScrollPane(cardList);
         scrollPane.setBorder(BorderFactory.createEmptyBorder());
+        scrollPane.getVerticalScrollBar().setUnitIncrement(20);
+        
+        JLabel noCardsLabel = new JLabel("No cards available for this account. Generate a new card.", SwingConstants.CENTER);
+        noCardsLabel.setFont(new Font("Arial", Font.ITALIC, 14));
         
-        mainPanel.add(scrollPane, BorderLayout.CENTER);
+        cardDisplayPanel = new JPanel(new CardLayout());
+        cardDisplayPanel.setBackground(new Color(240, 248, 255));
+        cardDisplayPanel.add(scrollPane, "cards");
+        cardDisplayPanel.add(noCardsLabel, "empty");
+        
+        mainPanel.add(cardDisplayPanel, BorderLayout.CENTER);
         
         // Bottom panel with buttons
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 20, 10));
@@ -132,139 +138,146 @@ public class Cards extends JFrame {
         // Add main panel to frame
         add(mainPanel);
         
-        // Load card display initially
-        refreshCardDisplay();
+        // Load accounts, then the first account's cards
+        loadAccounts();
     }
     
-    private void refreshCardDisplay() {
-        cardDisplayPanel.removeAll();
-        
-        // Get cards for the selected account
-        List<Card> cards = DatabaseManager.getAccountCards(selectedAccount.getAccountId());
-        
-        if (cards.isEmpty()) {
-            JLabel noCardsLabel = new JLabel("No cards available for this account. Generate a new card.");
-            noCardsLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
-            noCardsLabel.setFont(new Font("Arial", Font.ITALIC, 14));
-            cardDisplayPanel.add(Box.createVerticalStrut(50));
-            cardDisplayPanel.add(noCardsLabel);
-        } else {
-            for (Card card : cards) {
-                cardDisplayPanel.add(createCardPanel(card));
-                cardDisplayPanel.add(Box.createVerticalStrut(20));
+    private void loadAccounts() {
+        UiTask.run(this, BankService.getUserAccounts(user.getId()), loadedAccounts -> {
+            if (loadedAccounts.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "No accounts found for this user", 
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                dispose();
+                return;
             }
-        }
-        
-        cardDisplayPanel.revalidate();
-        cardDisplayPanel.repaint();
+            
+            accounts = loadedAccounts;
+            // Adding the first item selects it, which loads its cards
+            for (Account account : accounts) {
+                accountSelector.addItem(account.getAccountNumber() + " (" + account.getAccountType() + ")");
+            }
+        }, accountSelector, generateCardButton, blockCardButton);
+    }
+    
+    private void refreshCardDisplay() {
+        // Get cards for the selected account; switching accounts again drops this request
+        cardRequests.run(this, () -> BankService.getAccountCards(selectedAccount.getAccountId()), this::showCards);
     }
     
-    private JPanel createCardPanel(Card card) {
-        JPanel cardPanel = new JPanel(new BorderLayout());
-        cardPanel.setBackground(card.isActive() ? new Color(70, 130, 180) : new Color(128, 128, 128)); // Blue if active, gray if blocked
-        cardPanel.setBorder(BorderFactory.createCompoundBorder(
+    private void showCards(List<Card> cards) {
+        // Only rows that changed are repainted; the selection stays on the same card
+        cardModel.update(cards);
+        ((CardLayout) cardDisplayPanel.getLayout()).show(cardDisplayPanel, cards.isEmpty() ? "empty" : "cards");
+    }
+    
+    // Paints every card in the list with the same set of components, filled in per card
+    private class CardRenderer extends JPanel implements ListCellRenderer<Card> {
+        static final int CELL_WIDTH = 400;
+        static final int CELL_HEIGHT = 220;
+        
+        private final Color activeColor = new Color(70, 130, 180); // Blue if active
+        private final Color blockedColor = new Color(128, 128, 128); // Gray if blocked
+        private final Color activeStatusColor = new Color(144, 238, 144);
+        private final Color blockedStatusColor = new Color(255, 99, 71);
+        private final Border normalBorder = BorderFactory.createCompoundBorder(
                 BorderFactory.createLineBorder(new Color(0, 0, 0), 1),
-                BorderFactory.createEmptyBorder(15, 15, 15, 15)));
-        cardPanel.setPreferredSize(new Dimension(380, 200));
-        cardPanel.setMaximumSize(new Dimension(380, 200));
-        
-        // Bank name
-        JLabel bankLabel = new JLabel("BANK MANAGEMENT SYSTEM");
-        bankLabel.setFont(new Font("Arial", Font.BOLD, 16));
-        bankLabel.setForeground(Color.WHITE);
-        cardPanel.add(bankLabel, BorderLayout.NORTH);
-        
-        // Card number (formatted with spaces for readability)
-        String formattedCardNumber = formatCardNumber(card.getCardNumber());
-        JLabel cardNumberLabel = new JLabel(formattedCardNumber);
-        cardNumberLabel.setFont(new Font("Monospaced", Font.BOLD, 18));
-        cardNumberLabel.setForeground(Color.WHITE);
-        
-        // Card holder name and expiry in center panel
-        JPanel centerPanel = new JPanel(new BorderLayout());
-        centerPanel.setOpaque(false);
-        centerPanel.add(cardNumberLabel, BorderLayout.NORTH);
-        
-        // Card holder
-        JLabel cardHolderLabel = new JLabel("CARD HOLDER");
-        cardHolderLabel.setFont(new Font("Arial", Font.PLAIN, 10));
-        cardHolderLabel.setForeground(new Color(220, 220, 220));
-        
-        JLabel nameLabel = new JLabel(user.getFullName().toUpperCase());
-        nameLabel.setFont(new Font("Arial", Font.BOLD, 14));
-        nameLabel.setForeground(Color.WHITE);
-        
-        JPanel holderPanel = new JPanel(new BorderLayout());
-        holderPanel.setOpaque(false);
-        holderPanel.add(cardHolderLabel, BorderLayout.NORTH);
-        holderPanel.add(nameLabel, BorderLayout.CENTER);
-        
-        // Expiry date
-        JLabel expiryLabel = new JLabel("VALID THRU");
-        expiryLabel.setFont(new Font("Arial", Font.PLAIN, 10));
-        expiryLabel.setForeground(new Color(220, 220, 220));
-        
-        SimpleDateFormat dateFormat = new SimpleDateFormat("MM/yy");
-        JLabel validThruLabel = new JLabel(dateFormat.format(card.getExpiryDate()));
-        validThruLabel.setFont(new Font("Arial", Font.BOLD, 14));
-        validThruLabel.setForeground(Color.WHITE);
-        
-        JPanel expiryPanel = new JPanel(new BorderLayout());
-        expiryPanel.setOpaque(false);
-        expiryPanel.add(expiryLabel, BorderLayout.NORTH);
-        expiryPanel.add(validThruLabel, BorderLayout.CENTER);
-        
-        JPanel infoPanel = new JPanel(new BorderLayout(15, 0));
-        infoPanel.setOpaque(false);
-        infoPanel.add(holderPanel, BorderLayout.WEST);
-        infoPanel.add(expiryPanel, BorderLayout.EAST);
-        
-        centerPanel.add(infoPanel, BorderLayout.SOUTH);
-        cardPanel.add(centerPanel, BorderLayout.CENTER);
-        
-        // Status indicator at bottom
-        JPanel statusPanel = new JPanel(new BorderLayout());
-        statusPanel.setOpaque(false);
-        
-        JLabel statusLabel = new JLabel(card.isActive() ? "ACTIVE" : "BLOCKED");
-        statusLabel.setFont(new Font("Arial", Font.BOLD, 12));
-        statusLabel.setForeground(card.isActive() ? new Color(144, 238, 144) : new Color(255, 99, 71));
-        
-        statusPanel.add(statusLabel, BorderLayout.WEST);
-        
-        // Card type (VISA, MASTERCARD, etc.)
-        JLabel cardTypeLabel = new JLabel(card.getCardType().toUpperCase());
-        cardTypeLabel.setFont(new Font("Arial", Font.BOLD, 16));
-        cardTypeLabel.setForeground(Color.WHITE);
-        
-        statusPanel.add(cardTypeLabel, BorderLayout.EAST);
-        
-        cardPanel.add(statusPanel, BorderLayout.SOUTH);
-        
-        // Store the card ID as a client property for reference when blocking
-        cardPanel.putClientProperty("cardId", card.getCardId());
-        
-        // Add mouse listener to make the card selectable
-        cardPanel.addMouseListener(new MouseAdapter() {
-            @Override
-            public void mouseClicked(MouseEvent e) {
-                // Deselect all cards
-                for (Component comp : cardDisplayPanel.getComponents()) {
-                    if (comp instanceof JPanel) {
-                        ((JComponent) comp).setBorder(BorderFactory.createCompoundBorder(
-                                BorderFactory.createLineBorder(new Color(0, 0, 0), 1),
-                                BorderFactory.createEmptyBorder(15, 15, 15, 15)));
-                    }
-                }
-                
-                // Select this card
-                cardPanel.setBorder(BorderFactory.createCompoundBorder(
-                        BorderFactory.createLineBorder(new Color(255, 215, 0), 2),
-                        BorderFactory.createEmptyBorder(15, 15, 15, 15)));
-            }
-        });
+                BorderFactory.createEmptyBorder(15, 15, 15, 15));
+        private final Border selectedBorder = BorderFactory.createCompoundBorder(
+                BorderFactory.createLineBorder(new Color(255, 215, 0), 2),
+                BorderFactory.createEmptyBorder(15, 15, 15, 15));
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat("MM/yy");
+        
+        private final JPanel cardPanel = new JPanel(new BorderLayout());
+        private final JLabel cardNumberLabel = new JLabel();
+        private final JLabel nameLabel = new JLabel();
+        private final JLabel validThruLabel = new JLabel();
+        private final JLabel statusLabel = new JLabel();
+        private final JLabel cardTypeLabel = new JLabel();
+        
+        CardRenderer() {
+            // The card itself, with space around it; the cell keeps the list's background
+            super(new FlowLayout(FlowLayout.CENTER, 0, 10));
+            setOpaque(false);
+            
+            cardPanel.setPreferredSize(new Dimension(380, 200));
+            
+            // Bank name
+            JLabel bankLabel = new JLabel("BANK MANAGEMENT SYSTEM");
+            bankLabel.setFont(new Font("Arial", Font.BOLD, 16));
+            bankLabel.setForeground(Color.WHITE);
+            cardPanel.add(bankLabel, BorderLayout.NORTH);
+            
+            // Card number (formatted with spaces for readability)
+            cardNumberLabel.setFont(new Font("Monospaced", Font.BOLD, 18));
+            cardNumberLabel.setForeground(Color.WHITE);
+            
+            // Card holder name and expiry in center panel
+            JPanel centerPanel = new JPanel(new BorderLayout());
+            centerPanel.setOpaque(false);
+            centerPanel.add(cardNumberLabel, BorderLayout.NORTH);
+            
+            // Card holder
+            JLabel cardHolderLabel = new JLabel("CARD HOLDER");
+            cardHolderLabel.setFont(new Font("Arial", Font.PLAIN, 10));
+            cardHolderLabel.setForeground(new Color(220, 220, 220));
+            
+            nameLabel.setFont(new Font("Arial", Font.BOLD, 14));
+            nameLabel.setForeground(Color.WHITE);
+            
+            JPanel holderPanel = new JPanel(new BorderLayout());
+            holderPanel.setOpaque(false);
+            holderPanel.add(cardHolderLabel, BorderLayout.NORTH);
+            holderPanel.add(nameLabel, BorderLayout.CENTER);
+            
+            // Expiry date
+            JLabel expiryLabel = new JLabel("VALID THRU");
+            expiryLabel.setFont(new Font("Arial", Font.PLAIN, 10));
+            expiryLabel.setForeground(new Color(220, 220, 220));
+            
+            validThruLabel.setFont(new Font("Arial", Font.BOLD, 14));
+            validThruLabel.setForeground(Color.WHITE);
+            
+            JPanel expiryPanel = new JPanel(new BorderLayout());
+            expiryPanel.setOpaque(false);
+            expiryPanel.add(expiryLabel, BorderLayout.NORTH);
+            expiryPanel.add(validThruLabel, BorderLayout.CENTER);
+            
+            JPanel infoPanel = new JPanel(new BorderLayout(15, 0));
+            infoPanel.setOpaque(false);
+            infoPanel.add(holderPanel, BorderLayout.WEST);
+            infoPanel.add(expiryPanel, BorderLayout.EAST);
+            
+            centerPanel.add(infoPanel, BorderLayout.SOUTH);
+            cardPanel.add(centerPanel, BorderLayout.CENTER);
+            
+            // Status indicator and card type (VISA, MASTERCARD, etc.) at bottom
+            JPanel statusPanel = new JPanel(new BorderLayout());
+            statusPanel.setOpaque(false);
+            
+            statusLabel.setFont(new Font("Arial", Font.BOLD, 12));
+            statusPanel.add(statusLabel, BorderLayout.WEST);
+            
+            cardTypeLabel.setFont(new Font("Arial", Font.BOLD, 16));
+            cardTypeLabel.setForeground(Color.WHITE);
+            statusPanel.add(cardTypeLabel, BorderLayout.EAST);
+            
+            cardPanel.add(statusPanel, BorderLayout.SOUTH);
+            add(cardPanel);
+        }
         
-        return cardPanel;
+        @Override
+        public Component getListCellRendererComponent(JList<? extends Card> list, Card card, int index,
+                                                      boolean isSelected, boolean cellHasFocus) {
+            cardPanel.setBackground(card.isActive() ? activeColor : blockedColor);
+            cardPanel.setBorder(isSelected ? selectedBorder : normalBorder);
+            cardNumberLabel.setText(formatCardNumber(card.getCardNumber()));
+            nameLabel.setText(user.getFullName().toUpperCase());
+            validThruLabel.setText(card.getExpiryDate() != null ? dateFormat.format(card.getExpiryDate()) : "");
+            statusLabel.setText(card.isActive() ? "ACTIVE" : "BLOCKED");
+            statusLabel.setForeground(card.isActive() ? activeStatusColor : blockedStatusColor);
+            cardTypeLabel.setText(card.getCardType().toUpperCase());
+            return this;
+        }
     }
     
     private String formatCardNumber(String cardNumber) {
@@ -279,6 +292,10 @@ public class Cards extends JFrame {
     }
     
     private void generateNewCard() {
+        if (selectedAccount == null) {
+            return; // Accounts still loading
+        }
+        
         // Ask for card type
         String[] cardTypes = {"VISA", "MASTERCARD"};
         String cardType = (String) JOptionPane.showInputDialog(
@@ -289,76 +306,28 @@ public class Cards extends JFrame {
             return; // User canceled
         }
         
-        // Generate a card number
-        String cardNumber = generateCardNumber(cardType);
-        
-        // Generate CVV
-        String cvv = generateCVV();
-        
         // Set expiry date (4 years from now)
         Calendar calendar = Calendar.getInstance();
         calendar.add(Calendar.YEAR, 4);
         Timestamp expiryDate = new Timestamp(calendar.getTimeInMillis());
         
-        // Create the card in the database
-        boolean success = DatabaseManager.createCard(selectedAccount.getAccountId(), cardNumber, cardType, cvv, expiryDate);
-        
-        if (success) {
-            JOptionPane.showMessageDialog(this, "New card generated successfully!", 
-                    "Success", JOptionPane.INFORMATION_MESSAGE);
-            refreshCardDisplay();
-        } else {
-            JOptionPane.showMessageDialog(this, "Failed to generate new card. Please try again.", 
-                    "Error", JOptionPane.ERROR_MESSAGE);
-        }
-    }
-    
-    private String generateCardNumber(String cardType) {
-        Random random = new Random();
-        StringBuilder cardNumber = new StringBuilder();
-        
-        // First digits based on card type
-        if (cardType.equals("VISA")) {
-            cardNumber.append("4");
-        } else if (cardType.equals("MASTERCARD")) {
-            cardNumber.append("5");
-        }
-        
-        // Generate the rest of the 16-digit card number
-        while (cardNumber.length() < 16) {
-            cardNumber.append(random.nextInt(10));
-        }
-        
-        return cardNumber.toString();
-    }
-    
-    private String generateCVV() {
-        Random random = new Random();
-        StringBuilder cvv = new StringBuilder();
-        
-        // Generate a 3-digit CVV
-        for (int i = 0; i < 3; i++) {
-            cvv.append(random.nextInt(10));
-        }
-        
-        return cvv.toString();
+        // Allocate a number and create the card in the background
+        UiTask.run(this, BankService.issueCard(selectedAccount.getAccountId(), cardType, expiryDate), success -> {
+            if (success) {
+                JOptionPane.showMessageDialog(this, "New card generated successfully!", 
+                        "Success", JOptionPane.INFORMATION_MESSAGE);
+                refreshCardDisplay();
+            } else {
+                JOptionPane.showMessageDialog(this, "Failed to generate new card. Please try again.", 
+                        "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }, generateCardButton, blockCardButton);
     }
     
     private void blockSelectedCard() {
-        // Find the selected card
-        Integer selectedCardId = null;
-        
-        for (Component comp : cardDisplayPanel.getComponents()) {
-            if (comp instanceof JPanel) {
-                JPanel cardPanel = (JPanel) comp;
-                if (cardPanel.getBorder().toString().contains("javax.swing.border.CompoundBorder")) {
-                    selectedCardId = (Integer) cardPanel.getClientProperty("cardId");
-                    break;
-                }
-            }
-        }
+        Card selectedCard = cardList.getSelectedValue();
         
-        if (selectedCardId == null) {
+        if (selectedCard == null) {
             JOptionPane.showMessageDialog(this, "Please select a card to block", 
                     "No Card Selected", JOptionPane.WARNING_MESSAGE);
             return;
@@ -370,16 +339,18 @@ public class Cards extends JFrame {
                 "Confirm Block Card", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
         
         if (confirm == JOptionPane.YES_OPTION) {
-            boolean success = DatabaseManager.blockCard(selectedCardId);
-            
-            if (success) {
-                JOptionPane.showMessageDialog(this, "Card has been blocked successfully", 
-                        "Success", JOptionPane.INFORMATION_MESSAGE);
-                refreshCardDisplay();
-            } else {
-                JOptionPane.showMessageDialog(this, "Failed to block card. Please try again.", 
-                        "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            int cardId = selectedCard.getCardId();
+            UiTask.run(this, BankService.blockCard(cardId), success -> {
+                if (success) {
+                    // Repaint just that card instead of reloading the account's cards
+                    cardModel.setActive(cardId, false);
+                    JOptionPane.showMessageDialog(this, "Card has been blocked successfully", 
+                            "Success", JOptionPane.INFORMATION_MESSAGE);
+                } else {
+                    JOptionPane.showMessageDialog(this, "Failed to block card. Please try again.", 
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }, generateCardButton, blockCardButton);
         }
     }
     
@@ -0,0 +1,359 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded JDBC connection pool used by DatabaseManager.
+// Callers borrow with getConnection() and hand the connection back by closing it,
+// so the existing try-with-resources blocks keep working unchanged.
+public class ConnectionPool {
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long maxLifetimeMillis;
+    private final long waitTimeoutMillis;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+
+    // Connections idle for less than this are handed out without a validation round trip
+    private static final long VALIDATION_BYPASS_MILLIS = 500;
+
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+    private volatile SlowQueryLog slowQueryLog;
+
+    // Statistics
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong saturatedCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final StatementCache.Stats statementStats = new StatementCache.Stats();
+
+    public ConnectionPool(String url, String user, String password, int maxSize,
+                          long idleTimeoutMillis, long maxLifetimeMillis,
+                          long waitTimeoutMillis, int validationTimeoutSeconds,
+                          int statementCacheSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive: " + maxSize);
+        }
+
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxLifetimeMillis = maxLifetimeMillis;
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long evictionPeriod = Math.max(1000, Math.min(idleTimeoutMillis, maxLifetimeMillis) / 2);
+        evictor.scheduleWithFixedDelay(this::evictExpired, evictionPeriod, evictionPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    // Borrow a connection, waiting up to the configured wait timeout when the pool is saturated
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+
+        if (!permits.tryAcquire()) {
+            saturatedCount.incrementAndGet();
+            try {
+                if (!permits.tryAcquire(waitTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    timeoutCount.incrementAndGet();
+                    throw new SQLException("Timed out after " + waitTimeoutMillis
+                            + " ms waiting for a database connection (pool size " + maxSize + ")");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database connection", e);
+            }
+        }
+
+        try {
+            PooledConnection pooled = takeUsableConnection();
+            recordWait(System.nanoTime() - start);
+            return pooled.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection takeUsableConnection() throws SQLException {
+        while (true) {
+            PooledConnection pooled;
+            synchronized (idle) {
+                pooled = idle.pollFirst();
+            }
+
+            if (pooled == null) {
+                return createConnection();
+            }
+
+            long now = System.currentTimeMillis();
+            if (pooled.isExpired(now) || !isAlive(pooled, now)) {
+                destroy(pooled);
+                continue;
+            }
+            return pooled;
+        }
+    }
+
+    private boolean isAlive(PooledConnection pooled, long now) {
+        if (now - pooled.lastReturnedAt < VALIDATION_BYPASS_MILLIS) {
+            return true;
+        }
+
+        try {
+            return pooled.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection createConnection() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, user, password);
+        openConnections.incrementAndGet();
+        createdCount.incrementAndGet();
+        return new PooledConnection(physical);
+    }
+
+    // Called when a borrower closes its connection
+    private void release(PooledConnection pooled) {
+        try {
+            boolean reusable = !closed && !pooled.physical.isClosed()
+                    && !pooled.isExpired(System.currentTimeMillis());
+
+            if (reusable && !pooled.physical.getAutoCommit()) {
+                // Never hand uncommitted work to the next borrower
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+
+            if (reusable) {
+                pooled.lastReturnedAt = System.currentTimeMillis();
+                synchronized (idle) {
+                    idle.addFirst(pooled);
+                }
+            } else {
+                destroy(pooled);
+            }
+        } catch (SQLException e) {
+            destroy(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void destroy(PooledConnection pooled) {
+        openConnections.decrementAndGet();
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing pooled connection: " + e.getMessage());
+        }
+    }
+
+    // Remove connections that have sat idle too long or outlived their max lifetime
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        Deque<PooledConnection> expired = new ArrayDeque<>();
+
+        synchronized (idle) {
+            idle.removeIf(pooled -> {
+                if (pooled.isExpired(now) || now - pooled.lastReturnedAt > idleTimeoutMillis) {
+                    expired.add(pooled);
+                    return true;
+                }
+                return false;
+            });
+        }
+
+        for (PooledConnection pooled : expired) {
+            evictedCount.incrementAndGet();
+            destroy(pooled);
+        }
+    }
+
+    private void recordWait(long waitNanos) {
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        long currentMax;
+        while (waitNanos > (currentMax = maxWaitNanos.get())) {
+            if (maxWaitNanos.compareAndSet(currentMax, waitNanos)) {
+                break;
+            }
+        }
+    }
+
+    // Time the prepared statements handed out from now on and report slow ones (null turns it off)
+    public void setSlowQueryLog(SlowQueryLog log) {
+        this.slowQueryLog = log;
+    }
+
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        synchronized (idle) {
+            for (PooledConnection pooled : idle) {
+                destroy(pooled);
+            }
+            idle.clear();
+        }
+    }
+
+    // Pool statistics
+    public int getMaxSize() { return maxSize; }
+    public int getOpenConnections() { return openConnections.get(); }
+    public int getActiveConnections() { return maxSize - permits.availablePermits(); }
+    public int getIdleConnections() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+    public long getBorrowCount() { return borrowCount.get(); }
+    public long getSaturatedCount() { return saturatedCount.get(); }
+    public long getTimeoutCount() { return timeoutCount.get(); }
+    public long getCreatedCount() { return createdCount.get(); }
+    public long getEvictedCount() { return evictedCount.get(); }
+    public long getMaxWaitMicros() { return maxWaitNanos.get() / 1000; }
+    public int getStatementCacheSize() { return statementCacheSize; }
+    public long getStatementCacheHits() { return statementStats.hits.get(); }
+    public long getStatementCacheMisses() { return statementStats.misses.get(); }
+    public long getStatementCacheEvictions() { return statementStats.evictions.get(); }
+    public double getAverageWaitMicros() {
+        long borrows = borrowCount.get();
+        return borrows == 0 ? 0 : totalWaitNanos.get() / 1000.0 / borrows;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool{" +
+                "open=" + getOpenConnections() +
+                ", active=" + getActiveConnections() +
+                ", idle=" + getIdleConnections() +
+                ", max=" + maxSize +
+                ", borrows=" + getBorrowCount() +
+                ", saturated=" + getSaturatedCount() +
+                ", timeouts=" + getTimeoutCount() +
+                ", avgWaitMicros=" + String.format("%.1f", getAverageWaitMicros()) +
+                ", maxWaitMicros=" + getMaxWaitMicros() +
+                ", stmtCacheHits=" + getStatementCacheHits() +
+                ", stmtCacheMisses=" + getStatementCacheMisses() +
+                '}';
+    }
+
+    // A physical connection plus the bookkeeping the pool needs for it
+    private class PooledConnection {
+        final Connection physical;
+        final StatementCache statementCache;
+        final long createdAt = System.currentTimeMillis();
+        volatile long lastReturnedAt = createdAt;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statementCache = statementCacheSize > 0
+                    ? new StatementCache(physical, statementCacheSize, statementStats)
+                    : null;
+        }
+
+        boolean isExpired(long now) {
+            return now - createdAt > maxLifetimeMillis;
+        }
+
+        // Each borrow gets its own proxy so a stale reference cannot close a connection
+        // that has since been handed to someone else
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new LeaseHandler(this));
+        }
+    }
+
+    private class LeaseHandler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean released;
+
+        LeaseHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return released || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.physical + "]";
+                default:
+                    if (released) {
+                        throw new SQLException("Connection has already been returned to the pool");
+                    }
+                    Object result = invokeOnPhysical(method, args);
+                    SlowQueryLog log = slowQueryLog;
+                    if (log != null && method.getName().equals("prepareStatement")) {
+                        return log.wrap((PreparedStatement) result, (String) args[0], ConnectionPool.this);
+                    }
+                    return result;
+            }
+        }
+
+        private Object invokeOnPhysical(Method method, Object[] args) throws Throwable {
+            if (pooled.statementCache != null && method.getName().equals("prepareStatement")) {
+                if (args.length == 1) {
+                    return pooled.statementCache.prepare((String) args[0], Statement.NO_GENERATED_KEYS);
+                }
+                if (args.length == 2 && args[1] instanceof Integer) {
+                    return pooled.statementCache.prepare((String) args[0], (Integer) args[1]);
+                }
+            }
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -2,10 +2,9 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
-import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import javax.swing.table.DefaultTableModel;
 
 public class Dashboard extends JFrame {
     private User user;
@@ -21,8 +20,9 @@ public class Dashboard extends JFrame {
     private JButton manageCardsButton;
     private JButton manageLoansButton;
     private JTable transactionTable;
-    private DefaultTableModel transactionTableModel;
+    private TransactionTableModel transactionTableModel;
     private JComboBox<String> accountSelector;
+    private final UiTask.Latest accountRequests = new UiTask.Latest();
     
     public Dashboard(User user) {
         this.user = user;
@@ -31,17 +31,8 @@ public class Dashboard extends JFrame {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
         
-        // Load user accounts
-        accounts = DatabaseManager.getUserAccounts(user.getId());
-        if (accounts.isEmpty()) {
-            JOptionPane.showMessageDialog(this, "No accounts found for this user", 
-                    "Error", JOptionPane.ERROR_MESSAGE);
-            logout();
-            return;
-        }
-        
-        // Set the first account as selected by default
-        selectedAccount = accounts.get(0);
+        // Accounts are loaded in the background once the window is built
+        accounts = new ArrayList<>();
         
         // Create main panel
         JPanel mainPanel = new JPanel(new BorderLayout());
@@ -86,9 +77,6 @@ public class Dashboard extends JFrame {
         selectorPanel.add(new JLabel("Select Account: "));
         
         accountSelector = new JComboBox<>();
-        for (Account account : accounts) {
-            accountSelector.addItem(account.getAccountNumber() + " (" + account.getAccountType() + ")");
-        }
         accountSelector.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
                 int selectedIndex = accountSelector.getSelectedIndex();
@@ -105,7 +93,7 @@ public class Dashboard extends JFrame {
         JPanel balancePanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         balancePanel.setBackground(new Color(240, 248, 255));
         
-        balanceLabel = new JLabel("Current Balance: $" + String.format("%.2f", selectedAccount.getBalance()));
+        balanceLabel = new JLabel("Current Balance: loading...");
         balanceLabel.setFont(new Font("Arial", Font.BOLD, 14));
         balancePanel.add(balanceLabel);
         
@@ -190,14 +178,8 @@ public class Dashboard extends JFrame {
         historyPanel.setBackground(new Color(240, 248, 255));
         historyPanel.setBorder(BorderFactory.createTitledBorder("Transaction History"));
         
-        // Transaction table
-        String[] columnNames = {"Date", "Type", "Amount", "Description"};
-        transactionTableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Make table non-editable
-            }
-        };
+        // Transaction table - pages are fetched as the user scrolls
+        transactionTableModel = new TransactionTableModel();
         transactionTable = new JTable(transactionTableModel);
         transactionTable.getColumnModel().getColumn(0).setPreferredWidth(120);
         transactionTable.getColumnModel().getColumn(1).setPreferredWidth(80);
@@ -207,9 +189,6 @@ public class Dashboard extends JFrame {
         JScrollPane scrollPane = new JScrollPane(transactionTable);
         historyPanel.add(scrollPane, BorderLayout.CENTER);
         
-        // Load transaction history
-        loadTransactions();
-        
         // Add panels to center panel
         centerPanel.add(accountPanel);
         centerPanel.add(historyPanel);
@@ -218,9 +197,32 @@ public class Dashboard extends JFrame {
         
         // Add main panel to frame
         add(mainPanel);
+        
+        // Load accounts and the first account's transaction history
+        loadAccounts();
+    }
+    
+    private void loadAccounts() {
+        UiTask.run(this, BankService.getUserAccounts(user.getId()), loadedAccounts -> {
+            if (loadedAccounts.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "No accounts found for this user", 
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                logout();
+                return;
+            }
+            
+            accounts = loadedAccounts;
+            // Adding the first item selects it, which shows its balance and loads its history
+            for (Account account : accounts) {
+                accountSelector.addItem(account.getAccountNumber() + " (" + account.getAccountType() + ")");
+            }
+        }, accountSelector);
     }
     
     private void openAccountPage() {
+        if (selectedAccount == null) {
+            return;
+        }
         AccountPage accountPage = new AccountPage(user, selectedAccount);
         accountPage.setVisible(true);
         accountPage.addWindowListener(new WindowAdapter() {
@@ -232,51 +234,44 @@ public class Dashboard extends JFrame {
     }
     
     private void updateAccountInfo() {
-        balanceLabel.setText("Current Balance: $" + String.format("%.2f", selectedAccount.getBalance()));
+        balanceLabel.setText("Current Balance: $" + Money.format(selectedAccount.getBalance()));
     }
     
     private void loadTransactions() {
-        // Clear existing data
-        transactionTableModel.setRowCount(0);
-        
-        // Load transactions from database
-        List<Transaction> transactions = DatabaseManager.getTransactionHistory(selectedAccount.getAccountId());
-        
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
-        
-        for (Transaction transaction : transactions) {
-            String formattedDate = dateFormat.format(transaction.getDate());
-            String type = transaction.getType();
-            String amount = String.format("$%.2f", transaction.getAmount());
-            String description = transaction.getDescription();
-            
-            transactionTableModel.addRow(new Object[]{formattedDate, type, amount, description});
-        }
-        
-        // Update the UI
-        transactionTable.repaint();
+        // Loads the first page in the background; the rest follows on demand
+        transactionTableModel.load(selectedAccount.getAccountId());
     }
     
     private void refreshAccountData() {
-        // Reload account data
-        accounts = DatabaseManager.getUserAccounts(user.getId());
-        
-        // Find the currently selected account with updated balance
-        for (Account account : accounts) {
-            if (account.getAccountId() == selectedAccount.getAccountId()) {
-                selectedAccount = account;
-                break;
-            }
+        if (selectedAccount == null) {
+            return;
         }
         
-        // Update display
-        updateAccountInfo();
-        loadTransactions();
+        // Reload account data; a newer refresh supersedes this one
+        accountRequests.run(this, () -> BankService.getUserAccounts(user.getId()), loadedAccounts -> {
+            accounts = loadedAccounts;
+            
+            // Find the currently selected account with updated balance
+            for (Account account : accounts) {
+                if (account.getAccountId() == selectedAccount.getAccountId()) {
+                    selectedAccount = account;
+                    break;
+                }
+            }
+            
+            // Update display
+            updateAccountInfo();
+            loadTransactions();
+        });
     }
     
     private void deposit() {
+        if (selectedAccount == null) {
+            return; // Accounts still loading
+        }
+        
         try {
-            double amount = Double.parseDouble(amountField.getText());
+            long amount = Money.parse(amountField.getText());
             
             if (amount <= 0) {
                 JOptionPane.showMessageDialog(this, "Please enter a positive amount", 
@@ -284,18 +279,20 @@ public class Dashboard extends JFrame {
                 return;
             }
             
-            if (DatabaseManager.deposit(selectedAccount.getAccountId(), amount)) {
-                JOptionPane.showMessageDialog(this, "Successfully deposited $" + String.format("%.2f", amount), 
-                        "Success", JOptionPane.INFORMATION_MESSAGE);
-                
-                amountField.setText("");
-                
-                // Refresh data
-                refreshAccountData();
-            } else {
-                JOptionPane.showMessageDialog(this, "Failed to deposit amount", 
-                        "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            UiTask.run(this, BankService.deposit(selectedAccount.getAccountId(), amount), success -> {
+                if (success) {
+                    JOptionPane.showMessageDialog(this, "Successfully deposited $" + Money.format(amount), 
+                            "Success", JOptionPane.INFORMATION_MESSAGE);
+                    
+                    amountField.setText("");
+                    
+                    // Refresh data
+                    refreshAccountData();
+                } else {
+                    JOptionPane.showMessageDialog(this, "Failed to deposit amount", 
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }, depositButton, withdrawButton, transferButton);
             
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(this, "Please enter a valid amount", 
@@ -304,8 +301,12 @@ public class Dashboard extends JFrame {
     }
     
     private void withdraw() {
+        if (selectedAccount == null) {
+            return; // Accounts still loading
+        }
+        
         try {
-            double amount = Double.parseDouble(amountField.getText());
+            long amount = Money.parse(amountField.getText());
             
             if (amount <= 0) {
                 JOptionPane.showMessageDialog(this, "Please enter a positive amount", 
@@ -313,18 +314,20 @@ public class Dashboard extends JFrame {
                 return;
             }
             
-            if (DatabaseManager.withdraw(selectedAccount.getAccountId(), amount)) {
-                JOptionPane.showMessageDialog(this, "Successfully withdrew $" + String.format("%.2f", amount), 
-                        "Success", JOptionPane.INFORMATION_MESSAGE);
-                
-                amountField.setText("");
-                
-                // Refresh data
-                refreshAccountData();
-            } else {
-                JOptionPane.showMessageDialog(this, "Failed to withdraw amount. Insufficient funds?", 
-                        "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            UiTask.run(this, BankService.withdraw(selectedAccount.getAccountId(), amount), success -> {
+                if (success) {
+                    JOptionPane.showMessageDialog(this, "Successfully withdrew $" + Money.format(amount), 
+                            "Success", JOptionPane.INFORMATION_MESSAGE);
+                    
+                    amountField.setText("");
+                    
+                    // Refresh data
+                    refreshAccountData();
+                } else {
+                    JOptionPane.showMessageDialog(this, "Failed to withdraw amount. Insufficient funds?", 
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }, depositButton, withdrawButton, transferButton);
             
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(this, "Please enter a valid amount", 
@@ -333,8 +336,12 @@ public class Dashboard extends JFrame {
     }
     
     private void transfer() {
+        if (selectedAccount == null) {
+            return; // Accounts still loading
+        }
+        
         try {
-            double amount = Double.parseDouble(amountField.getText());
+            long amount = Money.parse(amountField.getText());
             
             if (amount <= 0) {
                 JOptionPane.showMessageDialog(this, "Please enter a positive amount", 
@@ -349,44 +356,41 @@ public class Dashboard extends JFrame {
                 return;
             }
             
-            // Find recipient account
-            int recipientAccountId = -1;
-            
-            // In a real application, you would query the database directly
-            // For simplicity, we'll assume we have a method to get account by number
-            Account recipientAccount = null;
-            
-            // This is a placeholder - in a real application, use a database query
+            // Look in the user's own accounts first, then ask the database
             for (Account otherAccount : accounts) {
                 if (otherAccount.getAccountNumber().equals(recipientAccountNumber)) {
-                    recipientAccount = otherAccount;
-                    recipientAccountId = otherAccount.getAccountId();
-                    break;
+                    completeTransfer(otherAccount.getAccountId(), recipientAccountNumber, amount);
+                    return;
                 }
             }
             
-            if (recipientAccount == null) {
-                // If not found in user's accounts, search all accounts
-                // This would be better handled with a direct database query
-                recipientAccountId = findAccountIdByNumber(recipientAccountNumber);
-            }
-            
-            if (recipientAccountId == -1) {
-                JOptionPane.showMessageDialog(this, "Recipient account not found", 
-                        "Transfer Error", JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-            
-            // Can't transfer to the same account
-            if (recipientAccountId == selectedAccount.getAccountId()) {
-                JOptionPane.showMessageDialog(this, "Cannot transfer to the same account", 
-                        "Transfer Error", JOptionPane.ERROR_MESSAGE);
-                return;
-            }
+            UiTask.run(this, BankService.getAccountByNumber(recipientAccountNumber), recipientAccount -> {
+                if (recipientAccount == null) {
+                    JOptionPane.showMessageDialog(this, "Recipient account not found", 
+                            "Transfer Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                completeTransfer(recipientAccount.getAccountId(), recipientAccountNumber, amount);
+            }, depositButton, withdrawButton, transferButton);
             
-            // Process transfer
-            if (DatabaseManager.transfer(selectedAccount.getAccountId(), recipientAccountId, amount)) {
-                JOptionPane.showMessageDialog(this, "Successfully transferred $" + String.format("%.2f", amount) + 
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Please enter a valid amount", 
+                    "Invalid Input", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    private void completeTransfer(int recipientAccountId, String recipientAccountNumber, long amount) {
+        // Can't transfer to the same account
+        if (recipientAccountId == selectedAccount.getAccountId()) {
+            JOptionPane.showMessageDialog(this, "Cannot transfer to the same account", 
+                    "Transfer Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        
+        // Process transfer
+        UiTask.run(this, BankService.transfer(selectedAccount.getAccountId(), recipientAccountId, amount), success -> {
+            if (success) {
+                JOptionPane.showMessageDialog(this, "Successfully transferred $" + Money.format(amount) + 
                         " to account " + recipientAccountNumber, 
                         "Success", JOptionPane.INFORMATION_MESSAGE);
                 
@@ -398,20 +402,7 @@ public class Dashboard extends JFrame {
                 JOptionPane.showMessageDialog(this, "Failed to complete transfer. Insufficient funds?", 
                         "Error", JOptionPane.ERROR_MESSAGE);
             }
-            
-        } catch (NumberFormatException ex) {
-            JOptionPane.showMessageDialog(this, "Please enter a valid amount", 
-                    "Invalid Input", JOptionPane.ERROR_MESSAGE);
-        }
-    }
-    
-    private int findAccountIdByNumber(String accountNumber) {
-        // Use the new DatabaseManager method to find an account by number
-        Account account = DatabaseManager.getAccountByNumber(accountNumber);
-        if (account != null) {
-            return account.getAccountId();
-        }
-        return -1;
+        }, depositButton, withdrawButton, transferButton);
     }
     
     private void logout() {
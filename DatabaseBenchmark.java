@@ -0,0 +1,173 @@
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Throughput and latency of the DatabaseManager hot paths against an in-process database, so
+// regressions show up without a MySQL server. For every data set size a fresh database is
+// created from bank_management_system.sql and filled by BenchmarkDataset, then each operation
+// is run for a warmup period and a measured period at every thread count.
+//
+// The default URL is H2 in MySQL mode; put the H2 jar on the class path:
+//   java -cp .:h2.jar DatabaseBenchmark
+// Optional system properties:
+//   -Dbench.url=jdbc:h2:mem:bank%d;MODE=MySQL;DATABASE_TO_LOWER=TRUE  (%d is the data set number;
+//                                                                    the database must start empty)
+//   -Dbench.user=sa -Dbench.password= -Dbench.schema=bank_management_system.sql
+//   -Dbench.users=100,10000 -Dbench.accountsPerUser=2 -Dbench.transactionsPerAccount=20
+//   -Dbench.threads=1,8 -Dbench.warmupSeconds=2 -Dbench.measureSeconds=5
+//   -Dbench.operations=authenticateUser,getUserAccounts,...  (default: all)
+//   -Dbank.password.iterations (default 1,000 here, see BenchmarkDataset.useBenchmarkPasswordCost)
+public class DatabaseBenchmark {
+    private static final String URL = System.getProperty("bench.url", "jdbc:h2:mem:bank%d;MODE=MySQL;DATABASE_TO_LOWER=TRUE");
+    private static final String USER = System.getProperty("bench.user", "sa");
+    private static final String PASSWORD = System.getProperty("bench.password", "");
+    private static final Path SCHEMA = Paths.get(System.getProperty("bench.schema", "bank_management_system.sql"));
+    private static final int ACCOUNTS_PER_USER = Integer.getInteger("bench.accountsPerUser", 2);
+    private static final int TRANSACTIONS_PER_ACCOUNT = Integer.getInteger("bench.transactionsPerAccount", 20);
+    private static final long WARMUP_MILLIS = Long.getLong("bench.warmupSeconds", 2L) * 1000;
+    private static final long MEASURE_MILLIS = Long.getLong("bench.measureSeconds", 5L) * 1000;
+
+    // One call of the measured operation against a random row; false counts as a failure
+    private interface Operation {
+        boolean run(ThreadLocalRandom random, BenchmarkDataset data);
+    }
+
+    private static final Map<String, Operation> OPERATIONS = new LinkedHashMap<>();
+
+    static {
+        OPERATIONS.put("authenticateUser", (random, data) -> {
+            int userId = 1 + random.nextInt(data.getUserCount());
+            return DatabaseManager.authenticateUser(BenchmarkDataset.username(userId), BenchmarkDataset.password(userId));
+        });
+        OPERATIONS.put("getUserAccounts", (random, data) ->
+                DatabaseManager.getUserAccounts(1 + random.nextInt(data.getUserCount())).size() == data.getAccountsPerUser());
+        OPERATIONS.put("deposit", (random, data) ->
+                DatabaseManager.deposit(1 + random.nextInt(data.getAccountCount()), 100));
+        OPERATIONS.put("withdraw", (random, data) ->
+                DatabaseManager.withdraw(1 + random.nextInt(data.getAccountCount()), 100));
+        OPERATIONS.put("transfer", (random, data) -> {
+            int from = 1 + random.nextInt(data.getAccountCount());
+            int to = 1 + random.nextInt(data.getAccountCount());
+            return from == to || DatabaseManager.transfer(from, to, 100);
+        });
+        OPERATIONS.put("getTransactionHistory", (random, data) ->
+                !DatabaseManager.getTransactionHistory(1 + random.nextInt(data.getAccountCount())).isEmpty());
+        OPERATIONS.put("createLoan", (random, data) ->
+                DatabaseManager.createLoan(1 + random.nextInt(data.getAccountCount()), "PERSONAL", 1_000_000, 5.5, 36));
+        OPERATIONS.put("makeLoanPayment", (random, data) ->
+                DatabaseManager.makeLoanPayment(1 + random.nextInt(data.getLoanCount()), 1000));
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkDataset.useBenchmarkPasswordCost();
+        String[] sizes = System.getProperty("bench.users", "100,10000").split(",");
+        String[] threadCounts = System.getProperty("bench.threads", "1,8").split(",");
+        String selected = System.getProperty("bench.operations", "all");
+        String[] operations = selected.equals("all") ? OPERATIONS.keySet().toArray(new String[0]) : selected.split(",");
+        for (String operation : operations) {
+            if (!OPERATIONS.containsKey(operation.trim())) {
+                System.err.println("Unknown operation: " + operation + " (known: " + OPERATIONS.keySet() + ")");
+                return;
+            }
+        }
+
+        for (int d = 0; d < sizes.length; d++) {
+            BenchmarkDataset data = new BenchmarkDataset(Integer.parseInt(sizes[d].trim()), ACCOUNTS_PER_USER, TRANSACTIONS_PER_ACCOUNT);
+            String url = String.format(URL, d);
+
+            // Held open for the whole data set so an in-memory database is not dropped in between
+            Connection keepAlive;
+            try {
+                keepAlive = DriverManager.getConnection(url, USER, PASSWORD);
+            } catch (SQLException e) {
+                System.err.println("Benchmark database error: " + e.getMessage());
+                System.err.println("Put an embedded JDBC driver on the class path (java -cp .:h2.jar DatabaseBenchmark) or set -Dbench.url");
+                return;
+            }
+
+            try (Connection conn = keepAlive) {
+                long start = System.nanoTime();
+                data.create(conn, SCHEMA);
+                System.out.println(String.format("Data set: %s (loaded in %.1f s)", data, (System.nanoTime() - start) / 1e9));
+                System.out.println(String.format("  %-22s %7s %12s %10s %10s %10s %10s %8s",
+                        "operation", "threads", "ops/sec", "mean(us)", "p50(us)", "p99(us)", "p99.9(us)", "failed"));
+
+                for (String threads : threadCounts) {
+                    int threadCount = Integer.parseInt(threads.trim());
+                    // A fresh pool and an empty account cache for every thread count
+                    DatabaseManager.shutdown();
+                    DatabaseManager.usePool(new ConnectionPool(url, USER, PASSWORD, threadCount,
+                            60000, 30 * 60000, 5000, 2, Integer.getInteger("bank.db.pool.statementCacheSize", 64)));
+
+                    for (String operation : operations) {
+                        Operation op = OPERATIONS.get(operation.trim());
+                        run(op, data, threadCount, WARMUP_MILLIS, null);
+                        LatencyHistogram latency = new LatencyHistogram();
+                        AtomicLong failed = new AtomicLong();
+                        double seconds = run(op, data, threadCount, MEASURE_MILLIS, latency, failed);
+                        System.out.println(String.format("  %-22s %7d %,12.0f %10.1f %10.1f %10.1f %10.1f %8d",
+                                operation.trim(), threadCount, latency.getCount() / seconds,
+                                latency.getMeanNanos() / 1000.0, latency.getPercentileNanos(50) / 1000.0,
+                                latency.getPercentileNanos(99) / 1000.0, latency.getPercentileNanos(99.9) / 1000.0,
+                                failed.get()));
+                    }
+                    System.out.println("  " + DatabaseManager.getConnectionPool());
+                    System.out.println("  " + DatabaseManager.getAccountCache());
+                }
+            } finally {
+                DatabaseManager.shutdown();
+            }
+        }
+    }
+
+    private static double run(Operation op, BenchmarkDataset data, int threads, long millis, LatencyHistogram latency)
+            throws InterruptedException {
+        return run(op, data, threads, millis, latency, new AtomicLong());
+    }
+
+    // Calls the operation from the given number of threads until the time is up; returns elapsed seconds
+    private static double run(Operation op, BenchmarkDataset data, int threads, long millis,
+                              LatencyHistogram latency, AtomicLong failed) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long[] deadline = new long[1];
+
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                    while (System.nanoTime() - deadline[0] < 0) {
+                        long begin = System.nanoTime();
+                        boolean ok = op.run(random, data);
+                        if (latency != null) {
+                            latency.record(System.nanoTime() - begin);
+                        }
+                        if (!ok) {
+                            failed.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        long startNanos = System.nanoTime();
+        deadline[0] = startNanos + millis * 1_000_000L;
+        start.countDown();
+        done.await();
+        return (System.nanoTime() - startNanos) / 1e9;
+    }
+}
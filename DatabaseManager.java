@@ -1,15 +1,184 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Calendar;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 public class DatabaseManager {
-    private static final String DB_URL = "jdbc:mysql://localhost:3306/bank_management_system";
-    private static final String DB_USER = "root";
-    private static final String DB_PASSWORD = "root"; // Add your database password here
+    private static final String DB_URL = System.getProperty("bank.db.url", "jdbc:mysql://localhost:3306/bank_management_system?useServerPrepStmts=true");
+    private static final String DB_USER = System.getProperty("bank.db.user", "root");
+    private static final String DB_PASSWORD = System.getProperty("bank.db.password", "root"); // Add your database password here
+    
+    // Connection pool settings (override with -Dbank.db.pool.* system properties)
+    private static final int POOL_MAX_SIZE = Integer.getInteger("bank.db.pool.maxSize", 10);
+    private static final long POOL_IDLE_TIMEOUT_MS = Long.getLong("bank.db.pool.idleTimeoutMs", 10 * 60 * 1000L);
+    private static final long POOL_MAX_LIFETIME_MS = Long.getLong("bank.db.pool.maxLifetimeMs", 30 * 60 * 1000L);
+    private static final long POOL_WAIT_TIMEOUT_MS = Long.getLong("bank.db.pool.waitTimeoutMs", 5000L);
+    private static final int POOL_VALIDATION_TIMEOUT_S = Integer.getInteger("bank.db.pool.validationTimeoutSeconds", 2);
+    private static final int STATEMENT_CACHE_SIZE = Integer.getInteger("bank.db.pool.statementCacheSize", 64);
+    // Rows per executeBatch when issuing cards in bulk
+    private static final int CARD_BATCH_SIZE = 1000;
+    
+    private static final AccountCache ACCOUNT_CACHE = new AccountCache(Integer.getInteger("bank.cache.accounts.maxSize", 10000),
+            Long.getLong("bank.cache.accounts.ttlMs", 30000L));
+    private static final AccountLockTable ACCOUNT_LOCKS = new AccountLockTable(Integer.getInteger("bank.transfer.lockStripes", 256));
+    
+    // Timing, error and row counters for every public database operation (see MetricsRegistry)
+    private static final class Metrics {
+        static final OperationMetrics AUTHENTICATE_USER = MetricsRegistry.operation("authenticateUser");
+        static final OperationMetrics REGISTER_USER = MetricsRegistry.operation("registerUser");
+        static final OperationMetrics USERNAME_EXISTS = MetricsRegistry.operation("usernameExists");
+        static final OperationMetrics GET_USER_DETAILS = MetricsRegistry.operation("getUserDetails");
+        static final OperationMetrics GET_USER_ACCOUNTS = MetricsRegistry.operation("getUserAccounts");
+        static final OperationMetrics GET_ACCOUNT_BY_ID = MetricsRegistry.operation("getAccountById");
+        static final OperationMetrics GET_ACCOUNT_BY_NUMBER = MetricsRegistry.operation("getAccountByNumber");
+        static final OperationMetrics DEPOSIT = MetricsRegistry.operation("deposit");
+        static final OperationMetrics WITHDRAW = MetricsRegistry.operation("withdraw");
+        static final OperationMetrics TRANSFER = MetricsRegistry.operation("transfer");
+        static final OperationMetrics GET_TRANSACTION_HISTORY = MetricsRegistry.operation("getTransactionHistory");
+        static final OperationMetrics GET_TRANSACTION_HISTORY_PAGE = MetricsRegistry.operation("getTransactionHistoryPage");
+        static final OperationMetrics GET_ACCOUNT_CARDS = MetricsRegistry.operation("getAccountCards");
+        static final OperationMetrics CREATE_CARD = MetricsRegistry.operation("createCard");
+        static final OperationMetrics CREATE_CARDS = MetricsRegistry.operation("createCards");
+        static final OperationMetrics BLOCK_CARD = MetricsRegistry.operation("blockCard");
+        static final OperationMetrics CREATE_LOAN = MetricsRegistry.operation("createLoan");
+        static final OperationMetrics GET_LOANS_BY_ACCOUNT_ID = MetricsRegistry.operation("getLoansByAccountId");
+        static final OperationMetrics MAKE_LOAN_PAYMENT = MetricsRegistry.operation("makeLoanPayment");
+        static final OperationMetrics APPROVE_LOAN = MetricsRegistry.operation("approveLoan");
+        static final OperationMetrics GET_CARD_BY_NUMBER = MetricsRegistry.operation("getCardByNumber");
+        static final OperationMetrics AUTHORIZE_CARD = MetricsRegistry.operation("authorizeCard");
+    }
+    
+    private static volatile ConnectionPool pool;
+    private static volatile LedgerEngine ledger;
+    private static volatile GroupCommitter groupCommitter;
+    private static volatile SlowQueryLog slowQueryLog;
     
     private static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+        return getPool().getConnection();
+    }
+    
+    private static ConnectionPool getPool() {
+        ConnectionPool current = pool;
+        if (current == null) {
+            synchronized (DatabaseManager.class) {
+                current = pool;
+                if (current == null) {
+                    current = new ConnectionPool(DB_URL, DB_USER, DB_PASSWORD, POOL_MAX_SIZE,
+                            POOL_IDLE_TIMEOUT_MS, POOL_MAX_LIFETIME_MS,
+                            POOL_WAIT_TIMEOUT_MS, POOL_VALIDATION_TIMEOUT_S, STATEMENT_CACHE_SIZE);
+                    current.setSlowQueryLog(slowQueryLog);
+                    pool = current;
+                }
+            }
+        }
+        return current;
+    }
+    
+    // Connection pool statistics (borrow wait times, saturation, timeouts)
+    public static ConnectionPool getConnectionPool() {
+        return getPool();
+    }
+    
+    // Swap in a differently configured pool (used by the benchmark tools)
+    static synchronized void usePool(ConnectionPool newPool) {
+        ConnectionPool previous = pool;
+        newPool.setSlowQueryLog(slowQueryLog);
+        pool = newPool;
+        if (previous != null && previous != newPool) {
+            previous.close();
+        }
+    }
+    
+    // Route deposits, withdrawals, transfers and loan postings through the in-memory ledger.
+    // Balances are then served from memory and copied to the database in the background, so
+    // nothing else may write accounts.balance directly while the ledger is enabled. The
+    // ledger_checkpoint row is marked active first and only cleared by a shutdown that synced
+    // every posting, so batch jobs in other processes can check isLedgerActive().
+    public static synchronized void enableLedger(String directory) throws IOException, SQLException {
+        if (ledger == null) {
+            markLedgerActive(true);
+            ledger = LedgerEngine.open(Paths.get(directory),
+                    DatabaseManager::loadBalanceForLedger,
+                    new LedgerDatabaseSink(),
+                    Boolean.getBoolean("bank.ledger.fsync"),
+                    Long.getLong("bank.ledger.snapshotIntervalMs", 60000L),
+                    Integer.getInteger("bank.ledger.syncBatchSize", 500));
+        }
+    }
+    
+    // Coalesce concurrent deposits and withdrawals into shared transactions: postings that arrive
+    // within windowMicros of each other (up to maxBatchSize) are written with one multi-row
+    // INSERT and a single commit. Each caller still gets its own result.
+    public static synchronized void enableGroupCommit(long windowMicros, int maxBatchSize) {
+        if (groupCommitter == null) {
+            groupCommitter = new GroupCommitter(new GroupCommitDatabaseWriter(maxBatchSize), windowMicros,
+                    maxBatchSize, Integer.getInteger("bank.groupCommit.queueCapacity", 10000));
+        }
+    }
+    
+    // Group commit statistics (batch size distribution, commit latency), or null when disabled
+    public static GroupCommitter getGroupCommitter() {
+        return groupCommitter;
+    }
+    
+    // Account cache statistics (hit rate, evictions, invalidations)
+    public static AccountCache getAccountCache() {
+        return ACCOUNT_CACHE;
+    }
+    
+    // Log statements slower than thresholdMillis, with their parameters and (once) their query plan.
+    // Tuning: -Dbank.db.slowQuery.sampleRate, .intervalMs, .maxFileBytes, .maxFiles
+    public static synchronized void enableSlowQueryLog(Path file, long thresholdMillis) {
+        if (slowQueryLog == null) {
+            slowQueryLog = new SlowQueryLog(file, thresholdMillis,
+                    Double.parseDouble(System.getProperty("bank.db.slowQuery.sampleRate", "1.0")),
+                    Long.getLong("bank.db.slowQuery.intervalMs", 60000L),
+                    Long.getLong("bank.db.slowQuery.maxFileBytes", 10L * 1024 * 1024),
+                    Integer.getInteger("bank.db.slowQuery.maxFiles", 5));
+            if (pool != null) {
+                pool.setSlowQueryLog(slowQueryLog);
+            }
+        }
+    }
+    
+    public static SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+    
+    // Close all pooled connections - call when the application exits
+    public static synchronized void shutdown() {
+        ACCOUNT_CACHE.clear();
+        CardAuthorizationIndex.shutdownShared();
+        if (groupCommitter != null) {
+            groupCommitter.close();
+            groupCommitter = null;
+        }
+        if (ledger != null) {
+            try {
+                ledger.close();
+                if (ledger.isDrained()) {
+                    markLedgerActive(false);
+                }
+            } catch (IOException | SQLException e) {
+                System.err.println("Error closing ledger: " + e.getMessage());
+            }
+            ledger = null;
+        }
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+        if (slowQueryLog != null) {
+            slowQueryLog.close();
+            slowQueryLog = null;
+        }
     }
     
     // Initialize database - can be called when the application starts
@@ -18,7 +187,14 @@ public class DatabaseManager {
             // Load MySQL JDBC driver
             Class.forName("com.mysql.cj.jdbc.Driver");
             
-            System.out.println("Database connection established successfully");
+            // Open the first pooled connection up front so the first screen doesn't pay for it
+            try (Connection conn = getConnection()) {
+                if (conn.isValid(5)) {
+                    System.out.println("Database connection established successfully");
+                } else {
+                    System.err.println("Database connection established but not responding");
+                }
+            }
         } catch (ClassNotFoundException e) {
             System.err.println("Could not load JDBC driver: " + e.getMessage());
         } catch (Exception e) {
@@ -26,35 +202,113 @@ public class DatabaseManager {
         }
     }
     
+    // Outcome of a login. BUSY means the password hashing queue was full and the login was
+    // turned away without checking the password; the caller should ask the user to retry.
+    public enum AuthResult {
+        AUTHENTICATED, INVALID_CREDENTIALS, BUSY, UNAVAILABLE
+    }
+    
     // User authentication
+    public static AuthResult authenticate(String username, String password) {
+        long start = System.nanoTime();
+        AuthResult result = authenticateImpl(username, password);
+        Metrics.AUTHENTICATE_USER.record(start, result == AuthResult.AUTHENTICATED ? 1 : 0);
+        return result;
+    }
+    
+    // True only if the credentials were checked and are valid
     public static boolean authenticateUser(String username, String password) {
-        String query = "SELECT * FROM users WHERE username = ? AND password = ?";
+        return authenticate(username, password) == AuthResult.AUTHENTICATED;
+    }
+    
+    private static AuthResult authenticateImpl(String username, String password) {
+        String query = "SELECT user_id, password FROM users WHERE username = ?";
         
+        int userId = 0;
+        String stored = null;
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(query)) {
             
             pstmt.setString(1, username);
-            pstmt.setString(2, password);
             
             try (ResultSet rs = pstmt.executeQuery()) {
-                return rs.next(); // If result exists, authentication successful
+                if (rs.next()) {
+                    userId = rs.getInt("user_id");
+                    stored = rs.getString("password");
+                }
             }
             
         } catch (SQLException e) {
+            Metrics.AUTHENTICATE_USER.error();
             System.err.println("Authentication error: " + e.getMessage());
-            return false;
+            return AuthResult.UNAVAILABLE;
+        }
+        
+        // The hash is worked out with no connection held; unknown users cost the same
+        PasswordHasher hasher = PasswordHasher.shared();
+        try {
+            if (!hasher.verify(password, stored)) {
+                return AuthResult.INVALID_CREDENTIALS;
+            }
+        } catch (RejectedExecutionException e) {
+            Metrics.AUTHENTICATE_USER.error();
+            System.err.println("Authentication rejected: too many logins in progress");
+            return AuthResult.BUSY;
+        }
+        if (hasher.needsRehash(stored)) {
+            try {
+                rehashPassword(userId, stored, hasher.hash(password));
+            } catch (RejectedExecutionException e) {
+                // The password was right; the stored value is upgraded on a later login
+            }
+        }
+        return AuthResult.AUTHENTICATED;
+    }
+    
+    // Replaces a plaintext or outdated password hash after a successful login, unless the
+    // password was changed in the meantime
+    private static void rehashPassword(int userId, String oldValue, String newHash) {
+        String query = "UPDATE users SET password = ? WHERE user_id = ? AND password = ?";
+        
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(query)) {
+            
+            pstmt.setString(1, newHash);
+            pstmt.setInt(2, userId);
+            pstmt.setString(3, oldValue);
+            pstmt.executeUpdate();
+            
+        } catch (SQLException e) {
+            // The login itself succeeded; the next one tries again
+            System.err.println("Error updating password hash: " + e.getMessage());
         }
     }
     
     // User registration
     public static boolean registerUser(String username, String password, String fullName, String email) {
+        long start = System.nanoTime();
+        boolean result = registerUserImpl(username, password, fullName, email);
+        Metrics.REGISTER_USER.record(start, 0);
+        return result;
+    }
+    
+    private static boolean registerUserImpl(String username, String password, String fullName, String email) {
         String query = "INSERT INTO users (username, password, full_name, email) VALUES (?, ?, ?, ?)";
         
+        String passwordHash;
+        try {
+            passwordHash = PasswordHasher.shared().hash(password);
+        } catch (RejectedExecutionException e) {
+            Metrics.REGISTER_USER.error();
+            System.err.println("Registration rejected: too many logins in progress");
+            return false;
+        }
+        
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
             
             pstmt.setString(1, username);
-            pstmt.setString(2, password);
+            pstmt.setString(2, passwordHash);
             pstmt.setString(3, fullName);
             pstmt.setString(4, email);
             
@@ -76,6 +330,7 @@ public class DatabaseManager {
             }
             
         } catch (SQLException e) {
+            Metrics.REGISTER_USER.error();
             System.err.println("Registration error: " + e.getMessage());
             return false;
         }
@@ -99,6 +354,13 @@ public class DatabaseManager {
     
     // Check if username exists
     public static boolean usernameExists(String username) {
+        long start = System.nanoTime();
+        boolean result = usernameExistsImpl(username);
+        Metrics.USERNAME_EXISTS.record(start, result ? 1 : 0);
+        return result;
+    }
+    
+    private static boolean usernameExistsImpl(String username) {
         String query = "SELECT * FROM users WHERE username = ?";
         
         try (Connection conn = getConnection();
@@ -111,6 +373,7 @@ public class DatabaseManager {
             }
             
         } catch (SQLException e) {
+            Metrics.USERNAME_EXISTS.error();
             System.err.println("Username check error: " + e.getMessage());
             return false;
         }
@@ -118,6 +381,13 @@ public class DatabaseManager {
     
     // Get user details
     public static User getUserDetails(String username) {
+        long start = System.nanoTime();
+        User result = getUserDetailsImpl(username);
+        Metrics.GET_USER_DETAILS.record(start, result != null ? 1 : 0);
+        return result;
+    }
+    
+    private static User getUserDetailsImpl(String username) {
         String query = "SELECT * FROM users WHERE username = ?";
         
         try (Connection conn = getConnection();
@@ -137,6 +407,7 @@ public class DatabaseManager {
             }
             
         } catch (SQLException e) {
+            Metrics.GET_USER_DETAILS.error();
             System.err.println("Error getting user details: " + e.getMessage());
         }
         
@@ -145,6 +416,22 @@ public class DatabaseManager {
     
     // Get user accounts
     public static List<Account> getUserAccounts(int userId) {
+        long start = System.nanoTime();
+        List<Account> result = getUserAccountsImpl(userId);
+        Metrics.GET_USER_ACCOUNTS.record(start, result.size());
+        return result;
+    }
+    
+    private static List<Account> getUserAccountsImpl(int userId) {
+        List<Account> cached = ACCOUNT_CACHE.getByUser(userId);
+        if (cached != null) {
+            for (Account account : cached) {
+                applyLedgerBalance(account);
+            }
+            return cached;
+        }
+        
+        long loadGeneration = ACCOUNT_CACHE.startLoad();
         List<Account> accounts = new ArrayList<>();
         String query = "SELECT * FROM accounts WHERE user_id = ?";
         
@@ -160,12 +447,18 @@ public class DatabaseManager {
                     account.setUserId(rs.getInt("user_id"));
                     account.setAccountNumber(rs.getString("account_number"));
                     account.setAccountType(rs.getString("account_type"));
-                    account.setBalance(rs.getDouble("balance"));
+                    account.setBalance(Money.fromDecimal(rs.getBigDecimal("balance")));
                     accounts.add(account);
                 }
             }
             
+            ACCOUNT_CACHE.putUserAccounts(userId, accounts, loadGeneration);
+            for (Account account : accounts) {
+                applyLedgerBalance(account);
+            }
+            
         } catch (SQLException e) {
+            Metrics.GET_USER_ACCOUNTS.error();
             System.err.println("Error getting accounts: " + e.getMessage());
         }
         
@@ -174,6 +467,20 @@ public class DatabaseManager {
     
     // Get account by ID
     public static Account getAccountById(int accountId) {
+        long start = System.nanoTime();
+        Account result = getAccountByIdImpl(accountId);
+        Metrics.GET_ACCOUNT_BY_ID.record(start, result != null ? 1 : 0);
+        return result;
+    }
+    
+    private static Account getAccountByIdImpl(int accountId) {
+        Account cached = ACCOUNT_CACHE.getById(accountId);
+        if (cached != null) {
+            applyLedgerBalance(cached);
+            return cached;
+        }
+        
+        long loadGeneration = ACCOUNT_CACHE.startLoad();
         String query = "SELECT * FROM accounts WHERE account_id = ?";
         
         try (Connection conn = getConnection();
@@ -188,12 +495,15 @@ public class DatabaseManager {
                     account.setUserId(rs.getInt("user_id"));
                     account.setAccountNumber(rs.getString("account_number"));
                     account.setAccountType(rs.getString("account_type"));
-                    account.setBalance(rs.getDouble("balance"));
+                    account.setBalance(Money.fromDecimal(rs.getBigDecimal("balance")));
+                    ACCOUNT_CACHE.put(account, loadGeneration);
+                    applyLedgerBalance(account);
                     return account;
                 }
             }
             
         } catch (SQLException e) {
+            Metrics.GET_ACCOUNT_BY_ID.error();
             System.err.println("Error getting account: " + e.getMessage());
         }
         
@@ -202,6 +512,20 @@ public class DatabaseManager {
     
     // Get account by account number
     public static Account getAccountByNumber(String accountNumber) {
+        long start = System.nanoTime();
+        Account result = getAccountByNumberImpl(accountNumber);
+        Metrics.GET_ACCOUNT_BY_NUMBER.record(start, result != null ? 1 : 0);
+        return result;
+    }
+    
+    private static Account getAccountByNumberImpl(String accountNumber) {
+        Account cached = ACCOUNT_CACHE.getByNumber(accountNumber);
+        if (cached != null) {
+            applyLedgerBalance(cached);
+            return cached;
+        }
+        
+        long loadGeneration = ACCOUNT_CACHE.startLoad();
         String query = "SELECT * FROM accounts WHERE account_number = ?";
         
         try (Connection conn = getConnection();
@@ -216,26 +540,112 @@ public class DatabaseManager {
                     account.setUserId(rs.getInt("user_id"));
                     account.setAccountNumber(rs.getString("account_number"));
                     account.setAccountType(rs.getString("account_type"));
-                    account.setBalance(rs.getDouble("balance"));
+                    account.setBalance(Money.fromDecimal(rs.getBigDecimal("balance")));
+                    ACCOUNT_CACHE.put(account, loadGeneration);
+                    applyLedgerBalance(account);
                     return account;
                 }
             }
             
         } catch (SQLException e) {
+            Metrics.GET_ACCOUNT_BY_NUMBER.error();
             System.err.println("Error getting account by number: " + e.getMessage());
         }
         
         return null;
     }
     
+    // True if this process or another one runs the in-memory ledger, or one stopped with postings
+    // not yet in the database. Jobs that write accounts.balance directly must not run then.
+    // Also true when that can't be checked.
+    public static boolean isLedgerActive() {
+        if (ledger != null) {
+            return true;
+        }
+        String query = "SELECT active FROM ledger_checkpoint WHERE ledger_id = ?";
+        
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(query)) {
+            
+            pstmt.setInt(1, LedgerDatabaseSink.LEDGER_ID);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() && rs.getBoolean("active");
+            }
+        } catch (SQLException e) {
+            System.err.println("Error checking ledger state: " + e.getMessage());
+            return true;
+        }
+    }
+    
+    private static void markLedgerActive(boolean active) throws SQLException {
+        String query = "INSERT INTO ledger_checkpoint (ledger_id, last_sequence, active) VALUES (?, 0, ?) " +
+                       "ON DUPLICATE KEY UPDATE active = VALUES(active)";
+        
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(query)) {
+            
+            pstmt.setInt(1, LedgerDatabaseSink.LEDGER_ID);
+            pstmt.setBoolean(2, active);
+            pstmt.executeUpdate();
+        }
+    }
+    
+    // Ledger balance of an account, or LedgerEngine.UNKNOWN_ACCOUNT if the ledger is off or hasn't seen it
+    static long ledgerBalanceOf(int accountId) {
+        LedgerEngine engine = ledger;
+        return engine != null ? engine.balanceOf(accountId) : LedgerEngine.UNKNOWN_ACCOUNT;
+    }
+    
+    // While the ledger is enabled it holds the authoritative balance
+    private static void applyLedgerBalance(Account account) {
+        LedgerEngine engine = ledger;
+        if (engine != null) {
+            long balance = engine.balanceOf(account.getAccountId());
+            if (balance != LedgerEngine.UNKNOWN_ACCOUNT) {
+                account.setBalance(balance);
+            }
+        }
+    }
+    
     // Deposit money
-    public static boolean deposit(int accountId, double amount) {
+    public static boolean deposit(int accountId, long amount) {
+        long start = System.nanoTime();
+        BankEvents.Posting event = new BankEvents.Posting();
+        event.begin();
+        boolean result = depositImpl(accountId, amount);
+        Metrics.DEPOSIT.record(start, 0);
+        event.complete("deposit", accountId, 0, 0, amount, result);
+        return result;
+    }
+    
+    private static boolean depositImpl(int accountId, long amount) {
+        LedgerEngine engine = ledger;
+        if (engine != null) {
+            try {
+                boolean deposited = engine.deposit(accountId, amount);
+                ACCOUNT_CACHE.invalidate(accountId);
+                return deposited;
+            } catch (IOException | SQLException e) {
+                Metrics.DEPOSIT.error();
+                System.err.println("Deposit error: " + e.getMessage());
+                return false;
+            }
+        }
+        
+        GroupCommitter committer = groupCommitter;
+        if (committer != null) {
+            boolean deposited = committer.submit(GroupCommitter.DEPOSIT, accountId, amount, "Deposit to account");
+            ACCOUNT_CACHE.invalidate(accountId);
+            return deposited;
+        }
+        
         String query = "UPDATE accounts SET balance = balance + ? WHERE account_id = ?";
         
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(query)) {
             
-            pstmt.setDouble(1, amount);
+            pstmt.setBigDecimal(1, Money.toDecimal(amount));
             pstmt.setInt(2, accountId);
             
             int rowsAffected = pstmt.executeUpdate();
@@ -243,10 +653,12 @@ public class DatabaseManager {
             if (rowsAffected > 0) {
                 // Record the transaction
                 addTransaction(accountId, "DEPOSIT", amount, null, "Deposit to account", conn);
+                ACCOUNT_CACHE.invalidate(accountId);
                 return true;
             }
             
         } catch (SQLException e) {
+            Metrics.DEPOSIT.error();
             System.err.println("Deposit error: " + e.getMessage());
         }
         
@@ -254,7 +666,37 @@ public class DatabaseManager {
     }
     
     // Withdraw money
-    public static boolean withdraw(int accountId, double amount) {
+    public static boolean withdraw(int accountId, long amount) {
+        long start = System.nanoTime();
+        BankEvents.Posting event = new BankEvents.Posting();
+        event.begin();
+        boolean result = withdrawImpl(accountId, amount);
+        Metrics.WITHDRAW.record(start, 0);
+        event.complete("withdraw", accountId, 0, 0, amount, result);
+        return result;
+    }
+    
+    private static boolean withdrawImpl(int accountId, long amount) {
+        LedgerEngine engine = ledger;
+        if (engine != null) {
+            try {
+                boolean withdrawn = engine.withdraw(accountId, amount);
+                ACCOUNT_CACHE.invalidate(accountId);
+                return withdrawn;
+            } catch (IOException | SQLException e) {
+                Metrics.WITHDRAW.error();
+                System.err.println("Withdrawal error: " + e.getMessage());
+                return false;
+            }
+        }
+        
+        GroupCommitter committer = groupCommitter;
+        if (committer != null) {
+            boolean withdrawn = committer.submit(GroupCommitter.WITHDRAW, accountId, amount, "Withdrawal from account");
+            ACCOUNT_CACHE.invalidate(accountId);
+            return withdrawn;
+        }
+        
         try (Connection conn = getConnection()) {
             conn.setAutoCommit(false);
             
@@ -265,7 +707,7 @@ public class DatabaseManager {
                 
                 try (ResultSet rs = balancePstmt.executeQuery()) {
                     if (rs.next()) {
-                        double balance = rs.getDouble("balance");
+                        long balance = Money.fromDecimal(rs.getBigDecimal("balance"));
                         
                         if (balance < amount) {
                             conn.rollback();
@@ -275,7 +717,7 @@ public class DatabaseManager {
                         // Proceed with withdrawal
                         String withdrawQuery = "UPDATE accounts SET balance = balance - ? WHERE account_id = ?";
                         try (PreparedStatement withdrawPstmt = conn.prepareStatement(withdrawQuery)) {
-                            withdrawPstmt.setDouble(1, amount);
+                            withdrawPstmt.setBigDecimal(1, Money.toDecimal(amount));
                             withdrawPstmt.setInt(2, accountId);
                             
                             int rowsAffected = withdrawPstmt.executeUpdate();
@@ -284,6 +726,7 @@ public class DatabaseManager {
                                 // Record the transaction
                                 addTransaction(accountId, "WITHDRAW", amount, null, "Withdrawal from account", conn);
                                 conn.commit();
+                                ACCOUNT_CACHE.invalidate(accountId);
                                 return true;
                             } else {
                                 conn.rollback();
@@ -297,6 +740,7 @@ public class DatabaseManager {
             conn.rollback();
             
         } catch (SQLException e) {
+            Metrics.WITHDRAW.error();
             System.err.println("Withdrawal error: " + e.getMessage());
         }
         
@@ -304,29 +748,100 @@ public class DatabaseManager {
     }
     
     // Transfer money
-    public static boolean transfer(int fromAccountId, int toAccountId, double amount) {
+    public static boolean transfer(int fromAccountId, int toAccountId, long amount) {
+        long start = System.nanoTime();
+        BankEvents.Posting event = new BankEvents.Posting();
+        event.begin();
+        boolean result = transferImpl(fromAccountId, toAccountId, amount);
+        Metrics.TRANSFER.record(start, 0);
+        event.complete("transfer", fromAccountId, toAccountId, 0, amount, result);
+        return result;
+    }
+    
+    private static boolean transferImpl(int fromAccountId, int toAccountId, long amount) {
+        LedgerEngine engine = ledger;
+        if (engine != null) {
+            try {
+                boolean transferred = engine.transfer(fromAccountId, toAccountId, amount);
+                ACCOUNT_CACHE.invalidate(fromAccountId);
+                ACCOUNT_CACHE.invalidate(toAccountId);
+                return transferred;
+            } catch (IOException | SQLException e) {
+                Metrics.TRANSFER.error();
+                System.err.println("Transfer error: " + e.getMessage());
+                return false;
+            }
+        }
+        
+        if (fromAccountId == toAccountId || amount <= 0) {
+            return false;
+        }
+        
+        // Serialize transfers touching either account inside this process, always locking in the same order
+        ACCOUNT_LOCKS.lock(fromAccountId, toAccountId);
         try (Connection conn = getConnection()) {
-            // Use the stored procedure for transfer
-            String query = "{CALL transfer_money(?, ?, ?, ?)}";
-            
-            try (CallableStatement cstmt = conn.prepareCall(query)) {
-                cstmt.setInt(1, fromAccountId);
-                cstmt.setInt(2, toAccountId);
-                cstmt.setDouble(3, amount);
-                cstmt.setString(4, "Transfer between accounts");
+            conn.setAutoCommit(false);
+            
+            // Lock both rows in ascending account_id order so opposite-direction transfers
+            // from other processes can't deadlock in MySQL either
+            String lockQuery = "SELECT account_id, balance FROM accounts WHERE account_id IN (?, ?) ORDER BY account_id FOR UPDATE";
+            long senderBalance = -1;
+            int rowsFound = 0;
+            
+            try (PreparedStatement lockStmt = conn.prepareStatement(lockQuery)) {
+                lockStmt.setInt(1, Math.min(fromAccountId, toAccountId));
+                lockStmt.setInt(2, Math.max(fromAccountId, toAccountId));
                 
-                cstmt.execute();
-                return true;
+                try (ResultSet rs = lockStmt.executeQuery()) {
+                    while (rs.next()) {
+                        rowsFound++;
+                        if (rs.getInt("account_id") == fromAccountId) {
+                            senderBalance = Money.fromDecimal(rs.getBigDecimal("balance"));
+                        }
+                    }
+                }
+            }
+            
+            if (rowsFound != 2 || senderBalance < amount) {
+                conn.rollback();
+                return false; // Unknown account or insufficient funds
             }
             
+            String updateQuery = "UPDATE accounts SET balance = balance + ? WHERE account_id = ?";
+            try (PreparedStatement updateStmt = conn.prepareStatement(updateQuery)) {
+                updateStmt.setBigDecimal(1, Money.toDecimal(-amount));
+                updateStmt.setInt(2, fromAccountId);
+                updateStmt.addBatch();
+                updateStmt.setBigDecimal(1, Money.toDecimal(amount));
+                updateStmt.setInt(2, toAccountId);
+                updateStmt.addBatch();
+                updateStmt.executeBatch();
+            }
+            
+            addTransaction(fromAccountId, "TRANSFER_OUT", amount, toAccountId, "Transfer between accounts", conn);
+            addTransaction(toAccountId, "TRANSFER_IN", amount, fromAccountId, "Transfer between accounts", conn);
+            
+            conn.commit();
+            ACCOUNT_CACHE.invalidate(fromAccountId);
+            ACCOUNT_CACHE.invalidate(toAccountId);
+            return true;
+            
         } catch (SQLException e) {
+            Metrics.TRANSFER.error();
             System.err.println("Transfer error: " + e.getMessage());
             return false;
+        } finally {
+            ACCOUNT_LOCKS.unlock(fromAccountId, toAccountId);
         }
     }
     
+    // Lock striping statistics for the transfer path (contention wait histogram)
+    public static AccountLockTable getTransferLockTable() {
+        return ACCOUNT_LOCKS;
+    }
+    
     // Add transaction record
-    private static void addTransaction(int accountId, String type, double amount, 
+    private static void addTransaction(int accountId, String type, long amount, 
                                      Integer recipientAccountId, String description,
                                      Connection conn) throws SQLException {
         
@@ -336,7 +851,7 @@ public class DatabaseManager {
         try (PreparedStatement pstmt = conn.prepareStatement(query)) {
             pstmt.setInt(1, accountId);
             pstmt.setString(2, type);
-            pstmt.setDouble(3, amount);
+            pstmt.setBigDecimal(3, Money.toDecimal(amount));
             
             if (recipientAccountId != null) {
                 pstmt.setInt(4, recipientAccountId);
@@ -350,10 +865,20 @@ public class DatabaseManager {
         }
     }
     
-    // Get transaction history for an account
+    // Get transaction history for an account (every row - use getTransactionHistoryPage for long histories)
     public static List<Transaction> getTransactionHistory(int accountId) {
+        long start = System.nanoTime();
+        BankEvents.HistoryFetch event = new BankEvents.HistoryFetch();
+        event.begin();
+        List<Transaction> result = getTransactionHistoryImpl(accountId);
+        Metrics.GET_TRANSACTION_HISTORY.record(start, result.size());
+        event.complete(accountId, 0, result.size());
+        return result;
+    }
+    
+    private static List<Transaction> getTransactionHistoryImpl(int accountId) {
         List<Transaction> transactions = new ArrayList<>();
-        String query = "SELECT * FROM transactions WHERE account_id = ? ORDER BY transaction_date DESC";
+        String query = "SELECT * FROM transactions WHERE account_id = ? ORDER BY transaction_date DESC, transaction_id DESC";
         
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(query)) {
@@ -362,33 +887,127 @@ public class DatabaseManager {
             
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    Transaction transaction = new Transaction();
-                    transaction.setTransactionId(rs.getInt("transaction_id"));
-                    transaction.setAccountId(rs.getInt("account_id"));
-                    transaction.setType(rs.getString("transaction_type"));
-                    transaction.setAmount(rs.getDouble("amount"));
-                    
-                    // Get recipient account if it exists
-                    if (rs.getObject("recipient_account_id") != null) {
-                        transaction.setRecipientAccountId(rs.getInt("recipient_account_id"));
-                    }
-                    
-                    transaction.setDate(rs.getTimestamp("transaction_date"));
-                    transaction.setDescription(rs.getString("description"));
-                    
-                    transactions.add(transaction);
+                    transactions.add(readTransaction(rs));
                 }
             }
             
         } catch (SQLException e) {
+            Metrics.GET_TRANSACTION_HISTORY.error();
             System.err.println("Error getting transaction history: " + e.getMessage());
         }
         
         return transactions;
     }
     
+    // Get one page of transaction history, newest first.
+    // Pass null as the cursor for the first page, then the page's next cursor for the following
+    // one. Pages are found with a keyset seek on (transaction_date, transaction_id) through
+    // idx_transactions_account_date, so page 1000 costs the same as page 1.
+    // Returns null on a database error or a malformed cursor.
+    public static TransactionPage getTransactionHistoryPage(int accountId, String cursor, int pageSize) {
+        long start = System.nanoTime();
+        BankEvents.HistoryFetch event = new BankEvents.HistoryFetch();
+        event.begin();
+        TransactionPage result = getTransactionHistoryPageImpl(accountId, cursor, pageSize);
+        Metrics.GET_TRANSACTION_HISTORY_PAGE.record(start, result != null ? result.getTransactions().size() : 0);
+        event.complete(accountId, pageSize, result != null ? result.getTransactions().size() : 0);
+        return result;
+    }
+    
+    private static TransactionPage getTransactionHistoryPageImpl(int accountId, String cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        
+        Timestamp afterDate = null;
+        int afterId = 0;
+        if (cursor != null) {
+            try {
+                String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+                int separator = decoded.lastIndexOf('|');
+                afterDate = Timestamp.valueOf(decoded.substring(0, separator));
+                afterId = Integer.parseInt(decoded.substring(separator + 1));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                Metrics.GET_TRANSACTION_HISTORY_PAGE.error();
+                System.err.println("Invalid transaction history cursor: " + cursor);
+                return null;
+            }
+        }
+        
+        String query = afterDate == null
+                ? "SELECT * FROM transactions WHERE account_id = ? " +
+                  "ORDER BY transaction_date DESC, transaction_id DESC LIMIT ?"
+                : "SELECT * FROM transactions WHERE account_id = ? " +
+                  "AND (transaction_date < ? OR (transaction_date = ? AND transaction_id < ?)) " +
+                  "ORDER BY transaction_date DESC, transaction_id DESC LIMIT ?";
+        
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(query)) {
+            
+            int parameter = 1;
+            pstmt.setInt(parameter++, accountId);
+            if (afterDate != null) {
+                pstmt.setTimestamp(parameter++, afterDate);
+                pstmt.setTimestamp(parameter++, afterDate);
+                pstmt.setInt(parameter++, afterId);
+            }
+            // One extra row tells us whether another page follows
+            pstmt.setInt(parameter, pageSize + 1);
+            
+            List<Transaction> transactions = new ArrayList<>(pageSize);
+            boolean hasMore = false;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (transactions.size() == pageSize) {
+                        hasMore = true;
+                        break;
+                    }
+                    transactions.add(readTransaction(rs));
+                }
+            }
+            
+            String nextCursor = null;
+            if (hasMore) {
+                Transaction last = transactions.get(transactions.size() - 1);
+                String key = last.getDate() + "|" + last.getTransactionId();
+                nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.US_ASCII));
+            }
+            return new TransactionPage(transactions, nextCursor);
+            
+        } catch (SQLException e) {
+            Metrics.GET_TRANSACTION_HISTORY_PAGE.error();
+            System.err.println("Error getting transaction history page: " + e.getMessage());
+        }
+        
+        return null;
+    }
+    
+    private static Transaction readTransaction(ResultSet rs) throws SQLException {
+        Transaction transaction = new Transaction();
+        transaction.setTransactionId(rs.getInt("transaction_id"));
+        transaction.setAccountId(rs.getInt("account_id"));
+        transaction.setType(rs.getString("transaction_type"));
+        transaction.setAmount(Money.fromDecimal(rs.getBigDecimal("amount")));
+        
+        // Get recipient account if it exists
+        if (rs.getObject("recipient_account_id") != null) {
+            transaction.setRecipientAccountId(rs.getInt("recipient_account_id"));
+        }
+        
+        transaction.setDate(rs.getTimestamp("transaction_date"));
+        transaction.setDescription(rs.getString("description"));
+        return transaction;
+    }
+    
     // Get cards for an account
     public static List<Card> getAccountCards(int accountId) {
+        long start = System.nanoTime();
+        List<Card> result = getAccountCardsImpl(accountId);
+        Metrics.GET_ACCOUNT_CARDS.record(start, result.size());
+        return result;
+    }
+    
+    private static List<Card> getAccountCardsImpl(int accountId) {
         List<Card> cards = new ArrayList<>();
         String query = "SELECT * FROM cards WHERE account_id = ? ORDER BY issued_date DESC";
         
@@ -414,6 +1033,7 @@ public class DatabaseManager {
             }
             
         } catch (SQLException e) {
+            Metrics.GET_ACCOUNT_CARDS.error();
             System.err.println("Error getting account cards: " + e.getMessage());
         }
         
@@ -423,6 +1043,17 @@ public class DatabaseManager {
     // Create a new card
     public static boolean createCard(int accountId, String cardNumber, String cardType, 
                                     String cvv, Timestamp expiryDate) {
+        long start = System.nanoTime();
+        BankEvents.CardCreation event = new BankEvents.CardCreation();
+        event.begin();
+        boolean result = createCardImpl(accountId, cardNumber, cardType, cvv, expiryDate);
+        Metrics.CREATE_CARD.record(start, 0);
+        event.complete(accountId, cardType, result);
+        return result;
+    }
+    
+    private static boolean createCardImpl(int accountId, String cardNumber, String cardType, 
+                                    String cvv, Timestamp expiryDate) {
         String query = "INSERT INTO cards (account_id, card_number, card_type, cvv, expiry_date, issued_date, is_active) " +
                       "VALUES (?, ?, ?, ?, ?, CURRENT_TIMESTAMP, true)";
         
@@ -439,13 +1070,89 @@ public class DatabaseManager {
             return rowsAffected > 0;
             
         } catch (SQLException e) {
+            Metrics.CREATE_CARD.error();
             System.err.println("Error creating card: " + e.getMessage());
             return false;
         }
     }
     
+    // Issue a new card with a freshly allocated (Luhn-valid, unused) number and CVV
+    public static boolean issueCard(int accountId, String cardType, Timestamp expiryDate) {
+        CardNumberAllocator allocator = CardNumberAllocator.shared();
+        return createCard(accountId, allocator.allocate(cardType), cardType, allocator.generateCvv(cardType), expiryDate);
+    }
+    
+    // Issue one new card of cardType for every account in a single transaction (e.g. annual
+    // reissue runs). Returns the number of cards created: all of them, or 0 if the batch failed.
+    public static int createCards(int[] accountIds, String cardType, Timestamp expiryDate) {
+        long start = System.nanoTime();
+        int result = createCardsImpl(accountIds, cardType, expiryDate);
+        Metrics.CREATE_CARDS.record(start, result);
+        return result;
+    }
+    
+    private static int createCardsImpl(int[] accountIds, String cardType, Timestamp expiryDate) {
+        for (int attempt = 1; ; attempt++) {
+            try (Connection conn = getConnection()) {
+                conn.setAutoCommit(false);
+                
+                try {
+                    insertCards(conn, accountIds, accountIds.length, cardType, expiryDate);
+                    conn.commit();
+                    return accountIds.length;
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+                
+            } catch (SQLException e) {
+                // A constraint violation is most likely a number issued by another process since
+                // the allocator was loaded - the next attempt draws all numbers again
+                if (attempt < 2 && e.getSQLState() != null && e.getSQLState().startsWith("23")) {
+                    continue;
+                }
+                Metrics.CREATE_CARDS.error();
+                System.err.println("Error creating cards: " + e.getMessage());
+                return 0;
+            }
+        }
+    }
+    
+    // Inserts a new card of cardType for the first count accounts in accountIds, with freshly
+    // allocated numbers and CVVs, as part of the caller's transaction on conn
+    static void insertCards(Connection conn, int[] accountIds, int count, String cardType, Timestamp expiryDate) throws SQLException {
+        CardNumberAllocator allocator = CardNumberAllocator.shared();
+        String query = "INSERT INTO cards (account_id, card_number, card_type, cvv, expiry_date, issued_date, is_active) " +
+                      "VALUES (?, ?, ?, ?, ?, CURRENT_TIMESTAMP, true)";
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            for (int i = 0; i < count; i++) {
+                pstmt.setInt(1, accountIds[i]);
+                pstmt.setString(2, allocator.allocate(cardType));
+                pstmt.setString(3, cardType);
+                pstmt.setString(4, allocator.generateCvv(cardType));
+                pstmt.setTimestamp(5, expiryDate);
+                pstmt.addBatch();
+                
+                if ((i + 1) % CARD_BATCH_SIZE == 0) {
+                    pstmt.executeBatch();
+                }
+            }
+            pstmt.executeBatch();
+        }
+    }
+    
     // Block a card
     public static boolean blockCard(int cardId) {
+        long start = System.nanoTime();
+        boolean result = blockCardImpl(cardId);
+        Metrics.BLOCK_CARD.record(start, 0);
+        return result;
+    }
+    
+    private static boolean blockCardImpl(int cardId) {
         String query = "UPDATE cards SET is_active = false WHERE card_id = ?";
         
         try (Connection conn = getConnection();
@@ -454,26 +1161,31 @@ public class DatabaseManager {
             pstmt.setInt(1, cardId);
             
             int rowsAffected = pstmt.executeUpdate();
+            if (rowsAffected > 0) {
+                CardAuthorizationIndex.cardBlocked(cardId);
+            }
             return rowsAffected > 0;
             
         } catch (SQLException e) {
+            Metrics.BLOCK_CARD.error();
             System.err.println("Error blocking card: " + e.getMessage());
             return false;
         }
     }
     
     // Create a new loan
-    public static boolean createLoan(int accountId, String loanType, double principalAmount, 
+    public static boolean createLoan(int accountId, String loanType, long principalAmount, 
                                     double interestRate, int termMonths) {
-        // Calculate monthly payment using the formula: P = (P0 * r * (1 + r)^n) / ((1 + r)^n - 1)
-        // where P0 is the principal, r is the monthly interest rate, and n is the term in months
-        double monthlyInterestRate = interestRate / (12 * 100); // Convert from annual percentage to monthly decimal
-        double monthlyPayment = (principalAmount * monthlyInterestRate * 
-                               Math.pow(1 + monthlyInterestRate, termMonths)) / 
-                               (Math.pow(1 + monthlyInterestRate, termMonths) - 1);
-        
-        // Round to 2 decimal places
-        monthlyPayment = Math.round(monthlyPayment * 100.0) / 100.0;
+        long start = System.nanoTime();
+        boolean result = createLoanImpl(accountId, loanType, principalAmount, interestRate, termMonths);
+        Metrics.CREATE_LOAN.record(start, 0);
+        return result;
+    }
+    
+    private static boolean createLoanImpl(int accountId, String loanType, long principalAmount, 
+                                    double interestRate, int termMonths) {
+        // Level monthly payment in whole cents (annuity factors are memoized per rate and term)
+        long monthlyPayment = AmortizationEngine.monthlyPayment(principalAmount, interestRate, termMonths);
         
         // Calculate end date
         Calendar calendar = Calendar.getInstance();
@@ -489,17 +1201,18 @@ public class DatabaseManager {
             
             pstmt.setInt(1, accountId);
             pstmt.setString(2, loanType);
-            pstmt.setDouble(3, principalAmount);
+            pstmt.setBigDecimal(3, Money.toDecimal(principalAmount));
             pstmt.setDouble(4, interestRate);
             pstmt.setInt(5, termMonths);
-            pstmt.setDouble(6, monthlyPayment);
+            pstmt.setBigDecimal(6, Money.toDecimal(monthlyPayment));
             pstmt.setTimestamp(7, endDate);
-            pstmt.setDouble(8, principalAmount);
+            pstmt.setBigDecimal(8, Money.toDecimal(principalAmount));
             
             int rowsAffected = pstmt.executeUpdate();
             return rowsAffected > 0;
             
         } catch (SQLException e) {
+            Metrics.CREATE_LOAN.error();
             System.err.println("Error creating loan: " + e.getMessage());
             return false;
         }
@@ -507,6 +1220,13 @@ public class DatabaseManager {
     
     // Get all loans for an account
     public static List<Loan> getLoansByAccountId(int accountId) {
+        long start = System.nanoTime();
+        List<Loan> result = getLoansByAccountIdImpl(accountId);
+        Metrics.GET_LOANS_BY_ACCOUNT_ID.record(start, result.size());
+        return result;
+    }
+    
+    private static List<Loan> getLoansByAccountIdImpl(int accountId) {
         List<Loan> loans = new ArrayList<>();
         String query = "SELECT * FROM loans WHERE account_id = ? ORDER BY created_at DESC";
         
@@ -521,13 +1241,13 @@ public class DatabaseManager {
                     loan.setLoanId(rs.getInt("loan_id"));
                     loan.setAccountId(rs.getInt("account_id"));
                     loan.setLoanType(rs.getString("loan_type"));
-                    loan.setPrincipalAmount(rs.getDouble("principal_amount"));
+                    loan.setPrincipalAmount(Money.fromDecimal(rs.getBigDecimal("principal_amount")));
                     loan.setInterestRate(rs.getDouble("interest_rate"));
                     loan.setTermMonths(rs.getInt("term_months"));
-                    loan.setMonthlyPayment(rs.getDouble("monthly_payment"));
+                    loan.setMonthlyPayment(Money.fromDecimal(rs.getBigDecimal("monthly_payment")));
                     loan.setStartDate(rs.getTimestamp("start_date"));
                     loan.setEndDate(rs.getTimestamp("end_date"));
-                    loan.setRemainingAmount(rs.getDouble("remaining_amount"));
+                    loan.setRemainingAmount(Money.fromDecimal(rs.getBigDecimal("remaining_amount")));
                     loan.setStatus(rs.getString("status"));
                     loan.setCreatedAt(rs.getTimestamp("created_at"));
                     loan.setUpdatedAt(rs.getTimestamp("updated_at"));
@@ -537,6 +1257,7 @@ public class DatabaseManager {
             }
             
         } catch (SQLException e) {
+            Metrics.GET_LOANS_BY_ACCOUNT_ID.error();
             System.err.println("Error getting loans: " + e.getMessage());
         }
         
@@ -544,7 +1265,22 @@ public class DatabaseManager {
     }
     
     // Make a loan payment
-    public static boolean makeLoanPayment(int loanId, double paymentAmount) {
+    public static boolean makeLoanPayment(int loanId, long paymentAmount) {
+        long start = System.nanoTime();
+        BankEvents.Posting event = new BankEvents.Posting();
+        event.begin();
+        boolean result = makeLoanPaymentImpl(loanId, paymentAmount);
+        Metrics.MAKE_LOAN_PAYMENT.record(start, 0);
+        event.complete("loanPayment", 0, 0, loanId, paymentAmount, result);
+        return result;
+    }
+    
+    private static boolean makeLoanPaymentImpl(int loanId, long paymentAmount) {
+        LedgerEngine engine = ledger;
+        if (engine != null) {
+            return makeLoanPaymentThroughLedger(engine, loanId, paymentAmount);
+        }
+        
         try (Connection conn = getConnection()) {
             conn.setAutoCommit(false);
             
@@ -556,8 +1292,7 @@ public class DatabaseManager {
                 try (ResultSet rs = loanStmt.executeQuery()) {
                     if (rs.next()) {
                         int accountId = rs.getInt("account_id");
-                        double monthlyPayment = rs.getDouble("monthly_payment");
-                        double remainingAmount = rs.getDouble("remaining_amount");
+                        long remainingAmount = Money.fromDecimal(rs.getBigDecimal("remaining_amount"));
                         String status = rs.getString("status");
                         
                         // Check if loan is active and payment can be made
@@ -573,7 +1308,7 @@ public class DatabaseManager {
                             
                             try (ResultSet balanceRs = balanceStmt.executeQuery()) {
                                 if (balanceRs.next()) {
-                                    double balance = balanceRs.getDouble("balance");
+                                    long balance = Money.fromDecimal(balanceRs.getBigDecimal("balance"));
                                     
                                     if (balance < paymentAmount) {
                                         conn.rollback();
@@ -583,13 +1318,13 @@ public class DatabaseManager {
                                     // Update account balance
                                     String updateBalanceQuery = "UPDATE accounts SET balance = balance - ? WHERE account_id = ?";
                                     try (PreparedStatement updateBalanceStmt = conn.prepareStatement(updateBalanceQuery)) {
-                                        updateBalanceStmt.setDouble(1, paymentAmount);
+                                        updateBalanceStmt.setBigDecimal(1, Money.toDecimal(paymentAmount));
                                         updateBalanceStmt.setInt(2, accountId);
                                         updateBalanceStmt.executeUpdate();
                                     }
                                     
                                     // Calculate new remaining amount
-                                    double newRemainingAmount = remainingAmount - paymentAmount;
+                                    long newRemainingAmount = Money.subtract(remainingAmount, paymentAmount);
                                     if (newRemainingAmount < 0) {
                                         newRemainingAmount = 0;
                                     }
@@ -603,7 +1338,7 @@ public class DatabaseManager {
                                     // Update loan
                                     String updateLoanQuery = "UPDATE loans SET remaining_amount = ?, status = ?, updated_at = CURRENT_TIMESTAMP WHERE loan_id = ?";
                                     try (PreparedStatement updateLoanStmt = conn.prepareStatement(updateLoanQuery)) {
-                                        updateLoanStmt.setDouble(1, newRemainingAmount);
+                                        updateLoanStmt.setBigDecimal(1, Money.toDecimal(newRemainingAmount));
                                         updateLoanStmt.setString(2, newStatus);
                                         updateLoanStmt.setInt(3, loanId);
                                         updateLoanStmt.executeUpdate();
@@ -613,6 +1348,7 @@ public class DatabaseManager {
                                     addTransaction(accountId, "WITHDRAW", paymentAmount, null, "Loan payment for loan #" + loanId, conn);
                                     
                                     conn.commit();
+                                    ACCOUNT_CACHE.invalidate(accountId);
                                     return true;
                                 }
                             }
@@ -624,6 +1360,7 @@ public class DatabaseManager {
             conn.rollback();
             
         } catch (SQLException e) {
+            Metrics.MAKE_LOAN_PAYMENT.error();
             System.err.println("Error making loan payment: " + e.getMessage());
         }
         
@@ -632,6 +1369,21 @@ public class DatabaseManager {
     
     // Approve loan and deposit the amount to the account
     public static boolean approveLoan(int loanId) {
+        long start = System.nanoTime();
+        BankEvents.Posting event = new BankEvents.Posting();
+        event.begin();
+        boolean result = approveLoanImpl(loanId);
+        Metrics.APPROVE_LOAN.record(start, 0);
+        event.complete("loanApproval", 0, 0, loanId, 0, result);
+        return result;
+    }
+    
+    private static boolean approveLoanImpl(int loanId) {
+        LedgerEngine engine = ledger;
+        if (engine != null) {
+            return approveLoanThroughLedger(engine, loanId);
+        }
+        
         try (Connection conn = getConnection()) {
             conn.setAutoCommit(false);
             
@@ -643,7 +1395,7 @@ public class DatabaseManager {
                 try (ResultSet rs = loanStmt.executeQuery()) {
                     if (rs.next()) {
                         int accountId = rs.getInt("account_id");
-                        double principalAmount = rs.getDouble("principal_amount");
+                        long principalAmount = Money.fromDecimal(rs.getBigDecimal("principal_amount"));
                         String status = rs.getString("status");
                         
                         // Check if loan is pending
@@ -655,7 +1407,7 @@ public class DatabaseManager {
                         // Update account balance
                         String updateBalanceQuery = "UPDATE accounts SET balance = balance + ? WHERE account_id = ?";
                         try (PreparedStatement updateBalanceStmt = conn.prepareStatement(updateBalanceQuery)) {
-                            updateBalanceStmt.setDouble(1, principalAmount);
+                            updateBalanceStmt.setBigDecimal(1, Money.toDecimal(principalAmount));
                             updateBalanceStmt.setInt(2, accountId);
                             updateBalanceStmt.executeUpdate();
                         }
@@ -671,6 +1423,7 @@ public class DatabaseManager {
                         addTransaction(accountId, "DEPOSIT", principalAmount, null, "Loan disbursement for loan #" + loanId, conn);
                         
                         conn.commit();
+                        ACCOUNT_CACHE.invalidate(accountId);
                         return true;
                     }
                 }
@@ -679,14 +1432,367 @@ public class DatabaseManager {
             conn.rollback();
             
         } catch (SQLException e) {
+            Metrics.APPROVE_LOAN.error();
             System.err.println("Error approving loan: " + e.getMessage());
         }
         
         return false;
     }
     
-    // Get card by card number (for verification)
+    // Loan payment while the ledger is enabled: the loan row is updated in the database and
+    // the debit is posted to the ledger just before the commit
+    private static boolean makeLoanPaymentThroughLedger(LedgerEngine engine, int loanId, long paymentAmount) {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            
+            int accountId;
+            long remainingAmount;
+            String status;
+            
+            String loanQuery = "SELECT account_id, remaining_amount, status FROM loans WHERE loan_id = ? FOR UPDATE";
+            try (PreparedStatement loanStmt = conn.prepareStatement(loanQuery)) {
+                loanStmt.setInt(1, loanId);
+                
+                try (ResultSet rs = loanStmt.executeQuery()) {
+                    if (!rs.next()) {
+                        conn.rollback();
+                        return false;
+                    }
+                    accountId = rs.getInt("account_id");
+                    remainingAmount = Money.fromDecimal(rs.getBigDecimal("remaining_amount"));
+                    status = rs.getString("status");
+                }
+            }
+            
+            if (!status.equals("ACTIVE") && !status.equals("APPROVED")) {
+                conn.rollback();
+                return false;
+            }
+            
+            long newRemainingAmount = Math.max(0, Money.subtract(remainingAmount, paymentAmount));
+            String newStatus = newRemainingAmount == 0 ? "PAID" : status;
+            
+            String updateLoanQuery = "UPDATE loans SET remaining_amount = ?, status = ?, updated_at = CURRENT_TIMESTAMP WHERE loan_id = ?";
+            try (PreparedStatement updateLoanStmt = conn.prepareStatement(updateLoanQuery)) {
+                updateLoanStmt.setBigDecimal(1, Money.toDecimal(newRemainingAmount));
+                updateLoanStmt.setString(2, newStatus);
+                updateLoanStmt.setInt(3, loanId);
+                updateLoanStmt.executeUpdate();
+            }
+            
+            // The ledger checks the balance and debits the account
+            if (!engine.loanPayment(accountId, loanId, paymentAmount)) {
+                conn.rollback();
+                return false; // Insufficient funds
+            }
+            
+            try {
+                conn.commit();
+            } catch (SQLException e) {
+                // Put the money back - the loan was not updated
+                engine.adjust(accountId, loanId, paymentAmount);
+                throw e;
+            }
+            ACCOUNT_CACHE.invalidate(accountId);
+            return true;
+            
+        } catch (IOException | SQLException e) {
+            Metrics.MAKE_LOAN_PAYMENT.error();
+            System.err.println("Error making loan payment: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    // Loan approval while the ledger is enabled
+    private static boolean approveLoanThroughLedger(LedgerEngine engine, int loanId) {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            
+            int accountId;
+            long principalAmount;
+            
+            String loanQuery = "SELECT account_id, principal_amount, status FROM loans WHERE loan_id = ? FOR UPDATE";
+            try (PreparedStatement loanStmt = conn.prepareStatement(loanQuery)) {
+                loanStmt.setInt(1, loanId);
+                
+                try (ResultSet rs = loanStmt.executeQuery()) {
+                    if (!rs.next() || !rs.getString("status").equals("PENDING")) {
+                        conn.rollback();
+                        return false;
+                    }
+                    accountId = rs.getInt("account_id");
+                    principalAmount = Money.fromDecimal(rs.getBigDecimal("principal_amount"));
+                }
+            }
+            
+            String updateLoanQuery = "UPDATE loans SET status = 'ACTIVE', start_date = CURRENT_TIMESTAMP, updated_at = CURRENT_TIMESTAMP WHERE loan_id = ?";
+            try (PreparedStatement updateLoanStmt = conn.prepareStatement(updateLoanQuery)) {
+                updateLoanStmt.setInt(1, loanId);
+                updateLoanStmt.executeUpdate();
+            }
+            
+            if (!engine.loanDisbursement(accountId, loanId, principalAmount)) {
+                conn.rollback();
+                return false;
+            }
+            
+            try {
+                conn.commit();
+            } catch (SQLException e) {
+                // Take the disbursement back - the loan is still pending
+                engine.adjust(accountId, loanId, -principalAmount);
+                throw e;
+            }
+            ACCOUNT_CACHE.invalidate(accountId);
+            return true;
+            
+        } catch (IOException | SQLException e) {
+            Metrics.APPROVE_LOAN.error();
+            System.err.println("Error approving loan: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    // Starting balance for an account the ledger hasn't seen yet
+    private static long loadBalanceForLedger(int accountId) throws SQLException {
+        String query = "SELECT balance FROM accounts WHERE account_id = ?";
+        
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(query)) {
+            
+            pstmt.setInt(1, accountId);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? Money.fromDecimal(rs.getBigDecimal("balance")) : LedgerEngine.UNKNOWN_ACCOUNT;
+            }
+        }
+    }
+    
+    // Copies ledger postings into the accounts and transactions tables.
+    // The ledger_checkpoint row is updated in the same database transaction, so after a
+    // crash the ledger knows exactly which postings still have to be written.
+    private static class LedgerDatabaseSink implements LedgerEngine.Sink {
+        private static final int LEDGER_ID = 1;
+        
+        @Override
+        public long lastAppliedSequence() throws SQLException {
+            String query = "SELECT last_sequence FROM ledger_checkpoint WHERE ledger_id = ?";
+            
+            try (Connection conn = getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(query)) {
+                
+                pstmt.setInt(1, LEDGER_ID);
+                
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? rs.getLong("last_sequence") : 0;
+                }
+            }
+        }
+        
+        @Override
+        public void apply(LedgerEngine.PostingBatch batch, int from, int to) throws SQLException {
+            String balanceQuery = "UPDATE accounts SET balance = balance + ? WHERE account_id = ?";
+            String transactionQuery = "INSERT INTO transactions (account_id, transaction_type, amount, " +
+                                      "recipient_account_id, description) VALUES (?, ?, ?, ?, ?)";
+            String checkpointQuery = "INSERT INTO ledger_checkpoint (ledger_id, last_sequence) VALUES (?, ?) " +
+                                     "ON DUPLICATE KEY UPDATE last_sequence = VALUES(last_sequence)";
+            
+            try (Connection conn = getConnection()) {
+                conn.setAutoCommit(false);
+                
+                try (PreparedStatement balanceStmt = conn.prepareStatement(balanceQuery);
+                     PreparedStatement transactionStmt = conn.prepareStatement(transactionQuery);
+                     PreparedStatement checkpointStmt = conn.prepareStatement(checkpointQuery)) {
+                    
+                    for (int i = from; i < to; i++) {
+                        int accountId = batch.getAccountId(i);
+                        int counterparty = batch.getCounterparty(i);
+                        long amount = batch.getAmount(i);
+                        
+                        switch (batch.getType(i)) {
+                            case LedgerEngine.DEPOSIT:
+                                addBalance(balanceStmt, accountId, amount);
+                                addTransactionRow(transactionStmt, accountId, "DEPOSIT", amount, null, "Deposit to account");
+                                break;
+                            case LedgerEngine.WITHDRAW:
+                                addBalance(balanceStmt, accountId, -amount);
+                                addTransactionRow(transactionStmt, accountId, "WITHDRAW", amount, null, "Withdrawal from account");
+                                break;
+                            case LedgerEngine.TRANSFER:
+                                addBalance(balanceStmt, accountId, -amount);
+                                addBalance(balanceStmt, counterparty, amount);
+                                addTransactionRow(transactionStmt, accountId, "TRANSFER_OUT", amount, counterparty, "Transfer between accounts");
+                                addTransactionRow(transactionStmt, counterparty, "TRANSFER_IN", amount, accountId, "Transfer between accounts");
+                                break;
+                            case LedgerEngine.LOAN_PAYMENT:
+                                addBalance(balanceStmt, accountId, -amount);
+                                addTransactionRow(transactionStmt, accountId, "WITHDRAW", amount, null, "Loan payment for loan #" + counterparty);
+                                break;
+                            case LedgerEngine.LOAN_DISBURSEMENT:
+                                addBalance(balanceStmt, accountId, amount);
+                                addTransactionRow(transactionStmt, accountId, "DEPOSIT", amount, null, "Loan disbursement for loan #" + counterparty);
+                                break;
+                            case LedgerEngine.ADJUSTMENT:
+                                addBalance(balanceStmt, accountId, amount);
+                                addTransactionRow(transactionStmt, accountId, amount >= 0 ? "DEPOSIT" : "WITHDRAW",
+                                        Math.abs(amount), null, "Ledger adjustment for loan #" + counterparty);
+                                break;
+                            default:
+                                break;
+                        }
+                    }
+                    
+                    balanceStmt.executeBatch();
+                    transactionStmt.executeBatch();
+                    
+                    checkpointStmt.setInt(1, LEDGER_ID);
+                    checkpointStmt.setLong(2, batch.getSequence(to - 1));
+                    checkpointStmt.executeUpdate();
+                    
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            }
+        }
+        
+        private static void addBalance(PreparedStatement pstmt, int accountId, long amount) throws SQLException {
+            pstmt.setBigDecimal(1, Money.toDecimal(amount));
+            pstmt.setInt(2, accountId);
+            pstmt.addBatch();
+        }
+        
+        private static void addTransactionRow(PreparedStatement pstmt, int accountId, String type, long amount,
+                                              Integer recipientAccountId, String description) throws SQLException {
+            pstmt.setInt(1, accountId);
+            pstmt.setString(2, type);
+            pstmt.setBigDecimal(3, Money.toDecimal(amount));
+            if (recipientAccountId != null) {
+                pstmt.setInt(4, recipientAccountId);
+            } else {
+                pstmt.setNull(4, Types.INTEGER);
+            }
+            pstmt.setString(5, description);
+            pstmt.addBatch();
+        }
+    }
+    
+    // Writes one group of deposits and withdrawals in a single transaction.
+    // Balance updates run one by one so each posting gets its own row count - a withdrawal
+    // only matches when the balance covers it. The transaction rows for the postings that
+    // went through are then inserted with one multi-row INSERT, followed by one commit. A failed
+    // commit is reported as CommitOutcomeUnknownException so the group is not written twice.
+    private static class GroupCommitDatabaseWriter implements GroupCommitter.BatchWriter {
+        private final String[] insertQueries;
+        
+        GroupCommitDatabaseWriter(int maxBatchSize) {
+            insertQueries = new String[maxBatchSize + 1];
+        }
+        
+        @Override
+        public void write(GroupCommitter.Posting[] postings, int count, boolean[] succeeded) throws SQLException {
+            String depositQuery = "UPDATE accounts SET balance = balance + ? WHERE account_id = ?";
+            String withdrawQuery = "UPDATE accounts SET balance = balance - ? WHERE account_id = ? AND balance >= ?";
+            
+            // Touch rows in ascending account_id order (stable, so postings to one account keep their order)
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Integer.compare(postings[a].getAccountId(), postings[b].getAccountId()));
+            
+            try (Connection conn = getConnection()) {
+                conn.setAutoCommit(false);
+                
+                try (PreparedStatement depositStmt = conn.prepareStatement(depositQuery);
+                     PreparedStatement withdrawStmt = conn.prepareStatement(withdrawQuery)) {
+                    
+                    int rows = 0;
+                    for (int index : order) {
+                        GroupCommitter.Posting posting = postings[index];
+                        PreparedStatement pstmt;
+                        if (posting.getType() == GroupCommitter.WITHDRAW) {
+                            pstmt = withdrawStmt;
+                            pstmt.setBigDecimal(3, Money.toDecimal(posting.getAmount()));
+                        } else {
+                            pstmt = depositStmt;
+                        }
+                        pstmt.setBigDecimal(1, Money.toDecimal(posting.getAmount()));
+                        pstmt.setInt(2, posting.getAccountId());
+                        
+                        succeeded[index] = pstmt.executeUpdate() > 0;
+                        if (succeeded[index]) {
+                            rows++;
+                        }
+                    }
+                    
+                    if (rows > 0) {
+                        try (PreparedStatement insertStmt = conn.prepareStatement(insertQuery(rows))) {
+                            int parameter = 1;
+                            for (int i = 0; i < count; i++) {
+                                if (!succeeded[i]) {
+                                    continue;
+                                }
+                                GroupCommitter.Posting posting = postings[i];
+                                insertStmt.setInt(parameter++, posting.getAccountId());
+                                insertStmt.setString(parameter++, posting.getType() == GroupCommitter.WITHDRAW ? "WITHDRAW" : "DEPOSIT");
+                                insertStmt.setBigDecimal(parameter++, Money.toDecimal(posting.getAmount()));
+                                insertStmt.setString(parameter++, posting.getDescription());
+                            }
+                            insertStmt.executeUpdate();
+                        }
+                    }
+                    
+                    try {
+                        conn.commit();
+                    } catch (SQLException e) {
+                        throw new GroupCommitter.CommitOutcomeUnknownException(e);
+                    }
+                } catch (GroupCommitter.CommitOutcomeUnknownException e) {
+                    // Nothing left to roll back, and the connection may be gone
+                    throw e;
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            }
+        }
+        
+        // INSERT ... VALUES (...), (...) for the given number of rows; one statement per size, reused
+        private String insertQuery(int rows) {
+            String query = insertQueries[rows];
+            if (query == null) {
+                StringBuilder sb = new StringBuilder("INSERT INTO transactions (account_id, transaction_type, amount, " +
+                                                     "recipient_account_id, description) VALUES ");
+                for (int i = 0; i < rows; i++) {
+                    sb.append(i == 0 ? "(?, ?, ?, NULL, ?)" : ", (?, ?, ?, NULL, ?)");
+                }
+                query = sb.toString();
+                insertQueries[rows] = query;
+            }
+            return query;
+        }
+    }
+    
+    // Point-of-sale authorization of amount cents on a card, answered from the in-memory
+    // CardAuthorizationIndex (loaded on first use) without a database round trip
+    public static CardAuthorizationIndex.Decision authorizeCard(String cardNumber, long amount) {
+        long start = System.nanoTime();
+        CardAuthorizationIndex.Decision result = CardAuthorizationIndex.shared().authorize(cardNumber, amount);
+        Metrics.AUTHORIZE_CARD.record(start, result == CardAuthorizationIndex.Decision.APPROVED ? 1 : 0);
+        return result;
+    }
+    
+    // Get card by card number (full row, straight from the database)
     public static Card getCardByNumber(String cardNumber) {
+        long start = System.nanoTime();
+        Card result = getCardByNumberImpl(cardNumber);
+        Metrics.GET_CARD_BY_NUMBER.record(start, result != null ? 1 : 0);
+        return result;
+    }
+    
+    private static Card getCardByNumberImpl(String cardNumber) {
         String query = "SELECT * FROM cards WHERE card_number = ?";
         
         try (Connection conn = getConnection();
@@ -710,6 +1816,7 @@ public class DatabaseManager {
             }
             
         } catch (SQLException e) {
+            Metrics.GET_CARD_BY_NUMBER.error();
             System.err.println("Error getting card by number: " + e.getMessage());
         }
         
@@ -720,13 +1827,13 @@ public class DatabaseManager {
         private int loanId;
         private int accountId;
         private String loanType;
-        private double principalAmount;
+        private long principalAmount; // cents
         private double interestRate;
         private int termMonths;
-        private double monthlyPayment;
+        private long monthlyPayment; // cents
         private Timestamp startDate;
         private Timestamp endDate;
-        private double remainingAmount;
+        private long remainingAmount; // cents
         private String status;
         private Timestamp createdAt;
         private Timestamp updatedAt;
@@ -741,8 +1848,8 @@ public class DatabaseManager {
         public String getLoanType() { return loanType; }
         public void setLoanType(String loanType) { this.loanType = loanType; }
         
-        public double getPrincipalAmount() { return principalAmount; }
-        public void setPrincipalAmount(double principalAmount) { this.principalAmount = principalAmount; }
+        public long getPrincipalAmount() { return principalAmount; }
+        public void setPrincipalAmount(long principalAmount) { this.principalAmount = principalAmount; }
         
         public double getInterestRate() { return interestRate; }
         public void setInterestRate(double interestRate) { this.interestRate = interestRate; }
@@ -750,8 +1857,8 @@ public class DatabaseManager {
         public int getTermMonths() { return termMonths; }
         public void setTermMonths(int termMonths) { this.termMonths = termMonths; }
         
-        public double getMonthlyPayment() { return monthlyPayment; }
-        public void setMonthlyPayment(double monthlyPayment) { this.monthlyPayment = monthlyPayment; }
+        public long getMonthlyPayment() { return monthlyPayment; }
+        public void setMonthlyPayment(long monthlyPayment) { this.monthlyPayment = monthlyPayment; }
         
         public Timestamp getStartDate() { return startDate; }
         public void setStartDate(Timestamp startDate) { this.startDate = startDate; }
@@ -759,8 +1866,8 @@ public class DatabaseManager {
         public Timestamp getEndDate() { return endDate; }
         public void setEndDate(Timestamp endDate) { this.endDate = endDate; }
         
-        public double getRemainingAmount() { return remainingAmount; }
-        public void setRemainingAmount(double remainingAmount) { this.remainingAmount = remainingAmount; }
+        public long getRemainingAmount() { return remainingAmount; }
+        public void setRemainingAmount(long remainingAmount) { this.remainingAmount = remainingAmount; }
         
         public String getStatus() { return status; }
         public void setStatus(String status) { this.status = status; }
@@ -799,7 +1906,7 @@ class Account {
     private int userId;
     private String accountNumber;
     private String accountType;
-    private double balance;
+    private long balance; // cents
     
     // Getters and setters
     public int getAccountId() { return accountId; }
@@ -814,15 +1921,15 @@ class Account {
     public String getAccountType() { return accountType; }
     public void setAccountType(String accountType) { this.accountType = accountType; }
     
-    public double getBalance() { return balance; }
-    public void setBalance(double balance) { this.balance = balance; }
+    public long getBalance() { return balance; }
+    public void setBalance(long balance) { this.balance = balance; }
 }
 
 class Transaction {
     private int transactionId;
     private int accountId;
     private String type;
-    private double amount;
+    private long amount; // cents
     private Integer recipientAccountId;
     private Timestamp date;
     private String description;
@@ -837,8 +1944,8 @@ class Transaction {
     public String getType() { return type; }
     public void setType(String type) { this.type = type; }
     
-    public double getAmount() { return amount; }
-    public void setAmount(double amount) { this.amount = amount; }
+    public long getAmount() { return amount; }
+    public void setAmount(long amount) { this.amount = amount; }
     
     public Integer getRecipientAccountId() { return recipientAccountId; }
     public void setRecipientAccountId(Integer recipientAccountId) { this.recipientAccountId = recipientAccountId; }
@@ -848,4 +1955,19 @@ class Transaction {
     
     public String getDescription() { return description; }
     public void setDescription(String description) { this.description = description; }
-}
\ No newline at end of file
+}
+
+// One page of transaction history plus the cursor for the next page (null on the last page)
+class TransactionPage {
+    private final List<Transaction> transactions;
+    private final String nextCursor;
+    
+    TransactionPage(List<Transaction> transactions, String nextCursor) {
+        this.transactions = transactions;
+        this.nextCursor = nextCursor;
+    }
+    
+    public List<Transaction> getTransactions() { return transactions; }
+    public String getNextCursor() { return nextCursor; }
+    public boolean hasMore() { return nextCursor != null; }
+}
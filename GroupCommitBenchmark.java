@@ -0,0 +1,96 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Throughput versus tail latency of group commit for a range of window sizes.
+// Without arguments the writer only simulates a commit that costs a fixed fsync time, so the
+// effect of the window can be seen without a database. With "db <id1> <id2> ..." every window
+// size is run against the real database through DatabaseManager.deposit/withdraw.
+//
+// Usage: java GroupCommitBenchmark [db <account ids>]
+// Optional system properties: -Dthreads=32 -Dpostings=2000 -DfsyncMicros=2000 -Dwindows=0,200,1000,5000
+public class GroupCommitBenchmark {
+    private static final int THREADS = Integer.getInteger("threads", 32);
+    private static final int POSTINGS_PER_THREAD = Integer.getInteger("postings", 2000);
+    private static final long FSYNC_MICROS = Long.getLong("fsyncMicros", 2000L);
+
+    public static void main(String[] args) throws Exception {
+        String[] windows = System.getProperty("windows", "0,200,1000,5000").split(",");
+
+        if (args.length > 0 && args[0].equals("db")) {
+            int[] accountIds = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                accountIds[i - 1] = Integer.parseInt(args[i]);
+            }
+            DatabaseManager.initializeDatabase();
+            for (String window : windows) {
+                DatabaseManager.shutdown();
+                DatabaseManager.enableGroupCommit(Long.parseLong(window.trim()), 64);
+                GroupCommitter committer = DatabaseManager.getGroupCommitter();
+                run("window=" + window.trim() + "us", committer, (type, index) -> type == GroupCommitter.DEPOSIT
+                        ? DatabaseManager.deposit(accountIds[index % accountIds.length], 100)
+                        : DatabaseManager.withdraw(accountIds[index % accountIds.length], 100));
+            }
+            DatabaseManager.shutdown();
+            return;
+        }
+
+        for (String window : windows) {
+            GroupCommitter committer = new GroupCommitter((postings, count, succeeded) -> {
+                // One simulated fsync per group, whatever its size
+                long end = System.nanoTime() + FSYNC_MICROS * 1000;
+                while (System.nanoTime() < end) {
+                    Thread.onSpinWait();
+                }
+                for (int i = 0; i < count; i++) {
+                    succeeded[i] = true;
+                }
+            }, Long.parseLong(window.trim()), 64, 10000);
+            run("window=" + window.trim() + "us", committer,
+                    (type, index) -> committer.submit(type, 1 + index % 100, 100, "benchmark"));
+            committer.close();
+        }
+    }
+
+    private interface PostingAction {
+        boolean post(byte type, int index);
+    }
+
+    private static void run(String label, GroupCommitter committer, PostingAction action) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        AtomicLong failed = new AtomicLong();
+
+        for (int t = 0; t < THREADS; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                    for (int i = 0; i < POSTINGS_PER_THREAD; i++) {
+                        byte type = random.nextBoolean() ? GroupCommitter.DEPOSIT : GroupCommitter.WITHDRAW;
+                        if (!action.post(type, random.nextInt(Integer.MAX_VALUE))) {
+                            failed.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        done.await();
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+
+        long total = (long) THREADS * POSTINGS_PER_THREAD;
+        System.out.println(String.format("%s: %,d postings in %.2f s (%,.0f/sec), %d failed",
+                label, total, seconds, total / seconds, failed.get()));
+        System.out.println("  " + committer);
+        System.out.print(committer.batchSizeDistribution().replaceAll("(?m)^", "  batch "));
+    }
+}
@@ -0,0 +1,290 @@
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Group commit for deposits and withdrawals.
+// Callers hand their posting to a single writer thread and block until it is committed.
+// The writer waits up to the configured window after the first posting arrives, gathers
+// everything else that came in meanwhile (up to maxBatchSize) and commits the whole group in
+// one database transaction, so many sessions share one fsync. Every caller still gets its own
+// answer: a withdrawal that would overdraw fails on its own without failing the group.
+// A caller that gives up waiting (timeout or interrupt) only gets false if it withdrew its
+// posting before the writer took it; once taken, the caller waits for the real outcome.
+// A group that fails before its commit is retried one posting at a time. A group whose commit
+// itself failed (CommitOutcomeUnknownException) may already be applied, so it is never
+// replayed: its postings fail and are logged for reconciliation.
+public class GroupCommitter {
+    public static final byte DEPOSIT = 1;
+    public static final byte WITHDRAW = 2;
+
+    // Applies a group in one transaction; sets succeeded[i] for each posting that went through.
+    // Failures of the commit call itself must be thrown as CommitOutcomeUnknownException.
+    public interface BatchWriter {
+        void write(Posting[] postings, int count, boolean[] succeeded) throws SQLException;
+    }
+
+    // The commit was sent but not acknowledged: the group may or may not have been applied
+    public static class CommitOutcomeUnknownException extends SQLException {
+        private static final long serialVersionUID = 1L;
+
+        public CommitOutcomeUnknownException(SQLException cause) {
+            super("Commit outcome unknown: " + cause.getMessage(), cause.getSQLState(), cause.getErrorCode(), cause);
+        }
+    }
+
+    public static class Posting {
+        private final byte type;
+        private final int accountId;
+        private final long amount;
+        private final String description;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        // QUEUED until either the writer takes it into a batch or the caller withdraws it
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+
+        Posting(byte type, int accountId, long amount, String description) {
+            this.type = type;
+            this.accountId = accountId;
+            this.amount = amount;
+            this.description = description;
+        }
+
+        public byte getType() { return type; }
+        public int getAccountId() { return accountId; }
+        public long getAmount() { return amount; }
+        public String getDescription() { return description; }
+    }
+
+    private static final long CALLER_TIMEOUT_MILLIS = 30000;
+    private static final int QUEUED = 0;
+    private static final int TAKEN = 1;
+    private static final int WITHDRAWN = 2;
+
+    private final BatchWriter writer;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final BlockingQueue<Posting> queue;
+    private final Thread flusher;
+    private volatile boolean closed;
+
+    // Statistics: batch sizes in power-of-two buckets (1, 2, 3-4, 5-8, ...) and commit latency
+    private final AtomicLongArray batchSizeBuckets = new AtomicLongArray(32);
+    private final LatencyHistogram commitLatency = new LatencyHistogram();
+    private final LatencyHistogram callerLatency = new LatencyHistogram();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong postings = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final AtomicLong unknownOutcomes = new AtomicLong();
+
+    public GroupCommitter(BatchWriter writer, long windowMicros, int maxBatchSize, int queueCapacity) {
+        this.writer = writer;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatchSize = maxBatchSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.flusher = new Thread(this::flushLoop, "group-commit");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    // Submit a posting and wait for its own outcome
+    public boolean submit(byte type, int accountId, long amount, String description) {
+        if (closed) {
+            return false;
+        }
+
+        long start = System.nanoTime();
+        Posting posting = new Posting(type, accountId, amount, description);
+        try {
+            if (!queue.offer(posting, CALLER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                System.err.println("Group commit queue full, posting rejected");
+                callerLatency.record(System.nanoTime() - start);
+                return false;
+            }
+        } catch (InterruptedException e) {
+            // Not queued
+            Thread.currentThread().interrupt();
+            callerLatency.record(System.nanoTime() - start);
+            return false;
+        }
+
+        boolean interrupted = false;
+        try {
+            return posting.result.get(CALLER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            interrupted = true;
+        } catch (TimeoutException e) {
+            System.err.println("Group commit slow: posting still waiting after " + CALLER_TIMEOUT_MILLIS + " ms");
+        } catch (ExecutionException e) {
+            System.err.println("Group commit error: " + e.getMessage());
+            return false;
+        } finally {
+            callerLatency.record(System.nanoTime() - start);
+        }
+
+        try {
+            if (posting.state.compareAndSet(QUEUED, WITHDRAWN)) {
+                return false; // The writer will skip it, so it is certainly not applied
+            }
+            // Already in a batch - its outcome is the answer, however long it takes
+            return posting.result.join();
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void flushLoop() {
+        Posting[] batch = new Posting[maxBatchSize];
+        boolean[] succeeded = new boolean[maxBatchSize];
+        Posting[] single = new Posting[1];
+        boolean[] singleSucceeded = new boolean[1];
+
+        while (!closed || !queue.isEmpty()) {
+            int count = 0;
+            try {
+                Posting first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null || !first.state.compareAndSet(QUEUED, TAKEN)) {
+                    continue; // Nothing arrived, or the caller withdrew it
+                }
+                batch[count++] = first;
+
+                // Gather whatever else arrives within the window
+                long deadline = System.nanoTime() + windowNanos;
+                while (count < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Posting next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (next.state.compareAndSet(QUEUED, TAKEN)) {
+                        batch[count++] = next;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failAll(batch, count);
+                return;
+            }
+
+            recordBatchSize(count);
+            long start = System.nanoTime();
+            try {
+                Arrays.fill(succeeded, 0, count, false);
+                writer.write(batch, count, succeeded);
+                commitLatency.record(System.nanoTime() - start);
+                for (int i = 0; i < count; i++) {
+                    batch[i].result.complete(succeeded[i]);
+                }
+            } catch (CommitOutcomeUnknownException e) {
+                commitLatency.record(System.nanoTime() - start);
+                // Replaying could apply every posting twice
+                for (int i = 0; i < count; i++) {
+                    reportUnknownOutcome(batch[i], e);
+                }
+            } catch (SQLException e) {
+                commitLatency.record(System.nanoTime() - start);
+                if (count == 1) {
+                    batch[0].result.complete(false);
+                    System.err.println("Group commit error: " + e.getMessage());
+                } else {
+                    // One bad posting must not sink the others - retry each on its own
+                    fallbacks.incrementAndGet();
+                    for (int i = 0; i < count; i++) {
+                        single[0] = batch[i];
+                        singleSucceeded[0] = false;
+                        try {
+                            writer.write(single, 1, singleSucceeded);
+                            batch[i].result.complete(singleSucceeded[0]);
+                        } catch (CommitOutcomeUnknownException retryError) {
+                            reportUnknownOutcome(batch[i], retryError);
+                        } catch (SQLException retryError) {
+                            System.err.println("Group commit error: " + retryError.getMessage());
+                            batch[i].result.complete(false);
+                        }
+                    }
+                }
+            } catch (RuntimeException e) {
+                failAll(batch, count);
+                System.err.println("Group commit error: " + e.getMessage());
+            }
+
+            Arrays.fill(batch, 0, count, null);
+        }
+    }
+
+    // Fails a posting that may have been committed anyway, with enough detail to reconcile it
+    private void reportUnknownOutcome(Posting posting, SQLException e) {
+        unknownOutcomes.incrementAndGet();
+        System.err.println("Group commit outcome unknown for " + (posting.type == WITHDRAW ? "withdrawal" : "deposit") +
+                " of " + Money.format(posting.amount) + " on account " + posting.accountId + ": " + e.getMessage());
+        posting.result.complete(false);
+    }
+
+    private static void failAll(Posting[] batch, int count) {
+        for (int i = 0; i < count; i++) {
+            batch[i].result.complete(false);
+        }
+    }
+
+    private void recordBatchSize(int size) {
+        batches.incrementAndGet();
+        postings.addAndGet(size);
+        batchSizeBuckets.incrementAndGet(32 - Integer.numberOfLeadingZeros(size - 1));
+    }
+
+    public void close() {
+        closed = true;
+        try {
+            flusher.join(CALLER_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Statistics
+    public long getBatchCount() { return batches.get(); }
+    public long getPostingCount() { return postings.get(); }
+    public long getFallbackCount() { return fallbacks.get(); }
+    // Postings reported as failed although their commit may have gone through
+    public long getUnknownOutcomeCount() { return unknownOutcomes.get(); }
+    public double getAverageBatchSize() {
+        long count = batches.get();
+        return count == 0 ? 0 : (double) postings.get() / count;
+    }
+    public LatencyHistogram getCommitLatency() { return commitLatency; }
+    public LatencyHistogram getCallerLatency() { return callerLatency; }
+
+    // Batch size distribution, one line per non-empty power-of-two bucket
+    public String batchSizeDistribution() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < batchSizeBuckets.length(); i++) {
+            long count = batchSizeBuckets.get(i);
+            if (count > 0) {
+                long low = i == 0 ? 1 : (1L << (i - 1)) + 1;
+                long high = 1L << i;
+                sb.append(low == high ? String.valueOf(low) : low + "-" + high)
+                  .append(": ").append(count).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "GroupCommitter{batches=" + getBatchCount() +
+                ", postings=" + getPostingCount() +
+                ", avgBatch=" + String.format("%.1f", getAverageBatchSize()) +
+                ", fallbacks=" + getFallbackCount() +
+                ", unknownOutcomes=" + getUnknownOutcomeCount() +
+                ", commit: " + commitLatency.summary() +
+                ", caller: " + callerLatency.summary() + '}';
+    }
+}
@@ -0,0 +1,116 @@
+import java.util.Arrays;
+
+// Open-addressing hash map from int keys to long values, with no boxing.
+// Used for in-memory balances keyed by account_id. Key 0 is reserved as the empty marker,
+// which is safe because account ids come from an AUTO_INCREMENT column starting at 1.
+// Not thread-safe - callers synchronize externally.
+public class IntLongMap {
+    public interface Visitor {
+        void visit(int key, long value);
+    }
+
+    private static final int EMPTY = 0;
+
+    private int[] keys;
+    private long[] values;
+    private int size;
+    private int mask;
+
+    public IntLongMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2) - 1) << 1;
+        keys = new int[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    public boolean containsKey(int key) {
+        return key != EMPTY && keys[indexOf(key)] == key;
+    }
+
+    public long get(int key, long missingValue) {
+        if (key == EMPTY) {
+            return missingValue;
+        }
+        int index = indexOf(key);
+        return keys[index] == key ? values[index] : missingValue;
+    }
+
+    public void put(int key, long value) {
+        checkKey(key);
+        int index = indexOf(key);
+        if (keys[index] != key) {
+            keys[index] = key;
+            if (++size * 2 > keys.length) {
+                values[index] = value;
+                grow();
+                return;
+            }
+        }
+        values[index] = value;
+    }
+
+    // Add delta to the value for key (treating a missing key as 0) and return the new value
+    public long addTo(int key, long delta) {
+        checkKey(key);
+        int index = indexOf(key);
+        if (keys[index] != key) {
+            put(key, delta);
+            return delta;
+        }
+        values[index] += delta;
+        return values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                visitor.visit(keys[i], values[i]);
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    // Slot holding key, or the empty slot where it would be inserted
+    private int indexOf(int key) {
+        int index = mix(key) & mask;
+        while (keys[index] != key && keys[index] != EMPTY) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new long[oldValues.length * 2];
+        mask = keys.length - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int index = indexOf(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static void checkKey(int key) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Key 0 is reserved");
+        }
+    }
+}
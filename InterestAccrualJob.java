@@ -0,0 +1,361 @@
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Nightly loan servicing: for every ACTIVE loan with an installment due on or before the run
+// date, accrues the month's interest on the remaining amount and collects the monthly payment
+// from the loan's account. The n-th installment falls due on start_date plus n months, counted
+// from the start date every time (so a loan started on the 31st is due on the last day of
+// shorter months and on the 31st again after them); loans.accrued_installments says how many
+// have been serviced. A run that was missed catches up month by month.
+// When the account can't cover an installment the interest is added to the remaining amount
+// instead and the loan stays ACTIVE. Loans whose remaining amount reaches zero become PAID.
+//
+// The work is split by account_id range over a fork/join pool, so no two tasks ever touch the
+// same account. Each task walks its loans in chunks of chunkSize (keyset on loan_id); a chunk
+// locks its loans and their accounts, computes everything in memory and writes it back with
+// batched UPDATEs and INSERTs in one transaction. accrued_installments moves forward in that same
+// transaction, which makes the job restartable per chunk: running it again for the same date
+// only picks up the loans whose chunk did not commit.
+//
+// Like BulkImporter, this writes accounts.balance directly, so a run is refused while
+// DatabaseManager.isLedgerActive() reports the in-memory ledger (-Dbank.ledger.dir) in use.
+//
+// Usage: java InterestAccrualJob [yyyy-MM-dd]   (defaults to today)
+// Optional system properties: -Daccrual.threads (defaults to the pool size),
+//   -Daccrual.chunkSize=500, -Daccrual.accountsPerTask=20000,
+//   -Daccrual.runAt=02:00 to keep running and service loans every day at that time,
+//   plus the -Dbank.db.* connection settings
+public class InterestAccrualJob {
+    private static final int MAX_ATTEMPTS = 3;
+    // Oldest backlog a single run catches up on, per loan
+    private static final int MAX_MONTHS_PER_RUN = 1200;
+
+    private static final OperationMetrics CHUNK_METRICS = MetricsRegistry.operation("accrualChunk");
+
+    private final ConnectionPool pool;
+    private final LocalDate runDate;
+    private final int chunkSize;
+    private final int accountsPerTask;
+
+    private final LongAdder loans = new LongAdder();
+    private final LongAdder installments = new LongAdder();
+    private final LongAdder missedInstallments = new LongAdder();
+    private final LongAdder collected = new LongAdder();
+    private final LongAdder interest = new LongAdder();
+    private final LongAdder paidOff = new LongAdder();
+    private final LongAdder chunks = new LongAdder();
+    private final LongAdder failedChunks = new LongAdder();
+
+    public InterestAccrualJob(ConnectionPool pool, LocalDate runDate, int chunkSize, int accountsPerTask) {
+        this.pool = pool;
+        this.runDate = runDate;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.accountsPerTask = Math.max(1, accountsPerTask);
+    }
+
+    public static void main(String[] args) {
+        ConnectionPool pool = DatabaseManager.getConnectionPool();
+        int threads = Integer.getInteger("accrual.threads", pool.getMaxSize());
+        int chunkSize = Integer.getInteger("accrual.chunkSize", 500);
+        int accountsPerTask = Integer.getInteger("accrual.accountsPerTask", 20000);
+        String runAt = System.getProperty("accrual.runAt");
+
+        if (runAt == null) {
+            LocalDate date = args.length > 0 ? LocalDate.parse(args[0]) : LocalDate.now();
+            boolean succeeded = runOnce(new InterestAccrualJob(pool, date, chunkSize, accountsPerTask), threads);
+            DatabaseManager.shutdown();
+            if (!succeeded) {
+                System.exit(1);
+            }
+            return;
+        }
+
+        // Stay up and service loans once a day
+        LocalTime time = LocalTime.parse(runAt);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime first = now.toLocalDate().atTime(time);
+        if (!first.isAfter(now)) {
+            first = first.plusDays(1);
+        }
+        scheduler.scheduleAtFixedRate(
+                () -> runOnce(new InterestAccrualJob(pool, LocalDate.now(), chunkSize, accountsPerTask), threads),
+                Duration.between(now, first).toMillis(), TimeUnit.DAYS.toMillis(1), TimeUnit.MILLISECONDS);
+        System.out.println("Loan servicing scheduled daily at " + time + ", first run " + first);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            scheduler.shutdownNow();
+            DatabaseManager.shutdown();
+        }));
+    }
+
+    private static boolean runOnce(InterestAccrualJob job, int threads) {
+        if (DatabaseManager.isLedgerActive()) {
+            System.err.println("Accrual refused: the in-memory ledger is enabled or has postings left to sync");
+            return false;
+        }
+        long start = System.nanoTime();
+        try {
+            job.run(threads);
+        } catch (SQLException e) {
+            System.err.println("Accrual error: " + e.getMessage());
+            return false;
+        }
+        System.out.println(String.format("%s (%.1f s)", job, (System.nanoTime() - start) / 1e9));
+        return job.getFailedChunks() == 0;
+    }
+
+    // Services every loan due on or before the run date
+    public void run(int parallelism) throws SQLException {
+        int firstAccount;
+        int lastAccount;
+        String rangeQuery = "SELECT MIN(account_id), MAX(account_id) FROM loans WHERE status = 'ACTIVE'";
+        try (Connection conn = pool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(rangeQuery);
+             ResultSet rs = stmt.executeQuery()) {
+            if (!rs.next() || rs.getObject(1) == null) {
+                return; // No active loans
+            }
+            firstAccount = rs.getInt(1);
+            lastAccount = rs.getInt(2);
+        }
+
+        ForkJoinPool forkJoin = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            forkJoin.invoke(new AccountRangeTask(firstAccount, (long) lastAccount + 1));
+        } finally {
+            forkJoin.shutdown();
+        }
+    }
+
+    // Splits [from, to) in halves until it spans at most accountsPerTask account ids
+    private class AccountRangeTask extends RecursiveAction {
+        private final long from;
+        private final long to;
+
+        AccountRangeTask(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > accountsPerTask) {
+                long middle = from + (to - from) / 2;
+                invokeAll(new AccountRangeTask(from, middle), new AccountRangeTask(middle, to));
+            } else {
+                serviceRange(from, to);
+            }
+        }
+    }
+
+    private void serviceRange(long fromAccount, long toAccount) {
+        int afterLoanId = 0;
+        while (true) {
+            int attempt = 1;
+            int lastLoanId;
+            while (true) {
+                long start = System.nanoTime();
+                try {
+                    lastLoanId = serviceChunk(fromAccount, toAccount, afterLoanId);
+                    CHUNK_METRICS.record(start, 0);
+                    break;
+                } catch (SQLException e) {
+                    CHUNK_METRICS.error();
+                    // Deadlock victims and serialization failures (SQLSTATE class 40) are retried
+                    if (attempt++ < MAX_ATTEMPTS && e.getSQLState() != null && e.getSQLState().startsWith("40")) {
+                        continue;
+                    }
+                    failedChunks.increment();
+                    System.err.println("Accrual error for accounts " + fromAccount + "-" + (toAccount - 1) +
+                            " after loan " + afterLoanId + ": " + e.getMessage());
+                    return; // The rest of this range is picked up by the next run
+                }
+            }
+            if (lastLoanId == 0) {
+                return;
+            }
+            afterLoanId = lastLoanId;
+        }
+    }
+
+    // Services the next chunk of due loans in the account range and returns the last loan id,
+    // or 0 when there are none left
+    private int serviceChunk(long fromAccount, long toAccount, int afterLoanId) throws SQLException {
+        // Same test as the loop below: the next installment's due date is on or before the run date
+        String chunkQuery = "SELECT l.loan_id, l.account_id, l.monthly_payment, l.remaining_amount, l.interest_rate, " +
+                            "CAST(l.start_date AS DATE) AS start_day, l.accrued_installments, a.balance " +
+                            "FROM loans l JOIN accounts a ON a.account_id = l.account_id " +
+                            "WHERE l.status = 'ACTIVE' AND l.account_id >= ? AND l.account_id < ? AND l.loan_id > ? " +
+                            "AND DATE_ADD(CAST(l.start_date AS DATE), INTERVAL l.accrued_installments + 1 MONTH) <= ? " +
+                            "ORDER BY l.loan_id LIMIT ? FOR UPDATE";
+        String loanQuery = "UPDATE loans SET remaining_amount = ?, status = ?, accrued_installments = ?, " +
+                           "last_accrual_date = COALESCE(?, last_accrual_date), updated_at = CURRENT_TIMESTAMP WHERE loan_id = ?";
+        String accountQuery = "UPDATE accounts SET balance = balance - ? WHERE account_id = ?";
+        String transactionQuery = "INSERT INTO transactions (account_id, transaction_type, amount, description) " +
+                                  "VALUES (?, 'WITHDRAW', ?, ?)";
+
+        IntLongMap balances = new IntLongMap(chunkSize);
+        IntLongMap debits = new IntLongMap(chunkSize);
+        int lastLoanId = 0;
+        int chunkLoans = 0;
+        long chunkInstallments = 0;
+        long chunkMissed = 0;
+        long chunkCollected = 0;
+        long chunkInterest = 0;
+        long chunkPaidOff = 0;
+
+        try (Connection conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement chunkStmt = conn.prepareStatement(chunkQuery);
+                 PreparedStatement loanStmt = conn.prepareStatement(loanQuery);
+                 PreparedStatement accountStmt = conn.prepareStatement(accountQuery);
+                 PreparedStatement transactionStmt = conn.prepareStatement(transactionQuery)) {
+
+                chunkStmt.setLong(1, fromAccount);
+                chunkStmt.setLong(2, toAccount);
+                chunkStmt.setInt(3, afterLoanId);
+                chunkStmt.setDate(4, Date.valueOf(runDate));
+                chunkStmt.setInt(5, chunkSize);
+
+                try (ResultSet rs = chunkStmt.executeQuery()) {
+                    while (rs.next()) {
+                        int loanId = rs.getInt("loan_id");
+                        int accountId = rs.getInt("account_id");
+                        long monthlyPayment = Money.fromDecimal(rs.getBigDecimal("monthly_payment"));
+                        long remaining = Money.fromDecimal(rs.getBigDecimal("remaining_amount"));
+                        double rate = rs.getDouble("interest_rate");
+                        LocalDate startDay = rs.getDate("start_day").toLocalDate();
+                        int accrued = rs.getInt("accrued_installments");
+                        if (!balances.containsKey(accountId)) {
+                            balances.put(accountId, Money.fromDecimal(rs.getBigDecimal("balance")));
+                        }
+                        long balance = balances.get(accountId, 0);
+
+                        // One installment per month that has come due since the last run
+                        String status = "ACTIVE";
+                        int months = 0;
+                        LocalDate dueDate = null;
+                        while (!startDay.plusMonths(accrued + 1).isAfter(runDate) && months++ < MAX_MONTHS_PER_RUN) {
+                            accrued++;
+                            dueDate = startDay.plusMonths(accrued);
+                            long monthInterest = AmortizationEngine.monthlyInterest(remaining, rate);
+                            long due = Math.min(monthlyPayment, remaining + monthInterest);
+                            chunkInterest += monthInterest;
+                            if (balance >= due) {
+                                balance -= due;
+                                remaining = remaining + monthInterest - due;
+                                debits.addTo(accountId, due);
+                                chunkCollected += due;
+                                chunkInstallments++;
+
+                                transactionStmt.setInt(1, accountId);
+                                transactionStmt.setBigDecimal(2, Money.toDecimal(due));
+                                transactionStmt.setString(3, "Loan installment for loan #" + loanId + " (" + dueDate + ")");
+                                transactionStmt.addBatch();
+                            } else {
+                                // Unpaid interest is capitalized
+                                remaining += monthInterest;
+                                chunkMissed++;
+                            }
+                            if (remaining <= 0) {
+                                remaining = 0;
+                                status = "PAID";
+                                chunkPaidOff++;
+                                break;
+                            }
+                        }
+                        balances.put(accountId, balance);
+
+                        loanStmt.setBigDecimal(1, Money.toDecimal(remaining));
+                        loanStmt.setString(2, status);
+                        loanStmt.setInt(3, accrued);
+                        loanStmt.setDate(4, dueDate != null ? Date.valueOf(dueDate) : null);
+                        loanStmt.setInt(5, loanId);
+                        loanStmt.addBatch();
+
+                        lastLoanId = loanId;
+                        chunkLoans++;
+                    }
+                }
+
+                if (chunkLoans == 0) {
+                    conn.rollback();
+                    return 0;
+                }
+
+                // Net debit per account, in ascending account_id order
+                int[] accountIds = new int[debits.size()];
+                int[] filled = {0};
+                debits.forEach((accountId, amount) -> accountIds[filled[0]++] = accountId);
+                Arrays.sort(accountIds);
+                for (int accountId : accountIds) {
+                    accountStmt.setBigDecimal(1, Money.toDecimal(debits.get(accountId, 0)));
+                    accountStmt.setInt(2, accountId);
+                    accountStmt.addBatch();
+                }
+
+                loanStmt.executeBatch();
+                accountStmt.executeBatch();
+                transactionStmt.executeBatch();
+                conn.commit();
+
+                AccountCache cache = DatabaseManager.getAccountCache();
+                for (int accountId : accountIds) {
+                    cache.invalidate(accountId);
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+
+        loans.add(chunkLoans);
+        installments.add(chunkInstallments);
+        missedInstallments.add(chunkMissed);
+        collected.add(chunkCollected);
+        interest.add(chunkInterest);
+        paidOff.add(chunkPaidOff);
+        chunks.increment();
+        return lastLoanId;
+    }
+
+    // Statistics
+    public LocalDate getRunDate() { return runDate; }
+    public long getLoans() { return loans.sum(); }
+    public long getInstallments() { return installments.sum(); }
+    public long getMissedInstallments() { return missedInstallments.sum(); }
+    public long getCollected() { return collected.sum(); }
+    public long getInterest() { return interest.sum(); }
+    public long getPaidOff() { return paidOff.sum(); }
+    public long getChunks() { return chunks.sum(); }
+    public long getFailedChunks() { return failedChunks.sum(); }
+
+    @Override
+    public String toString() {
+        return "InterestAccrualJob{date=" + runDate +
+                ", loans=" + getLoans() +
+                ", installments=" + getInstallments() +
+                ", missed=" + getMissedInstallments() +
+                ", collected=" + Money.format(getCollected()) +
+                ", interest=" + Money.format(getInterest()) +
+                ", paidOff=" + getPaidOff() +
+                ", chunks=" + getChunks() +
+                ", failedChunks=" + getFailedChunks() + '}';
+    }
+}
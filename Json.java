@@ -0,0 +1,141 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Just enough JSON for the HTTP API: request bodies are flat objects whose values are strings,
+// numbers, booleans or null, and responses are written with a StringBuilder and quote().
+public final class Json {
+    private Json() {
+    }
+
+    // Parses {"name": value, ...} into name -> value text (strings unescaped, null as null)
+    public static Map<String, String> parseObject(String text) {
+        Map<String, String> values = new LinkedHashMap<>();
+        int[] pos = {skipWhitespace(text, 0)};
+        expect(text, pos, '{');
+        if (peek(text, pos) == '}') {
+            pos[0]++;
+            return values;
+        }
+        while (true) {
+            String name = readString(text, pos);
+            expect(text, pos, ':');
+            values.put(name, readValue(text, pos));
+            char c = peek(text, pos);
+            pos[0]++;
+            if (c == '}') {
+                break;
+            }
+            if (c != ',') {
+                throw new IllegalArgumentException("Expected ',' or '}' at position " + (pos[0] - 1));
+            }
+        }
+        if (skipWhitespace(text, pos[0]) != text.length()) {
+            throw new IllegalArgumentException("Unexpected content after JSON object");
+        }
+        return values;
+    }
+
+    private static String readValue(String text, int[] pos) {
+        char c = peek(text, pos);
+        if (c == '"') {
+            return readString(text, pos);
+        }
+        if (c == '{' || c == '[') {
+            throw new IllegalArgumentException("Nested values are not supported");
+        }
+        int start = pos[0];
+        while (pos[0] < text.length() && ",} \t\r\n".indexOf(text.charAt(pos[0])) < 0) {
+            pos[0]++;
+        }
+        String literal = text.substring(start, pos[0]);
+        if (literal.isEmpty()) {
+            throw new IllegalArgumentException("Missing value at position " + start);
+        }
+        return literal.equals("null") ? null : literal;
+    }
+
+    private static String readString(String text, int[] pos) {
+        expect(text, pos, '"');
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            if (pos[0] >= text.length()) {
+                throw new IllegalArgumentException("Unterminated string");
+            }
+            char c = text.charAt(pos[0]++);
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (pos[0] >= text.length()) {
+                throw new IllegalArgumentException("Unterminated string");
+            }
+            char escaped = text.charAt(pos[0]++);
+            switch (escaped) {
+                case 'n': sb.append('\n'); break;
+                case 't': sb.append('\t'); break;
+                case 'r': sb.append('\r'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    if (pos[0] + 4 > text.length()) {
+                        throw new IllegalArgumentException("Bad unicode escape");
+                    }
+                    sb.append((char) Integer.parseInt(text.substring(pos[0], pos[0] + 4), 16));
+                    pos[0] += 4;
+                    break;
+                default: sb.append(escaped); break;
+            }
+        }
+    }
+
+    private static void expect(String text, int[] pos, char expected) {
+        if (peek(text, pos) != expected) {
+            throw new IllegalArgumentException("Expected '" + expected + "' at position " + pos[0]);
+        }
+        pos[0]++;
+    }
+
+    // Next non-blank character, leaving pos on it
+    private static char peek(String text, int[] pos) {
+        pos[0] = skipWhitespace(text, pos[0]);
+        if (pos[0] >= text.length()) {
+            throw new IllegalArgumentException("Unexpected end of JSON");
+        }
+        return text.charAt(pos[0]);
+    }
+
+    private static int skipWhitespace(String text, int pos) {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    // Appends value as a JSON string literal, or null
+    public static StringBuilder quote(StringBuilder sb, String value) {
+        if (value == null) {
+            return sb.append("null");
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"');
+    }
+}
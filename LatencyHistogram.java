@@ -0,0 +1,120 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Fixed-size log-linear histogram of nanosecond values, in the spirit of HdrHistogram.
+// Each power of two is split into 32 sub-buckets, so any recorded value is reported within
+// about 3% of its true value. Recording is lock-free and allocation-free.
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.incrementAndGet(indexOf(nanos));
+        totalCount.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+
+        long currentMax;
+        while (nanos > (currentMax = maxNanos.get())) {
+            if (maxNanos.compareAndSet(currentMax, nanos)) {
+                break;
+            }
+        }
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public double getMeanNanos() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) totalNanos.get() / count;
+    }
+
+    // Value below which the given percentage (0-100) of recorded values fall
+    public long getPercentileNanos(double percentile) {
+        long count = totalCount.get();
+        if (count == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestValueAt(i), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    // Number of recorded values in [fromNanos, toNanos)
+    public long getCountBetween(long fromNanos, long toNanos) {
+        long total = 0;
+        for (int i = indexOf(fromNanos); i < BUCKET_COUNT && lowestValueAt(i) < toNanos; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    // One-line summary in microseconds
+    public String summary() {
+        return String.format("count=%d mean=%.1fus p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+                getCount(), getMeanNanos() / 1000.0,
+                getPercentileNanos(50) / 1000.0, getPercentileNanos(99) / 1000.0,
+                getPercentileNanos(99.9) / 1000.0, getMaxNanos() / 1000.0);
+    }
+
+    @Override
+    public String toString() {
+        return summary();
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int top = (int) (value >>> (exponent - SUB_BUCKET_BITS)); // 32..63
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + (top - SUB_BUCKETS);
+    }
+
+    private static long lowestValueAt(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int bucket = index / SUB_BUCKETS;
+        long top = SUB_BUCKETS + index % SUB_BUCKETS;
+        return top << (bucket - 1);
+    }
+
+    private static long highestValueAt(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int bucket = index / SUB_BUCKETS;
+        return lowestValueAt(index) + (1L << (bucket - 1)) - 1;
+    }
+}
@@ -0,0 +1,73 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+
+// Measures posting throughput and latency of the in-memory ledger with a no-op database sink,
+// then reopens the log directory to check that recovery reproduces the same balances.
+//
+// Usage: java LedgerBenchmark [postings] [accounts] [directory]
+public class LedgerBenchmark {
+    public static void main(String[] args) throws Exception {
+        int postings = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int accounts = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        Path directory = args.length > 2 ? Paths.get(args[2]) : Files.createTempDirectory("ledger-bench");
+        
+        LedgerEngine.BalanceLoader loader = accountId -> accountId <= accounts ? 1_000_000L : LedgerEngine.UNKNOWN_ACCOUNT;
+        LedgerEngine.Sink sink = new LedgerEngine.Sink() {
+            private volatile long applied;
+            
+            public long lastAppliedSequence() throws SQLException {
+                return applied;
+            }
+            
+            public void apply(LedgerEngine.PostingBatch batch, int from, int to) {
+                applied = batch.getSequence(to - 1);
+            }
+        };
+        
+        LedgerEngine ledger = LedgerEngine.open(directory, loader, sink, false, 60000, 1000);
+        
+        // Warm up
+        for (int i = 0; i < 100_000; i++) {
+            ledger.deposit(1 + i % accounts, 100);
+        }
+        
+        long start = System.nanoTime();
+        for (int i = 0; i < postings; i++) {
+            int account = 1 + i % accounts;
+            switch (i % 3) {
+                case 0:
+                    ledger.deposit(account, 500);
+                    break;
+                case 1:
+                    ledger.withdraw(account, 300);
+                    break;
+                default:
+                    ledger.transfer(account, 1 + (i * 7) % accounts, 100);
+                    break;
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        
+        System.out.println(String.format("%,d postings in %.2f s: %,.0f postings/sec, %.2f us/posting",
+                postings, seconds, postings / seconds, seconds * 1e6 / postings));
+        
+        long total = 0;
+        for (int account = 1; account <= accounts; account++) {
+            total += ledger.balanceOf(account);
+        }
+        long lastSequence = ledger.getLastSequence();
+        ledger.close();
+        
+        // Recovery must land on exactly the same state
+        LedgerEngine reopened = LedgerEngine.open(directory, loader, sink, false, 60000, 1000);
+        long recoveredTotal = 0;
+        for (int account = 1; account <= accounts; account++) {
+            recoveredTotal += reopened.balanceOf(account);
+        }
+        System.out.println("Recovered sequence " + reopened.getLastSequence() + " (expected " + lastSequence
+                + "), total " + Money.format(recoveredTotal) + " (expected " + Money.format(total) + ")");
+        reopened.close();
+    }
+}
@@ -0,0 +1,646 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// In-memory ledger for deposits, withdrawals and transfers.
+//
+// Balances live in an IntLongMap keyed by account_id. Every posting is appended to a local
+// write-ahead log before the caller gets its answer, then applied in memory and queued for a
+// background thread that copies it into the accounts/transactions tables. Periodic snapshots
+// bound recovery time: on startup the latest snapshot is loaded and the log is replayed on top.
+//
+// Log files live in one directory:
+//   ledger.snapshot          balances as of some sequence number
+//   wal-<first seq>.log      fixed-size posting records, one segment per snapshot interval
+public class LedgerEngine {
+    // Posting types as stored in the log
+    public static final byte OPEN = 0;              // account loaded into the ledger with its database balance
+    public static final byte DEPOSIT = 1;
+    public static final byte WITHDRAW = 2;
+    public static final byte TRANSFER = 3;          // account -> counterparty
+    public static final byte LOAN_PAYMENT = 4;      // counterparty holds the loan id
+    public static final byte LOAN_DISBURSEMENT = 5; // counterparty holds the loan id
+    public static final byte ADJUSTMENT = 6;        // signed correction, counterparty holds the loan id
+
+    public static final long UNKNOWN_ACCOUNT = Long.MIN_VALUE;
+
+    // Current balance of an account the ledger has not seen yet, or UNKNOWN_ACCOUNT if it doesn't exist
+    public interface BalanceLoader {
+        long loadBalance(int accountId) throws SQLException;
+    }
+
+    // Receives postings in sequence order and makes them durable in the database
+    public interface Sink {
+        long lastAppliedSequence() throws SQLException;
+        void apply(PostingBatch batch, int from, int to) throws SQLException;
+    }
+
+    // Growable column-oriented list of postings
+    public static class PostingBatch {
+        private long[] sequence = new long[256];
+        private byte[] type = new byte[256];
+        private int[] accountId = new int[256];
+        private int[] counterparty = new int[256];
+        private long[] amount = new long[256];
+        private int size;
+
+        void add(long seq, byte postingType, int account, int other, long cents) {
+            if (size == sequence.length) {
+                int capacity = size * 2;
+                sequence = Arrays.copyOf(sequence, capacity);
+                type = Arrays.copyOf(type, capacity);
+                accountId = Arrays.copyOf(accountId, capacity);
+                counterparty = Arrays.copyOf(counterparty, capacity);
+                amount = Arrays.copyOf(amount, capacity);
+            }
+            sequence[size] = seq;
+            type[size] = postingType;
+            accountId[size] = account;
+            counterparty[size] = other;
+            amount[size] = cents;
+            size++;
+        }
+
+        void clear() { size = 0; }
+
+        public int size() { return size; }
+        public long getSequence(int i) { return sequence[i]; }
+        public byte getType(int i) { return type[i]; }
+        public int getAccountId(int i) { return accountId[i]; }
+        public int getCounterparty(int i) { return counterparty[i]; }
+        public long getAmount(int i) { return amount[i]; }
+    }
+
+    // seq(8) type(1) account(4) counterparty(4) amount(8) crc(4)
+    private static final int RECORD_SIZE = 29;
+    private static final int SNAPSHOT_MAGIC = 0x4C444752; // "LDGR"
+    private static final String SNAPSHOT_FILE = "ledger.snapshot";
+
+    private final Path directory;
+    private final BalanceLoader loader;
+    private final Sink sink;
+    private final boolean fsyncEachPosting;
+    private final int syncBatchSize;
+
+    private final IntLongMap balances = new IntLongMap(1024);
+    private final ByteBuffer record = ByteBuffer.allocateDirect(RECORD_SIZE);
+    private final CRC32 crc = new CRC32();
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+    private FileChannel wal;
+    private long lastSequence;
+    private long snapshotSequence;
+    private volatile long syncedSequence;
+    private volatile boolean dirty;
+    // Set when the database rejected a posting for good; the sync thread has stopped
+    private volatile String syncFailure;
+
+    // Postings waiting for the database. The sync thread swaps these two buffers.
+    private PostingBatch pending = new PostingBatch();
+    private PostingBatch draining = new PostingBatch();
+
+    private final ScheduledExecutorService scheduler;
+    private final Thread syncThread;
+    private volatile boolean closed;
+
+    private LedgerEngine(Path directory, BalanceLoader loader, Sink sink,
+                         boolean fsyncEachPosting, int syncBatchSize) {
+        this.directory = directory;
+        this.loader = loader;
+        this.sink = sink;
+        this.fsyncEachPosting = fsyncEachPosting;
+        this.syncBatchSize = syncBatchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ledger-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.syncThread = new Thread(this::syncLoop, "ledger-db-sync");
+        this.syncThread.setDaemon(true);
+    }
+
+    // Recover from the snapshot and log in directory, then start the background threads
+    public static LedgerEngine open(Path directory, BalanceLoader loader, Sink sink,
+                                    boolean fsyncEachPosting, long snapshotIntervalMillis,
+                                    int syncBatchSize) throws IOException, SQLException {
+        Files.createDirectories(directory);
+        LedgerEngine engine = new LedgerEngine(directory, loader, sink, fsyncEachPosting, syncBatchSize);
+        engine.recover();
+        engine.syncThread.start();
+
+        engine.scheduler.scheduleWithFixedDelay(engine::snapshotQuietly,
+                snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+        if (!fsyncEachPosting) {
+            // Postings always reach the OS before they are acknowledged; this bounds what a power loss can take
+            engine.scheduler.scheduleWithFixedDelay(engine::forceQuietly, 10, 10, TimeUnit.MILLISECONDS);
+        }
+        return engine;
+    }
+
+    // Postings
+
+    public boolean deposit(int accountId, long amount) throws IOException, SQLException {
+        return post(DEPOSIT, accountId, 0, amount);
+    }
+
+    public boolean withdraw(int accountId, long amount) throws IOException, SQLException {
+        return post(WITHDRAW, accountId, 0, amount);
+    }
+
+    public boolean transfer(int fromAccountId, int toAccountId, long amount) throws IOException, SQLException {
+        if (fromAccountId == toAccountId) {
+            return false;
+        }
+        return post(TRANSFER, fromAccountId, toAccountId, amount);
+    }
+
+    public boolean loanPayment(int accountId, int loanId, long amount) throws IOException, SQLException {
+        return post(LOAN_PAYMENT, accountId, loanId, amount);
+    }
+
+    public boolean loanDisbursement(int accountId, int loanId, long amount) throws IOException, SQLException {
+        return post(LOAN_DISBURSEMENT, accountId, loanId, amount);
+    }
+
+    // Undo a posting whose surrounding database work failed; skips the balance check
+    public void adjust(int accountId, int loanId, long signedAmount) throws IOException, SQLException {
+        ensureLoaded(accountId);
+        synchronized (this) {
+            append(ADJUSTMENT, accountId, loanId, signedAmount);
+            applyInMemory(ADJUSTMENT, accountId, loanId, signedAmount);
+            pending.add(lastSequence, ADJUSTMENT, accountId, loanId, signedAmount);
+        }
+    }
+
+    // In-memory balance, or UNKNOWN_ACCOUNT when the account hasn't been touched through the ledger
+    public synchronized long balanceOf(int accountId) {
+        return balances.get(accountId, UNKNOWN_ACCOUNT);
+    }
+
+    private boolean post(byte type, int accountId, int counterparty, long amount) throws IOException, SQLException {
+        if (amount <= 0 || closed) {
+            return false;
+        }
+        if (!ensureLoaded(accountId) || (type == TRANSFER && !ensureLoaded(counterparty))) {
+            return false;
+        }
+
+        synchronized (this) {
+            if (type == WITHDRAW || type == TRANSFER || type == LOAN_PAYMENT) {
+                if (balances.get(accountId, 0) < amount) {
+                    return false; // Insufficient funds
+                }
+            }
+
+            append(type, accountId, counterparty, amount);
+            applyInMemory(type, accountId, counterparty, amount);
+            pending.add(lastSequence, type, accountId, counterparty, amount);
+        }
+        return true;
+    }
+
+    // Make sure the account's starting balance is in memory (and in the log) before posting to it
+    private boolean ensureLoaded(int accountId) throws IOException, SQLException {
+        synchronized (this) {
+            if (balances.containsKey(accountId)) {
+                return true;
+            }
+        }
+
+        // Load outside the lock so a slow query doesn't stall every other posting
+        long balance = loader.loadBalance(accountId);
+        if (balance == UNKNOWN_ACCOUNT) {
+            return false;
+        }
+
+        synchronized (this) {
+            if (!balances.containsKey(accountId)) {
+                append(OPEN, accountId, 0, balance);
+                balances.put(accountId, balance);
+            }
+        }
+        return true;
+    }
+
+    private void applyInMemory(byte type, int accountId, int counterparty, long amount) {
+        switch (type) {
+            case OPEN:
+                balances.put(accountId, amount);
+                break;
+            case DEPOSIT:
+            case LOAN_DISBURSEMENT:
+            case ADJUSTMENT:
+                balances.addTo(accountId, amount);
+                break;
+            case WITHDRAW:
+            case LOAN_PAYMENT:
+                balances.addTo(accountId, -amount);
+                break;
+            case TRANSFER:
+                balances.addTo(accountId, -amount);
+                balances.addTo(counterparty, amount);
+                break;
+            default:
+                throw new IllegalStateException("Unknown posting type " + type);
+        }
+    }
+
+    // Write-ahead log - caller holds the lock
+
+    private void append(byte type, int accountId, int counterparty, long amount) throws IOException {
+        long seq = lastSequence + 1;
+
+        record.clear();
+        record.putLong(seq).put(type).putInt(accountId).putInt(counterparty).putLong(amount);
+        record.flip();
+        crc.reset();
+        crc.update(record);
+        record.limit(RECORD_SIZE);
+        record.putInt(RECORD_SIZE - 4, (int) crc.getValue());
+        record.position(0);
+
+        while (record.hasRemaining()) {
+            wal.write(record);
+        }
+        if (fsyncEachPosting) {
+            wal.force(false);
+        } else {
+            dirty = true;
+        }
+        lastSequence = seq;
+    }
+
+    private void openSegment(long firstSequence) throws IOException {
+        if (wal != null) {
+            wal.force(false);
+            wal.close();
+        }
+        Path path = directory.resolve(String.format("wal-%020d.log", firstSequence));
+        wal = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segments.put(firstSequence, path);
+    }
+
+    private void forceQuietly() {
+        if (!dirty) {
+            return;
+        }
+        try {
+            synchronized (this) {
+                dirty = false;
+                wal.force(false);
+            }
+        } catch (IOException e) {
+            System.err.println("Ledger log flush error: " + e.getMessage());
+        }
+    }
+
+    // Snapshots
+
+    public void snapshot() throws IOException {
+        int count;
+        int[] ids;
+        long[] amounts;
+        long sequence;
+
+        synchronized (this) {
+            count = balances.size();
+            ids = new int[count];
+            amounts = new long[count];
+            int[] index = {0};
+            balances.forEach((key, value) -> {
+                ids[index[0]] = key;
+                amounts[index[0]] = value;
+                index[0]++;
+            });
+            sequence = lastSequence;
+            if (sequence == snapshotSequence) {
+                return; // Nothing new since the last snapshot
+            }
+            // Later postings go to a fresh segment so older ones can be dropped once they are covered
+            openSegment(sequence + 1);
+        }
+
+        // The file is written outside the lock and only becomes visible once complete
+        Path tmp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (OutputStream os = Files.newOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 1 << 16))) {
+            CRC32 checksum = new CRC32();
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(sequence);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeInt(ids[i]);
+                out.writeLong(amounts[i]);
+                checksum.update(ids[i]);
+                checksum.update((int) (amounts[i] >>> 32));
+                checksum.update((int) amounts[i]);
+            }
+            out.writeLong(checksum.getValue());
+            out.flush();
+        }
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tmp, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        synchronized (this) {
+            snapshotSequence = sequence;
+        }
+        deleteObsoleteSegments();
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException e) {
+            System.err.println("Ledger snapshot error: " + e.getMessage());
+        }
+    }
+
+    // A segment can go once every posting in it is both in the snapshot and in the database
+    private synchronized void deleteObsoleteSegments() {
+        long covered = Math.min(snapshotSequence, syncedSequence);
+        while (segments.size() > 1) {
+            Map.Entry<Long, Path> first = segments.firstEntry();
+            Long nextStart = segments.higherKey(first.getKey());
+            if (nextStart - 1 > covered) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(first.getValue());
+            } catch (IOException e) {
+                System.err.println("Could not delete ledger segment " + first.getValue() + ": " + e.getMessage());
+                break;
+            }
+            segments.pollFirstEntry();
+        }
+    }
+
+    // Recovery
+
+    private void recover() throws IOException, SQLException {
+        Path snapshotPath = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshotPath)) {
+            snapshotSequence = readSnapshot(snapshotPath);
+        }
+        lastSequence = snapshotSequence;
+        syncedSequence = sink.lastAppliedSequence();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "wal-*.log")) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                segments.put(Long.parseLong(name.substring(4, name.length() - 4)), path);
+            }
+        }
+
+        Long lastSegment = segments.isEmpty() ? null : segments.lastKey();
+        for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+            replaySegment(segment.getValue(), segment.getKey().equals(lastSegment));
+        }
+
+        // Continue in a fresh segment rather than appending after a possibly torn tail
+        openSegment(lastSequence + 1);
+        System.out.println("Ledger recovered " + balances.size() + " accounts at sequence " + lastSequence
+                + " (" + pending.size() + " postings awaiting database sync)");
+    }
+
+    private long readSnapshot(Path path) throws IOException {
+        try (InputStream is = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(is, 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a ledger snapshot: " + path);
+            }
+            long sequence = in.readLong();
+            int count = in.readInt();
+            CRC32 checksum = new CRC32();
+            for (int i = 0; i < count; i++) {
+                int accountId = in.readInt();
+                long balance = in.readLong();
+                checksum.update(accountId);
+                checksum.update((int) (balance >>> 32));
+                checksum.update((int) balance);
+                balances.put(accountId, balance);
+            }
+            if (in.readLong() != checksum.getValue()) {
+                throw new IOException("Ledger snapshot checksum mismatch: " + path);
+            }
+            return sequence;
+        }
+    }
+
+    private void replaySegment(Path path, boolean isLastSegment) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 4096);
+        CRC32 checksum = new CRC32();
+        long validBytes = 0;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            while (channel.read(buffer) > 0 || buffer.position() > 0) {
+                buffer.flip();
+                if (buffer.remaining() < RECORD_SIZE) {
+                    break; // Torn record at the end
+                }
+                while (buffer.remaining() >= RECORD_SIZE) {
+                    int start = buffer.position();
+                    checksum.reset();
+                    buffer.limit(start + RECORD_SIZE - 4);
+                    checksum.update(buffer);
+                    buffer.limit(buffer.capacity());
+                    buffer.position(start);
+
+                    long seq = buffer.getLong();
+                    byte type = buffer.get();
+                    int accountId = buffer.getInt();
+                    int counterparty = buffer.getInt();
+                    long amount = buffer.getLong();
+                    int storedCrc = buffer.getInt();
+
+                    if (storedCrc != (int) checksum.getValue()) {
+                        if (!isLastSegment) {
+                            throw new IOException("Corrupt ledger record in " + path + " at byte " + validBytes);
+                        }
+                        // Torn write from a crash - everything after it was never acknowledged
+                        channel.truncate(validBytes);
+                        return;
+                    }
+
+                    if (seq > snapshotSequence) {
+                        applyInMemory(type, accountId, counterparty, amount);
+                    }
+                    if (seq > syncedSequence && type != OPEN) {
+                        pending.add(seq, type, accountId, counterparty, amount);
+                    }
+                    lastSequence = Math.max(lastSequence, seq);
+                    validBytes += RECORD_SIZE;
+                }
+                buffer.compact();
+                buffer.limit(buffer.capacity());
+            }
+
+            if (channel.size() > validBytes) {
+                if (!isLastSegment) {
+                    throw new IOException("Truncated ledger record in " + path);
+                }
+                channel.truncate(validBytes);
+            }
+        }
+    }
+
+    // Database sync
+
+    private void syncLoop() {
+        long backoffMillis = 10;
+
+        while (!closed || pendingSize() > 0 || draining.size() > 0) {
+            try {
+                if (draining.size() == 0) {
+                    synchronized (this) {
+                        PostingBatch swap = pending;
+                        pending = draining;
+                        draining = swap;
+                    }
+                    if (draining.size() == 0) {
+                        if (closed) {
+                            break;
+                        }
+                        Thread.sleep(1);
+                        continue;
+                    }
+                }
+
+                // Apply in chunks; each chunk commits the checkpoint together with its rows,
+                // so a retry after a failure skips the postings that already made it
+                for (int chunk = 0; chunk < draining.size(); chunk += syncBatchSize) {
+                    int to = Math.min(chunk + syncBatchSize, draining.size());
+                    int from = chunk;
+                    while (from < to && draining.getSequence(from) <= syncedSequence) {
+                        from++;
+                    }
+                    if (from < to) {
+                        try {
+                            sink.apply(draining, from, to);
+                            syncedSequence = draining.getSequence(to - 1);
+                        } catch (SQLException e) {
+                            if (isTransient(e)) {
+                                throw e;
+                            }
+                            if (!isolateFailure(from, to)) {
+                                return;
+                            }
+                        }
+                    }
+                }
+                draining.clear();
+                backoffMillis = 10;
+
+            } catch (SQLException e) {
+                System.err.println("Ledger database sync error (will retry): " + e.getMessage());
+                sleepQuietly(backoffMillis);
+                backoffMillis = Math.min(backoffMillis * 2, 5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Connection problems (class 08) and deadlocks or serialization failures (class 40) go away
+    // on their own; anything else fails the same way every time
+    private static boolean isTransient(SQLException e) {
+        String state = e.getSQLState();
+        return state != null && (state.startsWith("08") || state.startsWith("40"));
+    }
+
+    // Applies a rejected chunk one posting at a time to find the posting the database refuses.
+    // Returns false after recording that posting; the sync stops there, and the postings from it
+    // on stay in the log until the database is fixed and the ledger restarted.
+    private boolean isolateFailure(int from, int to) throws SQLException {
+        for (int i = from; i < to; i++) {
+            if (draining.getSequence(i) <= syncedSequence) {
+                continue;
+            }
+            try {
+                sink.apply(draining, i, i + 1);
+                syncedSequence = draining.getSequence(i);
+            } catch (SQLException e) {
+                if (isTransient(e)) {
+                    throw e;
+                }
+                syncFailure = "posting " + draining.getSequence(i) + " (type " + draining.getType(i) +
+                        ", account " + draining.getAccountId(i) + ", counterparty " + draining.getCounterparty(i) +
+                        ", amount " + Money.format(draining.getAmount(i)) + ") rejected: " + e.getMessage();
+                System.err.println("Ledger database sync stopped, " + syncFailure);
+                return false;
+            }
+        }
+        // The chunk went through one posting at a time
+        return true;
+    }
+
+    private synchronized int pendingSize() {
+        return pending.size();
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Statistics
+    public synchronized long getLastSequence() { return lastSequence; }
+    public long getSyncedSequence() { return syncedSequence; }
+    public synchronized int getAccountCount() { return balances.size(); }
+    // The posting the database rejected, or null while the sync is running
+    public String getSyncFailure() { return syncFailure; }
+
+    // True once the sync thread has stopped with every posting in the database
+    public boolean isDrained() {
+        return !syncThread.isAlive() && syncFailure == null && pendingSize() == 0 && draining.size() == 0;
+    }
+
+    // Stop accepting postings, drain the database sync and write a final snapshot
+    public void close() throws IOException {
+        closed = true;
+        // No snapshot or flush may still be running when the final ones below start
+        scheduler.shutdownNow();
+        try {
+            if (!scheduler.awaitTermination(30, TimeUnit.SECONDS)) {
+                System.err.println("Ledger maintenance still running at close");
+            }
+            syncThread.join(30000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            // A flush interrupted by shutdownNow closes the channel; reopen the current segment
+            if (!wal.isOpen()) {
+                wal = FileChannel.open(segments.lastEntry().getValue(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+        }
+        snapshot();
+        synchronized (this) {
+            wal.force(false);
+            wal.close();
+        }
+    }
+}
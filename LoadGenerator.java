@@ -0,0 +1,290 @@
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Headless load test: N simulated customers, each in its own (virtual, where available) thread,
+// replaying banking sessions through DatabaseManager. A session logs in, opens the dashboard
+// (accounts and the first page of history) and then performs a number of actions picked from a
+// weighted mix, with random think time in between, before logging in again.
+// Prints a progress line periodically and throughput and latency percentiles per operation
+// at the end.
+//
+// By default a fresh in-process H2 database is created and filled by BenchmarkDataset:
+//   java -cp .:h2.jar LoadGenerator
+// Optional system properties:
+//   -Dload.url=jdbc:h2:mem:bankload;MODE=MySQL;DATABASE_TO_LOWER=TRUE -Dload.user=sa -Dload.password=
+//   -Dload.createData=true  (false: use a database already filled by BenchmarkDataset with load.users users)
+//   -Dload.users=1000 -Dload.sessions=10000 -Dload.durationSeconds=60 -Dload.rampUpSeconds=10
+//   -Dload.thinkMillis=200 (mean) -Dload.actionsPerSession=20 -Dload.poolSize=20 -Dload.reportSeconds=10
+//   -Dload.mix=deposit:30,withdraw:25,transfer:20,dashboard:15,issueCard:5,loanPayment:5
+//   -Dbank.password.iterations (default 1,000 here, see BenchmarkDataset.useBenchmarkPasswordCost)
+public class LoadGenerator {
+    private static final String URL = System.getProperty("load.url", "jdbc:h2:mem:bankload;MODE=MySQL;DATABASE_TO_LOWER=TRUE");
+    private static final String USER = System.getProperty("load.user", "sa");
+    private static final String PASSWORD = System.getProperty("load.password", "");
+    private static final boolean CREATE_DATA = Boolean.parseBoolean(System.getProperty("load.createData", "true"));
+    private static final int USERS = Integer.getInteger("load.users", 1000);
+    private static final int SESSIONS = Integer.getInteger("load.sessions", 10000);
+    private static final long DURATION_SECONDS = Long.getLong("load.durationSeconds", 60L);
+    private static final long RAMP_UP_SECONDS = Long.getLong("load.rampUpSeconds", 10L);
+    private static final long THINK_MILLIS = Long.getLong("load.thinkMillis", 200L);
+    private static final int ACTIONS_PER_SESSION = Integer.getInteger("load.actionsPerSession", 20);
+    private static final int POOL_SIZE = Integer.getInteger("load.poolSize", 20);
+    private static final long REPORT_SECONDS = Long.getLong("load.reportSeconds", 10L);
+
+    // Operations, indexes into the statistics arrays
+    private static final int LOGIN = 0;
+    private static final int DASHBOARD = 1;
+    private static final int DEPOSIT = 2;
+    private static final int WITHDRAW = 3;
+    private static final int TRANSFER = 4;
+    private static final int ISSUE_CARD = 5;
+    private static final int LOAN_PAYMENT = 6;
+    private static final String[] NAMES = {"login", "dashboard", "deposit", "withdraw", "transfer", "issueCard", "loanPayment"};
+
+    private static final LatencyHistogram[] LATENCY = new LatencyHistogram[NAMES.length];
+    private static final AtomicLong[] FAILED = new AtomicLong[NAMES.length];
+    private static final AtomicInteger ACTIVE_SESSIONS = new AtomicInteger();
+
+    static {
+        for (int i = 0; i < NAMES.length; i++) {
+            LATENCY[i] = new LatencyHistogram();
+            FAILED[i] = new AtomicLong();
+        }
+    }
+
+    // Weighted action mix: cumulative weights, searched linearly (there are only a few entries)
+    private static int[] mixOps;
+    private static int[] mixCumulative;
+
+    public static void main(String[] args) throws Exception {
+        if (!parseMix(System.getProperty("load.mix", "deposit:30,withdraw:25,transfer:20,dashboard:15,issueCard:5,loanPayment:5"))) {
+            return;
+        }
+
+        BenchmarkDataset.useBenchmarkPasswordCost();
+        BenchmarkDataset data = new BenchmarkDataset(USERS, 2, 20);
+        Connection keepAlive = null;
+        try {
+            if (CREATE_DATA) {
+                // Held open for the whole run so an in-memory database is not dropped
+                keepAlive = DriverManager.getConnection(URL, USER, PASSWORD);
+                long start = System.nanoTime();
+                data.create(keepAlive, Paths.get(System.getProperty("bench.schema", "bank_management_system.sql")));
+                System.out.println(String.format("Data set: %s (loaded in %.1f s)", data, (System.nanoTime() - start) / 1e9));
+            }
+        } catch (SQLException e) {
+            System.err.println("Load test database error: " + e.getMessage());
+            System.err.println("Put an embedded JDBC driver on the class path (java -cp .:h2.jar LoadGenerator) or set -Dload.url");
+            return;
+        }
+
+        DatabaseManager.usePool(new ConnectionPool(URL, USER, PASSWORD, POOL_SIZE,
+                60000, 30 * 60000, 5000, 2, Integer.getInteger("bank.db.pool.statementCacheSize", 64)));
+
+        System.out.println("Starting " + SESSIONS + " sessions for " + DURATION_SECONDS + " s on " +
+                (VirtualThreads.isSupported() ? "virtual threads" : "platform threads (virtual threads need Java 21+)"));
+
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("session");
+        long startNanos = System.nanoTime();
+        long endNanos = startNanos + TimeUnit.SECONDS.toNanos(DURATION_SECONDS);
+        for (int s = 0; s < SESSIONS; s++) {
+            int session = s;
+            long startAt = startNanos + TimeUnit.SECONDS.toNanos(RAMP_UP_SECONDS) * s / SESSIONS;
+            executor.execute(() -> runSession(session, data, startAt, endNanos));
+        }
+
+        long previousCount = 0;
+        long previousNanos = startNanos;
+        while (System.nanoTime() - endNanos < 0) {
+            Thread.sleep(Math.min(TimeUnit.SECONDS.toMillis(REPORT_SECONDS),
+                    Math.max(1, TimeUnit.NANOSECONDS.toMillis(endNanos - System.nanoTime()))));
+            long count = totalCount();
+            long now = System.nanoTime();
+            System.out.println(String.format("[%4.0f s] %,d ops (%,.0f/sec), %d active sessions, %s",
+                    (now - startNanos) / 1e9, count, (count - previousCount) / ((now - previousNanos) / 1e9),
+                    ACTIVE_SESSIONS.get(), DatabaseManager.getConnectionPool()));
+            previousCount = count;
+            previousNanos = now;
+        }
+
+        executor.shutdown();
+        if (!executor.awaitTermination(THINK_MILLIS * 2 + 60000, TimeUnit.MILLISECONDS)) {
+            System.err.println("Some sessions did not finish in time");
+        }
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+
+        System.out.println(String.format("%-12s %10s %10s %10s %10s %10s %10s %8s",
+                "operation", "count", "ops/sec", "p50(us)", "p99(us)", "p99.9(us)", "max(us)", "failed"));
+        for (int i = 0; i < NAMES.length; i++) {
+            LatencyHistogram latency = LATENCY[i];
+            System.out.println(String.format("%-12s %,10d %,10.0f %10.1f %10.1f %10.1f %10.1f %8d",
+                    NAMES[i], latency.getCount(), latency.getCount() / seconds,
+                    latency.getPercentileNanos(50) / 1000.0, latency.getPercentileNanos(99) / 1000.0,
+                    latency.getPercentileNanos(99.9) / 1000.0, latency.getMaxNanos() / 1000.0, FAILED[i].get()));
+        }
+        System.out.println(String.format("Total: %,.0f ops/sec over %.1f s", totalCount() / seconds, seconds));
+        System.out.println(DatabaseManager.getAccountCache());
+        System.out.print(MetricsRegistry.report());
+
+        DatabaseManager.shutdown();
+        if (keepAlive != null) {
+            keepAlive.close();
+        }
+    }
+
+    private static boolean parseMix(String mix) {
+        String[] entries = mix.split(",");
+        mixOps = new int[entries.length];
+        mixCumulative = new int[entries.length];
+        int total = 0;
+        for (int i = 0; i < entries.length; i++) {
+            String[] parts = entries[i].trim().split(":");
+            int op = indexOf(parts[0]);
+            if (op < 0 || parts.length != 2) {
+                System.err.println("Bad load.mix entry: " + entries[i] + " (operations: " + String.join(", ", NAMES) + ")");
+                return false;
+            }
+            total += Integer.parseInt(parts[1]);
+            mixOps[i] = op;
+            mixCumulative[i] = total;
+        }
+        return total > 0;
+    }
+
+    private static int indexOf(String name) {
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long totalCount() {
+        long count = 0;
+        for (LatencyHistogram latency : LATENCY) {
+            count += latency.getCount();
+        }
+        return count;
+    }
+
+    private static void runSession(int session, BenchmarkDataset data, long startAt, long endNanos) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int userId = 1 + session % data.getUserCount();
+        ACTIVE_SESSIONS.incrementAndGet();
+        try {
+            sleepNanos(startAt - System.nanoTime());
+            while (System.nanoTime() - endNanos < 0) {
+                if (!login(userId)) {
+                    think(random);
+                    continue;
+                }
+                List<Account> accounts = dashboard(userId);
+                if (accounts == null || accounts.isEmpty()) {
+                    think(random);
+                    continue;
+                }
+
+                for (int a = 0; a < ACTIONS_PER_SESSION && System.nanoTime() - endNanos < 0; a++) {
+                    think(random);
+                    int op = pickOperation(random);
+                    int accountId = accounts.get(random.nextInt(accounts.size())).getAccountId();
+                    if (op == LOGIN) {
+                        login(userId);
+                    } else if (op == DASHBOARD) {
+                        dashboard(userId);
+                    } else {
+                        act(op, accountId, data, random);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            ACTIVE_SESSIONS.decrementAndGet();
+        }
+    }
+
+    private static boolean login(int userId) {
+        long begin = System.nanoTime();
+        String username = BenchmarkDataset.username(userId);
+        boolean ok = DatabaseManager.authenticateUser(username, BenchmarkDataset.password(userId))
+                && DatabaseManager.getUserDetails(username) != null;
+        return record(LOGIN, begin, ok);
+    }
+
+    private static List<Account> dashboard(int userId) {
+        long begin = System.nanoTime();
+        List<Account> accounts = DatabaseManager.getUserAccounts(userId);
+        boolean ok = !accounts.isEmpty()
+                && DatabaseManager.getTransactionHistoryPage(accounts.get(0).getAccountId(), null, 50) != null;
+        return record(DASHBOARD, begin, ok) ? accounts : null;
+    }
+
+    private static void act(int op, int accountId, BenchmarkDataset data, ThreadLocalRandom random) {
+        long amount = 100 + random.nextInt(50000);
+        long begin = System.nanoTime();
+        boolean ok;
+        switch (op) {
+            case DEPOSIT:
+                ok = DatabaseManager.deposit(accountId, amount);
+                break;
+            case WITHDRAW:
+                ok = DatabaseManager.withdraw(accountId, amount);
+                break;
+            case TRANSFER:
+                int recipientId = 1 + random.nextInt(data.getAccountCount());
+                ok = recipientId == accountId || DatabaseManager.transfer(accountId, recipientId, amount);
+                break;
+            case ISSUE_CARD:
+                ok = DatabaseManager.issueCard(accountId, "VISA",
+                        new Timestamp(System.currentTimeMillis() + 4L * 365 * 86_400_000L));
+                break;
+            default:
+                // BenchmarkDataset gives every account one loan with the same id
+                ok = DatabaseManager.makeLoanPayment(accountId, amount);
+                break;
+        }
+        record(op, begin, ok);
+    }
+
+    private static int pickOperation(ThreadLocalRandom random) {
+        int pick = random.nextInt(mixCumulative[mixCumulative.length - 1]);
+        for (int i = 0; i < mixCumulative.length; i++) {
+            if (pick < mixCumulative[i]) {
+                return mixOps[i];
+            }
+        }
+        return mixOps[mixOps.length - 1];
+    }
+
+    private static boolean record(int op, long begin, boolean ok) {
+        LATENCY[op].record(System.nanoTime() - begin);
+        if (!ok) {
+            FAILED[op].incrementAndGet();
+        }
+        return ok;
+    }
+
+    private static void think(ThreadLocalRandom random) throws InterruptedException {
+        // Uniform between 0 and twice the mean
+        if (THINK_MILLIS > 0) {
+            Thread.sleep(random.nextLong(THINK_MILLIS * 2 + 1));
+        }
+    }
+
+    private static void sleepNanos(long nanos) throws InterruptedException {
+        if (nanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+    }
+}
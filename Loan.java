@@ -1,4 +1,5 @@
 import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
@@ -7,6 +8,7 @@ import java.sql.Timestamp;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 import javax.swing.text.NumberFormatter;
@@ -20,8 +22,12 @@ public class Loan extends JFrame {
     private DefaultTableModel loanTableModel;
     private JButton applyLoanButton;
     private JButton makePaymentButton;
+    private JButton scheduleButton;
     private JButton backButton;
     private JLabel balanceLabel;
+    private final UiTask.Latest loanRequests = new UiTask.Latest();
+    // Loans shown in the table, in row order
+    private List<DatabaseManager.Loan> loans = new ArrayList<>();
     
     public Loan(User user) {
         this.user = user;
@@ -30,17 +36,8 @@ public class Loan extends JFrame {
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         setLocationRelativeTo(null);
         
-        // Load user accounts
-        accounts = DatabaseManager.getUserAccounts(user.getId());
-        if (accounts.isEmpty()) {
-            JOptionPane.showMessageDialog(this, "No accounts found for this user", 
-                    "Error", JOptionPane.ERROR_MESSAGE);
-            dispose();
-            return;
-        }
-        
-        // Set the first account as selected by default
-        selectedAccount = accounts.get(0);
+        // Accounts are loaded in the background once the window is built
+        accounts = new ArrayList<>();
         
         // Create main panel
         JPanel mainPanel = new JPanel(new BorderLayout(10, 10));
@@ -63,9 +60,6 @@ public class Loan extends JFrame {
         
         selectorPanel.add(new JLabel("Account: "));
         accountSelector = new JComboBox<>();
-        for (Account account : accounts) {
-            accountSelector.addItem(account.getAccountNumber() + " (" + account.getAccountType() + ")");
-        }
         accountSelector.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
                 int selectedIndex = accountSelector.getSelectedIndex();
@@ -79,10 +73,9 @@ public class Loan extends JFrame {
         selectorPanel.add(accountSelector);
         
         // Balance display
-        balanceLabel = new JLabel();
+        balanceLabel = new JLabel("loading...");
         balanceLabel.setFont(new Font("Arial", Font.BOLD, 14));
         balanceLabel.setForeground(Color.WHITE);
-        updateBalanceLabel();
         selectorPanel.add(new JLabel("   Balance: "));
         selectorPanel.add(balanceLabel);
         
@@ -172,6 +165,16 @@ public class Loan extends JFrame {
             }
         });
         
+        scheduleButton = new JButton("Repayment Schedule");
+        scheduleButton.setBackground(new Color(70, 130, 180)); // Steel Blue
+        scheduleButton.setForeground(Color.BLACK);
+        scheduleButton.setFont(new Font("Arial", Font.BOLD, 14));
+        scheduleButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                showSchedule();
+            }
+        });
+        
         backButton = new JButton("Back to Dashboard");
         backButton.setBackground(new Color(100, 149, 237)); // Cornflower Blue
         backButton.setForeground(Color.BLACK);
@@ -186,6 +189,7 @@ public class Loan extends JFrame {
         
         buttonPanel.add(applyLoanButton);
         buttonPanel.add(makePaymentButton);
+        buttonPanel.add(scheduleButton);
         buttonPanel.add(backButton);
         
         mainPanel.add(buttonPanel, BorderLayout.SOUTH);
@@ -193,22 +197,52 @@ public class Loan extends JFrame {
         // Add main panel to frame
         add(mainPanel);
         
-        // Load loan table initially
-        refreshLoanTable();
+        // Load accounts, then the first account's loans
+        loadAccounts();
+    }
+    
+    private void loadAccounts() {
+        UiTask.run(this, BankService.getUserAccounts(user.getId()), loadedAccounts -> {
+            if (loadedAccounts.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "No accounts found for this user", 
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                dispose();
+                return;
+            }
+            
+            accounts = loadedAccounts;
+            // Adding the first item selects it, which shows its balance and loads its loans
+            for (Account account : accounts) {
+                accountSelector.addItem(account.getAccountNumber() + " (" + account.getAccountType() + ")");
+            }
+        }, accountSelector, applyLoanButton);
+    }
+    
+    private void refreshBalance() {
+        UiTask.run(this, BankService.getAccountById(selectedAccount.getAccountId()), account -> {
+            if (account != null && account.getAccountId() == selectedAccount.getAccountId()) {
+                selectedAccount = account;
+                updateBalanceLabel();
+            }
+        });
     }
     
     private void updateBalanceLabel() {
         DecimalFormat df = new DecimalFormat("$#,##0.00");
-        balanceLabel.setText(df.format(selectedAccount.getBalance()));
+        balanceLabel.setText(df.format(Money.toDecimal(selectedAccount.getBalance())));
     }
     
     private void refreshLoanTable() {
+        // Get loans for the selected account; switching accounts again drops this request
+        loanRequests.run(this, () -> BankService.getLoansByAccountId(selectedAccount.getAccountId()), this::showLoans);
+    }
+    
+    private void showLoans(List<DatabaseManager.Loan> loans) {
+        this.loans = loans;
+        
         // Clear existing rows
         loanTableModel.setRowCount(0);
         
-        // Get loans for the selected account
-        List<DatabaseManager.Loan> loans = DatabaseManager.getLoansByAccountId(selectedAccount.getAccountId());
-        
         DecimalFormat currencyFormat = new DecimalFormat("$#,##0.00");
         DecimalFormat percentFormat = new DecimalFormat("#0.00%");
         
@@ -216,23 +250,101 @@ public class Loan extends JFrame {
             loanTableModel.addRow(new Object[]{
                 loan.getLoanId(),
                 loan.getLoanType(),
-                currencyFormat.format(loan.getPrincipalAmount()),
+                currencyFormat.format(Money.toDecimal(loan.getPrincipalAmount())),
                 loan.getInterestRate() + "%",
                 loan.getTermMonths() + " months",
-                currencyFormat.format(loan.getMonthlyPayment()),
-                currencyFormat.format(loan.getRemainingAmount()),
+                currencyFormat.format(Money.toDecimal(loan.getMonthlyPayment())),
+                currencyFormat.format(Money.toDecimal(loan.getRemainingAmount())),
                 loan.getStatus()
             });
         }
         
         if (loans.isEmpty()) {
             makePaymentButton.setEnabled(false);
+            scheduleButton.setEnabled(false);
         } else {
             makePaymentButton.setEnabled(true);
+            scheduleButton.setEnabled(true);
+        }
+    }
+    
+    private void showSchedule() {
+        int selectedRow = loanTable.getSelectedRow();
+        if (selectedRow == -1 || selectedRow >= loans.size()) {
+            JOptionPane.showMessageDialog(this,
+                    "Please select a loan to see its repayment schedule.",
+                    "No Loan Selected", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        
+        // Projected payments of the remaining amount at the loan's monthly payment
+        DatabaseManager.Loan loan = loans.get(selectedRow);
+        AmortizationEngine.Schedule schedule = new AmortizationEngine.Schedule(loan.getTermMonths());
+        try {
+            AmortizationEngine.fillForPayment(schedule, loan.getRemainingAmount(),
+                    loan.getInterestRate(), loan.getMonthlyPayment());
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this,
+                    "No schedule is available for this loan: " + ex.getMessage(),
+                    "Repayment Schedule", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        
+        DecimalFormat currencyFormat = new DecimalFormat("$#,##0.00");
+        String[] columns = {"Month", "Payment", "Principal", "Interest", "Balance"};
+        
+        // Reads straight from the schedule arrays; cells are formatted as they are painted
+        JTable scheduleTable = new JTable(new AbstractTableModel() {
+            public int getRowCount() {
+                return schedule.getMonths();
+            }
+            
+            public int getColumnCount() {
+                return columns.length;
+            }
+            
+            @Override
+            public String getColumnName(int column) {
+                return columns[column];
+            }
+            
+            public Object getValueAt(int row, int column) {
+                switch (column) {
+                    case 0: return row + 1;
+                    case 1: return currencyFormat.format(Money.toDecimal(schedule.getPayment(row)));
+                    case 2: return currencyFormat.format(Money.toDecimal(schedule.getPrincipal(row)));
+                    case 3: return currencyFormat.format(Money.toDecimal(schedule.getInterest(row)));
+                    default: return currencyFormat.format(Money.toDecimal(schedule.getBalance(row)));
+                }
+            }
+        });
+        scheduleTable.setRowHeight(22);
+        scheduleTable.getTableHeader().setReorderingAllowed(false);
+        DefaultTableCellRenderer rightRenderer = new DefaultTableCellRenderer();
+        rightRenderer.setHorizontalAlignment(JLabel.RIGHT);
+        for (int column = 1; column < columns.length; column++) {
+            scheduleTable.getColumnModel().getColumn(column).setCellRenderer(rightRenderer);
         }
+        
+        JDialog dialog = new JDialog(this, "Repayment Schedule - Loan #" + loan.getLoanId(), true);
+        dialog.setSize(600, 500);
+        dialog.setLocationRelativeTo(this);
+        dialog.setLayout(new BorderLayout());
+        dialog.add(new JScrollPane(scheduleTable), BorderLayout.CENTER);
+        
+        JLabel totalsLabel = new JLabel(schedule.getMonths() + " payments, total " +
+                currencyFormat.format(Money.toDecimal(schedule.getTotalPaid())) + " including " +
+                currencyFormat.format(Money.toDecimal(schedule.getTotalInterest())) + " interest");
+        totalsLabel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        dialog.add(totalsLabel, BorderLayout.SOUTH);
+        dialog.setVisible(true);
     }
     
     private void applyForLoan() {
+        if (selectedAccount == null) {
+            return; // Accounts still loading
+        }
+        
         // Create loan application dialog
         JDialog dialog = new JDialog(this, "Apply for a New Loan", true);
         dialog.setSize(450, 450);
@@ -324,27 +436,6 @@ public class Loan extends JFrame {
         
         // Calculate button to preview payment
         JButton calculateButton = new JButton("Calculate Payment");
-        calculateButton.addActionListener(new ActionListener() {
-            public void actionPerformed(ActionEvent e) {
-                try {
-                    double principal = ((Number)principalField.getValue()).doubleValue();
-                    double interestRate = ((Number)interestField.getValue()).doubleValue();
-                    int term = Integer.parseInt((String)termCombo.getSelectedItem());
-                    
-                    // Calculate monthly payment
-                    double monthlyInterestRate = interestRate / (12 * 100);
-                    double monthlyPayment = (principal * monthlyInterestRate * 
-                                           Math.pow(1 + monthlyInterestRate, term)) / 
-                                           (Math.pow(1 + monthlyInterestRate, term) - 1);
-                    
-                    // Update the monthly payment label
-                    DecimalFormat df = new DecimalFormat("$#,##0.00");
-                    monthlyPaymentLabel.setText(df.format(monthlyPayment));
-                } catch (Exception ex) {
-                    monthlyPaymentLabel.setText("Invalid input");
-                }
-            }
-        });
         gbc.gridx = 0;
         gbc.gridy = 5;
         gbc.gridwidth = 3;
@@ -372,17 +463,22 @@ public class Loan extends JFrame {
         gbc.gridwidth = 2;
         formPanel.add(totalRepaymentLabel, gbc);
         
-        // Update total when calculate is pressed
+        // Update the payment and total when calculate is pressed
         calculateButton.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
                 try {
-                    double monthlyPayment = Double.parseDouble(monthlyPaymentLabel.getText().replaceAll("[^\\d.]", ""));
+                    long principal = Money.fromDouble(((Number)principalField.getValue()).doubleValue());
+                    double interestRate = ((Number)interestField.getValue()).doubleValue();
                     int term = Integer.parseInt((String)termCombo.getSelectedItem());
-                    double totalRepayment = monthlyPayment * term;
+                    
+                    // The total comes from the full schedule, so the rounded last payment is included
+                    AmortizationEngine.Schedule schedule = AmortizationEngine.schedule(principal, interestRate, term);
                     
                     DecimalFormat df = new DecimalFormat("$#,##0.00");
-                    totalRepaymentLabel.setText(df.format(totalRepayment));
+                    monthlyPaymentLabel.setText(df.format(Money.toDecimal(schedule.getPayment(0))));
+                    totalRepaymentLabel.setText(df.format(Money.toDecimal(schedule.getTotalPaid())));
                 } catch (Exception ex) {
+                    monthlyPaymentLabel.setText("Invalid input");
                     totalRepaymentLabel.setText("Invalid input");
                 }
             }
@@ -396,31 +492,31 @@ public class Loan extends JFrame {
         submitButton.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
                 try {
-                    double principal = ((Number)principalField.getValue()).doubleValue();
+                    long principal = Money.fromDouble(((Number)principalField.getValue()).doubleValue());
                     double interestRate = ((Number)interestField.getValue()).doubleValue();
                     int term = Integer.parseInt((String)termCombo.getSelectedItem());
                     String loanType = (String)loanTypeCombo.getSelectedItem();
                     
                     // Create the loan
-                    boolean success = DatabaseManager.createLoan(
+                    UiTask.run(dialog, BankService.createLoan(
                             selectedAccount.getAccountId(),
                             loanType,
                             principal,
                             interestRate,
-                            term);
-                    
-                    if (success) {
-                        JOptionPane.showMessageDialog(dialog,
-                                "Loan application submitted successfully!\n" +
-                                "Your loan is pending approval.",
-                                "Success", JOptionPane.INFORMATION_MESSAGE);
-                        dialog.dispose();
-                        refreshLoanTable();
-                    } else {
-                        JOptionPane.showMessageDialog(dialog,
-                                "Failed to submit loan application. Please try again.",
-                                "Error", JOptionPane.ERROR_MESSAGE);
-                    }
+                            term), success -> {
+                        if (success) {
+                            JOptionPane.showMessageDialog(dialog,
+                                    "Loan application submitted successfully!\n" +
+                                    "Your loan is pending approval.",
+                                    "Success", JOptionPane.INFORMATION_MESSAGE);
+                            dialog.dispose();
+                            refreshLoanTable();
+                        } else {
+                            JOptionPane.showMessageDialog(dialog,
+                                    "Failed to submit loan application. Please try again.",
+                                    "Error", JOptionPane.ERROR_MESSAGE);
+                        }
+                    }, submitButton);
                 } catch (Exception ex) {
                     JOptionPane.showMessageDialog(dialog,
                             "Invalid input. Please check your entries.",
@@ -542,7 +638,7 @@ public class Loan extends JFrame {
         payButton.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
                 try {
-                    double paymentAmount = ((Number)paymentField.getValue()).doubleValue();
+                    long paymentAmount = Money.fromDouble(((Number)paymentField.getValue()).doubleValue());
                     
                     // Ensure account has sufficient balance
                     if (selectedAccount.getBalance() < paymentAmount) {
@@ -553,22 +649,21 @@ public class Loan extends JFrame {
                     }
                     
                     // Make the payment
-                    boolean success = DatabaseManager.makeLoanPayment(loanId, paymentAmount);
-                    
-                    if (success) {
-                        JOptionPane.showMessageDialog(dialog,
-                                "Payment made successfully!",
-                                "Success", JOptionPane.INFORMATION_MESSAGE);
-                        dialog.dispose();
-                        // Refresh account data and loan table
-                        selectedAccount = DatabaseManager.getAccountById(selectedAccount.getAccountId());
-                        updateBalanceLabel();
-                        refreshLoanTable();
-                    } else {
-                        JOptionPane.showMessageDialog(dialog,
-                                "Failed to make payment. Please try again.",
-                                "Error", JOptionPane.ERROR_MESSAGE);
-                    }
+                    UiTask.run(dialog, BankService.makeLoanPayment(loanId, paymentAmount), success -> {
+                        if (success) {
+                            JOptionPane.showMessageDialog(dialog,
+                                    "Payment made successfully!",
+                                    "Success", JOptionPane.INFORMATION_MESSAGE);
+                            dialog.dispose();
+                            // Refresh account data and loan table
+                            refreshBalance();
+                            refreshLoanTable();
+                        } else {
+                            JOptionPane.showMessageDialog(dialog,
+                                    "Failed to make payment. Please try again.",
+                                    "Error", JOptionPane.ERROR_MESSAGE);
+                        }
+                    }, payButton);
                 } catch (Exception ex) {
                     JOptionPane.showMessageDialog(dialog,
                             "Invalid input. Please check your entries.",
@@ -82,14 +82,27 @@ public class LoginPage extends JFrame {
             return;
         }
         
-        // Use database manager for authentication
-        if (DatabaseManager.authenticateUser(username, password)) {
-            JOptionPane.showMessageDialog(this, "Login successful!", "Success", JOptionPane.INFORMATION_MESSAGE);
-            openDashboard(username);
-        } else {
-            JOptionPane.showMessageDialog(this, "Invalid username or password", 
-                    "Login Error", JOptionPane.ERROR_MESSAGE);
-        }
+        // Authenticate in the background so the window stays responsive
+        UiTask.run(this, BankService.authenticate(username, password), result -> {
+            switch (result) {
+                case AUTHENTICATED:
+                    JOptionPane.showMessageDialog(this, "Login successful!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                    openDashboard(username);
+                    break;
+                case BUSY:
+                    JOptionPane.showMessageDialog(this, "The server is busy, please try again in a moment", 
+                            "Login Error", JOptionPane.WARNING_MESSAGE);
+                    break;
+                case UNAVAILABLE:
+                    JOptionPane.showMessageDialog(this, "Could not reach the database, please try again later", 
+                            "Login Error", JOptionPane.ERROR_MESSAGE);
+                    break;
+                default:
+                    JOptionPane.showMessageDialog(this, "Invalid username or password", 
+                            "Login Error", JOptionPane.ERROR_MESSAGE);
+                    break;
+            }
+        }, loginButton, registerButton);
     }
     
     private void openRegisterPage() {
@@ -99,14 +112,15 @@ public class LoginPage extends JFrame {
     }
     
     private void openDashboard(String username) {
-        User user = DatabaseManager.getUserDetails(username);
-        if (user != null) {
-            Dashboard dashboard = new Dashboard(user);
-            dashboard.setVisible(true);
-            this.dispose();
-        } else {
-            JOptionPane.showMessageDialog(this, "Error loading user details", 
-                    "Error", JOptionPane.ERROR_MESSAGE);
-        }
+        UiTask.run(this, BankService.getUserDetails(username), user -> {
+            if (user != null) {
+                Dashboard dashboard = new Dashboard(user);
+                dashboard.setVisible(true);
+                this.dispose();
+            } else {
+                JOptionPane.showMessageDialog(this, "Error loading user details", 
+                        "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }, loginButton, registerButton);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,117 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Process-wide set of named OperationMetrics. Callers look their metrics up once (typically
+// into a static final field) and record into them directly, so the registry itself is never
+// on the hot path. The current values can be written to a text file, periodically if wanted,
+// and each operation can be exported as an MBean under "bank:type=Operation,name=<operation>".
+public class MetricsRegistry {
+    private static final Map<String, OperationMetrics> OPERATIONS = new LinkedHashMap<>();
+    private static boolean jmxEnabled;
+    private static ScheduledExecutorService dumper;
+
+    public static synchronized OperationMetrics operation(String name) {
+        OperationMetrics metrics = OPERATIONS.get(name);
+        if (metrics == null) {
+            metrics = new OperationMetrics(name);
+            OPERATIONS.put(name, metrics);
+            if (jmxEnabled) {
+                register(metrics);
+            }
+        }
+        return metrics;
+    }
+
+    public static synchronized List<OperationMetrics> getOperations() {
+        return new ArrayList<>(OPERATIONS.values());
+    }
+
+    // Table of all operations, busiest first by total time spent
+    public static String report() {
+        List<OperationMetrics> operations = getOperations();
+        operations.sort((a, b) -> Double.compare(b.getMeanMicros() * b.getCalls(), a.getMeanMicros() * a.getCalls()));
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-28s %10s %8s %10s %10s %10s %10s %10s %10s%n",
+                "operation", "calls", "errors", "rows", "mean(us)", "p50(us)", "p99(us)", "p99.9(us)", "max(us)"));
+        for (OperationMetrics metrics : operations) {
+            sb.append(String.format("%-28s %10d %8d %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    metrics.getName(), metrics.getCalls(), metrics.getErrors(), metrics.getRows(),
+                    metrics.getMeanMicros(), metrics.getP50Micros(), metrics.getP99Micros(),
+                    metrics.getP999Micros(), metrics.getMaxMicros()));
+        }
+        return sb.toString();
+    }
+
+    // Writes the report to a temporary file first so readers never see a half-written one
+    public static void dumpTo(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write("# " + new Date() + System.lineSeparator());
+            writer.write(report());
+        }
+        Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Rewrites the file every intervalSeconds on a background thread, and once more at JVM exit
+    public static synchronized void startFileDump(Path file, long intervalSeconds) {
+        if (dumper != null) {
+            return;
+        }
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleWithFixedDelay(() -> dump(file), intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> dump(file)));
+    }
+
+    private static void dump(Path file) {
+        try {
+            dumpTo(file);
+        } catch (IOException e) {
+            System.err.println("Metrics dump error: " + e.getMessage());
+        }
+    }
+
+    // Exports every current and future operation through the platform MBean server
+    public static synchronized void registerJmx() {
+        if (jmxEnabled) {
+            return;
+        }
+        jmxEnabled = true;
+        for (OperationMetrics metrics : OPERATIONS.values()) {
+            register(metrics);
+        }
+    }
+
+    private static void register(OperationMetrics metrics) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("bank:type=Operation,name=" + metrics.getName());
+            if (!server.isRegistered(name)) {
+                server.registerMBean(metrics, name);
+            }
+        } catch (JMException e) {
+            System.err.println("Metrics JMX error: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Fixed-point money helpers.
+// Amounts are carried around as a primitive long number of cents (minor units), which maps
+// exactly onto the DECIMAL(15, 2) columns in the database. All arithmetic is done on the
+// long values directly, so adding up balances never allocates and never loses a cent.
+public final class Money {
+    public static final int SCALE = 2;
+    public static final long ZERO = 0L;
+
+    private static final long MINOR_UNITS = 100L;
+
+    private Money() {
+    }
+
+    // Conversions at the JDBC boundary
+    public static long fromDecimal(BigDecimal value) {
+        if (value == null) {
+            return ZERO;
+        }
+        return value.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toDecimal(long cents) {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+
+    // Conversions at the UI boundary (text fields and number formatters)
+    public static long fromDouble(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new NumberFormatException("Not a valid amount: " + value);
+        }
+        return Math.round(value * MINOR_UNITS);
+    }
+
+    public static double toDouble(long cents) {
+        return cents / (double) MINOR_UNITS;
+    }
+
+    // Parse user input such as "125", "125.5" or "125.50".
+    // Anything that isn't an amount, including one too large for a long, is a NumberFormatException.
+    public static long parse(String text) {
+        if (text == null) {
+            throw new NumberFormatException("Amount is empty");
+        }
+        BigDecimal value = new BigDecimal(text.trim());
+        // Digits before the decimal point; checked first so "1e999999999" isn't expanded
+        if (value.precision() - value.scale() > 19) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        }
+        try {
+            return fromDecimal(value);
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        }
+    }
+
+    // Arithmetic - overflow throws instead of silently wrapping
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    public static long multiply(long cents, long factor) {
+        return Math.multiplyExact(cents, factor);
+    }
+
+    // Scale an amount by a fractional factor (e.g. an interest rate), rounding half up to the cent
+    public static long multiply(long cents, double factor) {
+        return Math.round(cents * factor);
+    }
+
+    // Plain two-decimal rendering, equivalent to String.format("%.2f", amount)
+    public static String format(long cents) {
+        StringBuilder sb = new StringBuilder(20);
+        appendTo(sb, cents);
+        return sb.toString();
+    }
+
+    public static void appendTo(StringBuilder sb, long cents) {
+        if (cents < 0) {
+            sb.append('-');
+        }
+        long abs = Math.abs(cents);
+        long fraction = abs % MINOR_UNITS;
+        sb.append(abs / MINOR_UNITS).append('.');
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        sb.append(fraction);
+    }
+}
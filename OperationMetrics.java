@@ -0,0 +1,92 @@
+import java.util.concurrent.atomic.LongAdder;
+
+// Timing and counters for one database operation: a latency histogram (whose count is the
+// number of calls), the number of calls that failed with an exception, and the number of rows
+// handed back to callers. Recording does not allocate, so it can stay on in production.
+//
+// Usage:
+//   long start = System.nanoTime();
+//   ... on exception: metrics.error();
+//   metrics.record(start, rows);
+public class OperationMetrics implements OperationMetricsMBean {
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+
+    OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    // One finished call that started at startNanos (System.nanoTime) and returned the given rows
+    public void record(long startNanos, int rowCount) {
+        latency.record(System.nanoTime() - startNanos);
+        if (rowCount > 0) {
+            rows.add(rowCount);
+        }
+    }
+
+    public void error() {
+        errors.increment();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public long getCalls() {
+        return latency.getCount();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getRows() {
+        return rows.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return latency.getMeanNanos() / 1000.0;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return latency.getPercentileNanos(50) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return latency.getPercentileNanos(99) / 1000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return latency.getPercentileNanos(99.9) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return latency.getMaxNanos() / 1000.0;
+    }
+
+    @Override
+    public void reset() {
+        latency.reset();
+        errors.reset();
+        rows.reset();
+    }
+
+    @Override
+    public String toString() {
+        return name + "{calls=" + getCalls() + ", errors=" + getErrors() + ", rows=" + getRows() + ", " + latency.summary() + '}';
+    }
+}
@@ -0,0 +1,83 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+// Measures password verification (the CPU cost of a login) with PasswordHasher: logins/sec with
+// 1, 2, 4, ... hashing threads up to the number of cores, twice as many callers as threads so
+// the pool is always busy, and then a burst of simultaneous logins far larger than the queue to
+// show how many are turned away and how quickly.
+//
+// Usage: java PasswordBenchmark [iterations] [secondsPerStep]
+public class PasswordBenchmark {
+    public static void main(String[] args) throws InterruptedException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : PasswordHasher.DEFAULT_ITERATIONS;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int cores = Runtime.getRuntime().availableProcessors();
+        String password = "correct horse battery staple";
+
+        System.out.println(String.format("PBKDF2-HMAC-SHA256, %,d iterations, %d %s", iterations, cores,
+                cores == 1 ? "core" : "cores"));
+        for (int threads = 1; ; threads = Math.min(cores, threads * 2)) {
+            PasswordHasher hasher = new PasswordHasher(iterations, threads, threads * 16);
+            String stored = hasher.hash(password);
+            LongAdder logins = new LongAdder();
+            long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+            long start = System.nanoTime();
+            List<Thread> callers = new ArrayList<>();
+            for (int i = 0; i < threads * 2; i++) {
+                Thread caller = new Thread(() -> {
+                    while (System.nanoTime() < deadline) {
+                        if (hasher.verify(password, stored)) {
+                            logins.increment();
+                        }
+                    }
+                });
+                caller.start();
+                callers.add(caller);
+            }
+            for (Thread caller : callers) {
+                caller.join();
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            double perSecond = logins.sum() / elapsed;
+            System.out.println(String.format("  %2d %-7s %,10.1f logins/sec  %,10.1f per thread  %7.1f ms/login",
+                    threads, threads == 1 ? "thread" : "threads", perSecond, perSecond / threads, 1000.0 * threads / perSecond));
+            if (threads == cores) {
+                break;
+            }
+        }
+
+        // Everyone logs in at once: the pool takes what it can queue and rejects the rest at once
+        int queueDepth = cores * 16;
+        PasswordHasher hasher = new PasswordHasher(iterations, cores, queueDepth);
+        String stored = hasher.hash(password);
+        int burst = queueDepth * 10;
+        LongAdder accepted = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        LongAdder rejectNanos = new LongAdder();
+        List<Thread> callers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < burst; i++) {
+            Thread caller = new Thread(() -> {
+                long begin = System.nanoTime();
+                try {
+                    hasher.verify(password, stored);
+                    accepted.increment();
+                } catch (RejectedExecutionException e) {
+                    rejectNanos.add(System.nanoTime() - begin);
+                    rejected.increment();
+                }
+            });
+            caller.start();
+            callers.add(caller);
+        }
+        for (Thread caller : callers) {
+            caller.join();
+        }
+        System.out.println(String.format("  burst of %,d logins (queue %d): %,d served in %.1f s, %,d rejected after %.3f ms on average",
+                burst, queueDepth, accepted.sum(), (System.nanoTime() - start) / 1e9, rejected.sum(),
+                rejected.sum() > 0 ? rejectNanos.sum() / 1e6 / rejected.sum() : 0.0));
+    }
+}
@@ -0,0 +1,164 @@
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+// Salted, deliberately slow password hashing (PBKDF2 with HMAC-SHA256) for users.password.
+//
+// Stored values look like "pbkdf2-sha256$<iterations>$<salt>$<hash>" (Base64 salt and hash), so
+// the cost can be raised with -Dbank.password.iterations at any time: verify() still accepts
+// older hashes, and needsRehash() tells the caller to store a fresh one after a successful
+// login. Values without the prefix are legacy plaintext passwords and are compared as such.
+//
+// Every hash runs on a dedicated pool with one thread per core (-Dbank.password.threads), so a
+// burst of logins can't take more CPU than that away from everything else. At most
+// -Dbank.password.queueDepth hashes wait for a thread; beyond that hash() and verify() throw
+// RejectedExecutionException straight away instead of queueing logins that would time out.
+public final class PasswordHasher {
+    public static final String PREFIX = "pbkdf2-sha256$";
+    public static final int DEFAULT_ITERATIONS = 600_000;
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private static final OperationMetrics HASH_METRICS = MetricsRegistry.operation("passwordHash");
+
+    private static volatile PasswordHasher shared;
+
+    private final int iterations;
+    private final ThreadPoolExecutor executor;
+    private final SecureRandom random = new SecureRandom();
+    private final LongAdder rejected = new LongAdder();
+    // Verified against for unknown users, so they take as long as a wrong password
+    private final String dummyHash;
+
+    public PasswordHasher(int iterations, int threads, int queueDepth) {
+        this.iterations = Math.max(1, iterations);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueDepth)), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        this.dummyHash = format(this.iterations, new byte[SALT_BYTES], new byte[HASH_BITS / 8]);
+    }
+
+    // The hasher for this process, configured from system properties
+    public static PasswordHasher shared() {
+        PasswordHasher current = shared;
+        if (current == null) {
+            synchronized (PasswordHasher.class) {
+                current = shared;
+                if (current == null) {
+                    int cores = Runtime.getRuntime().availableProcessors();
+                    int threads = Integer.getInteger("bank.password.threads", cores);
+                    current = new PasswordHasher(Integer.getInteger("bank.password.iterations", DEFAULT_ITERATIONS),
+                            Math.max(1, threads), Integer.getInteger("bank.password.queueDepth", Math.max(1, threads) * 16));
+                    shared = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    // A new salted hash of password, in the stored format
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        synchronized (random) {
+            random.nextBytes(salt);
+        }
+        byte[] hash = run(password, salt, iterations);
+        return format(iterations, salt, hash);
+    }
+
+    // True if password matches the stored value (a hash, or a legacy plaintext password).
+    // A null stored value (no such user) still costs one hash.
+    public boolean verify(String password, String stored) {
+        if (stored == null) {
+            verify(password, dummyHash);
+            return false;
+        }
+        if (!stored.startsWith(PREFIX)) {
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) {
+            return false;
+        }
+        try {
+            int storedIterations = Integer.parseInt(parts[0]);
+            byte[] salt = Base64.getDecoder().decode(parts[1]);
+            byte[] expected = Base64.getDecoder().decode(parts[2]);
+            if (storedIterations <= 0 || expected.length == 0) {
+                return false;
+            }
+            return MessageDigest.isEqual(run(password, salt, storedIterations), expected);
+        } catch (IllegalArgumentException e) {
+            // Malformed number or Base64 - never matches
+            return false;
+        }
+    }
+
+    // True if stored should be replaced by hash() of the same password (plaintext, or a different cost)
+    public boolean needsRehash(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) {
+            return true;
+        }
+        int end = stored.indexOf('$', PREFIX.length());
+        return end < 0 || !stored.substring(PREFIX.length(), end).equals(String.valueOf(iterations));
+    }
+
+    public int getIterations() { return iterations; }
+    public int getThreads() { return executor.getMaximumPoolSize(); }
+    public int getQueued() { return executor.getQueue().size(); }
+    public long getRejected() { return rejected.sum(); }
+
+    // Runs one key derivation on the pool and waits for it
+    private byte[] run(String password, byte[] salt, int rounds) {
+        CompletableFuture<byte[]> future;
+        try {
+            future = CompletableFuture.supplyAsync(() -> derive(password, salt, rounds), executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            HASH_METRICS.error();
+            throw e;
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : e;
+        }
+    }
+
+    private static byte[] derive(String password, byte[] salt, int rounds) {
+        long start = System.nanoTime();
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, rounds, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            HASH_METRICS.error();
+            throw new IllegalStateException("PBKDF2WithHmacSHA256 not available", e);
+        } finally {
+            spec.clearPassword();
+            HASH_METRICS.record(start, 0);
+        }
+    }
+
+    private static String format(int rounds, byte[] salt, byte[] hash) {
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + rounds + '$' + encoder.encodeToString(salt) + '$' + encoder.encodeToString(hash);
+    }
+}
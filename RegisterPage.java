@@ -129,24 +129,27 @@ public class RegisterPage extends JFrame {
             return;
         }
         
-        // Check if username already exists using DatabaseManager
-        if (DatabaseManager.usernameExists(username)) {
-            JOptionPane.showMessageDialog(this, "Username already exists. Please choose another.", 
-                    "Registration Error", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-        
-        // Register user in database
-        if (DatabaseManager.registerUser(username, password, fullName, email)) {
-            JOptionPane.showMessageDialog(this, "Registration successful! Please login.", 
-                    "Success", JOptionPane.INFORMATION_MESSAGE);
+        // Check if username already exists, then register - both in the background
+        UiTask.run(this, BankService.usernameExists(username), exists -> {
+            if (exists) {
+                JOptionPane.showMessageDialog(this, "Username already exists. Please choose another.", 
+                        "Registration Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
             
-            // Return to login page
-            backToLogin();
-        } else {
-            JOptionPane.showMessageDialog(this, "Registration failed. Please try again.", 
-                    "Error", JOptionPane.ERROR_MESSAGE);
-        }
+            UiTask.run(this, BankService.registerUser(username, password, fullName, email), registered -> {
+                if (registered) {
+                    JOptionPane.showMessageDialog(this, "Registration successful! Please login.", 
+                            "Success", JOptionPane.INFORMATION_MESSAGE);
+                    
+                    // Return to login page
+                    backToLogin();
+                } else {
+                    JOptionPane.showMessageDialog(this, "Registration failed. Please try again.", 
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }, registerButton);
+        }, registerButton);
     }
     
     private void backToLogin() {
@@ -0,0 +1,96 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Loads bank_management_system.sql into a database over JDBC.
+// Against MySQL the script runs as written. Against an embedded database such as H2 in MySQL
+// mode (jdbc:h2:mem:bank;MODE=MySQL;DATABASE_TO_LOWER=TRUE) the MySQL-only parts are left out -
+// CREATE DATABASE, USE and the stored procedure - and DATE_ADD(x, INTERVAL n UNIT) is written
+// as TIMESTAMPADD(UNIT, n, x). Statements the target still rejects are reported and skipped,
+// except CREATE TABLE, which fails the load.
+public class SchemaLoader {
+    private static final Pattern DATE_ADD = Pattern.compile(
+            "DATE_ADD\\(\\s*([^,]+?)\\s*,\\s*INTERVAL\\s+(\\d+)\\s+(\\w+)\\s*\\)", Pattern.CASE_INSENSITIVE);
+
+    public static void load(Connection conn, Path sqlFile, boolean includeSampleData) throws IOException, SQLException {
+        boolean mysql = conn.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("mysql");
+
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : readStatements(sqlFile)) {
+                String upper = sql.toUpperCase(Locale.ROOT);
+                if (!includeSampleData && upper.startsWith("INSERT")) {
+                    continue;
+                }
+                if (!mysql) {
+                    if (upper.startsWith("CREATE DATABASE") || upper.startsWith("USE ") || upper.startsWith("CREATE PROCEDURE")) {
+                        continue;
+                    }
+                    sql = rewriteDateAdd(sql);
+                }
+
+                try {
+                    stmt.execute(sql);
+                } catch (SQLException e) {
+                    if (upper.startsWith("CREATE TABLE")) {
+                        throw e;
+                    }
+                    System.err.println("Schema statement skipped: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Splits a MySQL script into statements, honouring DELIMITER changes and -- comments
+    static List<String> readStatements(Path sqlFile) throws IOException {
+        List<String> statements = new ArrayList<>();
+        String delimiter = ";";
+        StringBuilder current = new StringBuilder();
+
+        for (String line : Files.readAllLines(sqlFile, StandardCharsets.UTF_8)) {
+            String trimmed = line.trim();
+            if (current.length() == 0 && (trimmed.isEmpty() || trimmed.startsWith("--"))) {
+                continue;
+            }
+            if (trimmed.toUpperCase(Locale.ROOT).startsWith("DELIMITER ")) {
+                delimiter = trimmed.substring("DELIMITER ".length()).trim();
+                continue;
+            }
+
+            int comment = line.indexOf("--");
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            current.append(line).append('\n');
+
+            String text = current.toString().trim();
+            if (text.endsWith(delimiter)) {
+                statements.add(text.substring(0, text.length() - delimiter.length()).trim());
+                current.setLength(0);
+            }
+        }
+        if (current.toString().trim().length() > 0) {
+            statements.add(current.toString().trim());
+        }
+        return statements;
+    }
+
+    private static String rewriteDateAdd(String sql) {
+        Matcher matcher = DATE_ADD.matcher(sql);
+        StringBuffer sb = new StringBuffer();
+        while (matcher.find()) {
+            matcher.appendReplacement(sb, Matcher.quoteReplacement(
+                    "TIMESTAMPADD(" + matcher.group(3).toUpperCase(Locale.ROOT) + ", " + matcher.group(2) + ", " + matcher.group(1) + ")"));
+        }
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+}
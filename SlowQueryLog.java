@@ -0,0 +1,331 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Log of prepared statements that take longer than a threshold, with their SQL, parameters and
+// elapsed time. ConnectionPool wraps the statements it hands out with wrap(); execute calls are
+// timed and the slow ones reported here.
+//
+// To keep the log from adding load of its own:
+// - only a sampled fraction of statements is wrapped at all (sampleRate), the rest run untouched;
+// - each distinct SQL text is written at most once per interval, with a count and the maximum of
+//   the slow executions in between;
+// - the query plan (EXPLAIN) is captured only the first time a statement is slow, by the
+//   background thread on a connection of its own from the statement's pool, so the caller's
+//   connection and transaction are never touched;
+// - entries are written by a background thread from a bounded queue, and dropped if it is full.
+// The file is rolled over to <file>.1 ... <file>.<maxFiles - 1> when it reaches maxFileBytes.
+public class SlowQueryLog {
+    private static final int QUEUE_CAPACITY = 1000;
+    // Tells the writer thread to stop
+    private static final Entry END = new Entry("", null, null, null);
+
+    // A log entry, plus the statement to EXPLAIN after it when its plan is wanted
+    private static class Entry {
+        final String text;
+        final String sql;
+        final Object[] parameters;
+        final ConnectionPool pool;
+
+        Entry(String text, String sql, Object[] parameters, ConnectionPool pool) {
+            this.text = text;
+            this.sql = sql;
+            this.parameters = parameters;
+            this.pool = pool;
+        }
+    }
+
+    private static class QueryStats {
+        long count;
+        long maxNanos;
+        long lastLoggedAt;
+        int sinceLastEntry;
+        long maxSinceLastEntry;
+    }
+
+    private final Path file;
+    private final long thresholdNanos;
+    private final double sampleRate;
+    private final long intervalNanos;
+    private final long maxFileBytes;
+    private final int maxFiles;
+
+    private final ConcurrentHashMap<String, QueryStats> queries = new ConcurrentHashMap<>();
+    private final BlockingQueue<Entry> pending = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong slowCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final Thread writerThread;
+
+    public SlowQueryLog(Path file, long thresholdMillis, double sampleRate, long intervalMillis,
+                        long maxFileBytes, int maxFiles) {
+        this.file = file.toAbsolutePath();
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.sampleRate = sampleRate;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = Math.max(1, maxFiles);
+
+        this.writerThread = new Thread(this::writeLoop, "slow-query-log");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    // Returns the statement itself, or for a sampled one a proxy that times its execute calls.
+    // The writer thread's own EXPLAIN statements are never timed.
+    PreparedStatement wrap(PreparedStatement statement, String sql, ConnectionPool pool) {
+        if (Thread.currentThread() == writerThread
+                || (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return statement;
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                new TimedStatement(statement, sql, pool));
+    }
+
+    private void executed(String sql, Object[] parameterSlots, int parameterCount, long elapsedNanos, ConnectionPool pool) {
+        if (elapsedNanos < thresholdNanos) {
+            return;
+        }
+        slowCount.incrementAndGet();
+        Object[] parameters = Arrays.copyOf(parameterSlots, parameterCount);
+
+        QueryStats stats = queries.computeIfAbsent(sql, key -> new QueryStats());
+        boolean first;
+        int skipped;
+        long skippedMax;
+        synchronized (stats) {
+            stats.count++;
+            stats.maxNanos = Math.max(stats.maxNanos, elapsedNanos);
+            long now = System.nanoTime();
+            first = stats.count == 1;
+            if (!first && now - stats.lastLoggedAt < intervalNanos) {
+                // Already reported recently - just count it for the next entry
+                stats.sinceLastEntry++;
+                stats.maxSinceLastEntry = Math.max(stats.maxSinceLastEntry, elapsedNanos);
+                return;
+            }
+            skipped = stats.sinceLastEntry;
+            skippedMax = stats.maxSinceLastEntry;
+            stats.sinceLastEntry = 0;
+            stats.maxSinceLastEntry = 0;
+            stats.lastLoggedAt = now;
+        }
+
+        StringBuilder entry = new StringBuilder();
+        entry.append(Instant.now()).append(" slow query ").append(millis(elapsedNanos)).append(" ms");
+        if (skipped > 0) {
+            entry.append(" (").append(skipped).append(" more since last entry, max ").append(millis(skippedMax)).append(" ms)");
+        }
+        entry.append(System.lineSeparator());
+        entry.append("  SQL: ").append(sql.replaceAll("\\s+", " ")).append(System.lineSeparator());
+        entry.append("  Parameters: ").append(Arrays.toString(parameters)).append(System.lineSeparator());
+
+        // The plan is added by the writer thread
+        Entry queued = first ? new Entry(entry.toString(), sql, parameters, pool) : new Entry(entry.toString(), null, null, null);
+        if (!pending.offer(queued)) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    // Entry text, followed by the query plan when one was asked for
+    private static String render(Entry entry) {
+        if (entry.sql == null) {
+            return entry.text;
+        }
+        StringBuilder text = new StringBuilder(entry.text);
+        text.append("  Plan:").append(System.lineSeparator());
+        for (String row : explain(entry.sql, entry.parameters, entry.pool)) {
+            text.append("    ").append(row).append(System.lineSeparator());
+        }
+        return text.toString();
+    }
+
+    // Runs EXPLAIN for the statement with the same parameters on a connection borrowed from pool
+    private static List<String> explain(String sql, Object[] parameters, ConnectionPool pool) {
+        List<String> rows = new ArrayList<>();
+        try (Connection conn = pool.getConnection();
+             PreparedStatement explain = conn.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                explain.setObject(i + 1, parameters[i]);
+            }
+            try (ResultSet rs = explain.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                StringBuilder header = new StringBuilder();
+                for (int c = 1; c <= meta.getColumnCount(); c++) {
+                    header.append(c > 1 ? " | " : "").append(meta.getColumnLabel(c));
+                }
+                rows.add(header.toString());
+                while (rs.next()) {
+                    StringBuilder row = new StringBuilder();
+                    for (int c = 1; c <= meta.getColumnCount(); c++) {
+                        row.append(c > 1 ? " | " : "").append(rs.getString(c));
+                    }
+                    rows.add(row.toString());
+                }
+            }
+        } catch (SQLException e) {
+            rows.add("(EXPLAIN failed: " + e.getMessage() + ")");
+        }
+        return rows;
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / 1e6);
+    }
+
+    private void writeLoop() {
+        BufferedWriter writer = null;
+        try {
+            while (true) {
+                Entry entry = pending.take();
+                if (entry == END) {
+                    break;
+                }
+                if (writer == null) {
+                    writer = open();
+                }
+                writer.write(render(entry));
+                // Write out whatever else is queued before flushing
+                while ((entry = pending.poll()) != null && entry != END) {
+                    writer.write(render(entry));
+                }
+                writer.flush();
+                if (Files.size(file) >= maxFileBytes) {
+                    writer.close();
+                    writer = null;
+                    roll();
+                }
+                if (entry == END) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("Slow query log error: " + e.getMessage());
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    System.err.println("Slow query log error: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private BufferedWriter open() throws IOException {
+        return Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private void roll() throws IOException {
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            Path source = i == 1 ? file : file.resolveSibling(file.getFileName() + "." + (i - 1));
+            Path target = file.resolveSibling(file.getFileName() + "." + i);
+            if (Files.exists(source)) {
+                Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (maxFiles == 1) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // Writes out what is queued and stops the writer thread
+    public void close() {
+        try {
+            pending.put(END);
+            writerThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Statistics
+    public long getSlowCount() { return slowCount.get(); }
+    public long getDroppedCount() { return droppedCount.get(); }
+    public int getDistinctQueries() { return queries.size(); }
+
+    @Override
+    public String toString() {
+        return "SlowQueryLog{file=" + file +
+                ", thresholdMs=" + TimeUnit.NANOSECONDS.toMillis(thresholdNanos) +
+                ", slow=" + getSlowCount() +
+                ", distinct=" + getDistinctQueries() +
+                ", dropped=" + getDroppedCount() + '}';
+    }
+
+    // Remembers the parameters set on a statement and times its execute calls
+    private class TimedStatement implements InvocationHandler {
+        private final PreparedStatement statement;
+        private final String sql;
+        private final ConnectionPool pool;
+        private Object[] parameters = new Object[8];
+        private int parameterCount;
+
+        TimedStatement(PreparedStatement statement, String sql, ConnectionPool pool) {
+            this.statement = statement;
+            this.sql = sql;
+            this.pool = pool;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                remember((Integer) args[0], name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("clearParameters")) {
+                Arrays.fill(parameters, 0, parameterCount, null);
+                parameterCount = 0;
+            } else if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+
+            boolean timed = name.startsWith("execute") && (args == null || args.length == 0);
+            long start = timed ? System.nanoTime() : 0;
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                if (timed) {
+                    executed(sql, parameters, parameterCount, System.nanoTime() - start, pool);
+                }
+            }
+        }
+
+        private void remember(int index, Object value) {
+            if (index > parameters.length) {
+                parameters = Arrays.copyOf(parameters, Math.max(index, parameters.length * 2));
+            }
+            parameters[index - 1] = value;
+            parameterCount = Math.max(parameterCount, index);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Per-connection LRU cache of prepared statements.
+// DatabaseManager still closes every statement in try-with-resources; for a cached
+// statement that close only clears its parameters and batch, so the next call with the same SQL
+// on the same physical connection reuses the server-side prepared statement.
+class StatementCache {
+    // Shared across all connections of a pool
+    static class Stats {
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+        final AtomicLong evictions = new AtomicLong();
+    }
+
+    private final Connection physical;
+    private final int maxSize;
+    private final Stats stats;
+    private final LinkedHashMap<String, CachedStatement> statements;
+
+    StatementCache(Connection physical, int maxSize, Stats stats) {
+        this.physical = physical;
+        this.maxSize = maxSize;
+        this.stats = stats;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    // Intercepted Connection.prepareStatement(sql) and prepareStatement(sql, autoGeneratedKeys)
+    PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys == Statement.NO_GENERATED_KEYS ? sql : autoGeneratedKeys + ":" + sql;
+        CachedStatement cached = statements.get(key);
+
+        if (cached != null && !cached.inUse) {
+            stats.hits.incrementAndGet();
+            return cached.lease();
+        }
+
+        stats.misses.incrementAndGet();
+        PreparedStatement statement = autoGeneratedKeys == Statement.NO_GENERATED_KEYS
+                ? physical.prepareStatement(sql)
+                : physical.prepareStatement(sql, autoGeneratedKeys);
+
+        if (cached != null) {
+            // Same SQL is already open further up the call stack - hand out a throwaway statement
+            return statement;
+        }
+
+        cached = new CachedStatement(statement);
+        statements.put(key, cached);
+        evictOverflow();
+        return cached.lease();
+    }
+
+    private void evictOverflow() {
+        Iterator<CachedStatement> it = statements.values().iterator();
+        while (statements.size() > maxSize && it.hasNext()) {
+            CachedStatement eldest = it.next();
+            it.remove();
+            stats.evictions.incrementAndGet();
+            eldest.evicted = true;
+            if (!eldest.inUse) {
+                eldest.closeQuietly();
+            }
+        }
+    }
+
+    private static class CachedStatement {
+        final PreparedStatement statement;
+        boolean inUse;
+        boolean evicted;
+
+        CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        PreparedStatement lease() {
+            inUse = true;
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    new LeaseHandler(this));
+        }
+
+        void giveBack() {
+            inUse = false;
+            if (evicted) {
+                closeQuietly();
+                return;
+            }
+            try {
+                statement.clearParameters();
+                // A batch left behind by a failed caller must not run with the next one
+                statement.clearBatch();
+            } catch (SQLException e) {
+                evicted = true;
+                closeQuietly();
+            }
+        }
+
+        void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing cached statement: " + e.getMessage());
+            }
+        }
+    }
+
+    private static class LeaseHandler implements InvocationHandler {
+        private final CachedStatement cached;
+        private boolean released;
+
+        LeaseHandler(CachedStatement cached) {
+            this.cached = cached;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        cached.giveBack();
+                    }
+                    return null;
+                case "isClosed":
+                    return released || cached.statement.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + cached.statement + "]";
+                default:
+                    if (released) {
+                        throw new SQLException("Statement has already been closed");
+                    }
+                    try {
+                        return method.invoke(cached.statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+// Measures deposit/withdraw throughput through DatabaseManager with and without the
+// per-connection statement cache. Needs a reachable database with the sample data loaded.
+//
+// Usage: java StatementCacheBenchmark [accountId] [iterations] [threads]
+public class StatementCacheBenchmark {
+    private static final String DB_URL = System.getProperty("bank.db.url", "jdbc:mysql://localhost:3306/bank_management_system?useServerPrepStmts=true");
+    private static final String DB_USER = System.getProperty("bank.db.user", "root");
+    private static final String DB_PASSWORD = System.getProperty("bank.db.password", "root");
+    
+    public static void main(String[] args) throws Exception {
+        int accountId = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        
+        System.out.println("Deposit/withdraw benchmark: account " + accountId + ", "
+                + iterations + " round trips per thread, " + threads + " threads");
+        
+        // Warm up both configurations before measuring
+        run(0, accountId, iterations / 10, threads);
+        run(64, accountId, iterations / 10, threads);
+        
+        double uncached = run(0, accountId, iterations, threads);
+        double cached = run(64, accountId, iterations, threads);
+        
+        System.out.println(String.format("Without statement cache: %,.0f calls/sec", uncached));
+        System.out.println(String.format("With statement cache:    %,.0f calls/sec", cached));
+        System.out.println(String.format("Speedup:                 %.2fx", cached / uncached));
+        
+        DatabaseManager.shutdown();
+    }
+    
+    private static double run(int statementCacheSize, int accountId, int iterations, int threads) throws InterruptedException {
+        ConnectionPool pool = new ConnectionPool(DB_URL, DB_USER, DB_PASSWORD, threads,
+                60000, 30 * 60000, 5000, 2, statementCacheSize);
+        DatabaseManager.usePool(pool);
+        
+        Thread[] workers = new Thread[threads];
+        long start = System.nanoTime();
+        
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < iterations; i++) {
+                    // Deposit then withdraw the same amount so the balance is unchanged afterwards
+                    DatabaseManager.deposit(accountId, 100);
+                    DatabaseManager.withdraw(accountId, 100);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long calls = 2L * iterations * threads;
+        System.out.println("  cache=" + statementCacheSize + ": " + pool);
+        return calls / seconds;
+    }
+}
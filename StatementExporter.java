@@ -0,0 +1,507 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Monthly account statements as CSV and as a fixed-layout text page, written for one account,
+// a list of accounts or every account.
+//
+// Memory stays bounded however long an account's history is: transactions are read through a
+// forward-only cursor that fetches fetchSize rows at a time, each row is written out as soon as
+// it is read, and the running balance is a single long carried from row to row. The opening
+// balance comes from the current balance minus everything posted since the period started,
+// read in the same repeatable-read transaction as the rows.
+// Output goes through a fixed-size buffer straight into a FileChannel and is written to a
+// temporary file that is renamed into place when the statement is complete.
+// Many accounts are exported in parallel by a fixed number of worker threads, each holding one
+// pooled connection and one pair of buffers at a time.
+//
+// Usage: java StatementExporter <yyyy-MM> <output directory> [account_id ...]
+// Optional system properties: -Dstatement.threads=4 -Dstatement.fetchSize=1000
+//   -Dstatement.formats=csv,txt plus the -Dbank.db.* connection settings
+public class StatementExporter {
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final int LINES_PER_PAGE = 60;
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final String TEXT_RULE = "-".repeat(100);
+
+    private static final OperationMetrics EXPORT_METRICS = MetricsRegistry.operation("exportStatement");
+
+    private final ConnectionPool pool;
+    private final Path directory;
+    private final YearMonth period;
+    private final int fetchSize;
+    private final boolean writeCsv;
+    private final boolean writeText;
+
+    private final AtomicInteger statements = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicLong rows = new AtomicLong();
+
+    public StatementExporter(ConnectionPool pool, Path directory, YearMonth period, int fetchSize,
+                             boolean writeCsv, boolean writeText) {
+        this.pool = pool;
+        this.directory = directory;
+        this.period = period;
+        this.fetchSize = Math.max(1, fetchSize);
+        this.writeCsv = writeCsv;
+        this.writeText = writeText;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: java StatementExporter <yyyy-MM> <output directory> [account_id ...]");
+            System.exit(2);
+        }
+
+        List<String> formats = Arrays.asList(System.getProperty("statement.formats", "csv,txt").split(","));
+        int status = 0;
+        try {
+            Path directory = Files.createDirectories(Paths.get(args[1]));
+            StatementExporter exporter = new StatementExporter(DatabaseManager.getConnectionPool(), directory,
+                    YearMonth.parse(args[0]), Integer.getInteger("statement.fetchSize", 1000),
+                    formats.contains("csv"), formats.contains("txt"));
+
+            int[] accountIds;
+            if (args.length > 2) {
+                accountIds = new int[args.length - 2];
+                for (int i = 2; i < args.length; i++) {
+                    accountIds[i - 2] = Integer.parseInt(args[i]);
+                }
+            } else {
+                accountIds = exporter.allAccountIds();
+            }
+
+            long started = System.nanoTime();
+            exporter.exportAll(accountIds, Integer.getInteger("statement.threads", 4));
+            double seconds = (System.nanoTime() - started) / 1e9;
+            System.out.println(String.format("%,d statements (%,d transactions) in %.1f s, %d failed - %s",
+                    exporter.getStatementCount(), exporter.getRowCount(), seconds, exporter.getFailureCount(), directory));
+            status = exporter.getFailureCount() > 0 ? 1 : 0;
+        } catch (IOException | SQLException | RuntimeException e) {
+            System.err.println("Statement export error: " + e.getMessage());
+            status = 1;
+        } finally {
+            DatabaseManager.shutdown();
+        }
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    // Every account id, ascending
+    public int[] allAccountIds() throws SQLException {
+        int[] ids = new int[1024];
+        int count = 0;
+        try (Connection conn = pool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT account_id FROM accounts ORDER BY account_id",
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(fetchSize(conn));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    if (count == ids.length) {
+                        ids = Arrays.copyOf(ids, count * 2);
+                    }
+                    ids[count++] = rs.getInt(1);
+                }
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    // Exports the accounts on a fixed number of threads; failures are reported and counted
+    public void exportAll(int[] accountIds, int threads) {
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            StatementWriter csv = writeCsv ? new StatementWriter() : null;
+            StatementWriter text = writeText ? new StatementWriter() : null;
+            int i;
+            while ((i = next.getAndIncrement()) < accountIds.length) {
+                try {
+                    export(accountIds[i], csv, text);
+                } catch (IOException | SQLException e) {
+                    failures.incrementAndGet();
+                    System.err.println("Statement error for account " + accountIds[i] + ": " + e.getMessage());
+                }
+            }
+        };
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < Math.max(1, Math.min(threads, accountIds.length)); t++) {
+            Thread thread = new Thread(worker, "statement-export-" + (t + 1));
+            thread.start();
+            workers.add(thread);
+        }
+        for (Thread thread : workers) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Writes one account's statement for the period
+    public void export(int accountId) throws IOException, SQLException {
+        export(accountId, writeCsv ? new StatementWriter() : null, writeText ? new StatementWriter() : null);
+    }
+
+    private void export(int accountId, StatementWriter csv, StatementWriter text) throws IOException, SQLException {
+        long start = System.nanoTime();
+        Timestamp from = Timestamp.valueOf(period.atDay(1).atStartOfDay());
+        Timestamp to = Timestamp.valueOf(period.plusMonths(1).atDay(1).atStartOfDay());
+        int count = 0;
+
+        try (Connection conn = pool.getConnection()) {
+            int isolation = conn.getTransactionIsolation();
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            conn.setAutoCommit(false);
+            try {
+                String accountNumber;
+                long balance;
+                String accountQuery = "SELECT account_number, balance FROM accounts WHERE account_id = ?";
+                try (PreparedStatement stmt = conn.prepareStatement(accountQuery)) {
+                    stmt.setInt(1, accountId);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (!rs.next()) {
+                            throw new SQLException("No such account");
+                        }
+                        accountNumber = rs.getString("account_number");
+                        balance = Money.fromDecimal(rs.getBigDecimal("balance"));
+                    }
+                }
+
+                // Opening balance = current balance minus everything posted since the period began
+                String sinceQuery = "SELECT COALESCE(SUM(CASE WHEN transaction_type IN ('DEPOSIT', 'TRANSFER_IN') " +
+                                    "THEN amount ELSE -amount END), 0) FROM transactions " +
+                                    "WHERE account_id = ? AND transaction_date >= ?";
+                try (PreparedStatement stmt = conn.prepareStatement(sinceQuery)) {
+                    stmt.setInt(1, accountId);
+                    stmt.setTimestamp(2, from);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        rs.next();
+                        balance -= Money.fromDecimal(rs.getBigDecimal(1));
+                    }
+                }
+
+                String base = accountNumber + "-" + period;
+                if (csv != null) {
+                    csv.open(directory.resolve(base + ".csv"));
+                }
+                if (text != null) {
+                    text.open(directory.resolve(base + ".txt"));
+                }
+                try {
+                    AccountStatement statement = new AccountStatement(accountNumber, balance);
+                    if (csv != null) {
+                        csv.line().append("date,transaction_id,type,description,amount,balance");
+                        csv.endLine();
+                    }
+                    if (text != null) {
+                        statement.writePageHeader(text);
+                    }
+
+                    String rowQuery = "SELECT transaction_id, transaction_type, amount, transaction_date, description " +
+                                      "FROM transactions WHERE account_id = ? AND transaction_date >= ? AND transaction_date < ? " +
+                                      "ORDER BY transaction_date, transaction_id";
+                    try (PreparedStatement stmt = conn.prepareStatement(rowQuery,
+                            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                        stmt.setFetchSize(fetchSize(conn));
+                        stmt.setInt(1, accountId);
+                        stmt.setTimestamp(2, from);
+                        stmt.setTimestamp(3, to);
+                        try (ResultSet rs = stmt.executeQuery()) {
+                            while (rs.next()) {
+                                statement.add(rs, csv, text);
+                                count++;
+                            }
+                        }
+                    }
+
+                    if (text != null) {
+                        statement.writeTotals(text);
+                    }
+                    if (csv != null) {
+                        csv.commit();
+                    }
+                    if (text != null) {
+                        text.commit();
+                    }
+                } finally {
+                    if (csv != null) {
+                        csv.abort();
+                    }
+                    if (text != null) {
+                        text.abort();
+                    }
+                }
+            } catch (IOException | SQLException e) {
+                EXPORT_METRICS.error();
+                throw e;
+            } finally {
+                conn.rollback();
+                conn.setAutoCommit(true);
+                conn.setTransactionIsolation(isolation);
+            }
+        }
+
+        statements.incrementAndGet();
+        rows.addAndGet(count);
+        EXPORT_METRICS.record(start, count);
+    }
+
+    // Rows per round trip; MySQL Connector/J only honours a positive fetch size with
+    // useCursorFetch=true and otherwise needs Integer.MIN_VALUE to stream row by row
+    private int fetchSize(Connection conn) throws SQLException {
+        String url = conn.getMetaData().getURL();
+        if (url != null && url.startsWith("jdbc:mysql:") && !url.contains("useCursorFetch=true")) {
+            return Integer.MIN_VALUE;
+        }
+        return fetchSize;
+    }
+
+    public int getStatementCount() { return statements.get(); }
+    public int getFailureCount() { return failures.get(); }
+    public long getRowCount() { return rows.get(); }
+
+    // Running state of one statement while its rows stream past
+    private class AccountStatement {
+        private final String accountNumber;
+        private final long openingBalance;
+        private long balance;
+        private long credits;
+        private long debits;
+        private int count;
+        private int page = 1;
+        private int linesOnPage;
+
+        AccountStatement(String accountNumber, long openingBalance) {
+            this.accountNumber = accountNumber;
+            this.openingBalance = openingBalance;
+            this.balance = openingBalance;
+        }
+
+        void add(ResultSet rs, StatementWriter csv, StatementWriter text) throws IOException, SQLException {
+            String type = rs.getString("transaction_type");
+            long amount = Money.fromDecimal(rs.getBigDecimal("amount"));
+            boolean credit = type.equals("DEPOSIT") || type.equals("TRANSFER_IN");
+            long signed = credit ? amount : -amount;
+            balance += signed;
+            if (credit) {
+                credits += amount;
+            } else {
+                debits += amount;
+            }
+            count++;
+
+            LocalDateTime date = rs.getTimestamp("transaction_date").toLocalDateTime();
+            String description = rs.getString("description");
+
+            if (csv != null) {
+                StringBuilder sb = csv.line();
+                DATE_TIME.formatTo(date, sb);
+                sb.append(',').append(rs.getInt("transaction_id")).append(',').append(type).append(',');
+                appendCsv(sb, description);
+                sb.append(',');
+                Money.appendTo(sb, signed);
+                sb.append(',');
+                Money.appendTo(sb, balance);
+                csv.endLine();
+            }
+
+            if (text != null) {
+                if (linesOnPage == LINES_PER_PAGE) {
+                    page++;
+                    text.line().append('\f');
+                    text.endLine();
+                    writePageHeader(text);
+                }
+                StringBuilder sb = text.line();
+                DATE.formatTo(date, sb);
+                sb.append("  ");
+                pad(sb, type, 13);
+                pad(sb, description == null ? "" : description, 40);
+                padAmount(sb, signed, 15);
+                padAmount(sb, balance, 18);
+                text.endLine();
+                linesOnPage++;
+            }
+        }
+
+        void writePageHeader(StatementWriter text) throws IOException {
+            text.line().append("ACCOUNT STATEMENT").append(" ".repeat(63)).append("Page ").append(page);
+            text.endLine();
+            text.line().append("Account ").append(accountNumber).append("    Period ")
+                    .append(period.atDay(1)).append(" to ").append(period.atEndOfMonth());
+            text.endLine();
+            StringBuilder sb = text.line().append("Opening balance ");
+            Money.appendTo(sb, openingBalance);
+            text.endLine();
+            text.line().append(TEXT_RULE);
+            text.endLine();
+            sb = text.line();
+            pad(sb, "Date", 12);
+            pad(sb, "Type", 13);
+            pad(sb, "Description", 40);
+            sb.append(" ".repeat(9)).append("Amount").append(" ".repeat(11)).append("Balance");
+            text.endLine();
+            text.line().append(TEXT_RULE);
+            text.endLine();
+            linesOnPage = 0;
+        }
+
+        void writeTotals(StatementWriter text) throws IOException {
+            text.line().append(TEXT_RULE);
+            text.endLine();
+            StringBuilder sb = text.line();
+            pad(sb, count + " transactions", 40);
+            sb.append("Credits ");
+            padAmount(sb, credits, 15);
+            sb.append("  Debits ");
+            padAmount(sb, debits, 15);
+            text.endLine();
+            sb = text.line().append("Closing balance ");
+            Money.appendTo(sb, balance);
+            text.endLine();
+        }
+    }
+
+    private static void appendCsv(StringBuilder sb, String value) {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            sb.append(value);
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                sb.append('"');
+            }
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    // Left-aligned in width columns, cut short if longer
+    private static void pad(StringBuilder sb, String value, int width) {
+        int length = Math.min(value.length(), width - 1);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            sb.append(c < ' ' ? ' ' : c);
+        }
+        for (int i = length; i < width; i++) {
+            sb.append(' ');
+        }
+    }
+
+    // Right-aligned in width columns
+    private static void padAmount(StringBuilder sb, long cents, int width) {
+        // Sign, whole units and ".00"
+        int length = cents < 0 ? 4 : 3;
+        for (long units = Math.abs(cents) / 100; units >= 10; units /= 10) {
+            length++;
+        }
+        length++;
+        for (int i = length; i < width; i++) {
+            sb.append(' ');
+        }
+        Money.appendTo(sb, cents);
+    }
+
+    // One output file: lines are built in a reused StringBuilder, encoded into a fixed-size
+    // direct buffer and written to a FileChannel whenever the buffer fills up. The file is
+    // written as <name>.tmp and moved into place by commit().
+    private static class StatementWriter {
+        private final StringBuilder line = new StringBuilder(256);
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private FileChannel channel;
+        private Path target;
+        private Path temporary;
+
+        void open(Path file) throws IOException {
+            target = file;
+            temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            buffer.clear();
+        }
+
+        StringBuilder line() {
+            line.setLength(0);
+            return line;
+        }
+
+        void endLine() throws IOException {
+            line.append('\n');
+            CharBuffer chars = CharBuffer.wrap(line);
+            while (true) {
+                CoderResult result = encoder.encode(chars, buffer, true);
+                if (!result.isOverflow()) {
+                    break;
+                }
+                drain();
+            }
+            encoder.reset();
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        // Writes out what is buffered and moves the finished file into place
+        void commit() throws IOException {
+            drain();
+            channel.close();
+            channel = null;
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        // Drops an unfinished file; does nothing after commit()
+        void abort() {
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.close();
+                Files.deleteIfExists(temporary);
+            } catch (IOException e) {
+                System.err.println("Statement export error: " + e.getMessage());
+            }
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+
+// Event queue that times every event dispatched on the EDT and reports the slow ones to Java
+// Flight Recorder as bank.EdtBlocked events (20 ms threshold by default).
+public class TimedEventQueue extends EventQueue {
+    public static void install() {
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(new TimedEventQueue());
+    }
+
+    @Override
+    protected void dispatchEvent(AWTEvent event) {
+        BankEvents.EdtBlocked jfrEvent = new BankEvents.EdtBlocked();
+        jfrEvent.begin();
+        try {
+            super.dispatchEvent(event);
+        } finally {
+            jfrEvent.complete(event);
+        }
+    }
+}
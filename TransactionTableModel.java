@@ -0,0 +1,260 @@
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import javax.swing.table.AbstractTableModel;
+
+// Table model for the Dashboard transaction history that only loads what is looked at.
+// Rows are fetched a page at a time with BankService.getTransactionHistoryPage, in the
+// background, when the table asks for a row close to the end of what has been loaded so far.
+// Loaded rows are held in primitive column arrays and cells are formatted only when the table
+// renders them, so opening an account with a very long history costs one page.
+//
+// Only a window of -Dbank.history.windowPages pages is kept. Page p lives in slot
+// 1 + (p - 1) % (windowPages - 1), so loading a page evicts the one windowPages - 1 pages away;
+// scrolling back to an evicted page fetches it again from the cursor it was first read with.
+// Page 0 has no cursor (a re-read would pick up newer transactions) and keeps slot 0 for good.
+public class TransactionTableModel extends AbstractTableModel {
+    private static final String[] COLUMN_NAMES = {"Date", "Type", "Amount", "Description"};
+    private static final int PAGE_SIZE = Math.max(1, Integer.getInteger("bank.history.pageSize", 200));
+    private static final int WINDOW_PAGES = Math.max(3, Integer.getInteger("bank.history.windowPages", 10));
+    // Start fetching the next page when this many loaded rows are left below the visible one
+    private static final int PREFETCH_ROWS = PAGE_SIZE / 2;
+
+    // Column storage, PAGE_SIZE rows per slot
+    private final long[] dates = new long[WINDOW_PAGES * PAGE_SIZE];
+    private final byte[] types = new byte[WINDOW_PAGES * PAGE_SIZE];
+    private final long[] amounts = new long[WINDOW_PAGES * PAGE_SIZE];
+    private final String[] descriptions = new String[WINDOW_PAGES * PAGE_SIZE];
+    // Page held by each slot (-1 if none) and its row count
+    private final int[] slotPage = new int[WINDOW_PAGES];
+    private final int[] slotRows = new int[WINDOW_PAGES];
+    // Page being fetched into each slot (-1 if none), and the page last asked for there
+    private final int[] slotPending = new int[WINDOW_PAGES];
+    private final int[] slotWanted = new int[WINDOW_PAGES];
+    private final CompletableFuture<TransactionPage>[] slotFetch = newFetchArray(WINDOW_PAGES);
+    private final List<String> typeNames = new ArrayList<>();
+
+    private int accountId;
+    // Rows of all pages read so far
+    private int size;
+    // Cursor each page starts from (null for page 0); one more entry than pages read while hasMore
+    private final List<String> pageCursors = new ArrayList<>();
+    private boolean hasMore;
+    private boolean failed;
+    // Bumped on every reload so pages of a previously shown account are dropped
+    private int generation;
+
+    // Used on the event dispatch thread only
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+    private final Date reusableDate = new Date();
+
+    public TransactionTableModel() {
+        Arrays.fill(slotPage, -1);
+        Arrays.fill(slotPending, -1);
+        Arrays.fill(slotWanted, -1);
+    }
+
+    // Show the history of another account (or reload the current one)
+    public void load(int accountId) {
+        for (int slot = 0; slot < WINDOW_PAGES; slot++) {
+            if (slotFetch[slot] != null) {
+                slotFetch[slot].cancel(false);
+                slotFetch[slot] = null;
+            }
+            slotPage[slot] = -1;
+            slotPending[slot] = -1;
+            slotWanted[slot] = -1;
+        }
+        Arrays.fill(descriptions, null);
+        generation++;
+        this.accountId = accountId;
+        pageCursors.clear();
+        pageCursors.add(null);
+        hasMore = true;
+        failed = false;
+        size = 0;
+        fireTableDataChanged();
+        fetchPage(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CompletableFuture<TransactionPage>[] newFetchArray(int length) {
+        return (CompletableFuture<TransactionPage>[]) new CompletableFuture<?>[length];
+    }
+
+    private static int slotOf(int page) {
+        return page == 0 ? 0 : 1 + (page - 1) % (WINDOW_PAGES - 1);
+    }
+
+    private void fetchPage(int page) {
+        int slot = slotOf(page);
+        slotWanted[slot] = page;
+        if (failed || slotPage[slot] == page || slotPending[slot] >= 0 || page >= pageCursors.size()) {
+            return;
+        }
+
+        final int fetchGeneration = generation;
+        CompletableFuture<TransactionPage> fetch = BankService.getTransactionHistoryPage(accountId, pageCursors.get(page), PAGE_SIZE);
+        slotPending[slot] = page;
+        slotFetch[slot] = fetch;
+        UiTask.run(null, fetch, result -> {
+            // Pages of a previously shown account are dropped
+            if (fetchGeneration == generation) {
+                slotPending[slot] = -1;
+                slotFetch[slot] = null;
+                pageLoaded(page, result);
+            }
+        });
+    }
+    
+    private void pageLoaded(int page, TransactionPage result) {
+        if (result == null) {
+            // Database error - stop here, showing what is still in the window
+            failed = true;
+            hasMore = false;
+            fireTableDataChanged();
+            return;
+        }
+
+        int slot = slotOf(page);
+        if (slotWanted[slot] != page) {
+            // The table moved on to another page for this slot while this one was in flight
+            fetchPage(slotWanted[slot]);
+            return;
+        }
+
+        List<Transaction> transactions = result.getTransactions();
+        int rows = Math.min(transactions.size(), PAGE_SIZE);
+        int base = slot * PAGE_SIZE;
+        for (int i = 0; i < rows; i++) {
+            Transaction transaction = transactions.get(i);
+            dates[base + i] = transaction.getDate() != null ? transaction.getDate().getTime() : Long.MIN_VALUE;
+            types[base + i] = typeCode(transaction.getType());
+            amounts[base + i] = transaction.getAmount();
+            descriptions[base + i] = transaction.getDescription();
+        }
+        Arrays.fill(descriptions, base + rows, base + PAGE_SIZE, null);
+        slotPage[slot] = page;
+        slotRows[slot] = rows;
+
+        if (page < pageCursors.size() - 1 || !hasMore) {
+            // An evicted page came back
+            int first = page * PAGE_SIZE;
+            fireTableRowsUpdated(first, Math.min(first + PAGE_SIZE, size) - 1);
+            return;
+        }
+
+        // A new page at the end
+        int first = size;
+        size += rows;
+        hasMore = result.hasMore();
+        if (hasMore) {
+            pageCursors.add(result.getNextCursor());
+        }
+
+        // The loading row at index 'first' became a data row
+        if (size > first) {
+            fireTableRowsUpdated(first, first);
+            if (size - 1 > first) {
+                fireTableRowsInserted(first + 1, size - 1);
+            }
+        }
+        if (!hasMore) {
+            // An empty last page: the loading row goes away
+            if (size == first) {
+                fireTableRowsDeleted(first, first);
+            }
+        } else if (size > first) {
+            fireTableRowsInserted(size, size);
+        }
+    }
+
+    private byte typeCode(String type) {
+        int index = typeNames.indexOf(type);
+        if (index < 0) {
+            index = typeNames.size();
+            typeNames.add(type);
+        }
+        return (byte) index;
+    }
+
+    // Number of rows loaded so far
+    public int getLoadedRowCount() {
+        return size;
+    }
+
+    public boolean isLoading() {
+        for (int page : slotPending) {
+            if (page >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int getRowCount() {
+        // One extra row reads "Loading..." while more pages exist
+        return hasMore ? size + 1 : size;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return String.class;
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (hasMore && row >= size - PREFETCH_ROWS) {
+            fetchPage(pageCursors.size() - 1);
+        }
+        if (row >= size) {
+            return column == 0 ? "Loading..." : "";
+        }
+
+        int page = row / PAGE_SIZE;
+        int slot = slotOf(page);
+        int offset = row - page * PAGE_SIZE;
+        if (slotPage[slot] != page) {
+            fetchPage(page);
+            return column == 0 && !failed ? "Loading..." : "";
+        }
+        if (offset >= slotRows[slot]) {
+            return "";
+        }
+
+        int index = slot * PAGE_SIZE + offset;
+        switch (column) {
+            case 0:
+                if (dates[index] == Long.MIN_VALUE) {
+                    return "";
+                }
+                reusableDate.setTime(dates[index]);
+                return dateFormat.format(reusableDate);
+            case 1:
+                return typeNames.get(types[index]);
+            case 2:
+                return "$" + Money.format(amounts[index]);
+            default:
+                return descriptions[index];
+        }
+    }
+}
@@ -0,0 +1,170 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Multi-threaded stress check for the striped transfer locks.
+// Fires thousands of concurrent transfers, half of them in the opposite direction between the
+// same pairs of accounts, then checks that no money was created or lost and that nothing
+// deadlocked.
+//
+// Usage:
+//   java TransferStress                      in-memory accounts, exercises AccountLockTable only
+//   java TransferStress db <id1> <id2> ...   real transfers through DatabaseManager.transfer
+//
+// Optional system properties: -Dthreads=16 -Dtransfers=20000 -Daccounts=8 -Dstripes=256
+public class TransferStress {
+    private static final int THREADS = Integer.getInteger("threads", 16);
+    private static final int TRANSFERS_PER_THREAD = Integer.getInteger("transfers", 20000);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("db")) {
+            int[] accountIds = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                accountIds[i - 1] = Integer.parseInt(args[i]);
+            }
+            if (accountIds.length < 2) {
+                System.err.println("Give at least two account ids");
+                System.exit(2);
+            }
+            runAgainstDatabase(accountIds);
+        } else {
+            runInMemory(Integer.getInteger("accounts", 8));
+        }
+    }
+
+    private static void runInMemory(int accountCount) throws InterruptedException {
+        AccountLockTable locks = new AccountLockTable(Integer.getInteger("stripes", 256));
+        long[] balances = new long[accountCount + 1];
+        for (int id = 1; id <= accountCount; id++) {
+            balances[id] = Money.parse("1000.00");
+        }
+        long before = sum(balances);
+        AtomicLong completed = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+
+        boolean finished = runWorkers(accountCount, (from, to, amount) -> {
+            locks.lock(from, to);
+            try {
+                if (balances[from] < amount) {
+                    rejected.incrementAndGet();
+                    return;
+                }
+                balances[from] -= amount;
+                // Widen the window in which a missing lock would show up as lost money
+                Thread.yield();
+                balances[to] += amount;
+                completed.incrementAndGet();
+            } finally {
+                locks.unlock(from, to);
+            }
+        });
+
+        long after = sum(balances);
+        report(finished, before, after, completed.get(), rejected.get());
+        System.out.println(locks);
+        System.exit(finished && before == after ? 0 : 1);
+    }
+
+    private static void runAgainstDatabase(int[] accountIds) throws InterruptedException {
+        DatabaseManager.initializeDatabase();
+        long before = databaseTotal(accountIds);
+        AtomicLong completed = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+
+        boolean finished = runWorkers(accountIds.length, (from, to, amount) -> {
+            if (DatabaseManager.transfer(accountIds[from - 1], accountIds[to - 1], amount)) {
+                completed.incrementAndGet();
+            } else {
+                rejected.incrementAndGet();
+            }
+        });
+
+        long after = databaseTotal(accountIds);
+        report(finished, before, after, completed.get(), rejected.get());
+        System.out.println(DatabaseManager.getTransferLockTable());
+        DatabaseManager.shutdown();
+        System.exit(finished && before == after ? 0 : 1);
+    }
+
+    private interface TransferAction {
+        void transfer(int fromIndex, int toIndex, long amount);
+    }
+
+    // Each thread transfers back and forth between random pairs; returns false on a suspected deadlock
+    private static boolean runWorkers(int accountCount, TransferAction action) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+
+        for (int t = 0; t < THREADS; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                    for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                        int a = 1 + random.nextInt(accountCount);
+                        int b = 1 + random.nextInt(accountCount - 1);
+                        if (b >= a) {
+                            b++;
+                        }
+                        long amount = 1 + random.nextInt(5000);
+                        // Alternate directions so the same pair is constantly crossed
+                        if ((i & 1) == 0) {
+                            action.transfer(a, b, amount);
+                        } else {
+                            action.transfer(b, a, amount);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "transfer-stress-" + t);
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        boolean finished = done.await(5, TimeUnit.MINUTES);
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+
+        long attempted = (long) THREADS * TRANSFERS_PER_THREAD;
+        System.out.println(String.format("%,d transfers on %d threads in %.2f s (%,.0f/sec)",
+                attempted, THREADS, seconds, attempted / seconds));
+        return finished;
+    }
+
+    private static void report(boolean finished, long before, long after, long completed, long rejected) {
+        System.out.println("Completed: " + completed + ", rejected for insufficient funds: " + rejected);
+        System.out.println("Total before: " + Money.format(before) + ", after: " + Money.format(after));
+        if (!finished) {
+            System.out.println("FAILED: workers did not finish - possible deadlock");
+        } else if (before != after) {
+            System.out.println("FAILED: money was not conserved");
+        } else {
+            System.out.println("OK: money conserved, no deadlock");
+        }
+    }
+
+    private static long sum(long[] balances) {
+        long total = 0;
+        for (long balance : balances) {
+            total += balance;
+        }
+        return total;
+    }
+
+    private static long databaseTotal(int[] accountIds) {
+        long total = 0;
+        for (int accountId : accountIds) {
+            Account account = DatabaseManager.getAccountById(accountId);
+            if (account == null) {
+                throw new IllegalArgumentException("Account " + accountId + " not found");
+            }
+            total += account.getBalance();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,104 @@
+import java.awt.Component;
+import java.awt.Cursor;
+import java.awt.Window;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import javax.swing.JComponent;
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+
+// Bridge from BankService futures back to the Swing event dispatch thread, in the spirit of
+// SwingWorker.done(). While a call is pending its window shows the wait cursor and the given
+// controls are disabled; the result handler then runs on the EDT. Failures are reported in a
+// dialog, cancelled calls are dropped silently. The owner may be null for calls that show
+// their own progress, like the transaction table's loading row.
+public final class UiTask {
+    // Pending calls per window, touched on the EDT only
+    private static final Map<Window, Integer> PENDING = new WeakHashMap<>();
+
+    private UiTask() {
+    }
+
+    public static <T> CompletableFuture<T> run(Component owner, CompletableFuture<T> future,
+                                               Consumer<? super T> onSuccess, JComponent... controls) {
+        Window window = owner == null || owner instanceof Window ? (Window) owner : SwingUtilities.getWindowAncestor(owner);
+        String screen = owner != null ? owner.getClass().getName() : "background";
+        BankEvents.UiRequest event = new BankEvents.UiRequest();
+        event.begin();
+        setBusy(window, true);
+        for (JComponent control : controls) {
+            control.setEnabled(false);
+        }
+
+        future.whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+            setBusy(window, false);
+            for (JComponent control : controls) {
+                control.setEnabled(true);
+            }
+
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause == null) {
+                onSuccess.accept(result);
+                event.complete(screen, "completed");
+            } else if (cause instanceof CancellationException) {
+                event.complete(screen, "cancelled");
+            } else {
+                event.complete(screen, "failed");
+                System.err.println("Background task error: " + cause);
+                if (window == null || window.isDisplayable()) {
+                    JOptionPane.showMessageDialog(window, "The request could not be completed: " + cause.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }));
+        return future;
+    }
+
+    private static void setBusy(Window window, boolean busy) {
+        if (window == null) {
+            return;
+        }
+        int pending = PENDING.getOrDefault(window, 0) + (busy ? 1 : -1);
+        if (pending > 0) {
+            PENDING.put(window, pending);
+            window.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        } else {
+            PENDING.remove(window);
+            window.setCursor(Cursor.getDefaultCursor());
+        }
+    }
+
+    // Runs one kind of request where only the newest one matters, e.g. loading the data for
+    // whatever account is selected. Starting a request cancels the previous one; a result that
+    // arrives after it has been superseded is dropped. EDT only.
+    public static class Latest {
+        private CompletableFuture<?> current;
+        private int sequence;
+
+        public <T> void run(Component owner, Supplier<CompletableFuture<T>> request, Consumer<? super T> onSuccess) {
+            cancel();
+            int requestSequence = ++sequence;
+            CompletableFuture<T> future = request.get();
+            current = future;
+            UiTask.run(owner, future, result -> {
+                if (requestSequence == sequence) {
+                    current = null;
+                    onSuccess.accept(result);
+                }
+            });
+        }
+
+        public void cancel() {
+            if (current != null) {
+                current.cancel(false);
+                current = null;
+            }
+            sequence++;
+        }
+    }
+}
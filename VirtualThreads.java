@@ -0,0 +1,43 @@
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// One thread per task, using virtual threads when the JVM has them (Java 21+).
+// The sources still compile on older JDKs: virtual threads are looked up by reflection, and
+// without them tasks run on a cached pool of daemon platform threads instead.
+public class VirtualThreads {
+    private static final Method NEW_VIRTUAL_EXECUTOR = findVirtualExecutor();
+
+    private static Method findVirtualExecutor() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    public static boolean isSupported() {
+        return NEW_VIRTUAL_EXECUTOR != null;
+    }
+
+    // Starts a new thread for every submitted task; namePrefix is used for platform threads only
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        if (NEW_VIRTUAL_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_EXECUTOR.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.err.println("Virtual threads unavailable: " + e.getMessage());
+            }
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = task -> {
+            Thread thread = new Thread(task, namePrefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newCachedThreadPool(factory);
+    }
+}
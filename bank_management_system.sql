@@ -48,6 +48,7 @@ CREATE TABLE IF NOT EXISTS cards (
     expiry_date TIMESTAMP NOT NULL,
     issued_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     is_active BOOLEAN DEFAULT TRUE,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     FOREIGN KEY (account_id) REFERENCES accounts(account_id) ON DELETE CASCADE
 );
 
@@ -64,15 +65,44 @@ CREATE TABLE IF NOT EXISTS loans (
     end_date TIMESTAMP NOT NULL,
     remaining_amount DECIMAL(15, 2) NOT NULL,
     status ENUM('PENDING', 'APPROVED', 'ACTIVE', 'PAID', 'DEFAULTED') DEFAULT 'PENDING',
+    last_accrual_date DATE NULL,  -- Due date of the last installment serviced by InterestAccrualJob
+    accrued_installments INT NOT NULL DEFAULT 0,  -- Installments serviced; the n-th is due start_date + n months
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     FOREIGN KEY (account_id) REFERENCES accounts(account_id) ON DELETE CASCADE
 );
 
+-- Last ledger posting copied into accounts/transactions (used when the in-memory ledger is enabled)
+CREATE TABLE IF NOT EXISTS ledger_checkpoint (
+    ledger_id INT PRIMARY KEY,
+    last_sequence BIGINT NOT NULL,
+    active BOOLEAN NOT NULL DEFAULT FALSE,  -- Set while an application runs the ledger or has postings left to sync
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+-- Progress of each bulk import file (BulkImporter), committed with every batch so imports can resume
+CREATE TABLE IF NOT EXISTS import_checkpoint (
+    import_id VARCHAR(255) PRIMARY KEY,
+    byte_offset BIGINT NOT NULL,
+    line_number BIGINT NOT NULL,
+    applied BIGINT NOT NULL DEFAULT 0,
+    rejected BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
 -- Create indexes for better performance
 CREATE INDEX idx_cards_account_id ON cards(account_id);
 CREATE INDEX idx_cards_card_number ON cards(card_number);
+-- Incremental refresh of the card authorization index (cards and balances changed since the last one)
+CREATE INDEX idx_cards_updated_at ON cards(updated_at);
+CREATE INDEX idx_accounts_updated_at ON accounts(updated_at);
+-- Expiry sweep walks active cards in expiry order
+CREATE INDEX idx_cards_active_expiry ON cards(is_active, expiry_date, card_id);
 CREATE INDEX idx_loans_account_id ON loans(account_id);
+-- Nightly loan servicing walks active loans by account range
+CREATE INDEX idx_loans_status_account ON loans(status, account_id, loan_id);
+-- Keyset pagination of transaction history (newest first)
+CREATE INDEX idx_transactions_account_date ON transactions(account_id, transaction_date, transaction_id);
 
 -- Insert sample data insertion (optional)
 -- Insert sample users